@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.common;
+
+/**
+ * Declares which parts of a document a tree builder should materialize. The 
+ * tree construction algorithm still runs in full, but elements outside the 
+ * set are not reported (streaming SAX) or are built without their 
+ * attributes (DOM), and text and comments are dropped unless asked for.
+ * 
+ * <p>Elements can be selected by local name or by namespace; the latter 
+ * makes it possible to ask for e.g. all SVG content.
+ * 
+ * <p>Instances are immutable and can be shared between parsers.
+ */
+public final class InterestSet {
+
+    private final String[] localNames;
+
+    private final String[] namespaces;
+
+    private final boolean text;
+
+    private final boolean comments;
+
+    /**
+     * The constructor.
+     * 
+     * @param localNames
+     *            the local names of the interesting elements in any namespace
+     *            (may be <code>null</code>)
+     * @param text
+     *            <code>true</code> if text is wanted
+     * @param comments
+     *            <code>true</code> if comments are wanted
+     */
+    public InterestSet(String[] localNames, boolean text, boolean comments) {
+        this(localNames, null, text, comments);
+    }
+
+    /**
+     * The constructor.
+     * 
+     * @param localNames
+     *            the local names of the interesting elements in any namespace
+     *            (may be <code>null</code>)
+     * @param namespaces
+     *            the namespaces all of whose elements are interesting (may be
+     *            <code>null</code>)
+     * @param text
+     *            <code>true</code> if text is wanted
+     * @param comments
+     *            <code>true</code> if comments are wanted
+     */
+    public InterestSet(String[] localNames, String[] namespaces,
+            boolean text, boolean comments) {
+        this.localNames = internAll(localNames);
+        this.namespaces = internAll(namespaces);
+        this.text = text;
+        this.comments = comments;
+    }
+
+    private static String[] internAll(String[] strings) {
+        if (strings == null) {
+            return new String[0];
+        }
+        String[] rv = new String[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            rv[i] = strings[i].intern();
+        }
+        return rv;
+    }
+
+    /**
+     * Tells whether an element is interesting. The arguments MUST be interned.
+     * 
+     * @param ns
+     *            the namespace URI
+     * @param localName
+     *            the local name
+     * @return <code>true</code> if the element should be materialized
+     */
+    public boolean isInteresting(String ns, String localName) {
+        for (int i = 0; i < localNames.length; i++) {
+            if (localNames[i] == localName) {
+                return true;
+            }
+        }
+        for (int i = 0; i < namespaces.length; i++) {
+            if (namespaces[i] == ns) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the text flag.
+     * 
+     * @return <code>true</code> if text is wanted
+     */
+    public boolean wantsText() {
+        return text;
+    }
+
+    /**
+     * Returns the comments flag.
+     * 
+     * @return <code>true</code> if comments are wanted
+     */
+    public boolean wantsComments() {
+        return comments;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.common;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * A <code>ParseErrorHandler</code> that counts errors per code and 
+ * remembers where each code was seen first instead of materializing every 
+ * occurrence. Not thread-safe.
+ */
+public final class ParseErrorAggregator implements ParseErrorHandler {
+
+    private static final ParseErrorCode[] CODES = ParseErrorCode.values();
+
+    private final int[] counts = new int[CODES.length];
+
+    private final int[] lines = new int[CODES.length];
+
+    private final int[] columns = new int[CODES.length];
+
+    private final int[] offsets = new int[CODES.length];
+
+    private final int[] args = new int[CODES.length];
+
+    /**
+     * @see nu.validator.htmlparser.common.ParseErrorHandler#parseError(nu.validator.htmlparser.common.ParseErrorCode,
+     *      int, int, int, int)
+     */
+    public void parseError(ParseErrorCode code, int line, int column,
+            int offset, int arg) throws SAXException {
+        int i = code.ordinal();
+        if (counts[i]++ == 0) {
+            lines[i] = line;
+            columns[i] = column;
+            offsets[i] = offset;
+            args[i] = arg;
+        }
+    }
+
+    /**
+     * Returns the number of times a code was reported.
+     * 
+     * @param code
+     *            the code
+     * @return the count
+     */
+    public int getCount(ParseErrorCode code) {
+        return counts[code.ordinal()];
+    }
+
+    /**
+     * Returns the total number of errors and warnings reported.
+     * 
+     * @return the total
+     */
+    public int getTotal() {
+        int total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the line of the first occurrence of a code. Only meaningful 
+     * when the count of the code is not zero.
+     * 
+     * @param code
+     *            the code
+     * @return the line or -1 if it was not known
+     */
+    public int getFirstLine(ParseErrorCode code) {
+        return lines[code.ordinal()];
+    }
+
+    /**
+     * Returns the column of the first occurrence of a code. Only meaningful 
+     * when the count of the code is not zero.
+     * 
+     * @param code
+     *            the code
+     * @return the column or -1 if it was not known
+     */
+    public int getFirstColumn(ParseErrorCode code) {
+        return columns[code.ordinal()];
+    }
+
+    /**
+     * Returns the UTF-16 offset of the first occurrence of a code. Only 
+     * meaningful when the count of the code is not zero.
+     * 
+     * @param code
+     *            the code
+     * @return the UTF-16 offset or -1 if it was not known
+     */
+    public int getFirstOffset(ParseErrorCode code) {
+        return offsets[code.ordinal()];
+    }
+
+    /**
+     * Reports one <code>SAXParseException</code> per code seen, located at 
+     * the first occurrence and mentioning the number of occurrences.
+     * 
+     * @param errorHandler
+     *            the handler to report to
+     * @param systemId
+     *            the system id for the locations or <code>null</code>
+     * @throws SAXException
+     *             if the handler threw
+     */
+    public void report(ErrorHandler errorHandler, String systemId)
+            throws SAXException {
+        for (int i = 0; i < CODES.length; i++) {
+            int count = counts[i];
+            if (count == 0) {
+                continue;
+            }
+            ParseErrorCode code = CODES[i];
+            String message = code.getMessage(args[i]);
+            if (count > 1) {
+                message = message + " (" + count + " occurrences.)";
+            }
+            LocatorImpl locator = new LocatorImpl();
+            locator.setSystemId(systemId);
+            locator.setLineNumber(lines[i]);
+            locator.setColumnNumber(columns[i]);
+            SAXParseException spe = new SAXParseException(message, locator);
+            if (code.isWarning()) {
+                errorHandler.warning(spe);
+            } else {
+                errorHandler.error(spe);
+            }
+        }
+    }
+
+    /**
+     * Forgets all counts.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.common;
+
+/**
+ * Identifies the parse errors and warnings reported by the tokenizer 
+ * through <code>ParseErrorHandler</code>, including its checks on the 
+ * characters read from the stream. Errors about the character encoding are 
+ * not covered and still go to the <code>ErrorHandler</code>. The message 
+ * text is only built when <code>getMessage()</code> is called.
+ */
+public enum ParseErrorCode {
+    NULL_CHARACTER(false,
+            "Saw U+0000 in stream."),
+
+    NON_XML_CHARACTER(true,
+            "This document is not mappable to XML 1.0 without data loss due to %U which is not a legal XML 1.0 character."),
+
+    ASTRAL_NON_CHARACTER(false,
+            "Astral non-character."),
+
+    FORBIDDEN_CODE_POINT(false,
+            "Forbidden code point %U."),
+
+    PRIVATE_USE_CHARACTER(true,
+            "Document uses the Unicode Private Use Area(s), which should not be used in publicly exchanged documents. (Charmod C073)"),
+
+    GARBAGE_AFTER_LT_SLASH(false,
+            "Garbage after \u201C</\u201D."),
+
+    LT_SLASH_GT(false,
+            "Saw \u201C</>\u201D. Probable causes: Unescaped \u201C<\u201D (escape as \u201C&lt;\u201D) or mistyped end tag."),
+
+    LT_SLASH_IN_RCDATA(true,
+            "RCDATA or CDATA element contained the string \u201C</\u201D, but this did not close the element."),
+
+    HTML4_LT_SLASH_IN_RCDATA(false,
+            "RCDATA or CDATA element contained the string \u201C</\u201D, but it was not the start of the end tag. (HTML4-only error)"),
+
+    CHAR_REF_LACKS_SEMICOLON(false,
+            "Character reference was not terminated by a semicolon."),
+
+    NO_DIGITS_IN_NCR(false,
+            "No digits in numeric character reference."),
+
+    GT_IN_SYSTEM_ID(false,
+            "\u201C>\u201D in system identifier."),
+
+    GT_IN_PUBLIC_ID(false,
+            "\u201C>\u201D in public identifier."),
+
+    NAMELESS_DOCTYPE(false,
+            "Nameless doctype."),
+
+    CONSECUTIVE_HYPHENS(false,
+            "Consecutive hyphens did not terminate a comment. \u201C--\u201D is not permitted inside a comment, but e.g. \u201C- -\u201D is."),
+
+    PREMATURE_END_OF_COMMENT(false,
+            "Premature end of comment. Use \u201C-->\u201D to end a comment properly."),
+
+    BOGUS_COMMENT(false,
+            "Bogus comment."),
+
+    LT_IN_UNQUOTED_ATTRIBUTE_VALUE(false,
+            "\u201C<\u201D in an unquoted attribute value. Probable cause: Missing \u201C>\u201D immediately before."),
+
+    GRAVE_IN_UNQUOTED_ATTRIBUTE_VALUE(false,
+            "\u201C`\u201D in an unquoted attribute value. Probable cause: Using the wrong character as a quote."),
+
+    CHAR_IN_UNQUOTED_ATTRIBUTE_VALUE(false,
+            "\u201C%c\u201D in an unquoted attribute value. Probable causes: Attributes running together or a URL query string in an unquoted attribute value."),
+
+    SLASH_NOT_FOLLOWED_BY_GT(false,
+            "A slash was not immediately followed by \u201C>\u201D."),
+
+    HTML4_XML_VOID_SYNTAX(false,
+            "The \u201C/>\u201D syntax on void elements is not allowed.  (This is an HTML4-only error.)"),
+
+    NO_SPACE_BETWEEN_ATTRIBUTES(false,
+            "No space between attributes."),
+
+    HTML4_NON_NAME_IN_UNQUOTED_ATTRIBUTE(false,
+            "Non-name character in an unquoted attribute value. (This is an HTML4-only error.)"),
+
+    EQUALS_AT_START_OF_UNQUOTED_ATTRIBUTE_VALUE(false,
+            "\u201C=\u201D at the start of an unquoted attribute value. Probable cause: Stray duplicate equals sign."),
+
+    LT_AT_START_OF_UNQUOTED_ATTRIBUTE_VALUE(false,
+            "\u201C<\u201D at the start of an unquoted attribute value. Probable cause: Missing \u201C>\u201D immediately before."),
+
+    GRAVE_AT_START_OF_UNQUOTED_ATTRIBUTE_VALUE(false,
+            "\u201C`\u201D at the start of an unquoted attribute value. Probable cause: Using the wrong character as a quote."),
+
+    ATTRIBUTE_VALUE_MISSING(false,
+            "Attribute value missing."),
+
+    LT_BEFORE_ATTRIBUTE_NAME(false,
+            "Saw \u201C<\u201D when expecting an attribute name. Probable cause: Missing \u201C>\u201D immediately before."),
+
+    EQUALS_SIGN_BEFORE_ATTRIBUTE_NAME(false,
+            "Saw \u201C=\u201D when expecting an attribute name. Probable cause: Attribute name missing."),
+
+    BAD_CHAR_AFTER_LT(false,
+            "Bad character \u201C%c\u201D after \u201C<\u201D. Probable cause: Unescaped \u201C<\u201D. Try escaping it as \u201C&lt;\u201D."),
+
+    LT_GT(false,
+            "Saw \u201C<>\u201D. Probable causes: Unescaped \u201C<\u201D (escape as \u201C&lt;\u201D) or mistyped start tag."),
+
+    PROCESSING_INSTRUCTION(false,
+            "Saw \u201C<?\u201D. Probable cause: Attempt to use an XML processing instruction in HTML. (XML processing instructions are not supported in HTML.)"),
+
+    UNESCAPED_AMPERSAND_INTERPRETED_AS_CHARACTER_REFERENCE(false,
+            "The string following \u201C&\u201D was interpreted as a character reference. (\u201C&\u201D probably should have been escaped as \u201C&amp;\u201D.)"),
+
+    NOT_SEMICOLON_TERMINATED(false,
+            "Named character reference was not terminated by a semicolon. (Or \u201C&\u201D should have been escaped as \u201C&amp;\u201D.)"),
+
+    NO_NAMED_CHARACTER_MATCH(false,
+            "\u201C&\u201D did not start a character reference. (\u201C&\u201D probably should have been escaped as \u201C&amp;\u201D.)"),
+
+    QUOTE_BEFORE_ATTRIBUTE_NAME(false,
+            "Saw \u201C%c\u201D when expecting an attribute name. Probable cause: \u201C=\u201D missing immediately before."),
+
+    LT_IN_ATTRIBUTE_NAME(false,
+            "\u201C<\u201D in attribute name. Probable cause: \u201C>\u201D missing immediately before."),
+
+    QUOTE_IN_ATTRIBUTE_NAME(false,
+            "Quote \u201C%c\u201D in attribute name. Probable cause: Matching quote missing somewhere earlier."),
+
+    EXPECTED_PUBLIC_ID(false,
+            "Expected a public identifier but the doctype ended."),
+
+    BOGUS_DOCTYPE(false,
+            "Bogus doctype."),
+
+    ATTRIBUTES_ON_END_TAG(false,
+            "End tag had attributes."),
+
+    SLASH_IN_END_TAG(false,
+            "Stray \u201C/\u201D at the end of an end tag."),
+
+    NCR_NON_CHARACTER(false,
+            "Character reference expands to a non-character (%U)."),
+
+    NCR_ASTRAL_NON_CHARACTER(false,
+            "Character reference expands to an astral non-character (%U)."),
+
+    NCR_SURROGATE(false,
+            "Character reference expands to a surrogate."),
+
+    NCR_CONTROL_CHARACTER(false,
+            "Character reference expands to a control character (%U)."),
+
+    NCR_CR(false,
+            "A numeric character reference expanded to carriage return."),
+
+    NCR_IN_C1_RANGE(false,
+            "A numeric character reference expanded to the C1 controls range."),
+
+    NCR_OUT_OF_RANGE(false,
+            "Character reference outside the permissible Unicode range."),
+
+    NCR_UNASSIGNED(false,
+            "Character reference expands to a permanently unassigned code point."),
+
+    NCR_ZERO(false,
+            "Character reference expands to zero."),
+
+    EOF_IN_PUBLIC_ID(false,
+            "End of file inside public identifier."),
+
+    EOF_IN_SYSTEM_ID(false,
+            "End of file inside system identifier."),
+
+    EOF_IN_COMMENT(false,
+            "End of file inside comment."),
+
+    EOF_IN_DOCTYPE(false,
+            "End of file inside doctype."),
+
+    EOF_IN_ATTRIBUTE_VALUE(false,
+            "End of file reached when inside an attribute value. Ignoring tag."),
+
+    EOF_IN_ATTRIBUTE_NAME(false,
+            "End of file occurred in an attribute name. Ignoring tag."),
+
+    EOF_WITHOUT_GT(false,
+            "Saw end of file without the previous tag ending with \u201C>\u201D. Ignoring tag."),
+
+    EOF_IN_TAG_NAME(false,
+            "End of file seen when looking for tag name. Ignoring tag."),
+
+    EOF_IN_END_TAG(false,
+            "End of file inside end tag. Ignoring tag."),
+
+    EOF_AFTER_LT(false,
+            "End of file after \u201C<\u201D."),
+
+    DUPLICATE_ATTRIBUTE(false,
+            "Duplicate attribute."),
+
+    EXPECTED_SYSTEM_ID(false,
+            "Expected a system identifier but the doctype ended."),
+
+    MISSING_SPACE_BEFORE_DOCTYPE_NAME(false,
+            "Missing space before doctype name."),
+
+    HYPHEN_HYPHEN_BANG(false,
+            "\u201C--!\u201D found in comment."),
+
+    NO_SPACE_BETWEEN_DOCTYPE_SYSTEM_KEYWORD_AND_QUOTE(false,
+            "No space between the doctype \u201CSYSTEM\u201D keyword and the quote."),
+
+    NO_SPACE_BETWEEN_PUBLIC_AND_SYSTEM_IDS(false,
+            "No space between the doctype public and system identifiers."),
+
+    NO_SPACE_BETWEEN_DOCTYPE_PUBLIC_KEYWORD_AND_QUOTE(false,
+            "No space between the doctype \u201CPUBLIC\u201D keyword and the quote.");
+
+    private final boolean warning;
+
+    private final String message;
+
+    private ParseErrorCode(boolean warning, String message) {
+        this.warning = warning;
+        this.message = message;
+    }
+
+    /**
+     * Tells whether this is a warning rather than an error.
+     * 
+     * @return <code>true</code> for warnings
+     */
+    public boolean isWarning() {
+        return warning;
+    }
+
+    /**
+     * Formats the message. For codes whose message names a character or a 
+     * code point, the argument supplies it.
+     * 
+     * @param arg
+     *            the argument reported with the error or -1
+     * @return the message
+     */
+    public String getMessage(int arg) {
+        int i = message.indexOf('%');
+        if (i == -1) {
+            return message;
+        }
+        StringBuilder sb = new StringBuilder(message.length() + 8);
+        sb.append(message, 0, i);
+        if (message.charAt(i + 1) == 'U') {
+            String hex = Integer.toHexString(arg);
+            sb.append("U+");
+            for (int j = hex.length(); j < 4; j++) {
+                sb.append('0');
+            }
+            sb.append(hex);
+        } else {
+            sb.append((char) arg);
+        }
+        sb.append(message, i + 2, message.length());
+        return sb.toString();
+    }
+}
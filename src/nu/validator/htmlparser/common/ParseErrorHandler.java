@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.common;
+
+import org.xml.sax.SAXException;
+
+/**
+ * An interface for receiving parse errors as codes and primitive location 
+ * data instead of <code>SAXParseException</code>s, so that reporting an 
+ * error allocates nothing. When set, it takes the place of the 
+ * <code>ErrorHandler</code> for the errors it covers.
+ */
+public interface ParseErrorHandler {
+
+    /**
+     * Receive notification of a parse error or warning.
+     * 
+     * @param code
+     *            the error code
+     * @param line
+     *            the line number or -1
+     * @param column
+     *            the column number or -1
+     * @param offset
+     *            the UTF-16 offset of the last character read or -1
+     * @param arg
+     *            the character or code point named by the message or -1
+     * @throws SAXException
+     *             if things go wrong
+     */
+    public void parseError(ParseErrorCode code, int line, int column,
+            int offset, int arg) throws SAXException;
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.common;
+
+/**
+ * Counts how often a tree builder takes the expensive or unusual paths of 
+ * the tree construction algorithm. The increments are plain field 
+ * increments, so an instance must only be used by one parser at a time. 
+ * Counts accumulate over parses until <code>reset()</code> is called, and 
+ * instances can be summed with <code>add()</code>.
+ */
+public final class TreeBuilderCounters {
+
+    /**
+     * The stack depth beyond which Gecko stops nesting elements and uses a 
+     * surrogate parent. Pushes past this depth are counted as deep tree 
+     * pushes.
+     */
+    public static final int DEEP_TREE_THRESHOLD = 200;
+
+    private long parses;
+
+    private long fosterParenting;
+
+    private long adoptionAgency;
+
+    private long reconstructions;
+
+    private long modeSwitches;
+
+    private long deepTreePushes;
+
+    private long quirks;
+
+    private long limitedQuirks;
+
+    private int maxDepth;
+
+    public void countParse() {
+        parses++;
+    }
+
+    public void countFosterParenting() {
+        fosterParenting++;
+    }
+
+    public void countAdoptionAgency() {
+        adoptionAgency++;
+    }
+
+    public void countReconstruction() {
+        reconstructions++;
+    }
+
+    public void countModeSwitch() {
+        modeSwitches++;
+    }
+
+    public void countDepth(int depth) {
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        if (depth > DEEP_TREE_THRESHOLD) {
+            deepTreePushes++;
+        }
+    }
+
+    public void countDocumentMode(DocumentMode mode) {
+        switch (mode) {
+            case QUIRKS_MODE:
+                quirks++;
+                break;
+            case ALMOST_STANDARDS_MODE:
+                limitedQuirks++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the number of parses started.
+     * 
+     * @return the parse count
+     */
+    public long getParses() {
+        return parses;
+    }
+
+    /**
+     * Returns the number of elements and text runs inserted by foster 
+     * parenting.
+     * 
+     * @return the foster parenting count
+     */
+    public long getFosterParenting() {
+        return fosterParenting;
+    }
+
+    /**
+     * Returns the number of end tags that ran the adoption agency 
+     * algorithm.
+     * 
+     * @return the adoption agency count
+     */
+    public long getAdoptionAgency() {
+        return adoptionAgency;
+    }
+
+    /**
+     * Returns the number of times the active formatting elements were 
+     * actually reconstructed.
+     * 
+     * @return the reconstruction count
+     */
+    public long getReconstructions() {
+        return reconstructions;
+    }
+
+    /**
+     * Returns the number of insertion mode changes observed between tag 
+     * tokens.
+     * 
+     * @return the mode switch count
+     */
+    public long getModeSwitches() {
+        return modeSwitches;
+    }
+
+    /**
+     * Returns the number of elements pushed deeper than 
+     * <code>DEEP_TREE_THRESHOLD</code>.
+     * 
+     * @return the deep tree push count
+     */
+    public long getDeepTreePushes() {
+        return deepTreePushes;
+    }
+
+    /**
+     * Returns the number of documents in quirks mode.
+     * 
+     * @return the quirks mode count
+     */
+    public long getQuirks() {
+        return quirks;
+    }
+
+    /**
+     * Returns the number of documents in limited quirks (almost standards) 
+     * mode.
+     * 
+     * @return the limited quirks mode count
+     */
+    public long getLimitedQuirks() {
+        return limitedQuirks;
+    }
+
+    /**
+     * Returns the maximum depth of the stack of open elements seen.
+     * 
+     * @return the maximum depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Adds the counts of another instance to this one.
+     * 
+     * @param other
+     *            the counts to add
+     */
+    public void add(TreeBuilderCounters other) {
+        parses += other.parses;
+        fosterParenting += other.fosterParenting;
+        adoptionAgency += other.adoptionAgency;
+        reconstructions += other.reconstructions;
+        modeSwitches += other.modeSwitches;
+        deepTreePushes += other.deepTreePushes;
+        quirks += other.quirks;
+        limitedQuirks += other.limitedQuirks;
+        if (other.maxDepth > maxDepth) {
+            maxDepth = other.maxDepth;
+        }
+    }
+
+    /**
+     * Sets all counts to zero.
+     */
+    public void reset() {
+        parses = 0;
+        fosterParenting = 0;
+        adoptionAgency = 0;
+        reconstructions = 0;
+        modeSwitches = 0;
+        deepTreePushes = 0;
+        quirks = 0;
+        limitedQuirks = 0;
+        maxDepth = 0;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.TypeInfo;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * A view of one attribute of a compact DOM element. Views are created on 
+ * demand, so two views of the same attribute are equal but not identical.
+ */
+final class CompactAttr extends CompactNode implements Attr {
+
+    private final CompactElement element;
+
+    final int index;
+
+    CompactAttr(CompactElement element, int index) {
+        super(null);
+        this.element = element;
+        this.index = index;
+        this.flags = READ_ONLY;
+    }
+
+    @Override CompactDocument ownerDocument() {
+        return element.ownerDocument();
+    }
+
+    @Override CompactNode copy(CompactDocument document, boolean deep) {
+        throw notSupported();
+    }
+
+    @Override CompactNode container() {
+        return element;
+    }
+
+    public String getNodeName() {
+        return getName();
+    }
+
+    public short getNodeType() {
+        return Node.ATTRIBUTE_NODE;
+    }
+
+    @Override public String getNodeValue() throws DOMException {
+        return getValue();
+    }
+
+    @Override public void setNodeValue(String nodeValue) throws DOMException {
+        setValue(nodeValue);
+    }
+
+    @Override public Node getParentNode() {
+        return null;
+    }
+
+    @Override public Node getPreviousSibling() {
+        return null;
+    }
+
+    @Override public Node getNextSibling() {
+        return null;
+    }
+
+    @Override public String getNamespaceURI() {
+        return CompactElement.emptyToNull(element.attributes.getURINoBoundsCheck(index));
+    }
+
+    @Override public String getPrefix() {
+        return element.attributes.getPrefixNoBoundsCheck(index);
+    }
+
+    @Override public String getLocalName() {
+        return element.attributes.getLocalNameNoBoundsCheck(index);
+    }
+
+    @Override public String getTextContent() throws DOMException {
+        return getValue();
+    }
+
+    @Override public void setTextContent(String textContent)
+            throws DOMException {
+        setValue(textContent);
+    }
+
+    @Override public String lookupNamespaceURI(String prefix) {
+        return element.lookupNamespaceURI(prefix);
+    }
+
+    @Override public boolean isSameNode(Node other) {
+        return equals(other);
+    }
+
+    @Override public Object setUserData(String key, Object data,
+            UserDataHandler handler) {
+        throw unsupportedModification();
+    }
+
+    public String getName() {
+        return element.attributes.getQNameNoBoundsCheck(index);
+    }
+
+    public boolean getSpecified() {
+        return true;
+    }
+
+    public String getValue() {
+        return element.attributes.getValueNoBoundsCheck(index);
+    }
+
+    public void setValue(String value) throws DOMException {
+        throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                "Attributes cannot be modified.");
+    }
+
+    public Element getOwnerElement() {
+        return element;
+    }
+
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    public boolean isId() {
+        return "ID" == element.attributes.getTypeNoBoundsCheck(index);
+    }
+
+    @Override public boolean equals(Object obj) {
+        if (!(obj instanceof CompactAttr)) {
+            return false;
+        }
+        CompactAttr other = (CompactAttr) obj;
+        return element == other.element && index == other.index;
+    }
+
+    @Override public int hashCode() {
+        return element.hashCode() * 31 + index;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.DOMException;
+
+/**
+ * The common superclass of text and comment nodes of the compact DOM.
+ */
+abstract class CompactCharacterData extends CompactNode implements
+        CharacterData {
+
+    private String data;
+
+    CompactCharacterData(CompactDocument ownerDocument, String data) {
+        super(ownerDocument);
+        this.data = data;
+    }
+
+    private void checkRange(int offset, int count) {
+        if (offset < 0 || offset > data.length() || count < 0) {
+            throw new DOMException(DOMException.INDEX_SIZE_ERR,
+                    "Offset or count out of range.");
+        }
+    }
+
+    @Override public String getNodeValue() throws DOMException {
+        return data;
+    }
+
+    @Override public void setNodeValue(String nodeValue) throws DOMException {
+        setData(nodeValue);
+    }
+
+    @Override public String getTextContent() throws DOMException {
+        return data;
+    }
+
+    @Override public void setTextContent(String textContent)
+            throws DOMException {
+        setData(textContent);
+    }
+
+    public String getData() throws DOMException {
+        return data;
+    }
+
+    public void setData(String data) throws DOMException {
+        checkWritable();
+        this.data = data == null ? "" : data;
+    }
+
+    public int getLength() {
+        return data.length();
+    }
+
+    public String substringData(int offset, int count) throws DOMException {
+        checkRange(offset, count);
+        return data.substring(offset, Math.min(data.length(), offset + count));
+    }
+
+    public void appendData(String arg) throws DOMException {
+        setData(data + arg);
+    }
+
+    public void insertData(int offset, String arg) throws DOMException {
+        checkRange(offset, 0);
+        setData(data.substring(0, offset) + arg + data.substring(offset));
+    }
+
+    public void deleteData(int offset, int count) throws DOMException {
+        replaceData(offset, count, "");
+    }
+
+    public void replaceData(int offset, int count, String arg)
+            throws DOMException {
+        checkRange(offset, count);
+        int end = Math.min(data.length(), offset + count);
+        setData(data.substring(0, offset) + arg + data.substring(end));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+
+/**
+ * A small DOM implementation for read-only use of parser output. Pass an 
+ * instance to <code>HtmlDocumentBuilder</code> to get documents that take 
+ * less memory and less time to build than generic DOM documents.
+ * 
+ * <p>The nodes keep the attributes the tokenizer produced and the interned 
+ * element names, and the documents and fragments returned by 
+ * <code>HtmlDocumentBuilder</code> are read-only. Since nothing changes 
+ * after the parse, any number of threads can read them concurrently. 
+ * Attribute nodes are created on demand, so attributes are compared with 
+ * <code>isSameNode()</code> or <code>equals()</code> rather than 
+ * <code>==</code>. CDATA sections, processing instructions, entity 
+ * references and standalone attribute nodes are not supported.
+ */
+public final class CompactDOMImplementation implements DOMImplementation {
+
+    /**
+     * The constructor.
+     */
+    public CompactDOMImplementation() {
+        super();
+    }
+
+    static boolean supports(String feature, String version) {
+        if (feature.startsWith("+")) {
+            feature = feature.substring(1);
+        }
+        if (!("Core".equalsIgnoreCase(feature) || "XML".equalsIgnoreCase(feature))) {
+            return false;
+        }
+        return version == null || version.length() == 0
+                || "1.0".equals(version) || "2.0".equals(version)
+                || "3.0".equals(version);
+    }
+
+    /**
+     * @see org.w3c.dom.DOMImplementation#hasFeature(java.lang.String, java.lang.String)
+     */
+    public boolean hasFeature(String feature, String version) {
+        return supports(feature, version);
+    }
+
+    /**
+     * @see org.w3c.dom.DOMImplementation#createDocumentType(java.lang.String, java.lang.String, java.lang.String)
+     */
+    public DocumentType createDocumentType(String qualifiedName,
+            String publicId, String systemId) throws DOMException {
+        return new CompactDocumentType(null, qualifiedName, publicId, systemId);
+    }
+
+    /**
+     * @see org.w3c.dom.DOMImplementation#createDocument(java.lang.String, java.lang.String, org.w3c.dom.DocumentType)
+     */
+    public Document createDocument(String namespaceURI, String qualifiedName,
+            DocumentType doctype) throws DOMException {
+        CompactDocument document = new CompactDocument(this);
+        if (doctype != null) {
+            if (!(doctype instanceof CompactDocumentType)
+                    || ((CompactDocumentType) doctype).ownerNode != null) {
+                throw new DOMException(DOMException.WRONG_DOCUMENT_ERR,
+                        "The doctype belongs to another document or implementation.");
+            }
+            ((CompactDocumentType) doctype).ownerNode = document;
+            document.appendChild(doctype);
+        }
+        if (qualifiedName != null) {
+            document.appendChild(document.createElementNS(namespaceURI,
+                    qualifiedName));
+        }
+        return document;
+    }
+
+    /**
+     * @see org.w3c.dom.DOMImplementation#getFeature(java.lang.String, java.lang.String)
+     */
+    public Object getFeature(String feature, String version) {
+        return supports(feature, version) ? this : null;
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nu.validator.htmlparser.impl.HtmlAttributes;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+/**
+ * A document of the compact DOM.
+ */
+final class CompactDocument extends CompactParentNode implements Document {
+
+    private final CompactDOMImplementation implementation;
+
+    private String documentURI;
+
+    /**
+     * The user data of the nodes of the document. Kept here instead of in 
+     * the nodes, because hardly any nodes have user data.
+     */
+    private Map<CompactNode, Map<String, Object>> userData;
+
+    CompactDocument(CompactDOMImplementation implementation) {
+        super(null);
+        this.implementation = implementation;
+    }
+
+    /**
+     * Creates an element with the attributes the tokenizer produced. The 
+     * attributes must not be modified afterwards by anyone else.
+     * 
+     * @param namespaceURI
+     *            the namespace
+     * @param localName
+     *            the interned local name
+     * @param attributes
+     *            the attributes
+     * @return the new element
+     */
+    CompactElement newElement(String namespaceURI, String localName,
+            HtmlAttributes attributes) {
+        return new CompactElement(this, namespaceURI, localName, null,
+                attributes);
+    }
+
+    @Override CompactNode copy(CompactDocument document, boolean deep) {
+        CompactDocument copy = new CompactDocument(implementation);
+        copy.documentURI = documentURI;
+        if (deep) {
+            copyChildren(copy, copy);
+        }
+        return copy;
+    }
+
+    @Override CompactDocument ownerDocumentForChildren() {
+        return this;
+    }
+
+    @Override CompactDocument userDataDocument() {
+        return this;
+    }
+
+    Object setUserData(CompactNode node, String key, Object data) {
+        Map<String, Object> map = userData == null ? null : userData.get(node);
+        if (map == null) {
+            if (data == null) {
+                return null;
+            }
+            if (userData == null) {
+                userData = new HashMap<CompactNode, Map<String, Object>>();
+            }
+            map = new HashMap<String, Object>(4);
+            userData.put(node, map);
+        }
+        if (data == null) {
+            return map.remove(key);
+        }
+        return map.put(key, data);
+    }
+
+    Object getUserData(CompactNode node, String key) {
+        if (userData == null) {
+            return null;
+        }
+        Map<String, Object> map = userData.get(node);
+        return map == null ? null : map.get(key);
+    }
+
+    @Override void checkChild(CompactNode child) {
+        switch (child.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                if (getDocumentElement() != null) {
+                    break;
+                }
+                return;
+            case Node.DOCUMENT_TYPE_NODE:
+                if (getDoctype() != null) {
+                    break;
+                }
+                return;
+            case Node.COMMENT_NODE:
+                return;
+        }
+        throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                "The node cannot be inserted into the document.");
+    }
+
+    public String getNodeName() {
+        return "#document";
+    }
+
+    public short getNodeType() {
+        return Node.DOCUMENT_NODE;
+    }
+
+    @Override public String getTextContent() throws DOMException {
+        return null;
+    }
+
+    @Override public void setTextContent(String textContent)
+            throws DOMException {
+    }
+
+    @Override public String getBaseURI() {
+        return documentURI;
+    }
+
+    @Override public String lookupNamespaceURI(String prefix) {
+        Element root = getDocumentElement();
+        return root == null ? null : root.lookupNamespaceURI(prefix);
+    }
+
+    public DocumentType getDoctype() {
+        for (CompactNode child = firstChild; child != null; child = child.nextSibling) {
+            if (child instanceof CompactDocumentType) {
+                return (CompactDocumentType) child;
+            }
+        }
+        return null;
+    }
+
+    public DOMImplementation getImplementation() {
+        return implementation;
+    }
+
+    public Element getDocumentElement() {
+        for (CompactNode child = firstChild; child != null; child = child.nextSibling) {
+            if (child instanceof CompactElement) {
+                return (CompactElement) child;
+            }
+        }
+        return null;
+    }
+
+    public Element createElement(String tagName) throws DOMException {
+        return createElementNS(null, tagName);
+    }
+
+    public DocumentFragment createDocumentFragment() {
+        return new CompactDocumentFragment(this);
+    }
+
+    public Text createTextNode(String data) {
+        return new CompactText(this, data);
+    }
+
+    public Comment createComment(String data) {
+        return new CompactComment(this, data);
+    }
+
+    public CDATASection createCDATASection(String data) throws DOMException {
+        throw notSupported();
+    }
+
+    public ProcessingInstruction createProcessingInstruction(String target,
+            String data) throws DOMException {
+        throw notSupported();
+    }
+
+    public Attr createAttribute(String name) throws DOMException {
+        throw notSupported();
+    }
+
+    public EntityReference createEntityReference(String name)
+            throws DOMException {
+        throw notSupported();
+    }
+
+    public NodeList getElementsByTagName(String tagname) {
+        List<Node> list = new ArrayList<Node>();
+        collectElements(null, tagname, false, list);
+        return new CompactNodeList(list);
+    }
+
+    public Node importNode(Node importedNode, boolean deep)
+            throws DOMException {
+        if (importedNode instanceof CompactNode) {
+            return ((CompactNode) importedNode).copy(this, deep);
+        }
+        CompactNode copy = importShallow(importedNode);
+        if (!deep || !(copy instanceof CompactParentNode)) {
+            return copy;
+        }
+        // Walk the foreign tree without recursing, so that deep trees 
+        // don't exhaust the Java stack.
+        CompactParentNode parentCopy = (CompactParentNode) copy;
+        Node node = importedNode.getFirstChild();
+        while (node != null) {
+            CompactNode nodeCopy = importShallow(node);
+            parentCopy.link(nodeCopy, null);
+            Node child = node.getFirstChild();
+            if (child != null && nodeCopy instanceof CompactParentNode) {
+                parentCopy = (CompactParentNode) nodeCopy;
+                node = child;
+                continue;
+            }
+            while (node.getNextSibling() == null) {
+                node = node.getParentNode();
+                if (node == importedNode) {
+                    return copy;
+                }
+                parentCopy = parentCopy.parent();
+            }
+            node = node.getNextSibling();
+        }
+        return copy;
+    }
+
+    /**
+     * Imports a node from another DOM implementation without its children.
+     */
+    private CompactNode importShallow(Node importedNode) throws DOMException {
+        switch (importedNode.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                if (importedNode.hasAttributes()) {
+                    // Arbitrary attributes cannot be turned into 
+                    // HtmlAttributes.
+                    throw notSupported();
+                }
+                return new CompactElement(this,
+                        CompactElement.emptyToNull(importedNode.getNamespaceURI()),
+                        importedNode.getLocalName() == null ? importedNode.getNodeName()
+                                : importedNode.getLocalName(),
+                        importedNode.getPrefix(),
+                        HtmlAttributes.EMPTY_ATTRIBUTES);
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                return new CompactText(this, importedNode.getNodeValue());
+            case Node.COMMENT_NODE:
+                return new CompactComment(this, importedNode.getNodeValue());
+            case Node.DOCUMENT_FRAGMENT_NODE:
+                return new CompactDocumentFragment(this);
+            case Node.DOCUMENT_TYPE_NODE:
+                DocumentType doctype = (DocumentType) importedNode;
+                return new CompactDocumentType(this, doctype.getName(),
+                        doctype.getPublicId(), doctype.getSystemId());
+            default:
+                throw notSupported();
+        }
+    }
+
+    public Element createElementNS(String namespaceURI, String qualifiedName)
+            throws DOMException {
+        namespaceURI = CompactElement.emptyToNull(namespaceURI);
+        int colon = qualifiedName.indexOf(':');
+        String prefix = null;
+        String localName = qualifiedName;
+        if (colon != -1) {
+            if (namespaceURI == null) {
+                throw new DOMException(DOMException.NAMESPACE_ERR,
+                        "A prefixed name needs a namespace.");
+            }
+            prefix = qualifiedName.substring(0, colon);
+            localName = qualifiedName.substring(colon + 1);
+        }
+        return new CompactElement(this, namespaceURI, localName.intern(),
+                prefix, HtmlAttributes.EMPTY_ATTRIBUTES);
+    }
+
+    public Attr createAttributeNS(String namespaceURI, String qualifiedName)
+            throws DOMException {
+        throw notSupported();
+    }
+
+    public NodeList getElementsByTagNameNS(String namespaceURI,
+            String localName) {
+        List<Node> list = new ArrayList<Node>();
+        collectElements(namespaceURI, localName, true, list);
+        return new CompactNodeList(list);
+    }
+
+    public Element getElementById(String elementId) {
+        for (CompactNode node = following(this); node != null; node = node.following(this)) {
+            if (node instanceof CompactElement
+                    && elementId.equals(((CompactElement) node).attributes.getId())) {
+                return (CompactElement) node;
+            }
+        }
+        return null;
+    }
+
+    public String getInputEncoding() {
+        return null;
+    }
+
+    public String getXmlEncoding() {
+        return null;
+    }
+
+    public boolean getXmlStandalone() {
+        return false;
+    }
+
+    public void setXmlStandalone(boolean xmlStandalone) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public String getXmlVersion() {
+        return "1.0";
+    }
+
+    public void setXmlVersion(String xmlVersion) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public boolean getStrictErrorChecking() {
+        return true;
+    }
+
+    public void setStrictErrorChecking(boolean strictErrorChecking) {
+    }
+
+    public String getDocumentURI() {
+        return documentURI;
+    }
+
+    public void setDocumentURI(String documentURI) {
+        checkWritable();
+        this.documentURI = documentURI;
+    }
+
+    public Node adoptNode(Node source) throws DOMException {
+        // Null signals that adopting failed.
+        return null;
+    }
+
+    public DOMConfiguration getDomConfig() {
+        throw notSupported();
+    }
+
+    public void normalizeDocument() {
+        normalize();
+    }
+
+    public Node renameNode(Node n, String namespaceURI, String qualifiedName)
+            throws DOMException {
+        throw unsupportedModification();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A doctype of the compact DOM.
+ */
+final class CompactDocumentType extends CompactNode implements DocumentType {
+
+    private final String name;
+
+    private final String publicId;
+
+    private final String systemId;
+
+    CompactDocumentType(CompactDocument ownerDocument, String name,
+            String publicId, String systemId) {
+        super(ownerDocument);
+        this.name = name;
+        this.publicId = publicId;
+        this.systemId = systemId;
+    }
+
+    @Override CompactNode copy(CompactDocument document, boolean deep) {
+        return new CompactDocumentType(document, name, publicId, systemId);
+    }
+
+    public String getNodeName() {
+        return name;
+    }
+
+    public short getNodeType() {
+        return Node.DOCUMENT_TYPE_NODE;
+    }
+
+    @Override boolean isEqualShallow(Node other) {
+        if (!super.isEqualShallow(other)) {
+            return false;
+        }
+        DocumentType that = (DocumentType) other;
+        return equal(publicId, that.getPublicId())
+                && equal(systemId, that.getSystemId());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public NamedNodeMap getEntities() {
+        return CompactNamedNodeMap.EMPTY;
+    }
+
+    public NamedNodeMap getNotations() {
+        return CompactNamedNodeMap.EMPTY;
+    }
+
+    public String getPublicId() {
+        return publicId;
+    }
+
+    public String getSystemId() {
+        return systemId;
+    }
+
+    public String getInternalSubset() {
+        return null;
+    }
+}
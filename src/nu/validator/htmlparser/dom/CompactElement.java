@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.impl.HtmlAttributes;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+import org.xml.sax.SAXException;
+
+/**
+ * An element of the compact DOM. The attributes are kept in the 
+ * <code>HtmlAttributes</code> object the tokenizer produced and 
+ * <code>Attr</code> nodes are created on demand as views of it. The 
+ * attributes cannot be modified through the DOM.
+ */
+final class CompactElement extends CompactParentNode implements Element {
+
+    private final String namespaceURI;
+
+    /**
+     * The local name; interned when created by the parser.
+     */
+    private final String localName;
+
+    private final String prefix;
+
+    HtmlAttributes attributes;
+
+    CompactElement(CompactDocument ownerDocument, String namespaceURI,
+            String localName, String prefix, HtmlAttributes attributes) {
+        super(ownerDocument);
+        this.namespaceURI = namespaceURI;
+        this.localName = localName;
+        this.prefix = prefix;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Adds the attributes that this element does not have yet.
+     * 
+     * @param other
+     *            the attributes to add
+     * @throws SAXException
+     *             if the attributes could not be copied
+     */
+    void mergeAttributes(HtmlAttributes other) throws SAXException {
+        checkWritable();
+        if (other.getLength() == 0) {
+            return;
+        }
+        if (attributes.getLength() == 0) {
+            // May be the shared empty instance.
+            attributes = other.cloneAttributes(null);
+        } else {
+            attributes.merge(other);
+        }
+    }
+
+    @Override CompactNode copy(CompactDocument document, boolean deep) {
+        // The attributes are never modified after the element has been 
+        // built, so the copy can share them.
+        CompactElement copy = new CompactElement(document, namespaceURI,
+                localName, prefix, attributes);
+        if (deep) {
+            copyChildren(copy, document);
+        }
+        return copy;
+    }
+
+    boolean matches(String namespaceURI, String name, boolean namespaced) {
+        if (!namespaced) {
+            return "*".equals(name) || name.equals(getTagName());
+        }
+        return ("*".equals(name) || name.equals(localName))
+                && ("*".equals(namespaceURI) || equal(
+                        emptyToNull(namespaceURI), this.namespaceURI));
+    }
+
+    static String emptyToNull(String uri) {
+        return uri == null || uri.length() == 0 ? null : uri;
+    }
+
+    int indexOf(String qualifiedName) {
+        for (int i = 0; i < attributes.getLength(); i++) {
+            if (attributes.getQNameNoBoundsCheck(i).equals(qualifiedName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int indexOf(String namespaceURI, String localName) {
+        if (namespaceURI == null) {
+            namespaceURI = "";
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            if (attributes.getLocalNameNoBoundsCheck(i).equals(localName)
+                    && attributes.getURINoBoundsCheck(i).equals(namespaceURI)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getNodeName() {
+        return getTagName();
+    }
+
+    public short getNodeType() {
+        return Node.ELEMENT_NODE;
+    }
+
+    @Override public NamedNodeMap getAttributes() {
+        return new CompactNamedNodeMap(this);
+    }
+
+    @Override public String getNamespaceURI() {
+        return namespaceURI;
+    }
+
+    @Override public String getPrefix() {
+        return prefix;
+    }
+
+    @Override public String getLocalName() {
+        return localName;
+    }
+
+    @Override public boolean hasAttributes() {
+        return attributes.getLength() > 0;
+    }
+
+    @Override public String lookupNamespaceURI(String prefix) {
+        if (equal(prefix, this.prefix)) {
+            return namespaceURI;
+        }
+        return super.lookupNamespaceURI(prefix);
+    }
+
+    @Override boolean isEqualShallow(Node other) {
+        if (!super.isEqualShallow(other)) {
+            return false;
+        }
+        NamedNodeMap otherAttributes = other.getAttributes();
+        int length = attributes.getLength();
+        if (otherAttributes.getLength() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            Node attr = otherAttributes.getNamedItemNS(
+                    emptyToNull(attributes.getURINoBoundsCheck(i)),
+                    attributes.getLocalNameNoBoundsCheck(i));
+            if (attr == null
+                    || !attributes.getValueNoBoundsCheck(i).equals(
+                            attr.getNodeValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getTagName() {
+        return prefix == null ? localName : prefix + ':' + localName;
+    }
+
+    public String getAttribute(String name) {
+        int i = indexOf(name);
+        return i == -1 ? "" : attributes.getValueNoBoundsCheck(i);
+    }
+
+    public void setAttribute(String name, String value) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public void removeAttribute(String name) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public Attr getAttributeNode(String name) {
+        int i = indexOf(name);
+        return i == -1 ? null : new CompactAttr(this, i);
+    }
+
+    public Attr setAttributeNode(Attr newAttr) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public Attr removeAttributeNode(Attr oldAttr) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public NodeList getElementsByTagName(String name) {
+        List<Node> list = new ArrayList<Node>();
+        collectElements(null, name, false, list);
+        return new CompactNodeList(list);
+    }
+
+    public String getAttributeNS(String namespaceURI, String localName)
+            throws DOMException {
+        int i = indexOf(namespaceURI, localName);
+        return i == -1 ? "" : attributes.getValueNoBoundsCheck(i);
+    }
+
+    public void setAttributeNS(String namespaceURI, String qualifiedName,
+            String value) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public void removeAttributeNS(String namespaceURI, String localName)
+            throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public Attr getAttributeNodeNS(String namespaceURI, String localName)
+            throws DOMException {
+        int i = indexOf(namespaceURI, localName);
+        return i == -1 ? null : new CompactAttr(this, i);
+    }
+
+    public Attr setAttributeNodeNS(Attr newAttr) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public NodeList getElementsByTagNameNS(String namespaceURI,
+            String localName) throws DOMException {
+        List<Node> list = new ArrayList<Node>();
+        collectElements(namespaceURI, localName, true, list);
+        return new CompactNodeList(list);
+    }
+
+    public boolean hasAttribute(String name) {
+        return indexOf(name) != -1;
+    }
+
+    public boolean hasAttributeNS(String namespaceURI, String localName)
+            throws DOMException {
+        return indexOf(namespaceURI, localName) != -1;
+    }
+
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    public void setIdAttribute(String name, boolean isId) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public void setIdAttributeNS(String namespaceURI, String localName,
+            boolean isId) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public void setIdAttributeNode(Attr idAttr, boolean isId)
+            throws DOMException {
+        throw unsupportedModification();
+    }
+}
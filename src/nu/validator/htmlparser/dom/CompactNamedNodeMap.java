@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The attributes of a compact DOM element as a <code>NamedNodeMap</code>. 
+ * Also used as the empty entity and notation maps of doctypes.
+ */
+final class CompactNamedNodeMap implements NamedNodeMap {
+
+    static final CompactNamedNodeMap EMPTY = new CompactNamedNodeMap(null);
+
+    private final CompactElement element;
+
+    /**
+     * The constructor.
+     * 
+     * @param element
+     *            the element or <code>null</code> for an empty map
+     */
+    CompactNamedNodeMap(CompactElement element) {
+        this.element = element;
+    }
+
+    public Node getNamedItem(String name) {
+        if (element == null) {
+            return null;
+        }
+        return element.getAttributeNode(name);
+    }
+
+    public Node setNamedItem(Node arg) throws DOMException {
+        throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                "The map is read-only.");
+    }
+
+    public Node removeNamedItem(String name) throws DOMException {
+        throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                "The map is read-only.");
+    }
+
+    public Node item(int index) {
+        if (element == null || index < 0
+                || index >= element.attributes.getLength()) {
+            return null;
+        }
+        return new CompactAttr(element, index);
+    }
+
+    public int getLength() {
+        return element == null ? 0 : element.attributes.getLength();
+    }
+
+    public Node getNamedItemNS(String namespaceURI, String localName)
+            throws DOMException {
+        if (element == null) {
+            return null;
+        }
+        return element.getAttributeNodeNS(namespaceURI, localName);
+    }
+
+    public Node setNamedItemNS(Node arg) throws DOMException {
+        throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                "The map is read-only.");
+    }
+
+    public Node removeNamedItemNS(String namespaceURI, String localName)
+            throws DOMException {
+        throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                "The map is read-only.");
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * The common superclass of the nodes of the compact DOM. A node can be 
+ * modified only until it has been made read-only. After that, nothing in 
+ * the subtree changes, so any number of threads can read it.
+ */
+abstract class CompactNode implements Node {
+
+    /**
+     * The flag for nodes that have a parent.
+     */
+    static final byte ATTACHED = 1;
+
+    /**
+     * The flag for nodes that can no longer be modified.
+     */
+    static final byte READ_ONLY = 2;
+
+    /**
+     * The parent if the node has one and the owner document otherwise 
+     * (<code>null</code> for documents and for doctypes not used with a 
+     * document yet). Sharing one field keeps the leaf nodes small.
+     */
+    CompactNode ownerNode;
+
+    CompactNode previousSibling;
+
+    CompactNode nextSibling;
+
+    byte flags;
+
+    CompactNode(CompactDocument ownerDocument) {
+        this.ownerNode = ownerDocument;
+    }
+
+    /**
+     * Returns the parent or <code>null</code>.
+     */
+    final CompactParentNode parent() {
+        return (flags & ATTACHED) != 0 ? (CompactParentNode) ownerNode : null;
+    }
+
+    /**
+     * Returns the owner document or <code>null</code>.
+     */
+    CompactDocument ownerDocument() {
+        if ((flags & ATTACHED) != 0) {
+            return ((CompactParentNode) ownerNode).ownerDocumentForChildren();
+        }
+        return (CompactDocument) ownerNode;
+    }
+
+    final boolean isReadOnly() {
+        return (flags & READ_ONLY) != 0;
+    }
+
+    /**
+     * Makes this node and its descendants read-only.
+     */
+    final void makeReadOnly() {
+        for (CompactNode node = this; node != null; node = node.following(this)) {
+            node.flags |= READ_ONLY;
+        }
+    }
+
+    /**
+     * Returns the node after this one in document order without leaving 
+     * the subtree of <code>root</code>. Walking the tree this way instead of 
+     * recursing keeps the Java stack flat no matter how deep the tree is.
+     * 
+     * @param root
+     *            the root of the subtree being walked
+     * @return the next node or <code>null</code> at the end of the subtree
+     */
+    final CompactNode following(CompactNode root) {
+        if (this instanceof CompactParentNode) {
+            CompactNode child = ((CompactParentNode) this).firstChild;
+            if (child != null) {
+                return child;
+            }
+        }
+        for (CompactNode node = this; node != root; node = node.parent()) {
+            if (node.nextSibling != null) {
+                return node.nextSibling;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Throws if the node can no longer be modified.
+     * 
+     * @throws DOMException
+     *             if the node is read-only
+     */
+    final void checkWritable() {
+        if ((flags & READ_ONLY) != 0) {
+            throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                    "The node is read-only.");
+        }
+    }
+
+    static DOMException notSupported() {
+        return new DOMException(DOMException.NOT_SUPPORTED_ERR,
+                "Not supported by the compact DOM.");
+    }
+
+    /**
+     * Throws the right exception for a modification that this 
+     * implementation does not support: read-only nodes refuse all 
+     * modifications and other nodes refuse only the unsupported ones.
+     * 
+     * @return never returns normally
+     */
+    final DOMException unsupportedModification() {
+        checkWritable();
+        return notSupported();
+    }
+
+    /**
+     * Copies this node for <code>document</code>.
+     * 
+     * @param document
+     *            the owner of the copy
+     * @param deep
+     *            whether to copy the descendants as well
+     * @return the copy
+     */
+    abstract CompactNode copy(CompactDocument document, boolean deep);
+
+    public Node cloneNode(boolean deep) {
+        return copy(ownerDocument(), deep);
+    }
+
+    public String getNodeValue() throws DOMException {
+        return null;
+    }
+
+    public void setNodeValue(String nodeValue) throws DOMException {
+        checkWritable();
+    }
+
+    public Node getParentNode() {
+        return parent();
+    }
+
+    public NodeList getChildNodes() {
+        return CompactNodeList.EMPTY;
+    }
+
+    public Node getFirstChild() {
+        return null;
+    }
+
+    public Node getLastChild() {
+        return null;
+    }
+
+    public Node getPreviousSibling() {
+        return previousSibling;
+    }
+
+    public Node getNextSibling() {
+        return nextSibling;
+    }
+
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+
+    public Document getOwnerDocument() {
+        return ownerDocument();
+    }
+
+    public Node insertBefore(Node newChild, Node refChild)
+            throws DOMException {
+        throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                "The node cannot have children.");
+    }
+
+    public Node replaceChild(Node newChild, Node oldChild)
+            throws DOMException {
+        throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                "The node cannot have children.");
+    }
+
+    public Node removeChild(Node oldChild) throws DOMException {
+        throw new DOMException(DOMException.NOT_FOUND_ERR,
+                "The node has no children.");
+    }
+
+    public Node appendChild(Node newChild) throws DOMException {
+        return insertBefore(newChild, null);
+    }
+
+    public boolean hasChildNodes() {
+        return false;
+    }
+
+    public void normalize() {
+    }
+
+    public boolean isSupported(String feature, String version) {
+        return CompactDOMImplementation.supports(feature, version);
+    }
+
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    public String getPrefix() {
+        return null;
+    }
+
+    public void setPrefix(String prefix) throws DOMException {
+        throw unsupportedModification();
+    }
+
+    public String getLocalName() {
+        return null;
+    }
+
+    public boolean hasAttributes() {
+        return false;
+    }
+
+    public String getBaseURI() {
+        CompactDocument document = ownerDocument();
+        return document == null ? null : document.getDocumentURI();
+    }
+
+    public short compareDocumentPosition(Node other) throws DOMException {
+        if (other == this) {
+            return 0;
+        }
+        if (!(other instanceof CompactNode)) {
+            throw notSupported();
+        }
+        CompactNode that = (CompactNode) other;
+        CompactNode a = container();
+        CompactNode b = that.container();
+        if (a == b) {
+            if (this != a && that != b) {
+                // attributes of the same element
+                return (short) (Node.DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC | (((CompactAttr) this).index < ((CompactAttr) that).index ? Node.DOCUMENT_POSITION_FOLLOWING
+                        : Node.DOCUMENT_POSITION_PRECEDING));
+            }
+            // an element and one of its attributes
+            return this == a ? (short) (Node.DOCUMENT_POSITION_CONTAINED_BY | Node.DOCUMENT_POSITION_FOLLOWING)
+                    : (short) (Node.DOCUMENT_POSITION_CONTAINS | Node.DOCUMENT_POSITION_PRECEDING);
+        }
+        int aDepth = a.depth();
+        int bDepth = b.depth();
+        CompactNode aChild = null;
+        CompactNode bChild = null;
+        while (aDepth > bDepth) {
+            aChild = a;
+            a = a.parent();
+            aDepth--;
+        }
+        while (bDepth > aDepth) {
+            bChild = b;
+            b = b.parent();
+            bDepth--;
+        }
+        while (a != b) {
+            if (a.parent() == null) {
+                return (short) (Node.DOCUMENT_POSITION_DISCONNECTED
+                        | Node.DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC | (System.identityHashCode(this) < System.identityHashCode(other) ? Node.DOCUMENT_POSITION_FOLLOWING
+                        : Node.DOCUMENT_POSITION_PRECEDING));
+            }
+            aChild = a;
+            a = a.parent();
+            bChild = b;
+            b = b.parent();
+        }
+        if (aChild == null) {
+            // The container of this node is an ancestor of the other node.
+            return this == container() ? (short) (Node.DOCUMENT_POSITION_CONTAINED_BY | Node.DOCUMENT_POSITION_FOLLOWING)
+                    : Node.DOCUMENT_POSITION_FOLLOWING;
+        }
+        if (bChild == null) {
+            return that == that.container() ? (short) (Node.DOCUMENT_POSITION_CONTAINS | Node.DOCUMENT_POSITION_PRECEDING)
+                    : Node.DOCUMENT_POSITION_PRECEDING;
+        }
+        for (CompactNode n = aChild.nextSibling; n != null; n = n.nextSibling) {
+            if (n == bChild) {
+                return Node.DOCUMENT_POSITION_FOLLOWING;
+            }
+        }
+        return Node.DOCUMENT_POSITION_PRECEDING;
+    }
+
+    private int depth() {
+        int depth = 0;
+        for (CompactNode n = parent(); n != null; n = n.parent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the node that stands for this node in the tree when comparing 
+     * positions: the owner element for attributes and the node itself 
+     * otherwise.
+     */
+    CompactNode container() {
+        return this;
+    }
+
+    public String getTextContent() throws DOMException {
+        return null;
+    }
+
+    public void setTextContent(String textContent) throws DOMException {
+        checkWritable();
+    }
+
+    public boolean isSameNode(Node other) {
+        return this == other;
+    }
+
+    public String lookupPrefix(String namespaceURI) {
+        return null;
+    }
+
+    public boolean isDefaultNamespace(String namespaceURI) {
+        String uri = lookupNamespaceURI(null);
+        return uri == null ? namespaceURI == null : uri.equals(namespaceURI);
+    }
+
+    public String lookupNamespaceURI(String prefix) {
+        CompactParentNode ancestor = parent();
+        while (ancestor != null && !(ancestor instanceof CompactElement)) {
+            ancestor = ancestor.parent();
+        }
+        return ancestor == null ? null : ancestor.lookupNamespaceURI(prefix);
+    }
+
+    public boolean isEqualNode(Node other) {
+        // Pairs of nodes still to compare. The list grows with the number 
+        // of children instead of the depth of the trees.
+        List<Node> pending = new ArrayList<Node>();
+        pending.add(this);
+        pending.add(other);
+        while (!pending.isEmpty()) {
+            Node that = pending.remove(pending.size() - 1);
+            CompactNode node = (CompactNode) pending.remove(pending.size() - 1);
+            if (that == node) {
+                continue;
+            }
+            if (!node.isEqualShallow(that)) {
+                return false;
+            }
+            Node child = node.getFirstChild();
+            Node otherChild = that.getFirstChild();
+            while (child != null && otherChild != null) {
+                pending.add(child);
+                pending.add(otherChild);
+                child = child.getNextSibling();
+                otherChild = otherChild.getNextSibling();
+            }
+            if (child != null || otherChild != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares this node with <code>other</code> like 
+     * <code>isEqualNode</code> but without looking at the children.
+     * 
+     * @param other
+     *            the node to compare with
+     * @return whether the nodes are equal apart from their children
+     */
+    boolean isEqualShallow(Node other) {
+        return other != null && other.getNodeType() == getNodeType()
+                && equal(getNodeName(), other.getNodeName())
+                && equal(getLocalName(), other.getLocalName())
+                && equal(getNamespaceURI(), other.getNamespaceURI())
+                && equal(getPrefix(), other.getPrefix())
+                && equal(getNodeValue(), other.getNodeValue());
+    }
+
+    static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public Object getFeature(String feature, String version) {
+        return isSupported(feature, version) ? this : null;
+    }
+
+    /**
+     * Returns the document that keeps the user data of this node.
+     */
+    CompactDocument userDataDocument() {
+        CompactDocument document = ownerDocument();
+        if (document == null) {
+            throw notSupported();
+        }
+        return document;
+    }
+
+    public Object setUserData(String key, Object data, UserDataHandler handler) {
+        checkWritable();
+        return userDataDocument().setUserData(this, key, data);
+    }
+
+    public Object getUserData(String key) {
+        return userDataDocument().getUserData(this, key);
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A compact DOM node that can have children.
+ */
+abstract class CompactParentNode extends CompactNode {
+
+    /**
+     * The owner document or <code>null</code> for documents.
+     */
+    private final CompactDocument ownerDocument;
+
+    CompactNode firstChild;
+
+    CompactNode lastChild;
+
+    CompactParentNode(CompactDocument ownerDocument) {
+        super(ownerDocument);
+        this.ownerDocument = ownerDocument;
+    }
+
+    @Override CompactDocument ownerDocument() {
+        return ownerDocument;
+    }
+
+    /**
+     * Copies the descendants of this node to <code>copy</code>.
+     */
+    final void copyChildren(CompactParentNode copy, CompactDocument document) {
+        CompactParentNode parentCopy = copy;
+        CompactNode node = firstChild;
+        while (node != null) {
+            CompactNode nodeCopy = node.copy(document, false);
+            parentCopy.link(nodeCopy, null);
+            if (node instanceof CompactParentNode
+                    && ((CompactParentNode) node).firstChild != null) {
+                parentCopy = (CompactParentNode) nodeCopy;
+                node = ((CompactParentNode) node).firstChild;
+                continue;
+            }
+            while (node.nextSibling == null) {
+                node = node.parent();
+                if (node == this) {
+                    return;
+                }
+                parentCopy = parentCopy.parent();
+            }
+            node = node.nextSibling;
+        }
+    }
+
+    /**
+     * Throws if <code>child</code> cannot be a child of this node.
+     * 
+     * @param child
+     *            the prospective child
+     */
+    void checkChild(CompactNode child) {
+        switch (child.getNodeType()) {
+            case Node.ELEMENT_NODE:
+            case Node.TEXT_NODE:
+            case Node.COMMENT_NODE:
+                return;
+            default:
+                throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                        "The node cannot be inserted here.");
+        }
+    }
+
+    /**
+     * Links a node that has no parent before <code>ref</code> or last.
+     */
+    final void link(CompactNode child, CompactNode ref) {
+        child.ownerNode = this;
+        child.flags |= ATTACHED;
+        if (ref == null) {
+            child.previousSibling = lastChild;
+            child.nextSibling = null;
+            if (lastChild == null) {
+                firstChild = child;
+            } else {
+                lastChild.nextSibling = child;
+            }
+            lastChild = child;
+        } else {
+            child.previousSibling = ref.previousSibling;
+            child.nextSibling = ref;
+            if (ref.previousSibling == null) {
+                firstChild = child;
+            } else {
+                ref.previousSibling.nextSibling = child;
+            }
+            ref.previousSibling = child;
+        }
+    }
+
+    /**
+     * Unlinks a child of this node.
+     */
+    final void unlink(CompactNode child) {
+        if (child.previousSibling == null) {
+            firstChild = child.nextSibling;
+        } else {
+            child.previousSibling.nextSibling = child.nextSibling;
+        }
+        if (child.nextSibling == null) {
+            lastChild = child.previousSibling;
+        } else {
+            child.nextSibling.previousSibling = child.previousSibling;
+        }
+        child.ownerNode = child.ownerDocument();
+        child.flags &= ~ATTACHED;
+        child.previousSibling = null;
+        child.nextSibling = null;
+    }
+
+    private CompactNode checkNewChild(Node newChild) {
+        if (!(newChild instanceof CompactNode)
+                || ((CompactNode) newChild).ownerDocument() != ownerDocumentForChildren()) {
+            throw new DOMException(DOMException.WRONG_DOCUMENT_ERR,
+                    "The node belongs to another document.");
+        }
+        CompactNode child = (CompactNode) newChild;
+        if (!(child instanceof CompactParentNode)
+                || ((CompactParentNode) child).firstChild == null) {
+            // A node without children can only be an ancestor of itself,
+            // which keeps appending during parsing from walking up the
+            // whole stack of ancestors.
+            if (child == this) {
+                throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                        "A node cannot be inserted into itself.");
+            }
+            return child;
+        }
+        for (CompactNode ancestor = this; ancestor != null; ancestor = ancestor.parent()) {
+            if (ancestor == child) {
+                throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                        "A node cannot be inserted into itself.");
+            }
+        }
+        return child;
+    }
+
+    /**
+     * Returns the document the children of this node have to belong to.
+     */
+    CompactDocument ownerDocumentForChildren() {
+        return ownerDocument;
+    }
+
+    private CompactNode checkRefChild(Node refChild) {
+        if (refChild == null) {
+            return null;
+        }
+        if (!(refChild instanceof CompactNode)
+                || ((CompactNode) refChild).parent() != this) {
+            throw new DOMException(DOMException.NOT_FOUND_ERR,
+                    "The reference node is not a child of this node.");
+        }
+        return (CompactNode) refChild;
+    }
+
+    /**
+     * @see org.w3c.dom.Node#insertBefore(org.w3c.dom.Node, org.w3c.dom.Node)
+     */
+    @Override public Node insertBefore(Node newChild, Node refChild)
+            throws DOMException {
+        checkWritable();
+        CompactNode child = checkNewChild(newChild);
+        CompactNode ref = checkRefChild(refChild);
+        if (child instanceof CompactDocumentFragment) {
+            CompactDocumentFragment fragment = (CompactDocumentFragment) child;
+            fragment.checkWritable();
+            for (CompactNode n = fragment.firstChild; n != null; n = n.nextSibling) {
+                checkChild(n);
+            }
+            CompactNode n;
+            while ((n = fragment.firstChild) != null) {
+                fragment.unlink(n);
+                link(n, ref);
+            }
+            return child;
+        }
+        checkChild(child);
+        if (child == ref) {
+            return child;
+        }
+        CompactParentNode oldParent = child.parent();
+        if (oldParent != null) {
+            oldParent.checkWritable();
+            oldParent.unlink(child);
+        }
+        link(child, ref);
+        return child;
+    }
+
+    /**
+     * @see org.w3c.dom.Node#replaceChild(org.w3c.dom.Node, org.w3c.dom.Node)
+     */
+    @Override public Node replaceChild(Node newChild, Node oldChild)
+            throws DOMException {
+        checkWritable();
+        CompactNode old = checkRefChild(oldChild);
+        if (old == null) {
+            throw new DOMException(DOMException.NOT_FOUND_ERR,
+                    "The node is not a child of this node.");
+        }
+        if (newChild != oldChild) {
+            insertBefore(newChild, old);
+            unlink(old);
+        }
+        return old;
+    }
+
+    /**
+     * @see org.w3c.dom.Node#removeChild(org.w3c.dom.Node)
+     */
+    @Override public Node removeChild(Node oldChild) throws DOMException {
+        checkWritable();
+        CompactNode old = checkRefChild(oldChild);
+        if (old == null) {
+            throw new DOMException(DOMException.NOT_FOUND_ERR,
+                    "The node is not a child of this node.");
+        }
+        unlink(old);
+        return old;
+    }
+
+    /**
+     * @see org.w3c.dom.Node#getChildNodes()
+     */
+    @Override public NodeList getChildNodes() {
+        if (isReadOnly()) {
+            // The children can't change, so a snapshot is as good as a 
+            // live list and can be shared between threads.
+            List<Node> children = new ArrayList<Node>();
+            for (CompactNode child = firstChild; child != null; child = child.nextSibling) {
+                children.add(child);
+            }
+            return new CompactNodeList(children);
+        }
+        return new LiveChildList(this);
+    }
+
+    @Override public Node getFirstChild() {
+        return firstChild;
+    }
+
+    @Override public Node getLastChild() {
+        return lastChild;
+    }
+
+    @Override public boolean hasChildNodes() {
+        return firstChild != null;
+    }
+
+    /**
+     * @see org.w3c.dom.Node#normalize()
+     */
+    @Override public void normalize() {
+        // Merging the children of a node before walking into them means 
+        // that the walk never visits a removed node.
+        for (CompactNode node = this; node != null; node = node.following(this)) {
+            if (node instanceof CompactParentNode) {
+                ((CompactParentNode) node).normalizeChildren();
+            }
+        }
+    }
+
+    /**
+     * Merges adjacent text children and removes empty ones.
+     */
+    private void normalizeChildren() {
+        CompactNode child = firstChild;
+        while (child != null) {
+            CompactNode next = child.nextSibling;
+            if (child instanceof CompactText) {
+                CompactText text = (CompactText) child;
+                while (next instanceof CompactText) {
+                    checkWritable();
+                    text.setData(text.getData() + ((CompactText) next).getData());
+                    CompactNode following = next.nextSibling;
+                    unlink(next);
+                    next = following;
+                }
+                if (text.getLength() == 0) {
+                    checkWritable();
+                    unlink(text);
+                }
+            }
+            child = next;
+        }
+    }
+
+    /**
+     * @see org.w3c.dom.Node#getTextContent()
+     */
+    @Override public String getTextContent() throws DOMException {
+        StringBuilder sb = new StringBuilder();
+        for (CompactNode node = following(this); node != null; node = node.following(this)) {
+            if (node instanceof CompactText) {
+                sb.append(((CompactText) node).getData());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @see org.w3c.dom.Node#setTextContent(java.lang.String)
+     */
+    @Override public void setTextContent(String textContent)
+            throws DOMException {
+        checkWritable();
+        while (firstChild != null) {
+            unlink(firstChild);
+        }
+        if (textContent != null && textContent.length() > 0) {
+            link(new CompactText(ownerDocumentForChildren(), textContent), null);
+        }
+    }
+
+    /**
+     * Adds the elements in the subtree of this node (not including this 
+     * node) that match the names to <code>list</code> in document order.
+     * 
+     * @param namespaceURI
+     *            the namespace or <code>"*"</code> for any
+     * @param name
+     *            the local name or the tag name or <code>"*"</code>
+     * @param namespaced
+     *            whether <code>name</code> is a local name to match 
+     *            together with the namespace instead of a tag name
+     * @param list
+     *            the list to add to
+     */
+    final void collectElements(String namespaceURI, String name,
+            boolean namespaced, List<Node> list) {
+        for (CompactNode node = following(this); node != null; node = node.following(this)) {
+            if (node instanceof CompactElement
+                    && ((CompactElement) node).matches(namespaceURI, name,
+                            namespaced)) {
+                list.add(node);
+            }
+        }
+    }
+
+    /**
+     * A live view of the children of a node that can still be modified.
+     */
+    private static final class LiveChildList implements NodeList {
+
+        private final CompactParentNode node;
+
+        LiveChildList(CompactParentNode node) {
+            this.node = node;
+        }
+
+        public Node item(int index) {
+            if (index < 0) {
+                return null;
+            }
+            CompactNode child = node.firstChild;
+            while (child != null && index > 0) {
+                child = child.nextSibling;
+                index--;
+            }
+            return child;
+        }
+
+        public int getLength() {
+            int length = 0;
+            for (CompactNode child = node.firstChild; child != null; child = child.nextSibling) {
+                length++;
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * A text node of the compact DOM.
+ */
+final class CompactText extends CompactCharacterData implements Text {
+
+    CompactText(CompactDocument ownerDocument, String data) {
+        super(ownerDocument, data);
+    }
+
+    @Override CompactNode copy(CompactDocument document, boolean deep) {
+        return new CompactText(document, getData());
+    }
+
+    public String getNodeName() {
+        return "#text";
+    }
+
+    public short getNodeType() {
+        return Node.TEXT_NODE;
+    }
+
+    public Text splitText(int offset) throws DOMException {
+        checkWritable();
+        String data = getData();
+        if (offset < 0 || offset > data.length()) {
+            throw new DOMException(DOMException.INDEX_SIZE_ERR,
+                    "Offset out of range.");
+        }
+        CompactParentNode parent = parent();
+        if (parent != null) {
+            parent.checkWritable();
+        }
+        CompactText rest = new CompactText(ownerDocument(),
+                data.substring(offset));
+        setData(data.substring(0, offset));
+        if (parent != null) {
+            parent.link(rest, nextSibling);
+        }
+        return rest;
+    }
+
+    public boolean isElementContentWhitespace() {
+        return false;
+    }
+
+    public String getWholeText() {
+        CompactNode first = this;
+        while (first.previousSibling instanceof CompactText) {
+            first = first.previousSibling;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (CompactNode n = first; n instanceof CompactText; n = n.nextSibling) {
+            sb.append(((CompactText) n).getData());
+        }
+        return sb.toString();
+    }
+
+    public Text replaceWholeText(String content) throws DOMException {
+        throw unsupportedModification();
+    }
+}
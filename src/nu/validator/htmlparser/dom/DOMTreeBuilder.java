@@ -27,6 +27,7 @@ import nu.validator.htmlparser.common.DocumentMode;
 import nu.validator.htmlparser.impl.CoalescingTreeBuilder;
 import nu.validator.htmlparser.impl.HtmlAttributes;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
@@ -54,6 +55,18 @@ class DOMTreeBuilder extends CoalescingTreeBuilder<Element> {
      */
     private Document document;
 
+    /**
+     * Whether the policies guarantee that every element and attribute name 
+     * the tokenizer produces is already valid for the DOM.
+     */
+    private boolean namesValid = true;
+
+    /**
+     * Whether strict error checking has been turned off on the current 
+     * document for the duration of the parse.
+     */
+    private boolean relaxedErrorChecking = false;
+
     /**
      * The constructor.
      * 
@@ -74,6 +87,14 @@ class DOMTreeBuilder extends CoalescingTreeBuilder<Element> {
     @Override protected void addAttributesToElement(Element element,
             HtmlAttributes attributes) throws SAXException {
         try {
+            if (!interestedIn(element.getNamespaceURI().intern(),
+                    element.getLocalName().intern())) {
+                return;
+            }
+            if (element instanceof CompactElement) {
+                ((CompactElement) element).mergeAttributes(attributes);
+                return;
+            }
             for (int i = 0; i < attributes.getLength(); i++) {
                 String localName = attributes.getLocalNameNoBoundsCheck(i);
                 String uri = attributes.getURINoBoundsCheck(i);
@@ -157,7 +178,20 @@ class DOMTreeBuilder extends CoalescingTreeBuilder<Element> {
     @Override protected Element createElement(String ns, String name,
             HtmlAttributes attributes, Element intendedParent) throws SAXException {
         try {
+            if (document instanceof CompactDocument) {
+                return ((CompactDocument) document).newElement(ns, name,
+                        interestedIn(ns, name) ? attributes
+                                : HtmlAttributes.EMPTY_ATTRIBUTES);
+            }
             Element rv = document.createElementNS(ns, name);
+            if (!interestedIn(ns, name)) {
+                // the element is needed as a tree construction handle only
+                return rv;
+            }
+            if (relaxedErrorChecking) {
+                installAttributes(rv, attributes, true);
+                return rv;
+            }
             for (int i = 0; i < attributes.getLength(); i++) {
                 rv.setAttributeNS(attributes.getURINoBoundsCheck(i),
                         attributes.getLocalNameNoBoundsCheck(i),
@@ -180,8 +214,25 @@ class DOMTreeBuilder extends CoalescingTreeBuilder<Element> {
     @Override protected Element createHtmlElementSetAsRoot(
             HtmlAttributes attributes) throws SAXException {
         try {
+            if (document instanceof CompactDocument) {
+                Element rv = ((CompactDocument) document).newElement(
+                        "http://www.w3.org/1999/xhtml", "html",
+                        interestedIn("http://www.w3.org/1999/xhtml", "html") ? attributes
+                                : HtmlAttributes.EMPTY_ATTRIBUTES);
+                document.appendChild(rv);
+                return rv;
+            }
             Element rv = document.createElementNS(
                     "http://www.w3.org/1999/xhtml", "html");
+            if (!interestedIn("http://www.w3.org/1999/xhtml", "html")) {
+                document.appendChild(rv);
+                return rv;
+            }
+            if (relaxedErrorChecking) {
+                installAttributes(rv, attributes, false);
+                document.appendChild(rv);
+                return rv;
+            }
             for (int i = 0; i < attributes.getLength(); i++) {
                 rv.setAttributeNS(attributes.getURINoBoundsCheck(i),
                         attributes.getLocalNameNoBoundsCheck(i),
@@ -239,6 +290,33 @@ class DOMTreeBuilder extends CoalescingTreeBuilder<Element> {
         }
     }
 
+    /**
+     * Installs the attributes on a newly created element. The tokenizer 
+     * has already dropped duplicate attributes, so each one is created and 
+     * attached as a node without looking up an existing attribute by name 
+     * first, and ID attributes are flagged through the node.
+     * 
+     * @param element
+     *            the new element
+     * @param attributes
+     *            the attributes
+     * @param markIds
+     *            whether to flag ID attributes as IDs
+     */
+    private void installAttributes(Element element, HtmlAttributes attributes,
+            boolean markIds) {
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = document.createAttributeNS(
+                    attributes.getURINoBoundsCheck(i),
+                    attributes.getLocalNameNoBoundsCheck(i));
+            attr.setValue(attributes.getValueNoBoundsCheck(i));
+            element.setAttributeNodeNS(attr);
+            if (markIds && attributes.getTypeNoBoundsCheck(i) == "ID") {
+                element.setIdAttributeNode(attr, true);
+            }
+        }
+    }
+
     /**
      * @see nu.validator.htmlparser.impl.TreeBuilder#start()
      */
@@ -246,6 +324,56 @@ class DOMTreeBuilder extends CoalescingTreeBuilder<Element> {
         if ( document == null ) {
             document = implementation.createDocument(null, null, null);
         }
+        if (namesValid && isXercesDocument(document)
+                && document.getStrictErrorChecking()) {
+            // Xerces checks every name and namespace again on each call.
+            document.setStrictErrorChecking(false);
+            relaxedErrorChecking = true;
+        }
+    }
+
+    /**
+     * @see nu.validator.htmlparser.impl.TreeBuilder#end()
+     */
+    @Override protected void end() throws SAXException {
+        if (relaxedErrorChecking) {
+            relaxedErrorChecking = false;
+            if (document != null) {
+                document.setStrictErrorChecking(true);
+            }
+        }
+    }
+
+    /**
+     * Sets whether the policies guarantee that the element and attribute 
+     * names are valid for the DOM. When they do, strict error checking is 
+     * turned off on Xerces documents while the parse is running.
+     * 
+     * @param namesValid
+     *            <code>true</code> if the names need no checking
+     */
+    void setNamesValid(boolean namesValid) {
+        this.namesValid = namesValid;
+    }
+
+    /**
+     * Checks whether the document is a Xerces document (either Apache 
+     * Xerces or the copy in the JDK) without depending on Xerces.
+     * 
+     * @param document
+     *            the document
+     * @return <code>true</code> if the document extends 
+     *         <code>CoreDocumentImpl</code>
+     */
+    private static boolean isXercesDocument(Document document) {
+        for (Class<?> c = document.getClass(); c != null; c = c.getSuperclass()) {
+            String name = c.getName();
+            if ("org.apache.xerces.dom.CoreDocumentImpl".equals(name)
+                    || "com.sun.org.apache.xerces.internal.dom.CoreDocumentImpl".equals(name)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -270,6 +398,16 @@ class DOMTreeBuilder extends CoalescingTreeBuilder<Element> {
         return rv;
     }
 
+    /**
+     * Sets the document the next parse builds into.
+     * 
+     * @param document
+     *            the document or <code>null</code> to create a new one
+     */
+    void setDocument(Document document) {
+        this.document = document;
+    }
+
     /**
      * Return the document fragment.
      * 
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Node;
+
+/**
+ * A thread-safe cache of parsed fragments keyed by the context element, 
+ * the source text and the parser configuration. The cached fragments are 
+ * never handed out; each hit returns a deep copy in a new document, so 
+ * callers may modify the result like the result of a real parse. The least 
+ * recently used fragments are evicted when the number of entries or the 
+ * total length of their source text exceeds the limits.
+ * @see HtmlDocumentBuilder#setFragmentCache(FragmentCache)
+ */
+public final class FragmentCache {
+
+    /**
+     * A cache key.
+     */
+    static final class Key {
+
+        private final String contextLocal;
+
+        private final String contextNamespace;
+
+        private final String text;
+
+        private final String configuration;
+
+        private final int hash;
+
+        Key(String contextLocal, String contextNamespace, String text,
+                String configuration) {
+            this.contextLocal = contextLocal;
+            this.contextNamespace = contextNamespace;
+            this.text = text;
+            this.configuration = configuration;
+            int h = contextLocal.hashCode();
+            h = h * 31 + contextNamespace.hashCode();
+            h = h * 31 + text.hashCode();
+            this.hash = h * 31 + configuration.hashCode();
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        @Override public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && contextLocal.equals(other.contextLocal)
+                    && contextNamespace.equals(other.contextNamespace)
+                    && text.equals(other.text)
+                    && configuration.equals(other.configuration);
+        }
+
+        int weight() {
+            return text.length();
+        }
+    }
+
+    private final int maxEntries;
+
+    private final long maxWeight;
+
+    /**
+     * The entries in access order.
+     */
+    private final LinkedHashMap<Key, DocumentFragment> entries = new LinkedHashMap<Key, DocumentFragment>(
+            16, 0.75f, true);
+
+    private long weight = 0;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private long evictions = 0;
+
+    /**
+     * The constructor.
+     * 
+     * @param maxEntries
+     *            the maximum number of cached fragments
+     * @param maxWeight
+     *            the maximum total length of the source text of the cached 
+     *            fragments in characters
+     */
+    public FragmentCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 0 || maxWeight < 0) {
+            throw new IllegalArgumentException("Negative cache limit.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns a copy of the cached fragment for a key in a new document and 
+     * counts a hit or a miss.
+     * 
+     * @param key
+     *            the key
+     * @param owner
+     *            a new document to own the copy
+     * @return the copy or <code>null</code>
+     */
+    DocumentFragment get(Key key, Document owner) {
+        DocumentFragment cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        // The DOM implementation is not required to be thread-safe even
+        // for reading, so copies of one fragment are made one at a time.
+        synchronized (cached) {
+            return (DocumentFragment) owner.importNode(cached, true);
+        }
+    }
+
+    /**
+     * Caches a copy of a fragment and evicts the least recently used 
+     * fragments that no longer fit.
+     * 
+     * @param key
+     *            the key
+     * @param fragment
+     *            the fragment as returned to the caller
+     * @param owner
+     *            a new document to own the cached copy
+     */
+    void put(Key key, DocumentFragment fragment, Document owner) {
+        if (key.weight() > maxWeight || maxEntries == 0) {
+            return;
+        }
+        Node copy = owner.importNode(fragment, true);
+        synchronized (this) {
+            DocumentFragment old = entries.put(key, (DocumentFragment) copy);
+            if (old == null) {
+                weight += key.weight();
+            }
+            Iterator<Key> iter = entries.keySet().iterator();
+            while (weight > maxWeight || entries.size() > maxEntries) {
+                weight -= iter.next().weight();
+                iter.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Removes all fragments. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the number of cached fragments.
+     * 
+     * @return the number of cached fragments
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total length of the source text of the cached fragments.
+     * 
+     * @return the weight
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the number of lookups that found a fragment.
+     * 
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a fragment.
+     * 
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of fragments evicted to make room for others.
+     * 
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the maximum number of cached fragments.
+     * 
+     * @return the entry limit
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum total length of the source text of the cached 
+     * fragments in characters.
+     * 
+     * @return the weight limit
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+}
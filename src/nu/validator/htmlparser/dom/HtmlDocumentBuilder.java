@@ -24,8 +24,11 @@
 package nu.validator.htmlparser.dom;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -37,7 +40,10 @@ import nu.validator.htmlparser.common.CharacterHandler;
 import nu.validator.htmlparser.common.DoctypeExpectation;
 import nu.validator.htmlparser.common.DocumentModeHandler;
 import nu.validator.htmlparser.common.Heuristics;
+import nu.validator.htmlparser.common.InterestSet;
+import nu.validator.htmlparser.common.TreeBuilderCounters;
 import nu.validator.htmlparser.common.TokenHandler;
+import nu.validator.htmlparser.common.ParseErrorHandler;
 import nu.validator.htmlparser.common.TransitionHandler;
 import nu.validator.htmlparser.common.XmlViolationPolicy;
 import nu.validator.htmlparser.impl.ErrorReportingTokenizer;
@@ -47,6 +53,7 @@ import nu.validator.htmlparser.io.Driver;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Node;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
@@ -86,7 +93,7 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
      * 
      * @return the JAXP DOM implementation
      */
-    private static DOMImplementation jaxpDOMImplementation() {
+    static DOMImplementation jaxpDOMImplementation() {
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         factory.setNamespaceAware(true);
         DocumentBuilder builder;
@@ -152,8 +159,22 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
 
     private Heuristics heuristics = Heuristics.NONE;
 
+    private long rewindMemoryLimit = Long.MAX_VALUE;
+
+    private boolean asynchronousCharacterHandlers = false;
+
     private TransitionHandler transitionHandler = null;
 
+    private ParseErrorHandler parseErrorHandler = null;
+
+    private boolean ignoringComments = false;
+
+    private InterestSet interestSet = null;
+
+    private TreeBuilderCounters counters = null;
+
+    private FragmentCache fragmentCache = null;
+
     /**
      * Instantiates the document builder with a specific DOM 
      * implementation and XML violation policy.
@@ -202,6 +223,7 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
     private Tokenizer newTokenizer(TokenHandler handler,
             boolean newAttributesEachTime) {
         if (errorHandler == null && transitionHandler == null
+                && parseErrorHandler == null
                 && contentNonXmlCharPolicy == XmlViolationPolicy.ALLOW) {
             return new Tokenizer(handler, newAttributesEachTime);
         } else {
@@ -215,9 +237,12 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
      */
     private void lazyInit() {
         if (driver == null) {
-            this.driver = new Driver(newTokenizer(treeBuilder, false));
+            // The compact DOM keeps the attribute objects of the tokenizer.
+            this.driver = new Driver(newTokenizer(treeBuilder,
+                    implementation instanceof CompactDOMImplementation));
             this.driver.setErrorHandler(errorHandler);
             this.driver.setTransitionHandler(transitionHandler);
+            this.driver.setParseErrorHandler(parseErrorHandler);
             this.treeBuilder.setErrorHandler(treeBuilderErrorHandler);
             this.driver.setCheckingNormalization(checkingNormalization);
             this.driver.setCommentPolicy(commentPolicy);
@@ -227,6 +252,8 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
             this.driver.setMappingLangToXmlLang(mappingLangToXmlLang);
             this.driver.setXmlnsPolicy(xmlnsPolicy);
             this.driver.setHeuristics(heuristics);
+            this.driver.setRewindMemoryLimit(rewindMemoryLimit);
+            this.driver.setAsynchronousCharacterHandlers(asynchronousCharacterHandlers);
             for (CharacterHandler characterHandler : characterHandlers) {
                 this.driver.addCharacterHandler(characterHandler);
             }
@@ -317,7 +344,7 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
             IOException {
         treeBuilder.setFragmentContext(null);
         tokenize(is);
-        return treeBuilder.getDocument();
+        return makeReadOnly(treeBuilder.getDocument());
     }
 
     /**
@@ -332,8 +359,12 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
     public DocumentFragment parseFragment(InputSource is, String context)
             throws IOException, SAXException {
         treeBuilder.setFragmentContext(context.intern());
+        if (isCacheable(is)) {
+            return makeReadOnly(parseFragmentCached(is, context,
+                    "http://www.w3.org/1999/xhtml", null));
+        }
         tokenize(is);
-        return treeBuilder.getDocumentFragment();
+        return makeReadOnly(treeBuilder.getDocumentFragment());
     }
 
     /**
@@ -349,8 +380,161 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
             String contextNamespace) throws IOException, SAXException {
         treeBuilder.setFragmentContext(contextLocal.intern(),
                 contextNamespace.intern(), null, false);
+        if (isCacheable(is)) {
+            return makeReadOnly(parseFragmentCached(is, contextLocal,
+                    contextNamespace, null));
+        }
         tokenize(is);
-        return treeBuilder.getDocumentFragment();
+        return makeReadOnly(treeBuilder.getDocumentFragment());
+    }
+
+    /**
+     * Parses many document fragments with an HTML element as the fragment 
+     * context. The tokenizer, tree builder and buffers are reused for 
+     * every input. The fragments share one owner document.
+     * @param inputs the sources
+     * @param context the context element name (HTML namespace assumed)
+     * @return the document fragments in the order of the inputs
+     * @throws SAXException if stuff goes wrong
+     * @throws IOException if IO goes wrong
+     */
+    public List<DocumentFragment> parseFragments(List<InputSource> inputs,
+            String context) throws IOException, SAXException {
+        return parseFragments(inputs, context, "http://www.w3.org/1999/xhtml");
+    }
+
+    /**
+     * Parses many document fragments with the same context element. The 
+     * tokenizer, tree builder and buffers are reused for every input. The 
+     * fragments share one owner document.
+     * @param inputs the sources
+     * @param contextLocal the local name of the context element
+     * @param contextNamespace the namespace of the context element
+     * @return the document fragments in the order of the inputs
+     * @throws SAXException if stuff goes wrong
+     * @throws IOException if IO goes wrong
+     */
+    public List<DocumentFragment> parseFragments(List<InputSource> inputs,
+            String contextLocal, String contextNamespace) throws IOException,
+            SAXException {
+        List<DocumentFragment> fragments = new ArrayList<DocumentFragment>(
+                inputs.size());
+        if (inputs.isEmpty()) {
+            return fragments;
+        }
+        contextLocal = contextLocal.intern();
+        contextNamespace = contextNamespace.intern();
+        Document owner = newDocument();
+        for (InputSource is : inputs) {
+            // The tree builder consumes the context when a parse starts.
+            treeBuilder.setFragmentContext(contextLocal, contextNamespace,
+                    null, false);
+            if (isCacheable(is)) {
+                fragments.add(makeReadOnly(parseFragmentCached(is,
+                        contextLocal, contextNamespace, owner)));
+            } else {
+                fragments.add(makeReadOnly(parseFragmentInto(is, owner)));
+            }
+        }
+        return fragments;
+    }
+
+    /**
+     * Makes the nodes of the compact DOM read-only once they have been 
+     * built so that they can be read concurrently. Other nodes are left 
+     * alone.
+     */
+    private static <N extends Node> N makeReadOnly(N node) {
+        if (node instanceof CompactNode) {
+            ((CompactNode) node).makeReadOnly();
+        }
+        return node;
+    }
+
+    /**
+     * Parses a fragment whose nodes are created by <code>owner</code>. The 
+     * fragment context has to be set already.
+     */
+    private DocumentFragment parseFragmentInto(InputSource is, Document owner)
+            throws IOException, SAXException {
+        treeBuilder.setDocument(owner);
+        try {
+            tokenize(is);
+            return treeBuilder.getDocumentFragment();
+        } finally {
+            // The emptied root element (or a partial tree on failure) has 
+            // to go before the next fragment can be built in the document.
+            treeBuilder.setDocument(null);
+            Node child;
+            while ((child = owner.getFirstChild()) != null) {
+                owner.removeChild(child);
+            }
+        }
+    }
+
+    /**
+     * Whether a fragment parsed from the input can be taken from the 
+     * cache. Only character stream inputs are cached, and parses that 
+     * report anything besides the tree are not.
+     */
+    private boolean isCacheable(InputSource is) {
+        return fragmentCache != null && is != null
+                && is.getCharacterStream() != null && errorHandler == null
+                && treeBuilderErrorHandler == null && transitionHandler == null
+                && parseErrorHandler == null && documentModeHandler == null
+                && characterHandlers.isEmpty() && !checkingNormalization
+                && interestSet == null && counters == null;
+    }
+
+    /**
+     * Parses a fragment through the cache. The fragment context has to be 
+     * set already. If <code>owner</code> is not <code>null</code>, the 
+     * fragment is created by it.
+     */
+    private DocumentFragment parseFragmentCached(InputSource is,
+            String contextLocal, String contextNamespace, Document owner)
+            throws IOException, SAXException {
+        String text = readText(is.getCharacterStream());
+        StringBuilder configuration = new StringBuilder();
+        configuration.append(implementation.getClass().getName()).append(' ');
+        configuration.append(contentSpacePolicy).append(' ');
+        configuration.append(contentNonXmlCharPolicy).append(' ');
+        configuration.append(commentPolicy).append(' ');
+        configuration.append(namePolicy).append(' ');
+        configuration.append(xmlnsPolicy).append(' ');
+        configuration.append(doctypeExpectation).append(' ');
+        configuration.append(scriptingEnabled).append(' ');
+        configuration.append(html4ModeCompatibleWithXhtml1Schemata).append(' ');
+        configuration.append(mappingLangToXmlLang).append(' ');
+        configuration.append(ignoringComments);
+        FragmentCache.Key key = new FragmentCache.Key(contextLocal,
+                contextNamespace, text, configuration.toString());
+        DocumentFragment fragment = fragmentCache.get(key,
+                owner == null ? newDocument() : owner);
+        if (fragment != null) {
+            return fragment;
+        }
+        InputSource buffered = new InputSource(new StringReader(text));
+        buffered.setSystemId(is.getSystemId());
+        buffered.setPublicId(is.getPublicId());
+        if (owner == null) {
+            tokenize(buffered);
+            fragment = treeBuilder.getDocumentFragment();
+        } else {
+            fragment = parseFragmentInto(buffered, owner);
+        }
+        fragmentCache.put(key, fragment, newDocument());
+        return fragment;
+    }
+
+    private static String readText(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[2048];
+        int num;
+        while ((num = reader.read(buf)) != -1) {
+            sb.append(buf, 0, num);
+        }
+        return sb.toString();
     }
 
     /**
@@ -368,16 +552,30 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
      * @see javax.xml.parsers.DocumentBuilder#setErrorHandler(org.xml.sax.ErrorHandler)
      */
     @Override public void setErrorHandler(ErrorHandler errorHandler) {
-        treeBuilder.setErrorHandler(errorHandler);
-        if (driver != null) {
-            driver.setErrorHandler(errorHandler);
-        }
+        this.errorHandler = errorHandler;
+        this.treeBuilderErrorHandler = errorHandler;
+        driver = null;
     }
 
     public void setTransitionHander(TransitionHandler handler) {
         transitionHandler = handler;
         driver = null;
     }
+
+    /**
+     * Sets the handler for structured parse errors. The tokenizer errors 
+     * listed in <code>ParseErrorCode</code> are reported to it as codes with 
+     * primitive location data instead of being reported to the error 
+     * handler. Tree construction errors and character encoding errors 
+     * still go to the error handler.
+     * 
+     * @param handler the handler or <code>null</code>
+     * @see nu.validator.htmlparser.common.ParseErrorAggregator
+     */
+    public void setParseErrorHandler(ParseErrorHandler handler) {
+        parseErrorHandler = handler;
+        driver = null;
+    }
     
     /**
      * Indicates whether NFC normalization of source is being checked.
@@ -587,6 +785,7 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
         if (driver != null) {
             driver.setXmlnsPolicy(xmlnsPolicy);
         }
+        updateNamesValid();
     }
 
     /**
@@ -656,6 +855,17 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
             driver.setNamePolicy(namePolicy);
             treeBuilder.setNamePolicy(namePolicy);
         }
+        updateNamesValid();
+    }
+
+    /**
+     * Tells the tree builder whether the policies let through names that 
+     * the DOM would reject. If they don't, the DOM doesn't need to check 
+     * the names again.
+     */
+    private void updateNamesValid() {
+        treeBuilder.setNamesValid(namePolicy != XmlViolationPolicy.ALLOW
+                && xmlnsPolicy != XmlViolationPolicy.ALLOW);
     }
     
     /**
@@ -675,6 +885,48 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
         return this.heuristics;
     }
 
+    /**
+     * Sets the number of bytes kept in memory for reparsing when the 
+     * encoding is not yet certain. The rest are saved in a temporary file.
+     * 
+     * @param rewindMemoryLimit the limit in bytes
+     * @see nu.validator.htmlparser.io.Driver#setRewindMemoryLimit(long)
+     */
+    public void setRewindMemoryLimit(long rewindMemoryLimit) {
+        if (rewindMemoryLimit < 0) {
+            throw new IllegalArgumentException("Negative memory limit.");
+        }
+        this.rewindMemoryLimit = rewindMemoryLimit;
+        if (driver != null) {
+            driver.setRewindMemoryLimit(rewindMemoryLimit);
+        }
+    }
+
+    public long getRewindMemoryLimit() {
+        return this.rewindMemoryLimit;
+    }
+
+    /**
+     * Makes the character handlers, including the NFC checker, run on a 
+     * helper thread instead of before tokenizing each buffer. Off by 
+     * default.
+     * 
+     * @param asynchronousCharacterHandlers <code>true</code> to run the 
+     * character handlers asynchronously
+     * @see nu.validator.htmlparser.io.Driver#setAsynchronousCharacterHandlers(boolean)
+     */
+    public void setAsynchronousCharacterHandlers(
+            boolean asynchronousCharacterHandlers) {
+        this.asynchronousCharacterHandlers = asynchronousCharacterHandlers;
+        if (driver != null) {
+            driver.setAsynchronousCharacterHandlers(asynchronousCharacterHandlers);
+        }
+    }
+
+    public boolean isAsynchronousCharacterHandlers() {
+        return this.asynchronousCharacterHandlers;
+    }
+
     /**
      * This is a catch-all convenience method for setting name, xmlns, content space, 
      * content non-XML char and comment policies in one go. This does not affect the 
@@ -730,7 +982,56 @@ public class HtmlDocumentBuilder extends DocumentBuilder {
      * @see nu.validator.htmlparser.impl.TreeBuilder#setIgnoringComments(boolean)
      */
     public void setIgnoringComments(boolean ignoreComments) {
+        this.ignoringComments = ignoreComments;
         treeBuilder.setIgnoringComments(ignoreComments);
     }
 
+    /**
+     * Sets the interest set. The tree is still built in full, but elements 
+     * outside the set are created without attributes and text and comment 
+     * nodes are only created if the set asks for them.
+     * 
+     * @param interestSet the interest set or <code>null</code> for everything
+     * @see nu.validator.htmlparser.impl.TreeBuilder#setInterestSet(nu.validator.htmlparser.common.InterestSet)
+     */
+    public void setInterestSet(InterestSet interestSet) {
+        this.interestSet = interestSet;
+        treeBuilder.setInterestSet(interestSet);
+    }
+
+    /**
+     * Sets the counters for tree construction events.
+     * 
+     * @param counters the counters or <code>null</code> to not count
+     * @see nu.validator.htmlparser.impl.TreeBuilder#setCounters(nu.validator.htmlparser.common.TreeBuilderCounters)
+     */
+    public void setCounters(TreeBuilderCounters counters) {
+        this.counters = counters;
+        treeBuilder.setCounters(counters);
+    }
+
+    /**
+     * Sets a cache of parsed fragments. When set, <code>parseFragment</code> 
+     * reads character stream inputs in full and returns a copy of the 
+     * fragment previously parsed from the same text in the same context 
+     * with the same configuration instead of parsing again. Parses that 
+     * report errors, document modes or counts, or that use character 
+     * handlers or an interest set, bypass the cache. The cache may be 
+     * shared by several builders.
+     * 
+     * @param fragmentCache the cache or <code>null</code> to disable caching
+     */
+    public void setFragmentCache(FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * Returns the cache of parsed fragments.
+     * 
+     * @return the cache or <code>null</code>
+     */
+    public FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
 }
@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.impl.ErrorReportingTokenizer;
+import nu.validator.htmlparser.impl.Tokenizer;
+import nu.validator.htmlparser.impl.TreeBuilderState;
+import nu.validator.htmlparser.impl.UTF16Buffer;
+
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Keeps a DOM in sync with an edited HTML source without re-parsing the 
+ * whole source on every edit.
+ * 
+ * <p>While parsing, the builder records checkpoints at element boundaries 
+ * roughly every <code>snapshotInterval</code> characters. A checkpoint holds 
+ * a copy of the tokenizer state, a tree builder snapshot and the last child 
+ * of every open element. On an edit, the document is rolled back to the 
+ * last checkpoint before the edit and parsing resumes from there. After the 
+ * end of the edit, the parser state is compared with the old checkpoints at 
+ * each element boundary. Once the tree builder state matches an old 
+ * checkpoint, the rest of the old tree is spliced back in and parsing stops.
+ * 
+ * <p>Rolling back is only possible when the old parse did not move nodes 
+ * around after the checkpoint (the adoption agency algorithm, foster 
+ * parenting or attributes added to <code>html</code> or <code>body</code>). 
+ * In that case, the whole source is parsed again into a new 
+ * <code>Document</code>. Callers should therefore always use the return 
+ * value of <code>update</code>.
+ * 
+ * <p>The XML violation policy is <code>ALTER_INFOSET</code>. Instances are 
+ * not thread-safe.
+ */
+public class IncrementalDocumentBuilder {
+
+    private static final int CHUNK_SIZE = 2048;
+
+    /**
+     * The parser state at an element boundary.
+     */
+    private static final class Checkpoint {
+
+        /**
+         * The offset of the first unconsumed character in the source.
+         */
+        int offset;
+
+        final Tokenizer tokenizer;
+
+        final boolean lastCR;
+
+        final TreeBuilderState<Element> state;
+
+        /**
+         * The document followed by the stack of open elements.
+         */
+        final Node[] containers;
+
+        /**
+         * The last children of the containers.
+         */
+        final Node[] marks;
+
+        /**
+         * The count of non-append mutations when the checkpoint was taken.
+         */
+        final int mutations;
+
+        Checkpoint(int offset, Tokenizer tokenizer, boolean lastCR,
+                TreeBuilderState<Element> state, Node[] containers,
+                Node[] marks, int mutations) {
+            this.offset = offset;
+            this.tokenizer = tokenizer;
+            this.lastCR = lastCR;
+            this.state = state;
+            this.containers = containers;
+            this.marks = marks;
+            this.mutations = mutations;
+        }
+    }
+
+    private final DOMImplementation implementation;
+
+    private int snapshotInterval = 4096;
+
+    private char[] source = new char[0];
+
+    private Document document = null;
+
+    private List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+
+    /**
+     * The count of non-append mutations at the end of the last parse.
+     */
+    private int mutations = 0;
+
+    private int lastReparseLength = 0;
+
+    /**
+     * Instantiates the builder with the JAXP DOM implementation.
+     */
+    public IncrementalDocumentBuilder() {
+        this(HtmlDocumentBuilder.jaxpDOMImplementation());
+    }
+
+    /**
+     * Instantiates the builder with a specific DOM implementation.
+     * 
+     * @param implementation
+     *            the DOM implementation
+     */
+    public IncrementalDocumentBuilder(DOMImplementation implementation) {
+        this.implementation = implementation;
+    }
+
+    /**
+     * Parses a source from scratch.
+     * 
+     * @param source
+     *            the HTML source
+     * @return the document
+     * @throws SAXException
+     *             if stuff goes wrong
+     */
+    public Document parse(String source) throws SAXException {
+        this.source = source.toCharArray();
+        return reparse();
+    }
+
+    /**
+     * Replaces a range of the source and brings the document up to date.
+     * 
+     * @param start
+     *            the start offset of the replaced range
+     * @param end
+     *            the end offset (exclusive) of the replaced range
+     * @param replacement
+     *            the new text for the range
+     * @return the document, which is a new object if the whole source had
+     *         to be parsed again
+     * @throws SAXException
+     *             if stuff goes wrong
+     */
+    public Document update(int start, int end, String replacement)
+            throws SAXException {
+        if (document == null) {
+            throw new IllegalStateException("Nothing has been parsed yet.");
+        }
+        if (start < 0 || end < start || end > source.length) {
+            throw new IllegalArgumentException("Bad edit range: " + start
+                    + "-" + end);
+        }
+        int delta = replacement.length() - (end - start);
+        char[] updated = new char[source.length + delta];
+        System.arraycopy(source, 0, updated, 0, start);
+        replacement.getChars(0, replacement.length(), updated, start);
+        System.arraycopy(source, end, updated, start + replacement.length(),
+                source.length - end);
+        source = updated;
+
+        int from = -1;
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Checkpoint checkpoint = checkpoints.get(i);
+            if (checkpoint.offset <= start) {
+                if (checkpoint.mutations == mutations) {
+                    from = i;
+                }
+                break;
+            }
+        }
+        if (from == -1) {
+            return reparse();
+        }
+        Checkpoint resume = checkpoints.get(from);
+        List<Checkpoint> candidates = new ArrayList<Checkpoint>();
+        for (int i = from + 1; i < checkpoints.size(); i++) {
+            Checkpoint checkpoint = checkpoints.get(i);
+            if (checkpoint.offset >= end) {
+                candidates.add(checkpoint);
+            }
+        }
+
+        // roll back to the checkpoint
+        Node[] containers = resume.containers;
+        Node[][] removed = new Node[containers.length][];
+        for (int i = 0; i < containers.length; i++) {
+            removed[i] = removeChildrenAfter(containers[i], resume.marks[i]);
+        }
+
+        IncrementalTreeBuilder treeBuilder = new IncrementalTreeBuilder(
+                implementation, document);
+        treeBuilder.setMutations(resume.mutations);
+        Tokenizer tokenizer = newTokenizer(treeBuilder);
+        List<Checkpoint> recorded = new ArrayList<Checkpoint>();
+        int converged;
+        try {
+            tokenizer.start();
+            tokenizer.loadState(resume.tokenizer);
+            treeBuilder.loadState(resume.state, null);
+            converged = run(treeBuilder, tokenizer, resume.offset,
+                    resume.lastCR, recorded, candidates,
+                    start + replacement.length(), delta);
+            if (converged == -1) {
+                tokenizer.eof();
+            }
+        } finally {
+            tokenizer.end();
+        }
+
+        List<Checkpoint> newCheckpoints = new ArrayList<Checkpoint>(
+                checkpoints.subList(0, from + 1));
+        newCheckpoints.addAll(recorded);
+        if (converged == -1) {
+            lastReparseLength = source.length - resume.offset;
+            mutations = treeBuilder.getMutations();
+        } else {
+            List<Checkpoint> rest = candidates.subList(converged,
+                    candidates.size());
+            Checkpoint target = rest.get(0);
+            lastReparseLength = target.offset + delta - resume.offset;
+            for (Checkpoint checkpoint : rest) {
+                checkpoint.offset += delta;
+            }
+            splice(target, resume, removed, rest);
+            newCheckpoints.addAll(rest);
+        }
+        checkpoints = newCheckpoints;
+        return document;
+    }
+
+    /**
+     * Reattaches the old content that follows the convergence point.
+     */
+    private void splice(Checkpoint target, Checkpoint resume,
+            Node[][] removed, List<Checkpoint> rest) {
+        for (int k = 0; k < target.containers.length; k++) {
+            Node container = target.containers[k];
+            Node oldMark = target.marks[k];
+            int j = 0;
+            while (resume.containers[j] != container) {
+                j++;
+            }
+            Node[] children = removed[j];
+            int tail = 0;
+            if (oldMark != resume.marks[j]) {
+                while (children[tail] != oldMark) {
+                    tail++;
+                }
+                tail++;
+            }
+            Node newMark = container.getLastChild();
+            for (Checkpoint checkpoint : rest) {
+                for (int m = 0; m < checkpoint.containers.length; m++) {
+                    if (checkpoint.containers[m] == container
+                            && checkpoint.marks[m] == oldMark) {
+                        checkpoint.marks[m] = newMark;
+                    }
+                }
+            }
+            for (int i = tail; i < children.length; i++) {
+                container.appendChild(children[i]);
+            }
+        }
+    }
+
+    private static Node[] removeChildrenAfter(Node container, Node mark) {
+        List<Node> list = new ArrayList<Node>();
+        Node child = mark == null ? container.getFirstChild()
+                : mark.getNextSibling();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            container.removeChild(child);
+            list.add(child);
+            child = next;
+        }
+        return list.toArray(new Node[list.size()]);
+    }
+
+    private Document reparse() throws SAXException {
+        Document doc = implementation.createDocument(null, null, null);
+        IncrementalTreeBuilder treeBuilder = new IncrementalTreeBuilder(
+                implementation, doc);
+        Tokenizer tokenizer = newTokenizer(treeBuilder);
+        List<Checkpoint> recorded = new ArrayList<Checkpoint>();
+        try {
+            tokenizer.start();
+            run(treeBuilder, tokenizer, 0, false, recorded, null, 0, 0);
+            tokenizer.eof();
+        } finally {
+            tokenizer.end();
+        }
+        document = doc;
+        checkpoints = recorded;
+        mutations = treeBuilder.getMutations();
+        lastReparseLength = source.length;
+        return doc;
+    }
+
+    private Tokenizer newTokenizer(IncrementalTreeBuilder treeBuilder) {
+        Tokenizer tokenizer = new ErrorReportingTokenizer(treeBuilder, false);
+        tokenizer.setCommentPolicy(XmlViolationPolicy.ALTER_INFOSET);
+        tokenizer.setContentNonXmlCharPolicy(XmlViolationPolicy.ALTER_INFOSET);
+        tokenizer.setContentSpacePolicy(XmlViolationPolicy.ALTER_INFOSET);
+        tokenizer.setXmlnsPolicy(XmlViolationPolicy.ALTER_INFOSET);
+        tokenizer.setNamePolicy(XmlViolationPolicy.ALTER_INFOSET);
+        treeBuilder.setNamePolicy(XmlViolationPolicy.ALTER_INFOSET);
+        return tokenizer;
+    }
+
+    /**
+     * Tokenizes the source from <code>pos</code> on, recording checkpoints. 
+     * When <code>candidates</code> is not <code>null</code>, checks for 
+     * convergence with the old checkpoints at element boundaries at or after
+     * <code>convergeFrom</code>.
+     * 
+     * @return the index of the candidate that matched or -1 if the end of 
+     *         the source was reached
+     */
+    private int run(IncrementalTreeBuilder treeBuilder, Tokenizer tokenizer,
+            int pos, boolean lastWasCR, List<Checkpoint> recorded,
+            List<Checkpoint> candidates, int convergeFrom, int delta)
+            throws SAXException {
+        int startMutations = treeBuilder.getMutations();
+        int nextCheckpoint = pos + snapshotInterval;
+        int candidate = 0;
+        char[] work = new char[CHUNK_SIZE];
+        UTF16Buffer buffer = new UTF16Buffer(work, 0, 0);
+        while (pos < source.length) {
+            int limit = Math.min(source.length, pos + CHUNK_SIZE);
+            if (candidates != null && pos < convergeFrom) {
+                limit = Math.min(limit, convergeFrom);
+            }
+            // Suspension is only requested once the checkpoint offset has 
+            // been reached, so the chunk must not run past it.
+            if (pos < nextCheckpoint) {
+                limit = Math.min(limit, nextCheckpoint);
+            }
+            int chunkStart = pos;
+            System.arraycopy(source, chunkStart, work, 0, limit - chunkStart);
+            buffer.setStart(0);
+            buffer.setEnd(limit - chunkStart);
+            while (buffer.hasMore()) {
+                buffer.adjust(lastWasCR);
+                lastWasCR = false;
+                if (!buffer.hasMore()) {
+                    break;
+                }
+                boolean converging = candidates != null
+                        && pos >= convergeFrom
+                        && treeBuilder.getMutations() == startMutations;
+                treeBuilder.setSuspendingAtBoundaries(converging
+                        || pos >= nextCheckpoint);
+                lastWasCR = tokenizer.tokenizeBuffer(buffer);
+                pos = chunkStart + buffer.getStart();
+                if (!treeBuilder.takeBoundary()
+                        || !tokenizer.isInDataState()
+                        || treeBuilder.hasPendingCharacters()) {
+                    continue;
+                }
+                if (converging) {
+                    while (candidate < candidates.size()
+                            && candidates.get(candidate).offset + delta < pos) {
+                        candidate++;
+                    }
+                    if (candidate == candidates.size()) {
+                        candidates = null;
+                    } else if (candidates.get(candidate).offset + delta == pos
+                            && matches(treeBuilder, lastWasCR,
+                                    candidates.get(candidate))) {
+                        return candidate;
+                    }
+                }
+                if (pos >= nextCheckpoint
+                        && record(treeBuilder, tokenizer, pos, lastWasCR,
+                                recorded)) {
+                    nextCheckpoint = pos + snapshotInterval;
+                    // start a new chunk that ends at the next checkpoint
+                    break;
+                }
+            }
+            pos = chunkStart + buffer.getStart();
+        }
+        return -1;
+    }
+
+    private boolean matches(IncrementalTreeBuilder treeBuilder,
+            boolean lastCR, Checkpoint checkpoint) throws SAXException {
+        if (checkpoint.lastCR != lastCR
+                || !treeBuilder.snapshotMatches(checkpoint.state)) {
+            return false;
+        }
+        if (endsWithText(treeBuilder.getTarget())) {
+            return false;
+        }
+        for (int i = 0; i < treeBuilder.stackDepth(); i++) {
+            if (endsWithText(treeBuilder.stackNode(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean record(IncrementalTreeBuilder treeBuilder,
+            Tokenizer tokenizer, int pos, boolean lastCR,
+            List<Checkpoint> recorded) throws SAXException {
+        int depth = treeBuilder.stackDepth();
+        Node[] containers = new Node[depth + 1];
+        Node[] marks = new Node[depth + 1];
+        containers[0] = treeBuilder.getTarget();
+        for (int i = 0; i < depth; i++) {
+            containers[i + 1] = treeBuilder.stackNode(i);
+        }
+        for (int i = 0; i < containers.length; i++) {
+            // a trailing text node could be coalesced with later text
+            if (endsWithText(containers[i])) {
+                return false;
+            }
+            marks[i] = containers[i].getLastChild();
+        }
+        Tokenizer copy = new Tokenizer(treeBuilder, false);
+        copy.initializeWithoutStarting();
+        copy.loadState(tokenizer);
+        recorded.add(new Checkpoint(pos, copy, lastCR,
+                treeBuilder.newSnapshot(), containers, marks,
+                treeBuilder.getMutations()));
+        return true;
+    }
+
+    private static boolean endsWithText(Node node) {
+        Node last = node.getLastChild();
+        return last != null && last.getNodeType() == Node.TEXT_NODE;
+    }
+
+    /**
+     * Returns the current document.
+     * 
+     * @return the document or <code>null</code> if nothing has been parsed
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * Returns the current source.
+     * 
+     * @return the source
+     */
+    public String getSource() {
+        return new String(source);
+    }
+
+    /**
+     * Returns the number of characters tokenized by the last parse or update.
+     * 
+     * @return the number of characters
+     */
+    public int getLastReparseLength() {
+        return lastReparseLength;
+    }
+
+    /**
+     * Returns the approximate distance between checkpoints.
+     * 
+     * @return the snapshot interval in characters
+     */
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Sets the approximate distance between checkpoints. Takes effect on 
+     * the next parse.
+     * 
+     * @param snapshotInterval
+     *            the snapshot interval in characters
+     */
+    public void setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException(
+                    "The snapshot interval must be positive.");
+        }
+        this.snapshotInterval = snapshotInterval;
+    }
+}
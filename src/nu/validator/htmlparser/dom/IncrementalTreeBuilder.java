@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.dom;
+
+import nu.validator.htmlparser.impl.HtmlAttributes;
+
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+/**
+ * A DOM tree builder that can suspend the tokenizer at element boundaries 
+ * and that counts the tree mutations that are not plain appends, so that 
+ * <code>IncrementalDocumentBuilder</code> can tell when rolling back to a 
+ * snapshot is safe.
+ */
+class IncrementalTreeBuilder extends DOMTreeBuilder {
+
+    private final Document target;
+
+    private boolean suspendingAtBoundaries = false;
+
+    private boolean boundary = false;
+
+    private int mutations = 0;
+
+    IncrementalTreeBuilder(DOMImplementation implementation, Document document) {
+        super(implementation, document);
+        this.target = document;
+    }
+
+    /**
+     * Returns the document being built.
+     * 
+     * @return the document
+     */
+    Document getTarget() {
+        return target;
+    }
+
+    /**
+     * Sets whether the tokenizer is suspended after the next tag that pushes
+     * or pops an element.
+     * 
+     * @param suspendingAtBoundaries
+     *            <code>true</code> to suspend
+     */
+    void setSuspendingAtBoundaries(boolean suspendingAtBoundaries) {
+        this.suspendingAtBoundaries = suspendingAtBoundaries;
+    }
+
+    /**
+     * Tells whether a suspension was requested at an element boundary since 
+     * the last call and clears the flag.
+     * 
+     * @return <code>true</code> if a boundary was seen
+     */
+    boolean takeBoundary() {
+        boolean rv = boundary;
+        boundary = false;
+        return rv;
+    }
+
+    /**
+     * Returns the number of non-append mutations so far.
+     * 
+     * @return the mutation count
+     */
+    int getMutations() {
+        return mutations;
+    }
+
+    void setMutations(int mutations) {
+        this.mutations = mutations;
+    }
+
+    /**
+     * Tells whether there are characters waiting to be flushed.
+     * 
+     * @return <code>true</code> if characters are pending
+     */
+    boolean hasPendingCharacters() {
+        return charBufferLen > 0;
+    }
+
+    int stackDepth() {
+        return getStackDepth();
+    }
+
+    Element stackNode(int pos) {
+        return getStackNode(pos);
+    }
+
+    @Override protected void elementPushed(String ns, String name, Element node)
+            throws SAXException {
+        if (suspendingAtBoundaries) {
+            boundary = true;
+            requestSuspension();
+        }
+    }
+
+    @Override protected void elementPopped(String ns, String name, Element node)
+            throws SAXException {
+        if (suspendingAtBoundaries) {
+            boundary = true;
+            requestSuspension();
+        }
+    }
+
+    @Override protected void addAttributesToElement(Element element,
+            HtmlAttributes attributes) throws SAXException {
+        mutations++;
+        super.addAttributesToElement(element, attributes);
+    }
+
+    @Override protected void appendChildrenToNewParent(Element oldParent,
+            Element newParent) throws SAXException {
+        mutations++;
+        super.appendChildrenToNewParent(oldParent, newParent);
+    }
+
+    @Override protected void detachFromParent(Element element)
+            throws SAXException {
+        mutations++;
+        super.detachFromParent(element);
+    }
+
+    @Override protected void insertFosterParentedChild(Element child,
+            Element table, Element stackParent) throws SAXException {
+        mutations++;
+        super.insertFosterParentedChild(child, table, stackParent);
+    }
+
+    @Override protected Element createAndInsertFosterParentedElement(
+            String ns, String name, HtmlAttributes attributes, Element table,
+            Element stackParent) throws SAXException {
+        mutations++;
+        return super.createAndInsertFosterParentedElement(ns, name,
+                attributes, table, stackParent);
+    }
+
+    @Override protected void insertFosterParentedCharacters(String text,
+            Element table, Element stackParent) throws SAXException {
+        mutations++;
+        super.insertFosterParentedCharacters(text, table, stackParent);
+    }
+}
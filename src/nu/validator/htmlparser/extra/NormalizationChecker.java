@@ -129,6 +129,7 @@ public final class NormalizationChecker implements CharacterHandler {
      */
     public NormalizationChecker(Locator locator) {
         super();
+        this.locator = locator;
         start();
     }
 
@@ -196,6 +197,12 @@ public final class NormalizationChecker implements CharacterHandler {
         }
         if (i < stop) {
             start = i;
+            if (isBelowCombiningMarks(ch, start, stop)) {
+                // Nothing composes and nothing changes under NFC; only the 
+                // last character may still combine with the next buffer.
+                appendToBuf(ch, stop - 1, stop);
+                return;
+            }
             i = stop - 1;
             while (i > start && isComposingCharOrSurrogate(ch[i])) {
                 i--;
@@ -209,6 +216,25 @@ public final class NormalizationChecker implements CharacterHandler {
         }
     }
 
+    /**
+     * Returns <code>true</code> if all the code units in the slice are 
+     * below U+0300. No such character is a composing character or a 
+     * surrogate, and NFC leaves them all as they are.
+     * 
+     * @param ch the array
+     * @param start the index of the first code unit to check
+     * @param end the index of the first code unit not to check
+     * @return <code>true</code> if the slice has nothing to normalize
+     */
+    private static boolean isBelowCombiningMarks(char[] ch, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (ch[i] >= '\u0300') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Emits an error stating that the current text run or the source 
      * text is not in NFC.
@@ -265,4 +291,31 @@ public final class NormalizationChecker implements CharacterHandler {
         this.errorHandler = errorHandler;
     }
 
+    /**
+     * Returns the error handler.
+     * 
+     * @return the error handler
+     */
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    /**
+     * Sets the locator used for errors.
+     * 
+     * @param locator the locator
+     */
+    public void setLocator(Locator locator) {
+        this.locator = locator;
+    }
+
+    /**
+     * Returns the locator used for errors.
+     * 
+     * @return the locator
+     */
+    public Locator getLocator() {
+        return locator;
+    }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.extra;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import nu.validator.htmlparser.common.TreeBuilderCounters;
+
+/**
+ * Aggregates <code>TreeBuilderCounters</code> from any number of parsers 
+ * and exposes the totals as a standard MBean. Parsers keep counting into 
+ * their own counters without synchronization; the owner of each parser 
+ * hands its counters to <code>add()</code> after a parse (or a batch of 
+ * parses) and resets them.
+ */
+public final class TreeBuilderStatistics implements TreeBuilderStatisticsMBean {
+
+    private final TreeBuilderCounters totals = new TreeBuilderCounters();
+
+    /**
+     * Adds counts to the totals. Safe to call from multiple threads.
+     * 
+     * @param counters
+     *            the counts to add
+     */
+    public synchronized void add(TreeBuilderCounters counters) {
+        totals.add(counters);
+    }
+
+    /**
+     * Adds counts to the totals and resets them.
+     * 
+     * @param counters
+     *            the counts to drain
+     */
+    public void drain(TreeBuilderCounters counters) {
+        add(counters);
+        counters.reset();
+    }
+
+    /**
+     * Registers this instance with the platform MBean server.
+     * 
+     * @param name
+     *            the object name, e.g. 
+     *            <code>nu.validator.htmlparser:type=TreeBuilderStatistics</code>
+     * @throws JMException
+     *             if the registration failed
+     */
+    public void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName(name));
+    }
+
+    public synchronized long getParses() {
+        return totals.getParses();
+    }
+
+    public synchronized long getFosterParenting() {
+        return totals.getFosterParenting();
+    }
+
+    public synchronized long getAdoptionAgency() {
+        return totals.getAdoptionAgency();
+    }
+
+    public synchronized long getReconstructions() {
+        return totals.getReconstructions();
+    }
+
+    public synchronized long getModeSwitches() {
+        return totals.getModeSwitches();
+    }
+
+    public synchronized long getDeepTreePushes() {
+        return totals.getDeepTreePushes();
+    }
+
+    public synchronized long getQuirks() {
+        return totals.getQuirks();
+    }
+
+    public synchronized long getLimitedQuirks() {
+        return totals.getLimitedQuirks();
+    }
+
+    public synchronized int getMaxDepth() {
+        return totals.getMaxDepth();
+    }
+
+    public synchronized void reset() {
+        totals.reset();
+    }
+}
@@ -510,6 +510,15 @@ public final class AttributeName
         return qName[mode];
     }
 
+    /**
+     * Returns a copy of the table of well-known attribute names.
+     * 
+     * @return the well-known attribute names
+     */
+    public static AttributeName[] getWellKnownNames() {
+        return ATTRIBUTE_NAMES.clone();
+    }
+
     // ]NOCPP]
 
     public @NsUri String getUri(int mode) {
@@ -52,13 +52,18 @@ public abstract class CoalescingTreeBuilder<T> extends TreeBuilder<T> {
      */
     @Override protected final void appendCharacters(T parent, char[] buf, int start,
             int length) throws SAXException {
-        appendCharacters(parent, new String(buf, start, length));
+        if (interestedInText()) {
+            appendCharacters(parent, new String(buf, start, length));
+        }
     }
 
     /**
      * @see nu.validator.htmlparser.impl.TreeBuilder#appendIsindexPrompt(java.lang.Object)
      */
     @Override protected void appendIsindexPrompt(T parent) throws SAXException {
+        if (!interestedInText()) {
+            return;
+        }
         appendCharacters(parent, "This is a searchable index. Enter search keywords: ");
     }
 
@@ -90,7 +95,9 @@ public abstract class CoalescingTreeBuilder<T> extends TreeBuilder<T> {
      */
     @Override protected final void insertFosterParentedCharacters(char[] buf, int start,
             int length, T table, T stackParent) throws SAXException {
-        insertFosterParentedCharacters(new String(buf, start, length), table, stackParent);
+        if (interestedInText()) {
+            insertFosterParentedCharacters(new String(buf, start, length), table, stackParent);
+        }
     }
     
     protected abstract void insertFosterParentedCharacters(String text, T table, T stackParent) throws SAXException;
@@ -169,6 +169,19 @@ public final class ElementName
     @Virtual public ElementName cloneElementName(Interner interner) {
         return this;
     }
+
+    // [NOCPP[
+
+    /**
+     * Returns a copy of the table of well-known element names.
+     * 
+     * @return the well-known element names
+     */
+    public static ElementName[] getWellKnownNames() {
+        return ELEMENT_NAMES.clone();
+    }
+
+    // ]NOCPP]
     
     // START CODE ONLY USED FOR GENERATING CODE uncomment and run to regenerate
 
@@ -24,10 +24,15 @@ package nu.validator.htmlparser.impl;
 
 import nu.validator.htmlparser.annotation.Inline;
 import nu.validator.htmlparser.annotation.NoLength;
+import nu.validator.htmlparser.common.ParseErrorCode;
+import nu.validator.htmlparser.common.ParseErrorHandler;
 import nu.validator.htmlparser.common.TokenHandler;
 import nu.validator.htmlparser.common.TransitionHandler;
 import nu.validator.htmlparser.common.XmlViolationPolicy;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 
 import org.xml.sax.SAXException;
@@ -76,6 +81,14 @@ public class ErrorReportingTokenizer extends Tokenizer {
 
     private int transitionBaseOffset = 0;
 
+    private ParseErrorHandler parseErrorHandler = null;
+
+    /**
+     * The offset of the last character checked. Reported to
+     * <code>ParseErrorHandler</code>.
+     */
+    private int offset = -1;
+
     /**
      * @param tokenHandler
      * @param newAttributesEachTime
@@ -165,6 +178,34 @@ public class ErrorReportingTokenizer extends Tokenizer {
         transitionBaseOffset = 0;
     }
 
+    /**
+     * @see nu.validator.htmlparser.impl.Tokenizer#writeState(java.io.DataOutput)
+     */
+    @Override public void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeInt(line);
+        out.writeInt(linePrev);
+        out.writeInt(col);
+        out.writeInt(colPrev);
+        out.writeBoolean(nextCharOnNewLine);
+        out.writeChar(prev);
+        out.writeBoolean(alreadyWarnedAboutPrivateUseCharacters);
+    }
+
+    /**
+     * @see nu.validator.htmlparser.impl.Tokenizer#readState(java.io.DataInput)
+     */
+    @Override public void readState(DataInput in) throws IOException {
+        super.readState(in);
+        line = in.readInt();
+        linePrev = in.readInt();
+        col = in.readInt();
+        colPrev = in.readInt();
+        nextCharOnNewLine = in.readBoolean();
+        prev = in.readChar();
+        alreadyWarnedAboutPrivateUseCharacters = in.readBoolean();
+    }
+
     @Inline protected void silentCarriageReturn() {
         nextCharOnNewLine = true;
         lastCR = true;
@@ -227,6 +268,7 @@ public class ErrorReportingTokenizer extends Tokenizer {
 
     @Override protected char checkChar(@NoLength char[] buf, int pos)
             throws SAXException {
+        offset = transitionBaseOffset + pos;
         linePrev = line;
         colPrev = col;
         if (nextCharOnNewLine) {
@@ -240,7 +282,7 @@ public class ErrorReportingTokenizer extends Tokenizer {
         char c = buf[pos];
         switch (c) {
             case '\u0000':
-                err("Saw U+0000 in stream.");
+                err(ParseErrorCode.NULL_CHARACTER);
             case '\t':
             case '\r':
             case '\n':
@@ -254,9 +296,7 @@ public class ErrorReportingTokenizer extends Tokenizer {
                     if (contentNonXmlCharPolicy == XmlViolationPolicy.ALTER_INFOSET) {
                         c = buf[pos] = ' ';
                     }
-                    warn("This document is not mappable to XML 1.0 without data loss due to "
-                            + toUPlusString(c)
-                            + " which is not a legal XML 1.0 character.");
+                    err(ParseErrorCode.NON_XML_CHARACTER, c);
                 }
                 break;
             default:
@@ -266,7 +306,7 @@ public class ErrorReportingTokenizer extends Tokenizer {
                     if ((prev & 0xFC00) == 0xD800) {
                         int intVal = (prev << 10) + c + SURROGATE_OFFSET;
                         if ((intVal & 0xFFFE) == 0xFFFE) {
-                            err("Astral non-character.");
+                            err(ParseErrorCode.ASTRAL_NON_CHARACTER);
                         }
                         if (isAstralPrivateUse(intVal)) {
                             warnAboutPrivateUseChar();
@@ -282,12 +322,11 @@ public class ErrorReportingTokenizer extends Tokenizer {
                             c = buf[pos] = '\uFFFD';
                             // fall through
                         case ALLOW:
-                            err("Forbidden code point " + toUPlusString(c)
-                                    + ".");
+                            err(ParseErrorCode.FORBIDDEN_CODE_POINT, c);
                     }
                 } else if ((c >= '\u007F') && (c <= '\u009F')
                         || (c >= '\uFDD0') && (c <= '\uFDEF')) {
-                    err("Forbidden code point " + toUPlusString(c) + ".");
+                    err(ParseErrorCode.FORBIDDEN_CODE_POINT, c);
                 } else if (isPrivateUse(c)) {
                     warnAboutPrivateUseChar();
                 }
@@ -310,6 +349,61 @@ public class ErrorReportingTokenizer extends Tokenizer {
         return to;
     }
 
+    /**
+     * Reports an error through the <code>ParseErrorHandler</code> if one has
+     * been set.
+     * 
+     * @return <code>true</code> if the error was reported
+     * @throws SAXException
+     */
+    private boolean structuredErr(ParseErrorCode code, int arg)
+            throws SAXException {
+        if (parseErrorHandler == null) {
+            return false;
+        }
+        parseErrorHandler.parseError(code, getLineNumber(), getColumnNumber(),
+                offset, arg);
+        return true;
+    }
+
+    /**
+     * Reports an error located at the ampersand that started a character
+     * reference through the <code>ParseErrorHandler</code> if one has been
+     * set.
+     * 
+     * @return <code>true</code> if the error was reported
+     * @throws SAXException
+     */
+    private boolean ampersandErr(ParseErrorCode code) throws SAXException {
+        if (parseErrorHandler == null) {
+            return false;
+        }
+        parseErrorHandler.parseError(code, ampersandLocation.getLineNumber(),
+                ampersandLocation.getColumnNumber(), offset, -1);
+        return true;
+    }
+
+    private void err(ParseErrorCode code) throws SAXException {
+        err(code, -1);
+    }
+
+    /**
+     * Reports an error or a warning either through the
+     * <code>ParseErrorHandler</code> or, when none has been set, as a
+     * <code>SAXParseException</code> to the <code>ErrorHandler</code>. The
+     * message is only formatted in the latter case.
+     */
+    private void err(ParseErrorCode code, int arg) throws SAXException {
+        if (structuredErr(code, arg) || errorHandler == null) {
+            return;
+        }
+        if (code.isWarning()) {
+            warn(code.getMessage(arg));
+        } else {
+            err(code.getMessage(arg));
+        }
+    }
+
     private String toUPlusString(int c) {
         String hexString = Integer.toHexString(c);
         switch (hexString.length()) {
@@ -332,7 +426,7 @@ public class ErrorReportingTokenizer extends Tokenizer {
      */
     private void warnAboutPrivateUseChar() throws SAXException {
         if (!alreadyWarnedAboutPrivateUseCharacters) {
-            warn("Document uses the Unicode Private Use Area(s), which should not be used in publicly exchanged documents. (Charmod C073)");
+            err(ParseErrorCode.PRIVATE_USE_CHARACTER);
             alreadyWarnedAboutPrivateUseCharacters = true;
         }
     }
@@ -361,14 +455,18 @@ public class ErrorReportingTokenizer extends Tokenizer {
     }
 
     @Override protected void errGarbageAfterLtSlash() throws SAXException {
-        err("Garbage after \u201C</\u201D.");
+        err(ParseErrorCode.GARBAGE_AFTER_LT_SLASH);
     }
 
     @Override protected void errLtSlashGt() throws SAXException {
-        err("Saw \u201C</>\u201D. Probable causes: Unescaped \u201C<\u201D (escape as \u201C&lt;\u201D) or mistyped end tag.");
+        err(ParseErrorCode.LT_SLASH_GT);
     }
 
     @Override protected void errWarnLtSlashInRcdata() throws SAXException {
+        if (structuredErr(html4 ? ParseErrorCode.HTML4_LT_SLASH_IN_RCDATA
+                : ParseErrorCode.LT_SLASH_IN_RCDATA, -1)) {
+            return;
+        }
         if (html4) {
             err((stateSave == Tokenizer.DATA ? "CDATA" : "RCDATA")
                     + " element \u201C"
@@ -386,6 +484,9 @@ public class ErrorReportingTokenizer extends Tokenizer {
             throws SAXException {
         if (html4 && (index > 0 || (folded >= 'a' && folded <= 'z'))
                 && ElementName.IFRAME != endTagExpectation) {
+            if (structuredErr(ParseErrorCode.HTML4_LT_SLASH_IN_RCDATA, -1)) {
+                return;
+            }
             err((stateSave == Tokenizer.DATA ? "CDATA" : "RCDATA")
                     + " element \u201C"
                     + endTagExpectation.name
@@ -394,68 +495,69 @@ public class ErrorReportingTokenizer extends Tokenizer {
     }
 
     @Override protected void errCharRefLacksSemicolon() throws SAXException {
-        err("Character reference was not terminated by a semicolon.");
+        err(ParseErrorCode.CHAR_REF_LACKS_SEMICOLON);
     }
 
     @Override protected void errNoDigitsInNCR() throws SAXException {
+        if (structuredErr(ParseErrorCode.NO_DIGITS_IN_NCR, -1)) {
+            return;
+        }
         err("No digits after \u201C" + strBufToString() + "\u201D.");
     }
 
     @Override protected void errGtInSystemId() throws SAXException {
-        err("\u201C>\u201D in system identifier.");
+        err(ParseErrorCode.GT_IN_SYSTEM_ID);
     }
 
     @Override protected void errGtInPublicId() throws SAXException {
-        err("\u201C>\u201D in public identifier.");
+        err(ParseErrorCode.GT_IN_PUBLIC_ID);
     }
 
     @Override protected void errNamelessDoctype() throws SAXException {
-        err("Nameless doctype.");
+        err(ParseErrorCode.NAMELESS_DOCTYPE);
     }
 
     @Override protected void errConsecutiveHyphens() throws SAXException {
-        err("Consecutive hyphens did not terminate a comment. \u201C--\u201D is not permitted inside a comment, but e.g. \u201C- -\u201D is.");
+        err(ParseErrorCode.CONSECUTIVE_HYPHENS);
     }
 
     @Override protected void errPrematureEndOfComment() throws SAXException {
-        err("Premature end of comment. Use \u201C-->\u201D to end a comment properly.");
+        err(ParseErrorCode.PREMATURE_END_OF_COMMENT);
     }
 
     @Override protected void errBogusComment() throws SAXException {
-        err("Bogus comment.");
+        err(ParseErrorCode.BOGUS_COMMENT);
     }
 
     @Override protected void errUnquotedAttributeValOrNull(char c)
             throws SAXException {
         switch (c) {
             case '<':
-                err("\u201C<\u201D in an unquoted attribute value. Probable cause: Missing \u201C>\u201D immediately before.");
+                err(ParseErrorCode.LT_IN_UNQUOTED_ATTRIBUTE_VALUE);
                 return;
             case '`':
-                err("\u201C`\u201D in an unquoted attribute value. Probable cause: Using the wrong character as a quote.");
+                err(ParseErrorCode.GRAVE_IN_UNQUOTED_ATTRIBUTE_VALUE);
                 return;
             case '\uFFFD':
                 return;
             default:
-                err("\u201C"
-                        + c
-                        + "\u201D in an unquoted attribute value. Probable causes: Attributes running together or a URL query string in an unquoted attribute value.");
+                err(ParseErrorCode.CHAR_IN_UNQUOTED_ATTRIBUTE_VALUE, c);
                 return;
         }
     }
 
     @Override protected void errSlashNotFollowedByGt() throws SAXException {
-        err("A slash was not immediately followed by \u201C>\u201D.");
+        err(ParseErrorCode.SLASH_NOT_FOLLOWED_BY_GT);
     }
 
     @Override protected void errHtml4XmlVoidSyntax() throws SAXException {
         if (html4) {
-            err("The \u201C/>\u201D syntax on void elements is not allowed.  (This is an HTML4-only error.)");
+            err(ParseErrorCode.HTML4_XML_VOID_SYNTAX);
         }
     }
 
     @Override protected void errNoSpaceBetweenAttributes() throws SAXException {
-        err("No space between attributes.");
+        err(ParseErrorCode.NO_SPACE_BETWEEN_ATTRIBUTES);
     }
 
     @Override protected void errHtml4NonNameInUnquotedAttribute(char c)
@@ -464,7 +566,7 @@ public class ErrorReportingTokenizer extends Tokenizer {
                 && !((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
                         || (c >= '0' && c <= '9') || c == '.' || c == '-'
                         || c == '_' || c == ':')) {
-            err("Non-name character in an unquoted attribute value. (This is an HTML4-only error.)");
+            err(ParseErrorCode.HTML4_NON_NAME_IN_UNQUOTED_ATTRIBUTE);
         }
     }
 
@@ -472,25 +574,25 @@ public class ErrorReportingTokenizer extends Tokenizer {
             char c) throws SAXException {
         switch (c) {
             case '=':
-                err("\u201C=\u201D at the start of an unquoted attribute value. Probable cause: Stray duplicate equals sign.");
+                err(ParseErrorCode.EQUALS_AT_START_OF_UNQUOTED_ATTRIBUTE_VALUE);
                 return;
             case '<':
-                err("\u201C<\u201D at the start of an unquoted attribute value. Probable cause: Missing \u201C>\u201D immediately before.");
+                err(ParseErrorCode.LT_AT_START_OF_UNQUOTED_ATTRIBUTE_VALUE);
                 return;
             case '`':
-                err("\u201C`\u201D at the start of an unquoted attribute value. Probable cause: Using the wrong character as a quote.");
+                err(ParseErrorCode.GRAVE_AT_START_OF_UNQUOTED_ATTRIBUTE_VALUE);
                 return;
         }
     }
 
     @Override protected void errAttributeValueMissing() throws SAXException {
-        err("Attribute value missing.");
+        err(ParseErrorCode.ATTRIBUTE_VALUE_MISSING);
     }
 
     @Override protected void errBadCharBeforeAttributeNameOrNull(char c)
             throws SAXException {
         if (c == '<') {
-            err("Saw \u201C<\u201D when expecting an attribute name. Probable cause: Missing \u201C>\u201D immediately before.");
+            err(ParseErrorCode.LT_BEFORE_ATTRIBUTE_NAME);
         } else if (c == '=') {
             errEqualsSignBeforeAttributeName();
         } else if (c != '\uFFFD') {
@@ -500,25 +602,26 @@ public class ErrorReportingTokenizer extends Tokenizer {
 
     @Override protected void errEqualsSignBeforeAttributeName()
             throws SAXException {
-        err("Saw \u201C=\u201D when expecting an attribute name. Probable cause: Attribute name missing.");
+        err(ParseErrorCode.EQUALS_SIGN_BEFORE_ATTRIBUTE_NAME);
     }
 
     @Override protected void errBadCharAfterLt(char c) throws SAXException {
-        err("Bad character \u201C"
-                + c
-                + "\u201D after \u201C<\u201D. Probable cause: Unescaped \u201C<\u201D. Try escaping it as \u201C&lt;\u201D.");
+        err(ParseErrorCode.BAD_CHAR_AFTER_LT, c);
     }
 
     @Override protected void errLtGt() throws SAXException {
-        err("Saw \u201C<>\u201D. Probable causes: Unescaped \u201C<\u201D (escape as \u201C&lt;\u201D) or mistyped start tag.");
+        err(ParseErrorCode.LT_GT);
     }
 
     @Override protected void errProcessingInstruction() throws SAXException {
-        err("Saw \u201C<?\u201D. Probable cause: Attempt to use an XML processing instruction in HTML. (XML processing instructions are not supported in HTML.)");
+        err(ParseErrorCode.PROCESSING_INSTRUCTION);
     }
 
     @Override protected void errUnescapedAmpersandInterpretedAsCharacterReference()
             throws SAXException {
+        if (ampersandErr(ParseErrorCode.UNESCAPED_AMPERSAND_INTERPRETED_AS_CHARACTER_REFERENCE)) {
+            return;
+        }
         if (errorHandler == null) {
             return;
         }
@@ -529,10 +632,13 @@ public class ErrorReportingTokenizer extends Tokenizer {
     }
 
     @Override protected void errNotSemicolonTerminated() throws SAXException {
-        err("Named character reference was not terminated by a semicolon. (Or \u201C&\u201D should have been escaped as \u201C&amp;\u201D.)");
+        err(ParseErrorCode.NOT_SEMICOLON_TERMINATED);
     }
 
     @Override protected void errNoNamedCharacterMatch() throws SAXException {
+        if (ampersandErr(ParseErrorCode.NO_NAMED_CHARACTER_MATCH)) {
+            return;
+        }
         if (errorHandler == null) {
             return;
         }
@@ -544,38 +650,36 @@ public class ErrorReportingTokenizer extends Tokenizer {
 
     @Override protected void errQuoteBeforeAttributeName(char c)
             throws SAXException {
-        err("Saw \u201C"
-                + c
-                + "\u201D when expecting an attribute name. Probable cause: \u201C=\u201D missing immediately before.");
+        err(ParseErrorCode.QUOTE_BEFORE_ATTRIBUTE_NAME, c);
     }
 
     @Override protected void errQuoteOrLtInAttributeNameOrNull(char c)
             throws SAXException {
         if (c == '<') {
-            err("\u201C<\u201D in attribute name. Probable cause: \u201C>\u201D missing immediately before.");
+            err(ParseErrorCode.LT_IN_ATTRIBUTE_NAME);
         } else if (c != '\uFFFD') {
-            err("Quote \u201C"
-                    + c
-                    + "\u201D in attribute name. Probable cause: Matching quote missing somewhere earlier.");
+            err(ParseErrorCode.QUOTE_IN_ATTRIBUTE_NAME, c);
         }
     }
 
     @Override protected void errExpectedPublicId() throws SAXException {
-        err("Expected a public identifier but the doctype ended.");
+        err(ParseErrorCode.EXPECTED_PUBLIC_ID);
     }
 
     @Override protected void errBogusDoctype() throws SAXException {
-        err("Bogus doctype.");
+        err(ParseErrorCode.BOGUS_DOCTYPE);
     }
 
     @Override protected void maybeWarnPrivateUseAstral() throws SAXException {
-        if (errorHandler != null && isAstralPrivateUse(value)) {
+        if ((errorHandler != null || parseErrorHandler != null)
+                && isAstralPrivateUse(value)) {
             warnAboutPrivateUseChar();
         }
     }
 
     @Override protected void maybeWarnPrivateUse(char ch) throws SAXException {
-        if (errorHandler != null && isPrivateUse(ch)) {
+        if ((errorHandler != null || parseErrorHandler != null)
+                && isPrivateUse(ch)) {
             warnAboutPrivateUseChar();
         }
     }
@@ -587,14 +691,14 @@ public class ErrorReportingTokenizer extends Tokenizer {
              * When an end tag token is emitted with attributes, that is a parse
              * error.
              */
-            err("End tag had attributes.");
+            err(ParseErrorCode.ATTRIBUTES_ON_END_TAG);
         }
     }
 
     @Override protected void maybeErrSlashInEndTag(boolean selfClosing)
             throws SAXException {
         if (selfClosing && endTag) {
-            err("Stray \u201C/\u201D at the end of an end tag.");
+            err(ParseErrorCode.SLASH_IN_END_TAG);
         }
     }
 
@@ -608,8 +712,7 @@ public class ErrorReportingTokenizer extends Tokenizer {
                 ch = '\uFFFD';
                 // fall through
             case ALLOW:
-                err("Character reference expands to a non-character ("
-                        + toUPlusString((char) value) + ").");
+                err(ParseErrorCode.NCR_NON_CHARACTER, (char) value);
         }
         return ch;
     }
@@ -618,12 +721,11 @@ public class ErrorReportingTokenizer extends Tokenizer {
      * @see nu.validator.htmlparser.impl.Tokenizer#errAstralNonCharacter(int)
      */
     @Override protected void errAstralNonCharacter(int ch) throws SAXException {
-        err("Character reference expands to an astral non-character ("
-                + toUPlusString(value) + ").");
+        err(ParseErrorCode.NCR_ASTRAL_NON_CHARACTER, value);
     }
 
     @Override protected void errNcrSurrogate() throws SAXException {
-        err("Character reference expands to a surrogate.");
+        err(ParseErrorCode.NCR_SURROGATE);
     }
 
     @Override protected char errNcrControlChar(char ch) throws SAXException {
@@ -636,108 +738,109 @@ public class ErrorReportingTokenizer extends Tokenizer {
                 ch = '\uFFFD';
                 // fall through
             case ALLOW:
-                err("Character reference expands to a control character ("
-                        + toUPlusString((char) value) + ").");
+                err(ParseErrorCode.NCR_CONTROL_CHARACTER, (char) value);
         }
         return ch;
     }
 
     @Override protected void errNcrCr() throws SAXException {
-        err("A numeric character reference expanded to carriage return.");
+        err(ParseErrorCode.NCR_CR);
     }
 
     @Override protected void errNcrInC1Range() throws SAXException {
-        err("A numeric character reference expanded to the C1 controls range.");
+        err(ParseErrorCode.NCR_IN_C1_RANGE);
     }
 
     @Override protected void errEofInPublicId() throws SAXException {
-        err("End of file inside public identifier.");
+        err(ParseErrorCode.EOF_IN_PUBLIC_ID);
     }
 
     @Override protected void errEofInComment() throws SAXException {
-        err("End of file inside comment.");
+        err(ParseErrorCode.EOF_IN_COMMENT);
     }
 
     @Override protected void errEofInDoctype() throws SAXException {
-        err("End of file inside doctype.");
+        err(ParseErrorCode.EOF_IN_DOCTYPE);
     }
 
     @Override protected void errEofInAttributeValue() throws SAXException {
-        err("End of file reached when inside an attribute value. Ignoring tag.");
+        err(ParseErrorCode.EOF_IN_ATTRIBUTE_VALUE);
     }
 
     @Override protected void errEofInAttributeName() throws SAXException {
-        err("End of file occurred in an attribute name. Ignoring tag.");
+        err(ParseErrorCode.EOF_IN_ATTRIBUTE_NAME);
     }
 
     @Override protected void errEofWithoutGt() throws SAXException {
-        err("Saw end of file without the previous tag ending with \u201C>\u201D. Ignoring tag.");
+        err(ParseErrorCode.EOF_WITHOUT_GT);
     }
 
     @Override protected void errEofInTagName() throws SAXException {
-        err("End of file seen when looking for tag name. Ignoring tag.");
+        err(ParseErrorCode.EOF_IN_TAG_NAME);
     }
 
     @Override protected void errEofInEndTag() throws SAXException {
-        err("End of file inside end tag. Ignoring tag.");
+        err(ParseErrorCode.EOF_IN_END_TAG);
     }
 
     @Override protected void errEofAfterLt() throws SAXException {
-        err("End of file after \u201C<\u201D.");
+        err(ParseErrorCode.EOF_AFTER_LT);
     }
 
     @Override protected void errNcrOutOfRange() throws SAXException {
-        err("Character reference outside the permissible Unicode range.");
+        err(ParseErrorCode.NCR_OUT_OF_RANGE);
     }
 
     @Override protected void errNcrUnassigned() throws SAXException {
-        err("Character reference expands to a permanently unassigned code point.");
+        err(ParseErrorCode.NCR_UNASSIGNED);
     }
 
     @Override protected void errDuplicateAttribute() throws SAXException {
+        if (structuredErr(ParseErrorCode.DUPLICATE_ATTRIBUTE, -1)) {
+            return;
+        }
         err("Duplicate attribute \u201C"
                 + attributeName.getLocal(AttributeName.HTML) + "\u201D.");
     }
 
     @Override protected void errEofInSystemId() throws SAXException {
-        err("End of file inside system identifier.");
+        err(ParseErrorCode.EOF_IN_SYSTEM_ID);
     }
 
     @Override protected void errExpectedSystemId() throws SAXException {
-        err("Expected a system identifier but the doctype ended.");
+        err(ParseErrorCode.EXPECTED_SYSTEM_ID);
     }
 
     @Override protected void errMissingSpaceBeforeDoctypeName()
             throws SAXException {
-        err("Missing space before doctype name.");
+        err(ParseErrorCode.MISSING_SPACE_BEFORE_DOCTYPE_NAME);
     }
 
     @Override protected void errHyphenHyphenBang() throws SAXException {
-        err("\u201C--!\u201D found in comment.");
+        err(ParseErrorCode.HYPHEN_HYPHEN_BANG);
     }
 
     @Override protected void errNcrControlChar() throws SAXException {
-        err("Character reference expands to a control character ("
-                + toUPlusString((char) value) + ").");
+        err(ParseErrorCode.NCR_CONTROL_CHARACTER, (char) value);
     }
 
     @Override protected void errNcrZero() throws SAXException {
-        err("Character reference expands to zero.");
+        err(ParseErrorCode.NCR_ZERO);
     }
 
     @Override protected void errNoSpaceBetweenDoctypeSystemKeywordAndQuote()
             throws SAXException {
-        err("No space between the doctype \u201CSYSTEM\u201D keyword and the quote.");
+        err(ParseErrorCode.NO_SPACE_BETWEEN_DOCTYPE_SYSTEM_KEYWORD_AND_QUOTE);
     }
 
     @Override protected void errNoSpaceBetweenPublicAndSystemIds()
             throws SAXException {
-        err("No space between the doctype public and system identifiers.");
+        err(ParseErrorCode.NO_SPACE_BETWEEN_PUBLIC_AND_SYSTEM_IDS);
     }
 
     @Override protected void errNoSpaceBetweenDoctypePublicKeywordAndQuote()
             throws SAXException {
-        err("No space between the doctype \u201CPUBLIC\u201D keyword and the quote.");
+        err(ParseErrorCode.NO_SPACE_BETWEEN_DOCTYPE_PUBLIC_KEYWORD_AND_QUOTE);
     }
 
     @Override protected void noteAttributeWithoutValue() throws SAXException {
@@ -748,6 +851,18 @@ public class ErrorReportingTokenizer extends Tokenizer {
         note("xhtml1", "Unquoted attribute value.");
     }
 
+    /**
+     * Sets the handler for structured parse errors. When set, the errors
+     * listed in <code>ParseErrorCode</code> are reported to it instead of
+     * the <code>ErrorHandler</code>.
+     * 
+     * @param parseErrorHandler
+     *            the handler or <code>null</code>
+     */
+    public void setParseErrorHandler(ParseErrorHandler parseErrorHandler) {
+        this.parseErrorHandler = parseErrorHandler;
+    }
+
     /**
      * Sets the transitionHandler.
      * 
@@ -23,6 +23,10 @@
 
 package nu.validator.htmlparser.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import nu.validator.htmlparser.annotation.Auto;
 import nu.validator.htmlparser.annotation.IdType;
 import nu.validator.htmlparser.annotation.Local;
@@ -592,6 +596,90 @@ public final class HtmlAttributes implements Attributes {
         }
     }
 
+    /**
+     * Writes the attributes to a byte stream. Names are written in their
+     * HTML-mode form so that they map back to the same
+     * <code>AttributeName</code> instances when read.
+     * 
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if the stream threw
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mode);
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            StateSerialization.writeString(out,
+                    names[i].getLocal(AttributeName.HTML));
+            StateSerialization.writeString(out, values[i]);
+        }
+        out.writeInt(xmlnsLength);
+        for (int i = 0; i < xmlnsLength; i++) {
+            StateSerialization.writeString(out,
+                    xmlnsNames[i].getLocal(AttributeName.HTML));
+            StateSerialization.writeString(out, xmlnsValues[i]);
+        }
+    }
+
+    /**
+     * Reads attributes written by <code>write()</code>.
+     * 
+     * @param in
+     *            the stream to read from
+     * @param checkNcName
+     *            whether custom names should be checked for NCName-ness
+     * @return the attributes
+     * @throws IOException
+     *             if the stream threw or was corrupt
+     */
+    public static HtmlAttributes read(DataInput in, boolean checkNcName)
+            throws IOException {
+        HtmlAttributes attributes = new HtmlAttributes(in.readInt());
+        int len = in.readInt();
+        for (int i = 0; i < len; i++) {
+            AttributeName name = readName(in, checkNcName);
+            String value = StateSerialization.readString(in);
+            if (attributes.names.length == attributes.length) {
+                AttributeName[] newNames = new AttributeName[attributes.length << 1];
+                System.arraycopy(attributes.names, 0, newNames, 0,
+                        attributes.length);
+                attributes.names = newNames;
+                String[] newValues = new String[attributes.length << 1];
+                System.arraycopy(attributes.values, 0, newValues, 0,
+                        attributes.length);
+                attributes.values = newValues;
+            }
+            if (name == AttributeName.ID) {
+                attributes.idValue = value;
+            }
+            attributes.names[attributes.length] = name;
+            attributes.values[attributes.length] = value;
+            attributes.length++;
+        }
+        int xmlnsLen = in.readInt();
+        if (xmlnsLen > 0) {
+            attributes.xmlnsNames = new AttributeName[xmlnsLen];
+            attributes.xmlnsValues = new String[xmlnsLen];
+            for (int i = 0; i < xmlnsLen; i++) {
+                attributes.xmlnsNames[i] = readName(in, checkNcName);
+                attributes.xmlnsValues[i] = StateSerialization.readString(in);
+            }
+            attributes.xmlnsLength = xmlnsLen;
+        }
+        return attributes;
+    }
+
+    private static AttributeName readName(DataInput in, boolean checkNcName)
+            throws IOException {
+        char[] buf = StateSerialization.readChars(in);
+        if (buf == null) {
+            throw new IOException("Corrupt parser state.");
+        }
+        return AttributeName.nameByBuffer(buf, 0, buf.length, checkNcName,
+                null);
+    }
+
 
     // ]NOCPP]
     
@@ -195,6 +195,17 @@ public abstract class MetaScanner {
         return readable.readByte();
     }
 
+    /**
+     * Skips over bytes that cannot start a tag so that the next 
+     * <code>read()</code> returns '&lt;' or -1 or a byte that has to come 
+     * from the data source. Subclasses that scan a byte array override 
+     * this to avoid a <code>read()</code> call per byte of text.
+     * 
+     * @throws IOException
+     */
+    protected void skipData() throws IOException {
+    }
+
     // ]NOCPP]
 
     // WARNING When editing this, makes sure the bytecode length shown by javap
@@ -213,6 +224,9 @@ public abstract class MetaScanner {
                         if (reconsume) {
                             reconsume = false;
                         } else {
+                            // [NOCPP[
+                            skipData();
+                            // ]NOCPP]
                             c = read();
                         }
                         switch (c) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.xml.sax.Locator;
+
+/**
+ * Helpers for writing the tokenizer and tree builder state to a byte stream
+ * so that a parse can be checkpointed and resumed in another process.
+ */
+final class StateSerialization {
+
+    private StateSerialization() {
+    }
+
+    static void writeString(DataOutput out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        int len = str.length();
+        out.writeInt(len);
+        for (int i = 0; i < len; i++) {
+            out.writeChar(str.charAt(i));
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int len = in.readInt();
+        if (len == -1) {
+            return null;
+        }
+        return new String(readCharArray(in, len));
+    }
+
+    /**
+     * Reads a string and interns it so that it can be compared by reference
+     * like the local names and namespace URIs created during parsing.
+     */
+    static String readLocal(DataInput in) throws IOException {
+        String str = readString(in);
+        return str == null ? null : str.intern();
+    }
+
+    static void writeChars(DataOutput out, char[] buf, int len)
+            throws IOException {
+        if (buf == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(len);
+        for (int i = 0; i < len; i++) {
+            out.writeChar(buf[i]);
+        }
+    }
+
+    static char[] readChars(DataInput in) throws IOException {
+        int len = in.readInt();
+        if (len == -1) {
+            return null;
+        }
+        return readCharArray(in, len);
+    }
+
+    private static char[] readCharArray(DataInput in, int len)
+            throws IOException {
+        if (len < 0) {
+            throw new IOException("Corrupt parser state.");
+        }
+        char[] buf = new char[len];
+        for (int i = 0; i < len; i++) {
+            buf[i] = in.readChar();
+        }
+        return buf;
+    }
+
+    static void writeLocator(DataOutput out, TaintableLocatorImpl locator)
+            throws IOException {
+        if (locator == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeString(out, locator.getPublicId());
+        writeString(out, locator.getSystemId());
+        out.writeInt(locator.getLineNumber());
+        out.writeInt(locator.getColumnNumber());
+        out.writeBoolean(locator.isTainted());
+    }
+
+    static TaintableLocatorImpl readLocator(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        org.xml.sax.helpers.LocatorImpl loc = new org.xml.sax.helpers.LocatorImpl();
+        loc.setPublicId(readString(in));
+        loc.setSystemId(readString(in));
+        loc.setLineNumber(in.readInt());
+        loc.setColumnNumber(in.readInt());
+        TaintableLocatorImpl locator = new TaintableLocatorImpl((Locator) loc);
+        if (in.readBoolean()) {
+            locator.markTainted();
+        }
+        return locator;
+    }
+}
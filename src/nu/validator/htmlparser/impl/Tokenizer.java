@@ -35,6 +35,10 @@
 
 package nu.validator.htmlparser.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import nu.validator.htmlparser.annotation.Auto;
 import nu.validator.htmlparser.annotation.CharacterName;
 import nu.validator.htmlparser.annotation.Const;
@@ -6768,6 +6772,135 @@ public class Tokenizer implements Locator {
         }
     }
 
+    // [NOCPP[
+
+    /**
+     * Writes the state that <code>loadState()</code> would copy to a byte
+     * stream so that tokenization can be resumed by another instance,
+     * possibly in another process, via <code>readState()</code>.
+     * 
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if the stream threw
+     */
+    public void writeState(DataOutput out) throws IOException {
+        StateSerialization.writeChars(out, strBuf, strBufLen);
+        StateSerialization.writeChars(out, longStrBuf, longStrBufLen);
+        out.writeInt(stateSave);
+        out.writeInt(returnStateSave);
+        StateSerialization.writeString(out, endTagExpectation == null ? null
+                : endTagExpectation.name);
+        StateSerialization.writeChars(out, endTagExpectationAsArray,
+                endTagExpectationAsArray == null ? 0
+                        : endTagExpectationAsArray.length);
+        out.writeInt(line);
+        out.writeBoolean(lastCR);
+        out.writeInt(index);
+        out.writeBoolean(forceQuirks);
+        out.writeChar(additional);
+        out.writeInt(entCol);
+        out.writeInt(firstCharKey);
+        out.writeInt(lo);
+        out.writeInt(hi);
+        out.writeInt(candidate);
+        out.writeInt(strBufMark);
+        out.writeInt(prevValue);
+        out.writeInt(value);
+        out.writeBoolean(seenDigits);
+        out.writeBoolean(endTag);
+        out.writeBoolean(html4);
+        out.writeBoolean(metaBoundaryPassed);
+        StateSerialization.writeString(out, doctypeName);
+        StateSerialization.writeString(out, systemIdentifier);
+        StateSerialization.writeString(out, publicIdentifier);
+        StateSerialization.writeString(out, tagName == null ? null
+                : tagName.name);
+        StateSerialization.writeString(out, attributeName == null ? null
+                : attributeName.getLocal(AttributeName.HTML));
+        out.writeBoolean(attributes != null);
+        if (attributes != null) {
+            attributes.write(out);
+        }
+    }
+
+    /**
+     * Reads the state written by <code>writeState()</code>. The tokenizer
+     * must have been started first.
+     * 
+     * @param in
+     *            the stream to read from
+     * @throws IOException
+     *             if the stream threw or was corrupt
+     */
+    public void readState(DataInput in) throws IOException {
+        char[] buf = StateSerialization.readChars(in);
+        strBufLen = buf.length;
+        strBuf = new char[Math.max(64, strBufLen)];
+        System.arraycopy(buf, 0, strBuf, 0, strBufLen);
+
+        buf = StateSerialization.readChars(in);
+        longStrBufLen = buf.length;
+        longStrBuf = new char[Math.max(1024, longStrBufLen)];
+        System.arraycopy(buf, 0, longStrBuf, 0, longStrBufLen);
+
+        stateSave = in.readInt();
+        returnStateSave = in.readInt();
+        buf = StateSerialization.readChars(in);
+        endTagExpectation = buf == null ? null
+                : ElementName.elementNameByBuffer(buf, 0, buf.length,
+                        interner);
+        endTagExpectationAsArray = StateSerialization.readChars(in);
+        line = in.readInt();
+        lastCR = in.readBoolean();
+        index = in.readInt();
+        forceQuirks = in.readBoolean();
+        additional = in.readChar();
+        entCol = in.readInt();
+        firstCharKey = in.readInt();
+        lo = in.readInt();
+        hi = in.readInt();
+        candidate = in.readInt();
+        strBufMark = in.readInt();
+        prevValue = in.readInt();
+        value = in.readInt();
+        seenDigits = in.readBoolean();
+        endTag = in.readBoolean();
+        html4 = in.readBoolean();
+        metaBoundaryPassed = in.readBoolean();
+        shouldSuspend = false;
+        doctypeName = StateSerialization.readLocal(in);
+        systemIdentifier = StateSerialization.readString(in);
+        publicIdentifier = StateSerialization.readString(in);
+
+        buf = StateSerialization.readChars(in);
+        tagName = buf == null ? null : ElementName.elementNameByBuffer(buf,
+                0, buf.length, interner);
+        buf = StateSerialization.readChars(in);
+        attributeName = buf == null ? null : AttributeName.nameByBuffer(buf,
+                0, buf.length, namePolicy != XmlViolationPolicy.ALLOW,
+                interner);
+        if (in.readBoolean()) {
+            attributes = HtmlAttributes.read(in,
+                    namePolicy != XmlViolationPolicy.ALLOW);
+        } else if (newAttributesEachTime) {
+            attributes = null;
+        } else {
+            attributes = new HtmlAttributes(mappingLangToXmlLang);
+        }
+    }
+
+    /**
+     * Returns the token handler.
+     * 
+     * @return the token handler
+     */
+    public TokenHandler getTokenHandler() {
+        return tokenHandler;
+    }
+
+    // ]NOCPP]
+
     public void initializeWithoutStarting() throws SAXException {
         confident = false;
         strBuf = new char[64];
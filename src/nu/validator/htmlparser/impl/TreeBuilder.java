@@ -35,8 +35,13 @@
 
 package nu.validator.htmlparser.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import nu.validator.htmlparser.annotation.Auto;
@@ -50,8 +55,10 @@ import nu.validator.htmlparser.annotation.NsUri;
 import nu.validator.htmlparser.common.DoctypeExpectation;
 import nu.validator.htmlparser.common.DocumentMode;
 import nu.validator.htmlparser.common.DocumentModeHandler;
+import nu.validator.htmlparser.common.InterestSet;
 import nu.validator.htmlparser.common.Interner;
 import nu.validator.htmlparser.common.TokenHandler;
+import nu.validator.htmlparser.common.TreeBuilderCounters;
 import nu.validator.htmlparser.common.XmlViolationPolicy;
 
 import org.xml.sax.ErrorHandler;
@@ -405,6 +412,12 @@ public abstract class TreeBuilder<T> implements TokenHandler,
 
     private boolean wantingComments;
 
+    private InterestSet interestSet;
+
+    private TreeBuilderCounters counters;
+
+    private int countedMode;
+
     // ]NOCPP]
 
     private boolean fragment;
@@ -460,6 +473,8 @@ public abstract class TreeBuilder<T> implements TokenHandler,
 
     private boolean html4;
 
+    private boolean resuming;
+
     // ]NOCPP]
 
     protected TreeBuilder() {
@@ -599,6 +614,10 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         idLocations.clear();
         wantingComments = wantsComments();
         firstCommentLocation = null;
+        countedMode = INITIAL;
+        if (counters != null) {
+            counters.countParse();
+        }
         // ]NOCPP]
         start(fragment);
         charBufferLen = 0;
@@ -979,7 +998,7 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         if (firstCommentLocation == null) {
             firstCommentLocation = new LocatorImpl(tokenizer);
         }
-        if (!wantingComments) {
+        if (!wantingComments || !interestedInComments()) {
             return;
         }
         // ]NOCPP]
@@ -1435,6 +1454,9 @@ public abstract class TreeBuilder<T> implements TokenHandler,
 
     public final void eof() throws SAXException {
         flushCharacters();
+        // [NOCPP[
+        countModeSwitch();
+        // ]NOCPP]
         // Note: Can't attach error messages to EOF in C++ yet
         eofloop: for (;;) {
             switch (mode) {
@@ -1649,6 +1671,7 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         flushCharacters();
 
         // [NOCPP[
+        countModeSwitch();
         if (errorHandler != null) {
             // ID uniqueness
             @IdType String id = attributes.getId();
@@ -1668,6 +1691,10 @@ public abstract class TreeBuilder<T> implements TokenHandler,
 
         int eltPos;
         needToDropLF = false;
+        if (mode == IN_BODY && !isInForeign()
+                && startTagInBodyFast(elementName, attributes, selfClosing)) {
+            return;
+        }
         starttagloop: for (;;) {
             int group = elementName.getGroup();
             @Local String name = elementName.name;
@@ -3129,6 +3156,114 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         // CPPONLY: }
     }
 
+    /**
+     * Handles the start tags that dominate typical body content when the
+     * insertion mode is "in body" and the current node is an HTML element.
+     * Each case does exactly what the corresponding case of the full
+     * dispatch in <code>startTag</code> does. Other tags are left to the
+     * full dispatch.
+     * 
+     * @return <code>true</code> if the tag was handled
+     */
+    private boolean startTagInBodyFast(ElementName elementName,
+            HtmlAttributes attributes, boolean selfClosing)
+            throws SAXException {
+        switch (elementName.getGroup()) {
+            case P:
+            case DIV_OR_BLOCKQUOTE_OR_CENTER_OR_MENU:
+            case UL_OR_OL_OR_DL:
+            case ADDRESS_OR_ARTICLE_OR_ASIDE_OR_DETAILS_OR_DIR_OR_FIGCAPTION_OR_FIGURE_OR_FOOTER_OR_HEADER_OR_HGROUP_OR_MAIN_OR_NAV_OR_SECTION_OR_SUMMARY:
+                implicitlyCloseP();
+                appendToCurrentNodeAndPushElementMayFoster(elementName,
+                        attributes);
+                break;
+            case A:
+                int activeAPos = findInListOfActiveFormattingElementsContainsBetweenEndAndLastMarker("a");
+                if (activeAPos != -1) {
+                    errFooSeenWhenFooOpen(elementName.name);
+                    StackNode<T> activeA = listOfActiveFormattingElements[activeAPos];
+                    activeA.retain();
+                    adoptionAgencyEndTag("a");
+                    removeFromStack(activeA);
+                    activeAPos = findInListOfActiveFormattingElements(activeA);
+                    if (activeAPos != -1) {
+                        removeFromListOfActiveFormattingElements(activeAPos);
+                    }
+                    activeA.release();
+                }
+                reconstructTheActiveFormattingElements();
+                appendToCurrentNodeAndPushFormattingElementMayFoster(
+                        elementName, attributes);
+                break;
+            case B_OR_BIG_OR_CODE_OR_EM_OR_I_OR_S_OR_SMALL_OR_STRIKE_OR_STRONG_OR_TT_OR_U:
+            case FONT:
+                reconstructTheActiveFormattingElements();
+                maybeForgetEarlierDuplicateFormattingElement(elementName.name,
+                        attributes);
+                appendToCurrentNodeAndPushFormattingElementMayFoster(
+                        elementName, attributes);
+                break;
+            case RUBY_OR_SPAN_OR_SUB_OR_SUP_OR_VAR:
+            case OTHER:
+                reconstructTheActiveFormattingElements();
+                appendToCurrentNodeAndPushElementMayFoster(elementName,
+                        attributes);
+                break;
+            case BR:
+            case EMBED:
+            case AREA_OR_WBR:
+                reconstructTheActiveFormattingElements();
+                appendVoidElementToCurrentMayFoster(elementName, attributes);
+                return true;
+            case IMG:
+            case INPUT:
+                reconstructTheActiveFormattingElements();
+                appendVoidElementToCurrentMayFoster(elementName.name,
+                        attributes, formPointer);
+                return true;
+            default:
+                return false;
+        }
+        if (selfClosing) {
+            errSelfClosing();
+        }
+        return true;
+    }
+
+    /**
+     * Handles end tags in the "in body" insertion mode when the tag closes
+     * the current node and that node is an HTML element in one of the groups
+     * for which the full dispatch in <code>endTag</code> then just pops it
+     * without reporting errors. Other tags are left to the full dispatch.
+     * 
+     * @return <code>true</code> if the tag was handled
+     */
+    private boolean endTagInBodyFast(ElementName elementName) throws SAXException {
+        if (currentPtr == 0) {
+            return false;
+        }
+        StackNode<T> node = stack[currentPtr];
+        if (node.name != elementName.name
+                || node.ns != "http://www.w3.org/1999/xhtml") {
+            return false;
+        }
+        switch (elementName.getGroup()) {
+            case P:
+            case DIV_OR_BLOCKQUOTE_OR_CENTER_OR_MENU:
+            case UL_OR_OL_OR_DL:
+            case ADDRESS_OR_ARTICLE_OR_ASIDE_OR_DETAILS_OR_DIR_OR_FIGCAPTION_OR_FIGURE_OR_FOOTER_OR_HEADER_OR_HGROUP_OR_MAIN_OR_NAV_OR_SECTION_OR_SUMMARY:
+            case LI:
+            case DD_OR_DT:
+            case H1_OR_H2_OR_H3_OR_H4_OR_H5_OR_H6:
+            case RUBY_OR_SPAN_OR_SUB_OR_SUP_OR_VAR:
+            case OTHER:
+                pop();
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private void startTagTitleInHead(ElementName elementName, HtmlAttributes attributes) throws SAXException {
         appendToCurrentNodeAndPushElementMayFoster(elementName, attributes);
         originalMode = mode;
@@ -3371,7 +3506,14 @@ public abstract class TreeBuilder<T> implements TokenHandler,
 
     public void endTag(ElementName elementName) throws SAXException {
         flushCharacters();
+        // [NOCPP[
+        countModeSwitch();
+        // ]NOCPP]
         needToDropLF = false;
+        if ((mode == IN_BODY || mode == FRAMESET_OK)
+                && endTagInBodyFast(elementName)) {
+            return;
+        }
         int eltPos;
         int group = elementName.getGroup();
         @Local String name = elementName.name;
@@ -4331,6 +4473,11 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         }
 
         quirks = (m == DocumentMode.QUIRKS_MODE);
+        // [NOCPP[
+        if (counters != null) {
+            counters.countDocumentMode(m);
+        }
+        // ]NOCPP]
         if (documentModeHandler != null) {
             documentModeHandler.documentMode(
                     m
@@ -4585,6 +4732,11 @@ public abstract class TreeBuilder<T> implements TokenHandler,
             stack = newStack;
         }
         stack[currentPtr] = node;
+        // [NOCPP[
+        if (counters != null) {
+            counters.countDepth(currentPtr + 1);
+        }
+        // ]NOCPP]
         elementPushed(node.ns, node.popName, node.node);
     }
 
@@ -4699,6 +4851,12 @@ public abstract class TreeBuilder<T> implements TokenHandler,
             return true;
         }
 
+        // [NOCPP[
+        if (counters != null) {
+            counters.countAdoptionAgency();
+        }
+        // ]NOCPP]
+
         // If you crash around here, perhaps some stack node variable claimed to
         // be a weak ref isn't.
         for (int i = 0; i < 8; ++i) {
@@ -4998,6 +5156,11 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         if (mostRecent == null || isInStack(mostRecent)) {
             return;
         }
+        // [NOCPP[
+        if (counters != null) {
+            counters.countReconstruction();
+        }
+        // ]NOCPP]
         int entryPos = listPtr;
         for (;;) {
             entryPos--;
@@ -5054,6 +5217,11 @@ public abstract class TreeBuilder<T> implements TokenHandler,
             return;
         }
 
+        // [NOCPP[
+        if (counters != null) {
+            counters.countFosterParenting();
+        }
+        // ]NOCPP]
         StackNode<T> node = stack[tablePos];
         insertFosterParentedChild(child, node.node, stack[tablePos - 1].node);
     }
@@ -5074,6 +5242,11 @@ public abstract class TreeBuilder<T> implements TokenHandler,
             return child;
         }
 
+        // [NOCPP[
+        if (counters != null) {
+            counters.countFosterParenting();
+        }
+        // ]NOCPP]
         StackNode<T> node = stack[tablePos];
         return createAndInsertFosterParentedElement(ns, name, attributes, form, node.node, stack[tablePos - 1].node);
     }
@@ -5720,6 +5893,86 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         wantingComments = !ignoreComments;
     }
 
+    /**
+     * Sets the interest set. The tree construction algorithm runs in full
+     * regardless, but subclasses consult the set to avoid materializing
+     * uninteresting content.
+     *
+     * @param interestSet
+     *            the interest set or <code>null</code> for everything
+     */
+    public void setInterestSet(InterestSet interestSet) {
+        this.interestSet = interestSet;
+    }
+
+    /**
+     * Returns the interest set.
+     *
+     * @return the interest set or <code>null</code> for everything
+     */
+    public InterestSet getInterestSet() {
+        return interestSet;
+    }
+
+    /**
+     * Sets the counters for tree construction events.
+     *
+     * @param counters
+     *            the counters or <code>null</code> to not count
+     */
+    public void setCounters(TreeBuilderCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Returns the counters for tree construction events.
+     *
+     * @return the counters or <code>null</code>
+     */
+    public TreeBuilderCounters getCounters() {
+        return counters;
+    }
+
+    private void countModeSwitch() {
+        if (counters != null && mode != countedMode) {
+            counters.countModeSwitch();
+            countedMode = mode;
+        }
+    }
+
+    /**
+     * Tells whether an element should be materialized.
+     *
+     * @param ns
+     *            the interned namespace URI
+     * @param name
+     *            the interned local name
+     * @return <code>true</code> if there is no interest set or the element
+     *         is in it
+     */
+    protected final boolean interestedIn(@NsUri String ns, @Local String name) {
+        return interestSet == null || interestSet.isInteresting(ns, name);
+    }
+
+    /**
+     * Tells whether text should be materialized.
+     *
+     * @return <code>true</code> if there is no interest set or it wants text
+     */
+    protected final boolean interestedInText() {
+        return interestSet == null || interestSet.wantsText();
+    }
+
+    /**
+     * Tells whether comments should be materialized.
+     *
+     * @return <code>true</code> if there is no interest set or it wants
+     *         comments
+     */
+    protected final boolean interestedInComments() {
+        return interestSet == null || interestSet.wantsComments();
+    }
+
     /**
      * Sets the errorHandler.
      *
@@ -5800,6 +6053,30 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         return stack[currentPtr].node;
     }
 
+    // [NOCPP[
+
+    /**
+     * Returns the number of elements on the stack of open elements.
+     *
+     * @return the stack depth
+     */
+    protected final int getStackDepth() {
+        return currentPtr + 1;
+    }
+
+    /**
+     * Returns the node at a given position on the stack of open elements.
+     *
+     * @param pos
+     *            the position counting from the root
+     * @return the node
+     */
+    protected final T getStackNode(int pos) {
+        return stack[pos].node;
+    }
+
+    // ]NOCPP]
+
     /**
      * Returns the scriptingEnabled.
      *
@@ -5888,6 +6165,11 @@ public abstract class TreeBuilder<T> implements TokenHandler,
                     return;
                 }
 
+                // [NOCPP[
+                if (counters != null) {
+                    counters.countFosterParenting();
+                }
+                // ]NOCPP]
                 StackNode<T> tableElt = stack[tablePos];
                 insertFosterParentedCharacters(charBuffer, 0, charBufferLen,
                         tableElt.node, stack[tablePos - 1].node);
@@ -6102,6 +6384,252 @@ public abstract class TreeBuilder<T> implements TokenHandler,
         return -1;
     }
 
+    // [NOCPP[
+
+    /**
+     * Writes the tree builder state to a byte stream so that a parse can be
+     * resumed by another instance, possibly in another process. The state
+     * covers what a snapshot covers plus the pending character buffer. The
+     * nodes themselves are written using <code>writeNode()</code>, which
+     * subclasses have to implement for this to work. Each distinct node is
+     * written once.
+     *
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if the stream threw
+     */
+    public void writeState(DataOutput out) throws IOException {
+        IdentityHashMap<T, Integer> nodeIndexes = new IdentityHashMap<T, Integer>();
+        ArrayList<T> nodes = new ArrayList<T>();
+        for (int i = 0; i <= listPtr; i++) {
+            StackNode<T> node = listOfActiveFormattingElements[i];
+            if (node != null) {
+                indexNode(node.node, nodeIndexes, nodes);
+            }
+        }
+        for (int i = 0; i <= currentPtr; i++) {
+            indexNode(stack[i].node, nodeIndexes, nodes);
+        }
+        indexNode(formPointer, nodeIndexes, nodes);
+        indexNode(headPointer, nodeIndexes, nodes);
+        indexNode(deepTreeSurrogateParent, nodeIndexes, nodes);
+
+        out.writeInt(nodes.size());
+        for (T node : nodes) {
+            writeNode(node, out);
+        }
+        out.writeInt(listPtr + 1);
+        for (int i = 0; i <= listPtr; i++) {
+            StackNode<T> node = listOfActiveFormattingElements[i];
+            out.writeBoolean(node != null);
+            if (node != null) {
+                writeStackNode(node, nodeIndexes, out);
+            }
+        }
+        out.writeInt(currentPtr + 1);
+        for (int i = 0; i <= currentPtr; i++) {
+            StackNode<T> node = stack[i];
+            int listIndex = findInListOfActiveFormattingElements(node);
+            out.writeInt(listIndex);
+            if (listIndex == -1) {
+                writeStackNode(node, nodeIndexes, out);
+            }
+        }
+        out.writeInt(templateModePtr + 1);
+        for (int i = 0; i <= templateModePtr; i++) {
+            out.writeInt(templateModeStack[i]);
+        }
+        out.writeInt(nodeIndex(formPointer, nodeIndexes));
+        out.writeInt(nodeIndex(headPointer, nodeIndexes));
+        out.writeInt(nodeIndex(deepTreeSurrogateParent, nodeIndexes));
+        out.writeInt(mode);
+        out.writeInt(originalMode);
+        out.writeBoolean(framesetOk);
+        out.writeBoolean(needToDropLF);
+        out.writeBoolean(quirks);
+        out.writeBoolean(html4);
+        StateSerialization.writeChars(out, charBuffer, charBufferLen);
+    }
+
+    /**
+     * Reads the state written by <code>writeState()</code>. The tokenizer
+     * driving this tree builder must have been started first.
+     *
+     * @param in
+     *            the stream to read from
+     * @throws IOException
+     *             if the stream threw or was corrupt
+     * @throws SAXException
+     */
+    @SuppressWarnings("unchecked") public void readState(DataInput in)
+            throws IOException, SAXException {
+        int nodeCount = in.readInt();
+        ArrayList<T> nodes = new ArrayList<T>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(readNode(in));
+        }
+        int listLen = in.readInt();
+        StackNode<T>[] listCopy = (StackNode<T>[]) new StackNode<?>[listLen];
+        for (int i = 0; i < listLen; i++) {
+            if (in.readBoolean()) {
+                listCopy[i] = readStackNode(in, nodes);
+            }
+        }
+        int stackLen = in.readInt();
+        StackNode<T>[] stackCopy = (StackNode<T>[]) new StackNode<?>[stackLen];
+        for (int i = 0; i < stackLen; i++) {
+            int listIndex = in.readInt();
+            if (listIndex == -1) {
+                stackCopy[i] = readStackNode(in, nodes);
+            } else {
+                stackCopy[i] = listCopy[listIndex];
+            }
+        }
+        int[] templateModeStackCopy = new int[in.readInt()];
+        for (int i = 0; i < templateModeStackCopy.length; i++) {
+            templateModeStackCopy[i] = in.readInt();
+        }
+        T form = nodeAt(in.readInt(), nodes);
+        T head = nodeAt(in.readInt(), nodes);
+        T surrogate = nodeAt(in.readInt(), nodes);
+        int m = in.readInt();
+        int om = in.readInt();
+        boolean fok = in.readBoolean();
+        boolean dropLF = in.readBoolean();
+        boolean q = in.readBoolean();
+        loadState(new StateSnapshot<T>(stackCopy, listCopy,
+                templateModeStackCopy, form, head, surrogate, m, om, fok,
+                dropLF, q), null);
+        html4 = in.readBoolean();
+        char[] buf = StateSerialization.readChars(in);
+        charBufferLen = buf.length;
+        if (charBuffer == null || charBuffer.length < charBufferLen) {
+            charBuffer = new char[Math.max(1024, charBufferLen)];
+        }
+        System.arraycopy(buf, 0, charBuffer, 0, charBufferLen);
+    }
+
+    /**
+     * Returns whether <code>writeState()</code> and <code>readState()</code>
+     * work with this tree builder. Subclasses that override
+     * <code>writeNode()</code> and <code>readNode()</code> must override
+     * this to return <code>true</code>.
+     *
+     * @return <code>false</code> unless overridden
+     */
+    public boolean supportsCheckpointing() {
+        return false;
+    }
+
+    /**
+     * Writes a node for <code>writeState()</code>. Subclasses that support
+     * checkpointing must override this together with <code>readNode()</code>.
+     *
+     * @param node
+     *            the node
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if the stream threw
+     */
+    protected void writeNode(T node, DataOutput out) throws IOException {
+        throw new UnsupportedOperationException(
+                "This tree builder does not support checkpointing.");
+    }
+
+    /**
+     * Reads a node written by <code>writeNode()</code>.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the node
+     * @throws IOException
+     *             if the stream threw or was corrupt
+     */
+    protected T readNode(DataInput in) throws IOException {
+        throw new UnsupportedOperationException(
+                "This tree builder does not support checkpointing.");
+    }
+
+    /**
+     * Sets whether the next parse continues from a checkpoint instead of
+     * starting a new document, in which case subclasses must not report the
+     * start of the document again.
+     *
+     * @param resuming
+     *            <code>true</code> if resuming
+     */
+    public final void setResuming(boolean resuming) {
+        this.resuming = resuming;
+    }
+
+    /**
+     * Tells whether the current parse continues from a checkpoint.
+     *
+     * @return <code>true</code> if resuming
+     */
+    protected final boolean isResuming() {
+        return resuming;
+    }
+
+    private void indexNode(T node, IdentityHashMap<T, Integer> nodeIndexes,
+            ArrayList<T> nodes) {
+        if (node != null && !nodeIndexes.containsKey(node)) {
+            nodeIndexes.put(node, Integer.valueOf(nodes.size()));
+            nodes.add(node);
+        }
+    }
+
+    private int nodeIndex(T node, IdentityHashMap<T, Integer> nodeIndexes) {
+        if (node == null) {
+            return -1;
+        }
+        return nodeIndexes.get(node).intValue();
+    }
+
+    private T nodeAt(int index, ArrayList<T> nodes) throws IOException {
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= nodes.size()) {
+            throw new IOException("Corrupt parser state.");
+        }
+        return nodes.get(index);
+    }
+
+    private void writeStackNode(StackNode<T> node,
+            IdentityHashMap<T, Integer> nodeIndexes, DataOutput out)
+            throws IOException {
+        out.writeInt(node.getFlags());
+        StateSerialization.writeString(out, node.ns);
+        StateSerialization.writeString(out, node.name);
+        StateSerialization.writeString(out, node.popName);
+        out.writeInt(nodeIndex(node.node, nodeIndexes));
+        out.writeBoolean(node.attributes != null);
+        if (node.attributes != null) {
+            node.attributes.write(out);
+        }
+        StateSerialization.writeLocator(out, node.getLocator());
+    }
+
+    private StackNode<T> readStackNode(DataInput in, ArrayList<T> nodes)
+            throws IOException {
+        int flags = in.readInt();
+        String ns = StateSerialization.readLocal(in);
+        String name = StateSerialization.readLocal(in);
+        String popName = StateSerialization.readLocal(in);
+        T node = nodeAt(in.readInt(), nodes);
+        HtmlAttributes attributes = null;
+        if (in.readBoolean()) {
+            attributes = HtmlAttributes.read(in, true);
+        }
+        return new StackNode<T>(flags, ns, name, node, popName, attributes,
+                StateSerialization.readLocator(in));
+    }
+
+    // ]NOCPP]
+
     /**
      * @see nu.validator.htmlparser.impl.TreeBuilderState#getFormPointer()
      */
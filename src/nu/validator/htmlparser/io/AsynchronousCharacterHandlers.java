@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import nu.validator.htmlparser.common.CharacterHandler;
+import nu.validator.htmlparser.extra.NormalizationChecker;
+import nu.validator.htmlparser.impl.Tokenizer;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Runs the character handlers of a <code>Driver</code> on a helper thread 
+ * from a pool shared by all parsers. The parsing thread copies each buffer 
+ * into a pooled chunk and queues it; when all chunks are in flight, the 
+ * parsing thread waits. 
+ * 
+ * <p><code>NormalizationChecker</code>s report through this object while 
+ * the thread runs: their errors are located at the position of the 
+ * tokenizer when the buffer was queued and are passed on to the 
+ * tokenizer's error handler on the parsing thread, in the order they were 
+ * reported. Other handlers are called as is on the helper thread and must 
+ * not touch the parser.
+ */
+final class AsynchronousCharacterHandlers implements Runnable, ErrorHandler,
+        Locator {
+
+    private static final int CHUNKS = 8;
+
+    private static final int CHUNK_SIZE = 2048;
+
+    /**
+     * The helper threads. Threads are created on demand, reused by later 
+     * parses and reparses, and die after a minute of idleness.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "htmlparser character handlers");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final class Chunk {
+
+        char[] buf = new char[CHUNK_SIZE];
+
+        int length;
+
+        int line;
+
+        int col;
+
+        /**
+         * Whether this is the last chunk; <code>end</code> tells whether 
+         * the handlers are to be ended.
+         */
+        boolean last;
+
+        boolean end;
+    }
+
+    private final CharacterHandler[] handlers;
+
+    private final Tokenizer tokenizer;
+
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<Chunk>(
+            CHUNKS);
+
+    private final BlockingQueue<Chunk> queue = new LinkedBlockingQueue<Chunk>();
+
+    /**
+     * The warnings and errors reported on the helper thread; guarded by 
+     * itself. Even indices hold the exceptions and odd indices tell whether 
+     * the preceding exception is a warning.
+     */
+    private final List<Object> reported = new ArrayList<Object>();
+
+    /**
+     * The run of this object on a helper thread or <code>null</code> if 
+     * not started.
+     */
+    private Future<?> task = null;
+
+    /**
+     * The error handlers of the <code>NormalizationChecker</code>s before 
+     * they were pointed to this object, by handler index.
+     */
+    private final ErrorHandler[] savedErrorHandlers;
+
+    /**
+     * The locators of the <code>NormalizationChecker</code>s before they 
+     * were pointed to this object, by handler index.
+     */
+    private final Locator[] savedLocators;
+
+    private final String publicId;
+
+    private final String systemId;
+
+    private int line;
+
+    private int col;
+
+    /**
+     * What the helper thread threw or <code>null</code>.
+     */
+    private volatile Throwable failure = null;
+
+    /**
+     * @param handlers
+     *            the character handlers
+     * @param tokenizer
+     *            the tokenizer whose locator and error handler to use
+     */
+    AsynchronousCharacterHandlers(CharacterHandler[] handlers,
+            Tokenizer tokenizer) {
+        this.handlers = handlers;
+        this.tokenizer = tokenizer;
+        this.publicId = tokenizer.getPublicId();
+        this.systemId = tokenizer.getSystemId();
+        for (int i = 0; i < CHUNKS; i++) {
+            free.add(new Chunk());
+        }
+        this.savedErrorHandlers = new ErrorHandler[handlers.length];
+        this.savedLocators = new Locator[handlers.length];
+    }
+
+    /**
+     * Starts the handlers on the calling thread and then runs the helper 
+     * task.
+     * 
+     * @throws SAXException
+     *             if a handler throws
+     */
+    void start() throws SAXException {
+        for (int i = 0; i < handlers.length; i++) {
+            CharacterHandler ch = handlers[i];
+            if (ch instanceof NormalizationChecker) {
+                NormalizationChecker nc = (NormalizationChecker) ch;
+                savedErrorHandlers[i] = nc.getErrorHandler();
+                savedLocators[i] = nc.getLocator();
+                nc.setErrorHandler(this);
+                nc.setLocator(this);
+            }
+            ch.start();
+        }
+        task = EXECUTOR.submit(this);
+    }
+
+    /**
+     * Queues a copy of a buffer for the handlers.
+     * 
+     * @param buf
+     *            the buffer
+     * @param start
+     *            the start index
+     * @param length
+     *            the number of characters
+     * @throws SAXException
+     *             if a handler has thrown or the error handler throws
+     */
+    void characters(char[] buf, int start, int length) throws SAXException {
+        deliverReported();
+        rethrowFailure();
+        Chunk chunk = take();
+        if (chunk.buf.length < length) {
+            chunk.buf = new char[length];
+        }
+        System.arraycopy(buf, start, chunk.buf, 0, length);
+        chunk.length = length;
+        chunk.line = tokenizer.getLineNumber();
+        chunk.col = tokenizer.getColumnNumber();
+        chunk.last = false;
+        queue.add(chunk);
+    }
+
+    /**
+     * Waits for the helper thread to process everything queued so far and 
+     * passes on what the handlers reported. Gives the 
+     * <code>NormalizationChecker</code>s back the locator and error handler 
+     * they had before <code>start()</code>.
+     * 
+     * @param end
+     *            whether the handlers are to be ended
+     * @throws SAXException
+     *             if a handler has thrown or the error handler throws
+     */
+    void finish(boolean end) throws SAXException {
+        try {
+            Chunk chunk = take();
+            chunk.length = 0;
+            chunk.line = tokenizer.getLineNumber();
+            chunk.col = tokenizer.getColumnNumber();
+            chunk.last = true;
+            chunk.end = end;
+            queue.add(chunk);
+            boolean interrupted = false;
+            while (task != null) {
+                try {
+                    task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            for (int i = 0; i < handlers.length; i++) {
+                CharacterHandler ch = handlers[i];
+                if (ch instanceof NormalizationChecker) {
+                    NormalizationChecker nc = (NormalizationChecker) ch;
+                    nc.setErrorHandler(savedErrorHandlers[i]);
+                    nc.setLocator(savedLocators[i]);
+                }
+            }
+        }
+        deliverReported();
+        rethrowFailure();
+    }
+
+    private Chunk take() {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    return free.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void rethrowFailure() throws SAXException {
+        Throwable t = failure;
+        if (t == null) {
+            return;
+        }
+        if (t instanceof SAXException) {
+            throw (SAXException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else {
+            throw new SAXException((Exception) t);
+        }
+    }
+
+    private void deliverReported() throws SAXException {
+        Object[] pending;
+        synchronized (reported) {
+            if (reported.isEmpty()) {
+                return;
+            }
+            pending = reported.toArray();
+            reported.clear();
+        }
+        ErrorHandler eh = tokenizer.getErrorHandler();
+        if (eh == null) {
+            return;
+        }
+        for (int i = 0; i < pending.length; i += 2) {
+            SAXParseException spe = (SAXParseException) pending[i];
+            if (pending[i + 1] == Boolean.TRUE) {
+                eh.warning(spe);
+            } else {
+                eh.error(spe);
+            }
+        }
+    }
+
+    private void report(SAXParseException exception, boolean warning) {
+        synchronized (reported) {
+            reported.add(exception);
+            reported.add(Boolean.valueOf(warning));
+        }
+    }
+
+    /**
+     * The helper thread.
+     * 
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        for (;;) {
+            Chunk chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            line = chunk.line;
+            col = chunk.col;
+            boolean last = chunk.last;
+            try {
+                if (failure == null) {
+                    if (last) {
+                        if (chunk.end) {
+                            for (int i = 0; i < handlers.length; i++) {
+                                handlers[i].end();
+                            }
+                        }
+                    } else {
+                        for (int i = 0; i < handlers.length; i++) {
+                            handlers[i].characters(chunk.buf, 0,
+                                    chunk.length);
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                failure = t;
+            }
+            free.add(chunk);
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ErrorHandler#warning(org.xml.sax.SAXParseException)
+     */
+    public void warning(SAXParseException exception) {
+        report(exception, true);
+    }
+
+    /**
+     * @see org.xml.sax.ErrorHandler#error(org.xml.sax.SAXParseException)
+     */
+    public void error(SAXParseException exception) {
+        report(exception, false);
+    }
+
+    /**
+     * @see org.xml.sax.ErrorHandler#fatalError(org.xml.sax.SAXParseException)
+     */
+    public void fatalError(SAXParseException exception) {
+        report(exception, false);
+    }
+
+    /**
+     * @see org.xml.sax.Locator#getColumnNumber()
+     */
+    public int getColumnNumber() {
+        return col;
+    }
+
+    /**
+     * @see org.xml.sax.Locator#getLineNumber()
+     */
+    public int getLineNumber() {
+        return line;
+    }
+
+    /**
+     * @see org.xml.sax.Locator#getPublicId()
+     */
+    public String getPublicId() {
+        return publicId;
+    }
+
+    /**
+     * @see org.xml.sax.Locator#getSystemId()
+     */
+    public String getSystemId() {
+        return systemId;
+    }
+}
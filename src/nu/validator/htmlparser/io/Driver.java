@@ -23,6 +23,10 @@
 
 package nu.validator.htmlparser.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -31,12 +35,15 @@ import java.nio.charset.UnsupportedCharsetException;
 import nu.validator.htmlparser.common.CharacterHandler;
 import nu.validator.htmlparser.common.EncodingDeclarationHandler;
 import nu.validator.htmlparser.common.Heuristics;
+import nu.validator.htmlparser.common.ParseErrorHandler;
 import nu.validator.htmlparser.common.TransitionHandler;
 import nu.validator.htmlparser.common.XmlViolationPolicy;
 import nu.validator.htmlparser.extra.NormalizationChecker;
 import nu.validator.htmlparser.impl.ErrorReportingTokenizer;
 import nu.validator.htmlparser.impl.Tokenizer;
+import nu.validator.htmlparser.impl.TreeBuilder;
 import nu.validator.htmlparser.impl.UTF16Buffer;
+import nu.validator.htmlparser.rewindable.BlockPool;
 import nu.validator.htmlparser.rewindable.RewindableInputStream;
 
 import org.xml.sax.ErrorHandler;
@@ -65,6 +72,17 @@ public class Driver implements EncodingDeclarationHandler {
 
     private boolean allowRewinding = true;
 
+    /**
+     * The maximum number of bytes kept in memory for rewinding. The rest 
+     * are spilled into a temporary file.
+     */
+    private long rewindMemoryLimit = Long.MAX_VALUE;
+
+    /**
+     * Recycles the rewind buffers across parses.
+     */
+    private final BlockPool blockPool = new BlockPool();
+
     private Heuristics heuristics = Heuristics.NONE;
     
     private final Tokenizer tokenizer;
@@ -77,6 +95,44 @@ public class Driver implements EncodingDeclarationHandler {
      */
     private CharacterHandler[] characterHandlers = new CharacterHandler[0];
 
+    /**
+     * Whether the character handlers run on a helper thread.
+     */
+    private boolean asynchronousCharacterHandlers = false;
+
+    /**
+     * The helper thread of the current pass if the character handlers run 
+     * asynchronously.
+     */
+    private AsynchronousCharacterHandlers asyncHandlers = null;
+
+    /**
+     * Receives checkpoints if non-<code>null</code>.
+     */
+    private CheckpointHandler checkpointHandler = null;
+
+    /**
+     * The UTF-16 offset of the first character read from <code>reader</code>.
+     */
+    private int charOffsetBase;
+
+    /**
+     * Whether the input before the first character read from
+     * <code>reader</code> ended with a CR.
+     */
+    private boolean initialLastWasCR;
+
+    /**
+     * The buffer the input is read into. Kept across parses so that 
+     * parsing many small inputs does not allocate a buffer per input.
+     */
+    private char[] readBuffer;
+
+    /**
+     * The view of <code>readBuffer</code> passed to the tokenizer.
+     */
+    private UTF16Buffer bufr;
+
     public Driver(Tokenizer tokenizer) {
         this.tokenizer = tokenizer;
         tokenizer.setEncodingDeclarationHandler(this);
@@ -101,6 +157,31 @@ public class Driver implements EncodingDeclarationHandler {
         this.allowRewinding = allowRewinding;
     }
 
+    /**
+     * Returns the number of bytes kept in memory for rewinding.
+     * 
+     * @return the rewind memory limit
+     */
+    public long getRewindMemoryLimit() {
+        return rewindMemoryLimit;
+    }
+
+    /**
+     * Sets the number of bytes of the byte stream that are kept in memory 
+     * in case the encoding changes and the stream needs to be reparsed. 
+     * Bytes past the limit are saved in a temporary file until the encoding 
+     * becomes certain. The default is unlimited.
+     * 
+     * @param rewindMemoryLimit
+     *            the limit in bytes
+     */
+    public void setRewindMemoryLimit(long rewindMemoryLimit) {
+        if (rewindMemoryLimit < 0) {
+            throw new IllegalArgumentException("Negative memory limit.");
+        }
+        this.rewindMemoryLimit = rewindMemoryLimit;
+    }
+
     /**
      * Turns NFC checking on or off.
      * 
@@ -114,7 +195,7 @@ public class Driver implements EncodingDeclarationHandler {
             } else {
                 NormalizationChecker normalizationChecker = new NormalizationChecker(tokenizer);
                 normalizationChecker.setErrorHandler(tokenizer.getErrorHandler());
-
+                addCharacterHandler(normalizationChecker);
             }
         } else {
             if (isCheckingNormalization()) {
@@ -146,6 +227,59 @@ public class Driver implements EncodingDeclarationHandler {
         characterHandlers = newHandlers;
     }
 
+    /**
+     * Returns whether the character handlers run on a helper thread.
+     * 
+     * @return <code>true</code> if the character handlers run asynchronously
+     */
+    public boolean isAsynchronousCharacterHandlers() {
+        return asynchronousCharacterHandlers;
+    }
+
+    /**
+     * Makes the character handlers (such as the NFC checker) run on a helper 
+     * thread that receives copies of the character buffers through a bounded 
+     * queue, so that they do not hold up tokenization on multi-core 
+     * machines. Errors reported by the NFC checker are passed on to the 
+     * error handler in order on the parsing thread, at the latest before the 
+     * tokenizer ends. Other handlers are called on the helper thread.
+     * 
+     * <p>Off by default. Copying the buffers and handing them over costs 
+     * more than the NFC check itself saves on a single core, so this only 
+     * pays off when a spare core is available and the handlers are slow.
+     * 
+     * @param asynchronousCharacterHandlers
+     *            <code>true</code> to run the character handlers 
+     *            asynchronously
+     */
+    public void setAsynchronousCharacterHandlers(
+            boolean asynchronousCharacterHandlers) {
+        this.asynchronousCharacterHandlers = asynchronousCharacterHandlers;
+    }
+
+    /**
+     * Sets the receiver of parse checkpoints. Checkpoints are only taken when
+     * parsing from a byte stream after the encoding has become certain and
+     * when the token handler is a <code>TreeBuilder</code> whose
+     * <code>supportsCheckpointing()</code> returns <code>true</code>. With
+     * other tree builders, the handler is never called.
+     * 
+     * @param checkpointHandler
+     *            the handler or <code>null</code> to turn checkpointing off
+     */
+    public void setCheckpointHandler(CheckpointHandler checkpointHandler) {
+        this.checkpointHandler = checkpointHandler;
+    }
+
+    /**
+     * Returns the checkpoint handler.
+     * 
+     * @return the checkpoint handler or <code>null</code>
+     */
+    public CheckpointHandler getCheckpointHandler() {
+        return checkpointHandler;
+    }
+
     /**
      * Query if checking normalization.
      * 
@@ -180,6 +314,8 @@ public class Driver implements EncodingDeclarationHandler {
         confidence = Confidence.TENTATIVE;
         swallowBom = true;
         rewindableInputStream = null;
+        charOffsetBase = 0;
+        initialLastWasCR = false;
         tokenizer.initLocation(is.getPublicId(), is.getSystemId());
         this.reader = is.getCharacterStream();
         this.characterEncoding = encodingFromExternalDeclaration(is.getEncoding());
@@ -191,7 +327,7 @@ public class Driver implements EncodingDeclarationHandler {
             if (this.characterEncoding == null) {
                 if (allowRewinding) {
                     inputStream = rewindableInputStream = new RewindableInputStream(
-                            inputStream);
+                            inputStream, blockPool, rewindMemoryLimit);
                 }
                 this.reader = new HtmlInputStreamReader(inputStream,
                         tokenizer.getErrorHandler(), tokenizer, this, heuristics);
@@ -208,17 +344,90 @@ public class Driver implements EncodingDeclarationHandler {
         } else {
             becomeConfident();
         }
+        run();
+    }
+
+    /**
+     * Continues a parse from a checkpoint. The byte stream of the input
+     * source must start at the byte offset of the checkpoint in the original
+     * byte stream. The start of the document is not reported again.
+     * 
+     * @param checkpoint
+     *            the checkpoint
+     * @param is
+     *            the input source for the rest of the document
+     * @throws SAXException
+     *             on fatal error (if configured to treat XML violations as
+     *             fatal) or if the token handler threw
+     * @throws IOException
+     *             if the stream threw or the checkpoint was corrupt
+     */
+    public void resume(ParseCheckpoint checkpoint, InputSource is)
+            throws SAXException, IOException {
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("Checkpoint was null.");
+        }
+        if (is == null) {
+            throw new IllegalArgumentException("InputSource was null.");
+        }
+        InputStream inputStream = is.getByteStream();
+        if (inputStream == null) {
+            throw new SAXException("Resuming requires a byte stream.");
+        }
+        TreeBuilder<?> treeBuilder = getTreeBuilder();
+        if (treeBuilder == null || !treeBuilder.supportsCheckpointing()) {
+            throw new IllegalStateException(
+                    "Resuming requires a TreeBuilder that supports checkpointing as the token handler.");
+        }
+        treeBuilder.setResuming(true);
+        try {
+            tokenizer.start();
+        } finally {
+            treeBuilder.setResuming(false);
+        }
+        swallowBom = false;
+        rewindableInputStream = null;
+        tokenizer.initLocation(is.getPublicId(), is.getSystemId());
+        tokenizer.readState(new DataInputStream(new ByteArrayInputStream(
+                checkpoint.getTokenizerState())));
+        treeBuilder.readState(new DataInputStream(new ByteArrayInputStream(
+                checkpoint.getTreeBuilderState())));
+        this.characterEncoding = Encoding.forName(checkpoint.getEncoding());
+        becomeConfident();
+        charOffsetBase = checkpoint.getCharOffset();
+        initialLastWasCR = checkpoint.isLastWasCR();
+        this.reader = new HtmlInputStreamReader(inputStream,
+                tokenizer.getErrorHandler(), tokenizer, this,
+                this.characterEncoding, checkpoint.getPendingBytes(),
+                checkpoint.getByteOffset(), checkpoint.getDecodedBytes(),
+                checkpoint.isCharsetBoundaryPassed());
+        run();
+    }
+
+    private void run() throws SAXException, IOException {
         Throwable t = null;
         try {
             for (;;) {
                 try {
-                    for (int i = 0; i < characterHandlers.length; i++) {
-                        CharacterHandler ch = characterHandlers[i];
-                        ch.start();
+                    if (asynchronousCharacterHandlers
+                            && characterHandlers.length > 0) {
+                        asyncHandlers = new AsynchronousCharacterHandlers(
+                                characterHandlers, tokenizer);
+                        asyncHandlers.start();
+                    } else {
+                        for (int i = 0; i < characterHandlers.length; i++) {
+                            CharacterHandler ch = characterHandlers[i];
+                            ch.start();
+                        }
                     }
                     runStates();
                     break;
                 } catch (ReparseException e) {
+                    if (asyncHandlers != null) {
+                        AsynchronousCharacterHandlers done = asyncHandlers;
+                        asyncHandlers = null;
+                        done.finish(false);
+                    }
                     if (rewindableInputStream == null) {
                         tokenizer.fatal("Changing encoding at this point would need non-streamable behavior.");
                     } else {
@@ -234,16 +443,38 @@ public class Driver implements EncodingDeclarationHandler {
         } catch (Throwable tr) {
             t = tr;
         } finally {
+            boolean handlersEnded = false;
+            if (asyncHandlers != null) {
+                // The errors from the helper thread have to come before the
+                // end of the document.
+                AsynchronousCharacterHandlers done = asyncHandlers;
+                asyncHandlers = null;
+                handlersEnded = true;
+                try {
+                    done.finish(true);
+                } catch (Throwable tr) {
+                    if (t == null) {
+                        t = tr;
+                    }
+                }
+            }
             try {
                 tokenizer.end();
                 characterEncoding = null;
-                for (int i = 0; i < characterHandlers.length; i++) {
-                    CharacterHandler ch = characterHandlers[i];
-                    ch.end();
+                if (!handlersEnded) {
+                    for (int i = 0; i < characterHandlers.length; i++) {
+                        CharacterHandler ch = characterHandlers[i];
+                        ch.end();
+                    }
                 }
                 reader.close();
                 reader = null;
-                rewindableInputStream = null;
+                if (rewindableInputStream != null) {
+                    // Returns the blocks to the pool and removes any spill
+                    // file.
+                    rewindableInputStream.willNotRewind();
+                    rewindableInputStream = null;
+                }
             } catch (Throwable tr) {
                 if (t == null) {
                     t = tr;
@@ -271,27 +502,27 @@ public class Driver implements EncodingDeclarationHandler {
     }
 
     private void runStates() throws SAXException, IOException {
-        char[] buffer = new char[2048];
-        UTF16Buffer bufr = new UTF16Buffer(buffer, 0, 0);
-        boolean lastWasCR = false;
+        if (readBuffer == null) {
+            readBuffer = new char[2048];
+            bufr = new UTF16Buffer(readBuffer, 0, 0);
+        }
+        char[] buffer = readBuffer;
+        boolean lastWasCR = initialLastWasCR;
         int len = -1;
         if ((len = reader.read(buffer)) != -1) {
             assert len > 0;
-            int streamOffset = 0;
+            int streamOffset = charOffsetBase;
             int offset = 0;
             int length = len;
             if (swallowBom) {
                 if (buffer[0] == '\uFEFF') {
-                    streamOffset = -1;
+                    streamOffset--;
                     offset = 1;
                     length--;
                 }
             }
             if (length > 0) {
-                for (int i = 0; i < characterHandlers.length; i++) {
-                    CharacterHandler ch = characterHandlers[i];
-                    ch.characters(buffer, offset, length);
-                }
+                characters(buffer, offset, length);
                 tokenizer.setTransitionBaseOffset(streamOffset);
                 bufr.setStart(offset);
                 bufr.setEnd(offset + length);
@@ -303,13 +534,11 @@ public class Driver implements EncodingDeclarationHandler {
                     }
                 }
             }
-            streamOffset = length;
+            streamOffset = charOffsetBase + length;
+            checkpoint(streamOffset, lastWasCR);
             while ((len = reader.read(buffer)) != -1) {
                 assert len > 0;
-                for (int i = 0; i < characterHandlers.length; i++) {
-                    CharacterHandler ch = characterHandlers[i];
-                    ch.characters(buffer, 0, len);
-                }
+                characters(buffer, 0, len);
                 tokenizer.setTransitionBaseOffset(streamOffset);
                 bufr.setStart(0);
                 bufr.setEnd(len);
@@ -321,11 +550,71 @@ public class Driver implements EncodingDeclarationHandler {
                     }
                 }
                 streamOffset += len;
+                checkpoint(streamOffset, lastWasCR);
             }
         }
         tokenizer.eof();
     }
 
+    /**
+     * Passes a buffer to the character handlers.
+     */
+    private void characters(char[] buffer, int start, int length)
+            throws SAXException {
+        if (asyncHandlers != null) {
+            asyncHandlers.characters(buffer, start, length);
+            return;
+        }
+        for (int i = 0; i < characterHandlers.length; i++) {
+            CharacterHandler ch = characterHandlers[i];
+            ch.characters(buffer, start, length);
+        }
+    }
+
+    private TreeBuilder<?> getTreeBuilder() {
+        if (tokenizer.getTokenHandler() instanceof TreeBuilder<?>) {
+            return (TreeBuilder<?>) tokenizer.getTokenHandler();
+        }
+        return null;
+    }
+
+    /**
+     * Reports a checkpoint if one was asked for and the current state can be
+     * captured.
+     * 
+     * @param charOffset
+     *            the UTF-16 offset of the end of the input processed so far
+     * @param lastWasCR
+     *            whether the input processed so far ended with a CR
+     */
+    private void checkpoint(int charOffset, boolean lastWasCR)
+            throws SAXException, IOException {
+        if (checkpointHandler == null || confidence != Confidence.CERTAIN
+                || !(reader instanceof HtmlInputStreamReader)) {
+            return;
+        }
+        HtmlInputStreamReader htmlReader = (HtmlInputStreamReader) reader;
+        TreeBuilder<?> treeBuilder = getTreeBuilder();
+        if (treeBuilder == null || !treeBuilder.supportsCheckpointing()
+                || !htmlReader.isCheckpointable()) {
+            return;
+        }
+        ByteArrayOutputStream tokenizerState = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(tokenizerState);
+        tokenizer.writeState(out);
+        out.flush();
+        ByteArrayOutputStream treeBuilderState = new ByteArrayOutputStream();
+        out = new DataOutputStream(treeBuilderState);
+        treeBuilder.writeState(out);
+        out.flush();
+        checkpointHandler.checkpoint(new ParseCheckpoint(
+                htmlReader.getStreamOffset(),
+                characterEncoding.getCanonName(),
+                htmlReader.getPendingBytes(), htmlReader.getBytesRead(),
+                htmlReader.isCharsetBoundaryPassed(), charOffset, lastWasCR,
+                tokenizerState.toByteArray(), treeBuilderState.toByteArray()));
+    }
+
     public void setEncoding(Encoding encoding, Confidence confidence) {
         this.characterEncoding = encoding;
         if (confidence == Confidence.CERTAIN) {
@@ -375,6 +664,18 @@ public class Driver implements EncodingDeclarationHandler {
             } else {
                 Encoding newEnc = whineAboutEncodingAndReturnActual(
                         internalCharset, cs);
+                if (reader instanceof HtmlInputStreamReader
+                        && ((HtmlInputStreamReader) reader).switchEncodingIfAsciiSoFar(
+                                characterEncoding, newEnc)) {
+                    // Everything so far decodes the same, so there is no
+                    // need to start over.
+                    tokenizer.errTreeBuilder("Changing character encoding \u201C"
+                            + internalCharset
+                            + "\u201D. The document was ASCII-only so far, so not reparsing.");
+                    characterEncoding = newEnc;
+                    becomeConfident();
+                    return true;
+                }
                 tokenizer.errTreeBuilder("Changing character encoding \u201C"
                         + internalCharset + "\u201D and reparsing.");
                 characterEncoding = newEnc;
@@ -554,6 +855,23 @@ public class Driver implements EncodingDeclarationHandler {
         }
     }
 
+    /**
+     * Sets the handler for structured parse errors. Requires an
+     * <code>ErrorReportingTokenizer</code>.
+     * 
+     * @param parseErrorHandler
+     *            the handler or <code>null</code>
+     * @see nu.validator.htmlparser.impl.ErrorReportingTokenizer#setParseErrorHandler(nu.validator.htmlparser.common.ParseErrorHandler)
+     */
+    public void setParseErrorHandler(ParseErrorHandler parseErrorHandler) {
+        if (tokenizer instanceof ErrorReportingTokenizer) {
+            ErrorReportingTokenizer ert = (ErrorReportingTokenizer) tokenizer;
+            ert.setParseErrorHandler(parseErrorHandler);
+        } else if (parseErrorHandler != null) {
+            throw new IllegalStateException("Attempt to set a parse error handler on a plain tokenizer.");
+        }
+    }
+
     /**
      * @param html4ModeCompatibleWithXhtml1Schemata
      * @see nu.validator.htmlparser.impl.Tokenizer#setHtml4ModeCompatibleWithXhtml1Schemata(boolean)
@@ -27,6 +27,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
@@ -87,6 +89,11 @@ public class Encoding {
 
     private final boolean likelyEbcdic;
 
+    /**
+     * 0 if not computed yet, 1 if ASCII bytes decode as themselves, 2 if not.
+     */
+    private int asciiIdentical = 0;
+
     private Encoding actualHtmlEncoding = null;
 
     static {
@@ -307,6 +314,50 @@ public class Encoding {
         return asciiSuperset;
     }
 
+    /**
+     * Tells whether every byte in the range 0x00 to 0x7F decodes to the
+     * Basic Latin character with the same value, so that a byte stream 
+     * consisting of such bytes decodes the same in any two encodings for 
+     * which this holds. Stricter than <code>isAsciiSuperset()</code>.
+     * 
+     * @return <code>true</code> if ASCII bytes decode as themselves
+     */
+    boolean isAsciiIdentical() {
+        // Racy but idempotent
+        if (asciiIdentical == 0) {
+            asciiIdentical = computeAsciiIdentical() ? 1 : 2;
+        }
+        return asciiIdentical == 1;
+    }
+
+    private boolean computeAsciiIdentical() {
+        byte[] bytes = new byte[0x80];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        char[] chars = new char[0x80 + 1];
+        CharsetDecoder dec = newDecoder();
+        dec.onMalformedInput(CodingErrorAction.REPORT);
+        dec.onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            CharBuffer out = CharBuffer.wrap(chars);
+            if (dec.decode(ByteBuffer.wrap(bytes), out, true).isError()
+                    || dec.flush(out).isError() || out.position() != 0x80) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        } catch (CoderMalfunctionError e) {
+            return false;
+        }
+        for (int i = 0; i < 0x80; i++) {
+            if (chars[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Returns the canonName.
      * 
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import nu.validator.htmlparser.common.ByteReadable;
+import nu.validator.htmlparser.common.Heuristics;
+import nu.validator.htmlparser.extra.ChardetSniffer;
+import nu.validator.htmlparser.extra.IcuDetectorSniffer;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Determines the character encoding of an HTML byte stream the way 
+ * <code>HtmlInputStreamReader</code> does (BOM, then the meta prescan, then 
+ * the optional heuristics, then windows-1252) without setting up a 
+ * tokenizer or a decoder. Only the first 1024 bytes are examined.
+ * 
+ * <p>Instances are immutable and may be shared across threads.
+ */
+public final class EncodingDetector {
+
+    /**
+     * The number of bytes that are examined at most.
+     */
+    public static final int SNIFFING_LIMIT = 1024;
+
+    /**
+     * The outcome of a detection.
+     */
+    public static final class Result {
+
+        private final Encoding encoding;
+
+        private final Confidence confidence;
+
+        private final boolean declared;
+
+        Result(Encoding encoding, Confidence confidence, boolean declared) {
+            this.encoding = encoding;
+            this.confidence = confidence;
+            this.declared = declared;
+        }
+
+        /**
+         * Returns the encoding.
+         * 
+         * @return the encoding
+         */
+        public Encoding getEncoding() {
+            return encoding;
+        }
+
+        /**
+         * Returns the confidence. A BOM makes the encoding certain; anything 
+         * else leaves it tentative, as a later meta may still change it.
+         * 
+         * @return the confidence
+         */
+        public Confidence getConfidence() {
+            return confidence;
+        }
+
+        /**
+         * Tells whether the encoding came from a BOM or a meta element as 
+         * opposed to heuristics or the default.
+         * 
+         * @return <code>true</code> if the encoding was declared
+         */
+        public boolean isDeclared() {
+            return declared;
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override public String toString() {
+            return encoding.getCanonName() + " (" + confidence + ")";
+        }
+    }
+
+    private final Heuristics heuristics;
+
+    /**
+     * Instantiates a detector that does no heuristic sniffing.
+     */
+    public EncodingDetector() {
+        this(Heuristics.NONE);
+    }
+
+    /**
+     * Instantiates a detector that uses the given heuristics when there is 
+     * no BOM and no meta.
+     * 
+     * @param heuristics
+     *            the heuristics
+     */
+    public EncodingDetector(Heuristics heuristics) {
+        if (heuristics == null) {
+            throw new IllegalArgumentException("Null heuristics.");
+        }
+        this.heuristics = heuristics;
+    }
+
+    /**
+     * Returns the heuristics.
+     * 
+     * @return the heuristics
+     */
+    public Heuristics getHeuristics() {
+        return heuristics;
+    }
+
+    /**
+     * Detects the encoding of a document that starts with the given bytes.
+     * 
+     * @param buf
+     *            the start of the document
+     * @return the result
+     */
+    public Result detect(byte[] buf) {
+        return detect(buf, 0, buf.length);
+    }
+
+    /**
+     * Detects the encoding of a document that starts with 
+     * <code>buf[offset]</code>. If <code>length</code> is less than 1024, 
+     * the document is taken to end after <code>length</code> bytes.
+     * 
+     * @param buf
+     *            the buffer
+     * @param offset
+     *            the offset of the start of the document
+     * @param length
+     *            the number of bytes available
+     * @return the result
+     */
+    public Result detect(byte[] buf, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > buf.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length > SNIFFING_LIMIT) {
+            length = SNIFFING_LIMIT;
+        }
+        try {
+            ArrayByteReadable readable = new ArrayByteReadable(buf, offset,
+                    length);
+            Encoding encoding = (new BomSniffer(readable)).sniff();
+            if (encoding != null) {
+                return new Result(encoding, Confidence.CERTAIN, true);
+            }
+            encoding = (new MetaSniffer(null, null)).sniff(null, buf, offset,
+                    length);
+            if (encoding != null) {
+                return new Result(encoding, Confidence.TENTATIVE, true);
+            }
+            if (heuristics == Heuristics.CHARDET
+                    || heuristics == Heuristics.ALL) {
+                byte[] source = buf;
+                if (offset != 0) {
+                    source = new byte[length];
+                    System.arraycopy(buf, offset, source, 0, length);
+                }
+                encoding = (new ChardetSniffer(source, length)).sniff();
+            }
+            if (encoding == null
+                    && (heuristics == Heuristics.ICU || heuristics == Heuristics.ALL)) {
+                readable.position = offset;
+                encoding = (new IcuDetectorSniffer(readable)).sniff();
+            }
+            if (encoding == null) {
+                encoding = Encoding.WINDOWS1252;
+            }
+            return new Result(encoding, Confidence.TENTATIVE, false);
+        } catch (IOException e) {
+            // Reading from an array does not fail.
+            throw new RuntimeException(e);
+        } catch (SAXException e) {
+            // There is no error handler to throw.
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Detects the encoding of a document that starts at the position of the 
+     * buffer and ends at its limit or earlier. The position of the buffer 
+     * is not changed.
+     * 
+     * @param buf
+     *            the buffer
+     * @return the result
+     */
+    public Result detect(ByteBuffer buf) {
+        int length = Math.min(buf.remaining(), SNIFFING_LIMIT);
+        if (buf.hasArray()) {
+            return detect(buf.array(), buf.arrayOffset() + buf.position(),
+                    length);
+        }
+        byte[] copy = new byte[length];
+        buf.duplicate().get(copy);
+        return detect(copy, 0, length);
+    }
+
+    private static final class ArrayByteReadable implements ByteReadable {
+
+        private final byte[] buf;
+
+        private final int end;
+
+        int position;
+
+        ArrayByteReadable(byte[] buf, int offset, int length) {
+            this.buf = buf;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        public int readByte() {
+            if (position < end) {
+                return buf[position++] & 0xFF;
+            }
+            return -1;
+        }
+    }
+}
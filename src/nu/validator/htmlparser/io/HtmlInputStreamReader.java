@@ -80,6 +80,8 @@ public final class HtmlInputStreamReader extends Reader implements
 
     private int bytesRead = 0;
 
+    private long streamOffset = 0;
+
     private boolean eofSeen = false;
 
     private boolean shouldReadBytes = false;
@@ -108,6 +110,17 @@ public final class HtmlInputStreamReader extends Reader implements
 
     private boolean prevWasCR;
 
+    /**
+     * Whether to keep track of <code>asciiSoFar</code>. Only needed while
+     * the encoding is tentative.
+     */
+    private boolean trackingAscii = false;
+
+    /**
+     * Whether all the bytes consumed by the decoder so far have been ASCII.
+     */
+    private boolean asciiSoFar = true;
+
     /**
      * @param inputStream
      * @param errorHandler
@@ -125,8 +138,11 @@ public final class HtmlInputStreamReader extends Reader implements
         this.sniffing = true;
         Encoding encoding = (new BomSniffer(this)).sniff();
         if (encoding == null) {
-            position = 0;
-            encoding = (new MetaSniffer(errorHandler, this)).sniff(this);
+            // Scan the bytes the BOM sniffer already buffered straight 
+            // from the array; only bytes beyond them go through readByte().
+            position = limit;
+            encoding = (new MetaSniffer(errorHandler, this)).sniff(this,
+                    byteArray, 0, limit);
             boolean declared = true;
             if (encoding == null) {
                 declared = false;
@@ -154,6 +170,7 @@ public final class HtmlInputStreamReader extends Reader implements
             if (driver != null) {
                 driver.setEncoding(encoding, Confidence.TENTATIVE);
             }
+            trackingAscii = true;
         } else {
             if (encoding == Encoding.UTF8) {
                 if (driver != null) {
@@ -202,6 +219,63 @@ public final class HtmlInputStreamReader extends Reader implements
         initDecoder();
     }
 
+    /**
+     * Continues decoding from a checkpoint. The stream must start at
+     * <code>streamOffset</code> of the original byte stream.
+     */
+    HtmlInputStreamReader(InputStream inputStream, ErrorHandler errorHandler,
+            Tokenizer tokenizer, Driver driver, Encoding encoding,
+            byte[] pendingBytes, long streamOffset, int bytesRead,
+            boolean charsetBoundaryPassed) throws SAXException, IOException {
+        this(inputStream, errorHandler, tokenizer, driver, encoding);
+        System.arraycopy(pendingBytes, 0, byteArray, 0, pendingBytes.length);
+        byteBuffer.limit(pendingBytes.length);
+        this.streamOffset = streamOffset;
+        this.bytesRead = bytesRead;
+        this.charsetBoundaryPassed = charsetBoundaryPassed;
+    }
+
+    /**
+     * Tells whether the decoding state between two <code>read()</code> calls
+     * can be captured by <code>getPendingBytes()</code> and friends.
+     * 
+     * @return <code>true</code> if a checkpoint can be taken now
+     */
+    boolean isCheckpointable() {
+        return !sniffing && !flushing && !eofSeen
+                && !hasPendingReplacementCharacter && !needToNotifyTokenizer;
+    }
+
+    /**
+     * Returns the number of bytes read from the underlying stream so far.
+     * 
+     * @return the stream offset
+     */
+    long getStreamOffset() {
+        return streamOffset;
+    }
+
+    /**
+     * Returns the bytes that have been read from the stream but not yet
+     * decoded.
+     * 
+     * @return a copy of the undecoded bytes
+     */
+    byte[] getPendingBytes() {
+        byte[] pending = new byte[byteBuffer.remaining()];
+        System.arraycopy(byteArray, byteBuffer.position(), pending, 0,
+                pending.length);
+        return pending;
+    }
+
+    int getBytesRead() {
+        return bytesRead;
+    }
+
+    boolean isCharsetBoundaryPassed() {
+        return charsetBoundaryPassed;
+    }
+
     @Override public void close() throws IOException {
         inputStream.close();
     }
@@ -243,6 +317,7 @@ public final class HtmlInputStreamReader extends Reader implements
                     eofSeen = true;
                     inputStream.close();
                 } else {
+                    streamOffset += num;
                     byteBuffer.position(0);
                     byteBuffer.limit(oldLimit + num);
                 }
@@ -251,9 +326,21 @@ public final class HtmlInputStreamReader extends Reader implements
             boolean finalDecode = false;
             for (;;) {
                 int oldBytePos = byteBuffer.position();
+                int byteLimit = byteBuffer.limit();
+                if (trackingAscii && !eofSeen) {
+                    // Stop before the first non-ASCII byte so that the
+                    // tokenizer has seen everything decoded before it gets
+                    // decoded. Then a late meta before that byte can still
+                    // switch the encoding without a reparse.
+                    byteBuffer.limit(asciiPrefixEnd(oldBytePos, byteLimit));
+                }
                 CoderResult cr = decoder.decode(byteBuffer, charBuffer,
                         finalDecode);
+                byteBuffer.limit(byteLimit);
                 bytesRead += byteBuffer.position() - oldBytePos;
+                if (trackingAscii) {
+                    trackAscii(oldBytePos, byteBuffer.position());
+                }
                 if (cr == CoderResult.OVERFLOW) {
                     // Decoder will remember surrogates
                     return charBuffer.position();
@@ -306,6 +393,8 @@ public final class HtmlInputStreamReader extends Reader implements
                     }
                 } else {
                     // The result is in error. No need to test.
+                    asciiSoFar = false;
+                    trackingAscii = false;
                     StringBuilder sb = new StringBuilder();
                     for (int i = 0; i < cr.length(); i++) {
                         if (i > 0) {
@@ -342,6 +431,56 @@ public final class HtmlInputStreamReader extends Reader implements
         }
     }
 
+    /**
+     * Returns the index of the first non-ASCII byte in the given range of the
+     * byte array, or <code>to</code> if there is none, unless the first byte
+     * is non-ASCII, in which case <code>to</code> is returned so that the
+     * decoder can make progress.
+     */
+    private int asciiPrefixEnd(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (byteArray[i] < 0) {
+                return i == from ? to : i;
+            }
+        }
+        return to;
+    }
+
+    private void trackAscii(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (byteArray[i] < 0) {
+                asciiSoFar = false;
+                trackingAscii = false;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Switches to decoding the rest of the stream as <code>encoding</code>
+     * if that gives the same characters as a reparse would. That is the case
+     * when the decoder has consumed only ASCII bytes so far and both the
+     * current encoding and <code>encoding</code> decode ASCII bytes as
+     * themselves.
+     * 
+     * @param current
+     *            the encoding the stream has been decoded as so far
+     * @param encoding
+     *            the new encoding
+     * @return <code>true</code> if the decoder was switched
+     */
+    boolean switchEncodingIfAsciiSoFar(Encoding current, Encoding encoding) {
+        if (!trackingAscii || !asciiSoFar || flushing
+                || !current.isAsciiIdentical()
+                || !encoding.isAsciiIdentical()) {
+            return false;
+        }
+        decoder = encoding.newDecoder();
+        initDecoder();
+        trackingAscii = false;
+        return true;
+    }
+
     private void calculateLineAndCol(CharBuffer charBuffer) {
         if (tokenizer != null) {
             if (lineColPos == 0) {
@@ -397,6 +536,7 @@ public final class HtmlInputStreamReader extends Reader implements
             if (num == -1) {
                 return -1;
             } else {
+                streamOffset += num;
                 limit += num;
                 return byteArray[position++] & 0xFF;
             }
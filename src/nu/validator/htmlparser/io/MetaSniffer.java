@@ -47,6 +47,15 @@ public class MetaSniffer extends MetaScanner implements Locator {
     
     private boolean prevWasCR = false;
 
+    /**
+     * Bytes to scan before asking the <code>ByteReadable</code> for more.
+     */
+    private byte[] window = null;
+
+    private int windowPos = 0;
+
+    private int windowLimit = 0;
+
     public MetaSniffer(ErrorHandler eh, Locator locator) {
         this.errorHandler = eh;
         this.locator = locator;
@@ -59,7 +68,14 @@ public class MetaSniffer extends MetaScanner implements Locator {
      * @throws IOException
      */
     protected int read() throws IOException {
-        int b = readable.readByte();
+        int b;
+        if (windowPos < windowLimit) {
+            b = window[windowPos++] & 0xFF;
+        } else if (readable == null) {
+            return -1;
+        } else {
+            b = readable.readByte();
+        }
         // [NOCPP[
         switch (b) {
             case '\n':
@@ -93,10 +109,78 @@ public class MetaSniffer extends MetaScanner implements Locator {
      * @throws
      */
     public Encoding sniff(ByteReadable readable) throws SAXException, IOException {
+        return sniff(readable, null, 0, 0);
+    }
+
+    /**
+     * Scans the bytes <code>buf[offset]</code> to 
+     * <code>buf[offset + length - 1]</code> and, if they do not settle the 
+     * encoding, continues with the bytes from <code>readable</code>.
+     * 
+     * @param readable
+     *            the rest of the data or <code>null</code> if the array is 
+     *            all there is
+     * @param buf
+     *            the bytes already at hand
+     * @param offset
+     *            the start offset in <code>buf</code>
+     * @param length
+     *            the number of bytes to scan in <code>buf</code>
+     * @return the declared encoding or <code>null</code>
+     * @throws SAXException
+     * @throws IOException
+     */
+    public Encoding sniff(ByteReadable readable, byte[] buf, int offset,
+            int length) throws SAXException, IOException {
         this.readable = readable;
-        stateLoop(stateSave);
+        this.window = buf;
+        this.windowPos = offset;
+        this.windowLimit = offset + length;
+        try {
+            stateLoop(stateSave);
+        } finally {
+            this.window = null;
+            this.windowPos = 0;
+            this.windowLimit = 0;
+        }
         return characterEncoding;
     }
+
+    /**
+     * @see nu.validator.htmlparser.impl.MetaScanner#skipData()
+     */
+    @Override protected void skipData() throws IOException {
+        byte[] buf = window;
+        int pos = windowPos;
+        int end = windowLimit;
+        int start = pos;
+        int lastLineEnd = -1;
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == '<') {
+                break;
+            } else if (b == '\n') {
+                if (!(pos == start ? prevWasCR : buf[pos - 1] == '\r')) {
+                    line++;
+                }
+                lastLineEnd = pos;
+            } else if (b == '\r') {
+                line++;
+                lastLineEnd = pos;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            return;
+        }
+        if (lastLineEnd == -1) {
+            col += pos - start;
+        } else {
+            col = pos - lastLineEnd - 1;
+        }
+        prevWasCR = buf[pos - 1] == '\r';
+        windowPos = pos;
+    }
     
 
     /**
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.io;
+
+import java.io.Serializable;
+
+/**
+ * The state of a parse between two buffers of input, sufficient for
+ * continuing the parse from the byte offset returned by
+ * <code>getByteOffset()</code> in another parser instance, possibly in
+ * another process.
+ */
+public final class ParseCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long byteOffset;
+
+    private final String encoding;
+
+    private final byte[] pendingBytes;
+
+    private final int decodedBytes;
+
+    private final boolean charsetBoundaryPassed;
+
+    private final int charOffset;
+
+    private final boolean lastWasCR;
+
+    private final byte[] tokenizerState;
+
+    private final byte[] treeBuilderState;
+
+    ParseCheckpoint(long byteOffset, String encoding, byte[] pendingBytes,
+            int decodedBytes, boolean charsetBoundaryPassed, int charOffset,
+            boolean lastWasCR, byte[] tokenizerState, byte[] treeBuilderState) {
+        this.byteOffset = byteOffset;
+        this.encoding = encoding;
+        this.pendingBytes = pendingBytes;
+        this.decodedBytes = decodedBytes;
+        this.charsetBoundaryPassed = charsetBoundaryPassed;
+        this.charOffset = charOffset;
+        this.lastWasCR = lastWasCR;
+        this.tokenizerState = tokenizerState;
+        this.treeBuilderState = treeBuilderState;
+    }
+
+    /**
+     * Returns the offset in the original byte stream at which the byte
+     * stream passed to the resuming parser has to start.
+     * 
+     * @return the byte offset
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * Returns the canonical name of the character encoding in use.
+     * 
+     * @return the encoding name
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns the offset in UTF-16 code units of the end of the input
+     * processed before this checkpoint.
+     * 
+     * @return the character offset
+     */
+    public int getCharOffset() {
+        return charOffset;
+    }
+
+    byte[] getPendingBytes() {
+        return pendingBytes;
+    }
+
+    int getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    boolean isCharsetBoundaryPassed() {
+        return charsetBoundaryPassed;
+    }
+
+    boolean isLastWasCR() {
+        return lastWasCR;
+    }
+
+    byte[] getTokenizerState() {
+        return tokenizerState;
+    }
+
+    byte[] getTreeBuilderState() {
+        return treeBuilderState;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.rewindable;
+
+/**
+ * A free list of the fixed-size buffer blocks used by 
+ * <code>RewindableInputStream</code>, so that consecutive parses with the 
+ * same driver do not allocate their rewind buffers from scratch. Not 
+ * thread-safe.
+ */
+public final class BlockPool {
+
+    /**
+     * The size of a pooled block in bytes.
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    private final byte[][] free;
+
+    private int count = 0;
+
+    /**
+     * Instantiates a pool that retains at most <code>capacity</code> free 
+     * blocks.
+     * 
+     * @param capacity
+     *            the maximum number of retained blocks
+     */
+    public BlockPool(int capacity) {
+        free = new byte[capacity][];
+    }
+
+    /**
+     * Instantiates a pool that retains up to 64 free blocks.
+     */
+    public BlockPool() {
+        this(64);
+    }
+
+    byte[] take() {
+        if (count == 0) {
+            return new byte[BLOCK_SIZE];
+        }
+        byte[] buf = free[--count];
+        free[count] = null;
+        return buf;
+    }
+
+    void give(byte[] buf) {
+        if (count < free.length) {
+            free[count++] = buf;
+        }
+    }
+}
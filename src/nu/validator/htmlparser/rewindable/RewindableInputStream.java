@@ -33,8 +33,10 @@
 
 package nu.validator.htmlparser.rewindable;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 
 public class RewindableInputStream extends InputStream implements Rewindable {
     static class Block {
@@ -44,14 +46,12 @@ public class RewindableInputStream extends InputStream implements Rewindable {
 
         int used = 0;
 
-        static final int MIN_SIZE = 1024;
-
-        Block(int minSize) {
-            buf = new byte[Math.max(MIN_SIZE, minSize)];
+        Block(byte[] buf) {
+            this.buf = buf;
         }
 
-        Block() {
-            this(0);
+        int free() {
+            return buf.length - used;
         }
 
         void append(byte b) {
@@ -92,23 +92,78 @@ public class RewindableInputStream extends InputStream implements Rewindable {
      */
     private boolean eof;
 
+    /**
+     * The pool blocks are taken from and returned to; null to allocate
+     */
+    private final BlockPool pool;
+
+    /**
+     * The maximum number of saved bytes to keep in memory
+     */
+    private final long memoryLimit;
+
+    /**
+     * The number of saved bytes kept in memory
+     */
+    private long inMemory;
+
+    /**
+     * The temporary file holding the saved bytes that did not fit in the 
+     * memory limit; null if the limit has not been reached
+     */
+    private File spillFile;
+
+    private RandomAccessFile spill;
+
+    private long spillLength;
+
+    /**
+     * If spillPos < spillLength, then the bytes starting at spillPos in the
+     * spill file are to be returned after the blocks.
+     */
+    private long spillPos;
+
     public RewindableInputStream(InputStream in) {
+        this(in, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Instantiates a stream that saves at most <code>memoryLimit</code> 
+     * bytes in memory and spills the rest of the bytes it needs to keep 
+     * for rewinding into a temporary file.
+     * 
+     * @param in
+     *            the underlying stream
+     * @param pool
+     *            the block pool or <code>null</code>
+     * @param memoryLimit
+     *            the maximum number of bytes to save in memory
+     */
+    public RewindableInputStream(InputStream in, BlockPool pool,
+            long memoryLimit) {
         if (in == null)
             throw new NullPointerException();
+        if (memoryLimit < 0)
+            throw new IllegalArgumentException("Negative memory limit.");
         this.in = in;
+        this.pool = pool;
+        this.memoryLimit = memoryLimit;
     }
 
     public void close() throws IOException {
         if (saving) {
             curBlockAvail = 0;
             curBlock = null;
+            spillPos = spillLength;
             pretendClosed = true;
         } else {
+            releaseFrom(curBlock);
             head = null;
             curBlock = null;
             lastBlock = null;
             saving = false;
             curBlockAvail = 0;
+            deleteSpill();
             in.close();
         }
     }
@@ -117,6 +172,8 @@ public class RewindableInputStream extends InputStream implements Rewindable {
         if (!saving)
             throw new IllegalStateException("rewind() after willNotRewind()");
         pretendClosed = false;
+        if (spill != null)
+            spillPos = 0;
         if (head == null)
             return;
         curBlock = head;
@@ -130,8 +187,17 @@ public class RewindableInputStream extends InputStream implements Rewindable {
 
     public void willNotRewind() {
         saving = false;
+        // Blocks before the one being replayed will not be read again.
+        for (Block b = head; b != null && b != curBlock;) {
+            Block next = b.next;
+            release(b);
+            b = next;
+        }
         head = null;
         lastBlock = null;
+        inMemory = 0;
+        if (spillPos == spillLength)
+            deleteSpill();
         if (pretendClosed) {
             pretendClosed = false;
             try {
@@ -145,50 +211,68 @@ public class RewindableInputStream extends InputStream implements Rewindable {
         if (curBlockAvail > 0) {
             int c = curBlock.buf[curBlockPos++] & 0xFF;
             --curBlockAvail;
-            if (curBlockAvail == 0) {
-                curBlock = curBlock.next;
-                if (curBlock != null) {
-                    curBlockPos = 0;
-                    curBlockAvail = curBlock.used;
-                }
-            }
+            if (curBlockAvail == 0)
+                nextBlock();
+            return c;
+        }
+        if (spillPos < spillLength) {
+            spill.seek(spillPos++);
+            int c = spill.read();
+            if (spillPos == spillLength && !saving)
+                deleteSpill();
             return c;
         }
         int c = in.read();
         if (saving && c != -1) {
-            if (lastBlock == null)
-                lastBlock = head = new Block();
-            else if (lastBlock.used == lastBlock.buf.length)
-                lastBlock = lastBlock.next = new Block();
-            lastBlock.append((byte) c);
+            if (spill == null && inMemory == memoryLimit)
+                openSpill();
+            if (spill != null) {
+                spill.seek(spillLength);
+                spill.write(c);
+                spillPos = ++spillLength;
+            } else {
+                if (lastBlock == null)
+                    lastBlock = head = newBlock();
+                else if (lastBlock.free() == 0)
+                    lastBlock = lastBlock.next = newBlock();
+                lastBlock.append((byte) c);
+                inMemory++;
+            }
         }
         return c;
     }
 
     public int read(byte b[], int off, int len) throws IOException {
-        if (curBlockAvail == 0 && !saving)
+        if (curBlockAvail == 0 && spillPos == spillLength && !saving)
             return in.read(b, off, len);
         if (b == null)
             throw new NullPointerException();
         if (len < 0)
             throw new IndexOutOfBoundsException();
         int nRead = 0;
-        if (curBlockAvail != 0) {
-            for (;;) {
-                if (len == 0)
-                    return nRead;
-                b[off++] = curBlock.buf[curBlockPos++];
-                --len;
-                nRead++;
-                --curBlockAvail;
-                if (curBlockAvail == 0) {
-                    curBlock = curBlock.next;
-                    if (curBlock == null)
-                        break;
-                    curBlockAvail = curBlock.used;
-                    curBlockPos = 0;
-                }
-            }
+        while (curBlockAvail != 0) {
+            if (len == 0)
+                return nRead;
+            int n = Math.min(len, curBlockAvail);
+            System.arraycopy(curBlock.buf, curBlockPos, b, off, n);
+            curBlockPos += n;
+            curBlockAvail -= n;
+            off += n;
+            len -= n;
+            nRead += n;
+            if (curBlockAvail == 0)
+                nextBlock();
+        }
+        if (len != 0 && spillPos < spillLength) {
+            int n = (int) Math.min(len, spillLength - spillPos);
+            spill.seek(spillPos);
+            spill.readFully(b, off, n);
+            spillPos += n;
+            off += n;
+            len -= n;
+            nRead += n;
+            if (spillPos == spillLength && !saving)
+                deleteSpill();
         }
         if (len == 0)
             return nRead;
@@ -201,20 +285,8 @@ public class RewindableInputStream extends InputStream implements Rewindable {
                 return nRead > 0 ? nRead : -1;
             }
             nRead += n;
-            if (saving) {
-                if (lastBlock == null)
-                    lastBlock = head = new Block(n);
-                else if (lastBlock.buf.length - lastBlock.used < n) {
-                    if (lastBlock.used != lastBlock.buf.length) {
-                        int free = lastBlock.buf.length - lastBlock.used;
-                        lastBlock.append(b, off, free);
-                        off += free;
-                        n -= free;
-                    }
-                    lastBlock = lastBlock.next = new Block(n);
-                }
-                lastBlock.append(b, off, n);
-            }
+            if (saving)
+                save(b, off, n);
         } catch (IOException e) {
             eof = true;
             if (nRead == 0)
@@ -224,12 +296,85 @@ public class RewindableInputStream extends InputStream implements Rewindable {
     }
 
     public int available() throws IOException {
-        if (curBlockAvail == 0)
-            return in.available();
-        int n = curBlockAvail;
-        for (Block b = curBlock.next; b != null; b = b.next)
-            n += b.used;
-        return n + in.available();
+        long n = spillLength - spillPos;
+        if (curBlockAvail != 0) {
+            n += curBlockAvail;
+            for (Block b = curBlock.next; b != null; b = b.next)
+                n += b.used;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, n + in.available());
+    }
+
+    private void save(byte[] b, int off, int len) throws IOException {
+        if (spill == null && len > memoryLimit - inMemory)
+            openSpill();
+        if (spill != null) {
+            spill.seek(spillLength);
+            spill.write(b, off, len);
+            spillLength += len;
+            spillPos = spillLength;
+            return;
+        }
+        inMemory += len;
+        while (len > 0) {
+            if (lastBlock == null)
+                lastBlock = head = newBlock();
+            else if (lastBlock.free() == 0)
+                lastBlock = lastBlock.next = newBlock();
+            int n = Math.min(len, lastBlock.free());
+            lastBlock.append(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void nextBlock() {
+        Block done = curBlock;
+        curBlock = curBlock.next;
+        if (!saving)
+            release(done);
+        if (curBlock != null) {
+            curBlockPos = 0;
+            curBlockAvail = curBlock.used;
+        }
+    }
+
+    private Block newBlock() {
+        return new Block(pool == null ? new byte[BlockPool.BLOCK_SIZE]
+                : pool.take());
+    }
+
+    private void release(Block b) {
+        b.next = null;
+        if (pool != null)
+            pool.give(b.buf);
+    }
+
+    private void releaseFrom(Block b) {
+        while (b != null) {
+            Block next = b.next;
+            release(b);
+            b = next;
+        }
+    }
+
+    private void openSpill() throws IOException {
+        spillFile = File.createTempFile("htmlparser", ".rewind");
+        spill = new RandomAccessFile(spillFile, "rw");
+    }
+
+    private void deleteSpill() {
+        if (spill == null)
+            return;
+        try {
+            spill.close();
+        } catch (IOException e) {
+        }
+        spillFile.delete();
+        spill = null;
+        spillFile = null;
+        spillLength = 0;
+        spillPos = 0;
     }
 
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.sax;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import nu.validator.htmlparser.impl.AttributeName;
+import nu.validator.htmlparser.impl.ElementName;
+
+/**
+ * The constants and the predefined string table of the binary tree format 
+ * written by <code>BinaryTreeWriter</code> and read by 
+ * <code>BinaryTreeReader</code>.
+ * 
+ * <p>A stream starts with the four bytes <code>HTB1</code> and a 
+ * big-endian int identifying the predefined string table. Then follow 
+ * records that each start with an opcode byte. Integers are unsigned 
+ * 7-bit varints. Strings are varint references: 0 is <code>null</code>, 
+ * 1 introduces a new string written inline as a varint length and 
+ * varint-encoded UTF-16 code units (which is then appended to the string 
+ * table) and <i>n</i> &gt; 1 refers to entry <i>n</i> - 2 of the string 
+ * table. The string table starts with the well-known element and attribute 
+ * names of <code>ElementName</code> and <code>AttributeName</code>, so 
+ * a stream can only be read by a build with the same name tables.
+ */
+final class BinaryTreeFormat {
+
+    static final byte START_DOCUMENT = 1;
+
+    static final byte END_DOCUMENT = 2;
+
+    static final byte START_ELEMENT = 3;
+
+    static final byte END_ELEMENT = 4;
+
+    static final byte CHARACTERS = 5;
+
+    static final byte IGNORABLE_WHITESPACE = 6;
+
+    static final byte COMMENT = 7;
+
+    static final byte PROCESSING_INSTRUCTION = 8;
+
+    static final byte START_PREFIX_MAPPING = 9;
+
+    static final byte END_PREFIX_MAPPING = 10;
+
+    static final byte START_DTD = 11;
+
+    static final byte END_DTD = 12;
+
+    static final byte START_CDATA = 13;
+
+    static final byte END_CDATA = 14;
+
+    static final byte START_ENTITY = 15;
+
+    static final byte END_ENTITY = 16;
+
+    static final byte SKIPPED_ENTITY = 17;
+
+    static final int MAGIC = ('H' << 24) | ('T' << 16) | ('B' << 8) | '1';
+
+    static final int NULL_REF = 0;
+
+    static final int NEW_REF = 1;
+
+    static final int FIRST_TABLE_REF = 2;
+
+    /**
+     * The predefined strings.
+     */
+    static final String[] PREDEFINED;
+
+    /**
+     * The indexes of the predefined strings.
+     */
+    static final Map<String, Integer> PREDEFINED_INDEXES;
+
+    /**
+     * A hash of the predefined strings.
+     */
+    static final int SIGNATURE;
+
+    static {
+        Set<String> strings = new LinkedHashSet<String>();
+        strings.add("");
+        strings.add("http://www.w3.org/1999/xhtml");
+        strings.add("http://www.w3.org/2000/svg");
+        strings.add("http://www.w3.org/1998/Math/MathML");
+        strings.add("CDATA");
+        strings.add("ID");
+        strings.add("html");
+        ElementName[] elements = ElementName.getWellKnownNames();
+        for (int i = 0; i < elements.length; i++) {
+            strings.add(elements[i].name);
+            strings.add(elements[i].camelCaseName);
+        }
+        AttributeName[] attributes = AttributeName.getWellKnownNames();
+        for (int i = 0; i < attributes.length; i++) {
+            for (int mode = AttributeName.HTML; mode <= AttributeName.HTML_LANG; mode++) {
+                AttributeName name = attributes[i];
+                addIfNotNull(strings, name.getLocal(mode));
+                addIfNotNull(strings, name.getQName(mode));
+                addIfNotNull(strings, name.getUri(mode));
+                addIfNotNull(strings, name.getPrefix(mode));
+            }
+        }
+        PREDEFINED = strings.toArray(new String[strings.size()]);
+        PREDEFINED_INDEXES = new HashMap<String, Integer>(PREDEFINED.length * 2);
+        int hash = PREDEFINED.length;
+        for (int i = 0; i < PREDEFINED.length; i++) {
+            PREDEFINED_INDEXES.put(PREDEFINED[i], Integer.valueOf(i));
+            hash = hash * 31 + PREDEFINED[i].hashCode();
+        }
+        SIGNATURE = hash;
+    }
+
+    private BinaryTreeFormat() {
+    }
+
+    private static void addIfNotNull(Set<String> strings, String str) {
+        if (str != null) {
+            strings.add(str);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.sax;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import nu.validator.saxtree.ParentNode;
+import nu.validator.saxtree.TreeBuilder;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Replays the SAX events of a stream written by 
+ * <code>BinaryTreeWriter</code>. To build a DOM or XOM tree, the events 
+ * can be passed to any SAX-driven builder; <code>readTree</code> builds a 
+ * <code>nu.validator.saxtree</code> tree. No locator is provided.
+ */
+public final class BinaryTreeReader {
+
+    private final ContentHandler contentHandler;
+
+    private final LexicalHandler lexicalHandler;
+
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    private byte[] data;
+
+    private int pos;
+
+    private int limit;
+
+    private String[] strings = new String[BinaryTreeFormat.PREDEFINED.length + 256];
+
+    /**
+     * Whether the string at the same index in <code>strings</code> has been 
+     * interned. Names are interned like the parser interns them, but 
+     * attribute values and other data that happen to share the table are 
+     * not.
+     */
+    private boolean[] interned = new boolean[strings.length];
+
+    private int stringCount;
+
+    private char[] chars = new char[1024];
+
+    private String[] stack = new String[3 * 64];
+
+    private int stackTop;
+
+    /**
+     * The constructor.
+     * 
+     * @param contentHandler
+     *            must not be <code>null</code>
+     * @param lexicalHandler
+     *            may be <code>null</code>
+     */
+    public BinaryTreeReader(ContentHandler contentHandler,
+            LexicalHandler lexicalHandler) {
+        if (contentHandler == null) {
+            throw new IllegalArgumentException("contentHandler was null.");
+        }
+        this.contentHandler = contentHandler;
+        this.lexicalHandler = lexicalHandler;
+    }
+
+    /**
+     * Reads a stream to its end and replays the events in it.
+     * 
+     * @param in
+     *            the stream
+     * @throws IOException
+     *             if the stream throws
+     * @throws SAXException
+     *             if a handler throws or the data is not a valid stream
+     */
+    public void parse(InputStream in) throws IOException, SAXException {
+        byte[] buf = readFully(in);
+        parse(buf, 0, buf.length);
+    }
+
+    /**
+     * Replays the events in a byte array.
+     * 
+     * @param buf
+     *            the array
+     * @param offset
+     *            the offset of the stream in the array
+     * @param length
+     *            the length of the stream
+     * @throws SAXException
+     *             if a handler throws or the data is not a valid stream
+     */
+    public void parse(byte[] buf, int offset, int length) throws SAXException {
+        data = buf;
+        pos = offset;
+        limit = offset + length;
+        stackTop = 0;
+        System.arraycopy(BinaryTreeFormat.PREDEFINED, 0, strings, 0,
+                BinaryTreeFormat.PREDEFINED.length);
+        for (int i = 0; i < BinaryTreeFormat.PREDEFINED.length; i++) {
+            // the predefined strings come from the interned name tables
+            interned[i] = true;
+        }
+        stringCount = BinaryTreeFormat.PREDEFINED.length;
+        try {
+            if (readInt() != BinaryTreeFormat.MAGIC) {
+                throw new SAXException("Not a binary tree stream.");
+            }
+            if (readInt() != BinaryTreeFormat.SIGNATURE) {
+                throw new SAXException(
+                        "The binary tree stream was written with different name tables.");
+            }
+            while (pos < limit) {
+                replay(data[pos++]);
+            }
+        } finally {
+            data = null;
+            for (int i = BinaryTreeFormat.PREDEFINED.length; i < stringCount; i++) {
+                strings[i] = null;
+                interned[i] = false;
+            }
+            for (int i = 0; i < stackTop; i++) {
+                stack[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Reads a stream written by <code>BinaryTreeWriter</code> into a 
+     * <code>nu.validator.saxtree</code> tree.
+     * 
+     * @param in
+     *            the stream
+     * @return a <code>Document</code> if the stream holds a document or a 
+     *         <code>DocumentFragment</code> otherwise
+     * @throws IOException
+     *             if the stream throws
+     * @throws SAXException
+     *             if the data is not a valid stream
+     */
+    public static ParentNode readTree(InputStream in) throws IOException,
+            SAXException {
+        byte[] buf = readFully(in);
+        boolean fragment = buf.length <= 8
+                || buf[8] != BinaryTreeFormat.START_DOCUMENT;
+        TreeBuilder treeBuilder = new TreeBuilder(fragment, false);
+        new BinaryTreeReader(treeBuilder, treeBuilder).parse(buf, 0,
+                buf.length);
+        return treeBuilder.getRoot();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        byte[] buf = new byte[8192];
+        int len = 0;
+        int num;
+        while ((num = in.read(buf, len, buf.length - len)) != -1) {
+            len += num;
+            if (len == buf.length) {
+                byte[] newBuf = new byte[buf.length << 1];
+                System.arraycopy(buf, 0, newBuf, 0, len);
+                buf = newBuf;
+            }
+        }
+        if (len == buf.length) {
+            return buf;
+        }
+        byte[] rv = new byte[len];
+        System.arraycopy(buf, 0, rv, 0, len);
+        return rv;
+    }
+
+    private void replay(byte opcode) throws SAXException {
+        switch (opcode) {
+            case BinaryTreeFormat.START_ELEMENT:
+                String uri = readName();
+                String localName = readName();
+                String qName = readName();
+                int len = readVarint();
+                attributes.clear();
+                for (int i = 0; i < len; i++) {
+                    attributes.addAttribute(readName(), readName(),
+                            readName(), readName(), readString());
+                }
+                push(uri, localName, qName);
+                contentHandler.startElement(uri, localName, qName, attributes);
+                return;
+            case BinaryTreeFormat.END_ELEMENT:
+                if (stackTop == 0) {
+                    throw corrupt();
+                }
+                stackTop -= 3;
+                contentHandler.endElement(stack[stackTop], stack[stackTop + 1],
+                        stack[stackTop + 2]);
+                return;
+            case BinaryTreeFormat.CHARACTERS:
+                len = readChars();
+                contentHandler.characters(chars, 0, len);
+                return;
+            case BinaryTreeFormat.COMMENT:
+                len = readChars();
+                if (lexicalHandler != null) {
+                    lexicalHandler.comment(chars, 0, len);
+                }
+                return;
+            case BinaryTreeFormat.START_DOCUMENT:
+                contentHandler.startDocument();
+                return;
+            case BinaryTreeFormat.END_DOCUMENT:
+                contentHandler.endDocument();
+                return;
+            case BinaryTreeFormat.IGNORABLE_WHITESPACE:
+                len = readChars();
+                contentHandler.ignorableWhitespace(chars, 0, len);
+                return;
+            case BinaryTreeFormat.PROCESSING_INSTRUCTION:
+                String target = readString();
+                contentHandler.processingInstruction(target, readString());
+                return;
+            case BinaryTreeFormat.START_PREFIX_MAPPING:
+                String prefix = readName();
+                contentHandler.startPrefixMapping(prefix, readName());
+                return;
+            case BinaryTreeFormat.END_PREFIX_MAPPING:
+                contentHandler.endPrefixMapping(readName());
+                return;
+            case BinaryTreeFormat.SKIPPED_ENTITY:
+                contentHandler.skippedEntity(readString());
+                return;
+            case BinaryTreeFormat.START_DTD:
+                String name = readString();
+                String publicId = readString();
+                String systemId = readString();
+                if (lexicalHandler != null) {
+                    lexicalHandler.startDTD(name, publicId, systemId);
+                }
+                return;
+            case BinaryTreeFormat.END_DTD:
+                if (lexicalHandler != null) {
+                    lexicalHandler.endDTD();
+                }
+                return;
+            case BinaryTreeFormat.START_CDATA:
+                if (lexicalHandler != null) {
+                    lexicalHandler.startCDATA();
+                }
+                return;
+            case BinaryTreeFormat.END_CDATA:
+                if (lexicalHandler != null) {
+                    lexicalHandler.endCDATA();
+                }
+                return;
+            case BinaryTreeFormat.START_ENTITY:
+                name = readString();
+                if (lexicalHandler != null) {
+                    lexicalHandler.startEntity(name);
+                }
+                return;
+            case BinaryTreeFormat.END_ENTITY:
+                name = readString();
+                if (lexicalHandler != null) {
+                    lexicalHandler.endEntity(name);
+                }
+                return;
+            default:
+                throw corrupt();
+        }
+    }
+
+    private void push(String uri, String localName, String qName) {
+        if (stackTop + 3 > stack.length) {
+            String[] newStack = new String[stack.length << 1];
+            System.arraycopy(stack, 0, newStack, 0, stackTop);
+            stack = newStack;
+        }
+        stack[stackTop] = uri;
+        stack[stackTop + 1] = localName;
+        stack[stackTop + 2] = qName;
+        stackTop += 3;
+    }
+
+    private static SAXException corrupt() {
+        return new SAXException("Corrupt binary tree stream.");
+    }
+
+    private int readInt() throws SAXException {
+        if (limit - pos < 4) {
+            throw corrupt();
+        }
+        int i = ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16)
+                | ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+        pos += 4;
+        return i;
+    }
+
+    private int readVarint() throws SAXException {
+        int i = 0;
+        int shift = 0;
+        for (;;) {
+            if (pos == limit || shift > 28) {
+                throw corrupt();
+            }
+            int b = data[pos++];
+            i |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return i;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * Reads a run of characters into <code>chars</code>.
+     * 
+     * @return the number of characters
+     */
+    private int readChars() throws SAXException {
+        int len = readVarint();
+        if (len < 0 || len > limit - pos) {
+            throw corrupt();
+        }
+        if (len > chars.length) {
+            chars = new char[Math.max(len, chars.length << 1)];
+        }
+        for (int i = 0; i < len; i++) {
+            if (pos == limit) {
+                throw corrupt();
+            }
+            int b = data[pos];
+            if (b >= 0) {
+                pos++;
+                chars[i] = (char) b;
+            } else {
+                chars[i] = (char) readVarint();
+            }
+        }
+        return len;
+    }
+
+    private String readString() throws SAXException {
+        int index = readStringIndex();
+        return index == -1 ? null : strings[index];
+    }
+
+    /**
+     * Reads a string that is a name and returns it interned.
+     */
+    private String readName() throws SAXException {
+        int index = readStringIndex();
+        if (index == -1) {
+            return null;
+        }
+        if (!interned[index]) {
+            strings[index] = strings[index].intern();
+            interned[index] = true;
+        }
+        return strings[index];
+    }
+
+    /**
+     * Reads a string reference, adding a new string to the table if the 
+     * reference introduces one.
+     * 
+     * @return the index in the table or -1 for <code>null</code>
+     */
+    private int readStringIndex() throws SAXException {
+        int ref = readVarint();
+        if (ref == BinaryTreeFormat.NULL_REF) {
+            return -1;
+        }
+        if (ref == BinaryTreeFormat.NEW_REF) {
+            int len = readChars();
+            if (stringCount == strings.length) {
+                String[] newStrings = new String[strings.length << 1];
+                System.arraycopy(strings, 0, newStrings, 0, stringCount);
+                strings = newStrings;
+                boolean[] newInterned = new boolean[newStrings.length];
+                System.arraycopy(interned, 0, newInterned, 0, stringCount);
+                interned = newInterned;
+            }
+            strings[stringCount] = new String(chars, 0, len);
+            return stringCount++;
+        }
+        int index = ref - BinaryTreeFormat.FIRST_TABLE_REF;
+        if (index < 0 || index >= stringCount) {
+            throw corrupt();
+        }
+        return index;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.sax;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * Writes the SAX events of a document or a fragment in a compact binary 
+ * form that <code>BinaryTreeReader</code> replays much faster than the 
+ * HTML can be reparsed. Well-known element and attribute names are written 
+ * as indexes to the name tables of the parser and other strings are written 
+ * once and referred to by index thereafter. Locations are not stored.
+ * 
+ * <p>An instance writes one stream. The stream is flushed at 
+ * <code>endDocument()</code>; when writing a fragment, <code>flush()</code> 
+ * has to be called instead.
+ */
+public final class BinaryTreeWriter implements ContentHandler, LexicalHandler {
+
+    private final OutputStream out;
+
+    private final byte[] buf = new byte[8192];
+
+    private int pos = 0;
+
+    private boolean started = false;
+
+    /**
+     * The strings written by this instance mapped to their indexes in the 
+     * string table.
+     */
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    private int nextIndex = BinaryTreeFormat.PREDEFINED.length;
+
+    /**
+     * The constructor.
+     * 
+     * @param out
+     *            the stream to write to
+     */
+    public BinaryTreeWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying stream and flushes it.
+     * 
+     * @throws IOException
+     *             if the stream throws
+     */
+    public void flush() throws IOException {
+        start();
+        flushBuffer();
+        out.flush();
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            started = true;
+            writeInt(BinaryTreeFormat.MAGIC);
+            writeInt(BinaryTreeFormat.SIGNATURE);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    private void writeInt(int i) throws IOException {
+        writeByte(i >>> 24);
+        writeByte(i >>> 16);
+        writeByte(i >>> 8);
+        writeByte(i);
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (pos == buf.length) {
+            flushBuffer();
+        }
+        buf[pos++] = (byte) b;
+    }
+
+    private void writeVarint(int i) throws IOException {
+        if (buf.length - pos < 5) {
+            flushBuffer();
+        }
+        while ((i & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((i & 0x7F) | 0x80);
+            i >>>= 7;
+        }
+        buf[pos++] = (byte) i;
+    }
+
+    private void writeOpcode(byte opcode) throws IOException {
+        start();
+        writeByte(opcode);
+    }
+
+    private void writeChars(char[] ch, int start, int length)
+            throws IOException {
+        writeVarint(length);
+        int end = start + length;
+        for (int i = start; i < end; i++) {
+            char c = ch[i];
+            if (c < 0x80) {
+                if (pos == buf.length) {
+                    flushBuffer();
+                }
+                buf[pos++] = (byte) c;
+            } else {
+                writeVarint(c);
+            }
+        }
+    }
+
+    private void writeString(String str) throws IOException {
+        if (str == null) {
+            writeVarint(BinaryTreeFormat.NULL_REF);
+            return;
+        }
+        Integer index = BinaryTreeFormat.PREDEFINED_INDEXES.get(str);
+        if (index == null) {
+            index = strings.get(str);
+        }
+        if (index != null) {
+            writeVarint(BinaryTreeFormat.FIRST_TABLE_REF + index.intValue());
+            return;
+        }
+        strings.put(str, Integer.valueOf(nextIndex++));
+        writeVarint(BinaryTreeFormat.NEW_REF);
+        int len = str.length();
+        writeVarint(len);
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                if (pos == buf.length) {
+                    flushBuffer();
+                }
+                buf[pos++] = (byte) c;
+            } else {
+                writeVarint(c);
+            }
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#characters(char[], int, int)
+     */
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.CHARACTERS);
+            writeChars(ch, start, length);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endDocument()
+     */
+    public void endDocument() throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.END_DOCUMENT);
+            flush();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endElement(java.lang.String,
+     *      java.lang.String, java.lang.String)
+     */
+    public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.END_ELEMENT);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endPrefixMapping(java.lang.String)
+     */
+    public void endPrefixMapping(String prefix) throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.END_PREFIX_MAPPING);
+            writeString(prefix);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#ignorableWhitespace(char[], int, int)
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.IGNORABLE_WHITESPACE);
+            writeChars(ch, start, length);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#processingInstruction(java.lang.String,
+     *      java.lang.String)
+     */
+    public void processingInstruction(String target, String data)
+            throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.PROCESSING_INSTRUCTION);
+            writeString(target);
+            writeString(data);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#setDocumentLocator(org.xml.sax.Locator)
+     */
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#skippedEntity(java.lang.String)
+     */
+    public void skippedEntity(String name) throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.SKIPPED_ENTITY);
+            writeString(name);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startDocument()
+     */
+    public void startDocument() throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.START_DOCUMENT);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startElement(java.lang.String,
+     *      java.lang.String, java.lang.String, org.xml.sax.Attributes)
+     */
+    public void startElement(String uri, String localName, String qName,
+            Attributes atts) throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.START_ELEMENT);
+            writeString(uri);
+            writeString(localName);
+            writeString(qName);
+            int len = atts.getLength();
+            writeVarint(len);
+            for (int i = 0; i < len; i++) {
+                writeString(atts.getURI(i));
+                writeString(atts.getLocalName(i));
+                writeString(atts.getQName(i));
+                writeString(atts.getType(i));
+                writeString(atts.getValue(i));
+            }
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startPrefixMapping(java.lang.String,
+     *      java.lang.String)
+     */
+    public void startPrefixMapping(String prefix, String uri)
+            throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.START_PREFIX_MAPPING);
+            writeString(prefix);
+            writeString(uri);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#comment(char[], int, int)
+     */
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.COMMENT);
+            writeChars(ch, start, length);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#endCDATA()
+     */
+    public void endCDATA() throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.END_CDATA);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#endDTD()
+     */
+    public void endDTD() throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.END_DTD);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#endEntity(java.lang.String)
+     */
+    public void endEntity(String name) throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.END_ENTITY);
+            writeString(name);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#startCDATA()
+     */
+    public void startCDATA() throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.START_CDATA);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#startDTD(java.lang.String,
+     *      java.lang.String, java.lang.String)
+     */
+    public void startDTD(String name, String publicId, String systemId)
+            throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.START_DTD);
+            writeString(name);
+            writeString(publicId);
+            writeString(systemId);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#startEntity(java.lang.String)
+     */
+    public void startEntity(String name) throws SAXException {
+        try {
+            writeOpcode(BinaryTreeFormat.START_ENTITY);
+            writeString(name);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+}
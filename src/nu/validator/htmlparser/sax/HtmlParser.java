@@ -23,9 +23,16 @@
 
 package nu.validator.htmlparser.sax;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.HashMap;
@@ -34,13 +41,18 @@ import nu.validator.htmlparser.common.CharacterHandler;
 import nu.validator.htmlparser.common.DoctypeExpectation;
 import nu.validator.htmlparser.common.DocumentModeHandler;
 import nu.validator.htmlparser.common.Heuristics;
+import nu.validator.htmlparser.common.InterestSet;
+import nu.validator.htmlparser.common.TreeBuilderCounters;
 import nu.validator.htmlparser.common.TokenHandler;
+import nu.validator.htmlparser.common.ParseErrorHandler;
 import nu.validator.htmlparser.common.TransitionHandler;
 import nu.validator.htmlparser.common.XmlViolationPolicy;
 import nu.validator.htmlparser.impl.ErrorReportingTokenizer;
 import nu.validator.htmlparser.impl.Tokenizer;
 import nu.validator.htmlparser.impl.TreeBuilder;
+import nu.validator.htmlparser.io.CheckpointHandler;
 import nu.validator.htmlparser.io.Driver;
+import nu.validator.htmlparser.io.ParseCheckpoint;
 import nu.validator.saxtree.Document;
 import nu.validator.saxtree.DocumentFragment;
 import nu.validator.saxtree.TreeParser;
@@ -138,9 +150,25 @@ public class HtmlParser implements XMLReader {
 
     private Heuristics heuristics = Heuristics.NONE;
 
+    private long rewindMemoryLimit = Long.MAX_VALUE;
+
+    private boolean asynchronousCharacterHandlers = false;
+
+    private boolean usingCharSlab = false;
+
     private HashMap<String, String> errorProfileMap = null;
 
     private TransitionHandler transitionHandler = null;
+
+    private ParseErrorHandler parseErrorHandler = null;
+
+    private InterestSet interestSet = null;
+
+    private TreeBuilderCounters counters = null;
+
+    private CheckpointHandler checkpointHandler = null;
+
+    private ParseResultCache parseResultCache = null;
     
     /**
      * Instantiates the parser with a fatal XML violation policy.
@@ -160,6 +188,7 @@ public class HtmlParser implements XMLReader {
 
     private Tokenizer newTokenizer(TokenHandler handler, boolean newAttributesEachTime) {
         if (errorHandler == null && transitionHandler == null &&
+            parseErrorHandler == null &&
             contentNonXmlCharPolicy == XmlViolationPolicy.ALLOW) {
             return new Tokenizer(handler, newAttributesEachTime);
         }
@@ -177,6 +206,7 @@ public class HtmlParser implements XMLReader {
         if (driver == null) {
             if (streamabilityViolationPolicy == XmlViolationPolicy.ALLOW) {
                 this.saxTreeBuilder = new SAXTreeBuilder();
+                this.saxTreeBuilder.setUsingCharSlab(usingCharSlab);
                 this.treeBuilder = this.saxTreeBuilder;
                 this.saxStreamer = null;
                 this.driver = new Driver(newTokenizer(treeBuilder, true));
@@ -188,6 +218,7 @@ public class HtmlParser implements XMLReader {
             }
             this.driver.setErrorHandler(errorHandler);
             this.driver.setTransitionHandler(transitionHandler);
+            this.driver.setParseErrorHandler(parseErrorHandler);
             this.treeBuilder.setErrorHandler(treeBuilderErrorHandler);
             this.driver.setCheckingNormalization(checkingNormalization);
             this.driver.setCommentPolicy(commentPolicy);
@@ -197,6 +228,8 @@ public class HtmlParser implements XMLReader {
             this.driver.setMappingLangToXmlLang(mappingLangToXmlLang);
             this.driver.setXmlnsPolicy(xmlnsPolicy);
             this.driver.setHeuristics(heuristics);
+            this.driver.setRewindMemoryLimit(rewindMemoryLimit);
+            this.driver.setAsynchronousCharacterHandlers(asynchronousCharacterHandlers);
             for (CharacterHandler characterHandler : characterHandlers) {
                 this.driver.addCharacterHandler(characterHandler);
             }
@@ -206,11 +239,14 @@ public class HtmlParser implements XMLReader {
             this.treeBuilder.setScriptingEnabled(scriptingEnabled);
             this.treeBuilder.setReportingDoctype(reportingDoctype);
             this.treeBuilder.setNamePolicy(namePolicy);
+            this.treeBuilder.setInterestSet(interestSet);
+            this.treeBuilder.setCounters(counters);
             if (saxStreamer != null) {
                 saxStreamer.setContentHandler(contentHandler == null ? new DefaultHandler()
                         : contentHandler);
                 saxStreamer.setLexicalHandler(lexicalHandler);
                 driver.setAllowRewinding(false);
+                driver.setCheckpointHandler(checkpointHandler);
             }
         }
     }
@@ -417,18 +453,7 @@ public class HtmlParser implements XMLReader {
      * @see org.xml.sax.XMLReader#parse(org.xml.sax.InputSource)
      */
     public void parse(InputSource input) throws IOException, SAXException {
-        lazyInit();
-        try {
-            treeBuilder.setFragmentContext(null);
-            tokenize(input);
-        } finally {
-            if (saxTreeBuilder != null) {
-                Document document = saxTreeBuilder.getDocument();
-                if (document != null) {
-                    new TreeParser(contentHandler, lexicalHandler).parse(document);
-                }
-            }
-        }
+        parse(input, null, null);
     }
 
     /**
@@ -441,16 +466,7 @@ public class HtmlParser implements XMLReader {
      */
     public void parseFragment(InputSource input, String context)
             throws IOException, SAXException {
-        lazyInit();
-        try {
-            treeBuilder.setFragmentContext(context.intern());
-            tokenize(input);
-        } finally {
-            if (saxTreeBuilder != null) {
-                DocumentFragment fragment = saxTreeBuilder.getDocumentFragment();
-                new TreeParser(contentHandler, lexicalHandler).parse(fragment);
-            }
-        }
+        parse(input, context.intern(), "http://www.w3.org/1999/xhtml");
     }
     
     /**
@@ -464,16 +480,180 @@ public class HtmlParser implements XMLReader {
      */
     public void parseFragment(InputSource input, String contextLocal, String contextNamespace)
             throws IOException, SAXException {
+        parse(input, contextLocal.intern(), contextNamespace.intern());
+    }
+
+    private void parse(InputSource input, String contextLocal,
+            String contextNamespace) throws IOException, SAXException {
+        if (isCacheable(input)) {
+            parseCached(input, contextLocal, contextNamespace);
+        } else {
+            parseUncached(input, contextLocal, contextNamespace);
+        }
+    }
+
+    private void parseUncached(InputSource input, String contextLocal,
+            String contextNamespace) throws IOException, SAXException {
         lazyInit();
         try {
-            treeBuilder.setFragmentContext(contextLocal.intern(), contextNamespace.intern(), null, false);
+            if (contextLocal == null) {
+                treeBuilder.setFragmentContext(null);
+            } else {
+                treeBuilder.setFragmentContext(contextLocal, contextNamespace, null, false);
+            }
             tokenize(input);
         } finally {
             if (saxTreeBuilder != null) {
-                DocumentFragment fragment = saxTreeBuilder.getDocumentFragment();
-                new TreeParser(contentHandler, lexicalHandler).parse(fragment);
+                if (contextLocal == null) {
+                    Document document = saxTreeBuilder.getDocument();
+                    if (document != null) {
+                        new TreeParser(contentHandler, lexicalHandler).parse(document);
+                    }
+                } else {
+                    DocumentFragment fragment = saxTreeBuilder.getDocumentFragment();
+                    new TreeParser(contentHandler, lexicalHandler).parse(fragment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the result of parsing the input can be taken from the cache. 
+     * Parses that report anything other than content events, such as 
+     * errors or document modes, are not cached.
+     */
+    private boolean isCacheable(InputSource input) {
+        return parseResultCache != null
+                && (input.getByteStream() != null || input.getCharacterStream() != null)
+                && errorHandler == null && treeBuilderErrorHandler == null
+                && transitionHandler == null && parseErrorHandler == null
+                && documentModeHandler == null && checkpointHandler == null
+                && characterHandlers.isEmpty() && !checkingNormalization
+                && interestSet == null && counters == null;
+    }
+
+    /**
+     * Reads the whole input while hashing it, looks up the result and 
+     * replays it. On a miss, the input is parsed for the application and 
+     * written to a <code>BinaryTreeWriter</code> in the same pass, and the 
+     * result is cached if the parse completes.
+     */
+    private void parseCached(InputSource input, String contextLocal,
+            String contextNamespace) throws IOException, SAXException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            parseUncached(input, contextLocal, contextNamespace);
+            return;
+        }
+        InputSource buffered = new InputSource();
+        buffered.setSystemId(input.getSystemId());
+        buffered.setPublicId(input.getPublicId());
+        buffered.setEncoding(input.getEncoding());
+        StringBuilder configuration = new StringBuilder();
+        if (input.getByteStream() != null) {
+            byte[] bytes = readBytes(input.getByteStream(), digest);
+            buffered.setByteStream(new ByteArrayInputStream(bytes));
+            configuration.append("bytes ");
+        } else {
+            char[] chars = readChars(input.getCharacterStream(), digest);
+            buffered.setCharacterStream(new CharArrayReader(chars));
+            configuration.append("chars ");
+        }
+        configuration.append(input.getEncoding()).append(' ');
+        configuration.append(contextLocal).append(' ');
+        configuration.append(contextNamespace).append(' ');
+        configuration.append(lexicalHandler != null).append(' ');
+        configuration.append(streamabilityViolationPolicy).append(' ');
+        configuration.append(contentSpacePolicy).append(' ');
+        configuration.append(contentNonXmlCharPolicy).append(' ');
+        configuration.append(commentPolicy).append(' ');
+        configuration.append(namePolicy).append(' ');
+        configuration.append(xmlnsPolicy).append(' ');
+        configuration.append(doctypeExpectation).append(' ');
+        configuration.append(heuristics).append(' ');
+        configuration.append(scriptingEnabled).append(' ');
+        configuration.append(html4ModeCompatibleWithXhtml1Schemata).append(' ');
+        configuration.append(mappingLangToXmlLang).append(' ');
+        configuration.append(reportingDoctype);
+        ParseResultCache.Key key = new ParseResultCache.Key(digest.digest(),
+                configuration.toString());
+        byte[] result = parseResultCache.get(key);
+        if (result != null) {
+            replay(result);
+            return;
+        }
+        // On a miss, the events go to the application as they are parsed 
+        // and to the writer at the same time, so the input is parsed once.
+        ContentHandler ch = contentHandler;
+        LexicalHandler lh = lexicalHandler;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTreeWriter writer = new BinaryTreeWriter(out);
+        TeeHandler tee = new TeeHandler(ch, lh, writer);
+        setContentHandler(tee);
+        setLexicalHandler(lh == null ? null : tee);
+        try {
+            parseUncached(buffered, contextLocal, contextNamespace);
+        } finally {
+            setContentHandler(ch);
+            setLexicalHandler(lh);
+        }
+        writer.flush();
+        parseResultCache.put(key, out.toByteArray());
+    }
+
+    private void replay(byte[] result) throws SAXException {
+        new BinaryTreeReader(contentHandler == null ? new DefaultHandler()
+                : contentHandler, lexicalHandler).parse(result, 0,
+                result.length);
+    }
+
+    private static byte[] readBytes(InputStream in, MessageDigest digest)
+            throws IOException {
+        byte[] buf = new byte[8192];
+        int len = 0;
+        int num;
+        while ((num = in.read(buf, len, buf.length - len)) != -1) {
+            digest.update(buf, len, num);
+            len += num;
+            if (len == buf.length) {
+                byte[] newBuf = new byte[buf.length << 1];
+                System.arraycopy(buf, 0, newBuf, 0, len);
+                buf = newBuf;
             }
         }
+        byte[] rv = new byte[len];
+        System.arraycopy(buf, 0, rv, 0, len);
+        return rv;
+    }
+
+    private static char[] readChars(Reader in, MessageDigest digest)
+            throws IOException {
+        char[] buf = new char[8192];
+        byte[] bytes = new byte[8192 * 2];
+        int len = 0;
+        int num;
+        while ((num = in.read(buf, len, buf.length - len)) != -1) {
+            if (bytes.length < num * 2) {
+                bytes = new byte[num * 2];
+            }
+            for (int i = 0; i < num; i++) {
+                char c = buf[len + i];
+                bytes[i * 2] = (byte) (c >> 8);
+                bytes[i * 2 + 1] = (byte) c;
+            }
+            digest.update(bytes, 0, num * 2);
+            len += num;
+            if (len == buf.length) {
+                char[] newBuf = new char[buf.length << 1];
+                System.arraycopy(buf, 0, newBuf, 0, len);
+                buf = newBuf;
+            }
+        }
+        char[] rv = new char[len];
+        System.arraycopy(buf, 0, rv, 0, len);
+        return rv;
     }
     
     /**
@@ -503,6 +683,33 @@ public class HtmlParser implements XMLReader {
         driver.tokenize(is);
     }
 
+    /**
+     * Continues a parse from a checkpoint reported to the checkpoint handler
+     * during an earlier parse, possibly by another instance in another
+     * process. The byte stream of the input source must start at the byte
+     * offset of the checkpoint. The content handler does not receive
+     * <code>startDocument</code> again. Only supported when the parser 
+     * streams, i.e. when the streamability violation policy is not 
+     * <code>ALLOW</code>.
+     * 
+     * @param checkpoint
+     *            the checkpoint
+     * @param input
+     *            the rest of the document as a byte stream
+     * @throws IOException
+     * @throws SAXException
+     */
+    public void resume(ParseCheckpoint checkpoint, InputSource input)
+            throws IOException, SAXException {
+        lazyInit();
+        if (saxStreamer == null) {
+            throw new IllegalStateException(
+                    "Resuming is only supported when streaming.");
+        }
+        treeBuilder.setFragmentContext(null);
+        driver.resume(checkpoint, input);
+    }
+
     /**
      * @see org.xml.sax.XMLReader#parse(java.lang.String)
      */
@@ -562,6 +769,21 @@ public class HtmlParser implements XMLReader {
         transitionHandler = handler;
         driver = null;
     }
+
+    /**
+     * Sets the handler for structured parse errors. The tokenizer errors 
+     * listed in <code>ParseErrorCode</code> are reported to it as codes with 
+     * primitive location data instead of being reported to the error 
+     * handler. Tree construction errors and character encoding errors 
+     * still go to the error handler.
+     * 
+     * @param handler the handler or <code>null</code>
+     * @see nu.validator.htmlparser.common.ParseErrorAggregator
+     */
+    public void setParseErrorHandler(ParseErrorHandler handler) {
+        parseErrorHandler = handler;
+        driver = null;
+    }
     
     /**
      * @see org.xml.sax.XMLReader#setErrorHandler(org.xml.sax.ErrorHandler)
@@ -1009,6 +1231,83 @@ public class HtmlParser implements XMLReader {
         return reportingDoctype;
     }
 
+    /**
+     * Sets the interest set. Elements outside the set do not cause 
+     * <code>startElement</code>/<code>endElement</code> callbacks and text 
+     * and comments are only reported if the set asks for them. Only honored 
+     * when the streamability violation policy is not <code>ALLOW</code>, 
+     * i.e. when the parser streams.
+     * 
+     * @param interestSet
+     *            the interest set or <code>null</code> for everything
+     * @see nu.validator.htmlparser.impl.TreeBuilder#setInterestSet(nu.validator.htmlparser.common.InterestSet)
+     */
+    public void setInterestSet(InterestSet interestSet) {
+        this.interestSet = interestSet;
+        if (treeBuilder != null) {
+            treeBuilder.setInterestSet(interestSet);
+        }
+    }
+
+    /**
+     * Returns the interest set.
+     * 
+     * @return the interest set or <code>null</code>
+     */
+    public InterestSet getInterestSet() {
+        return interestSet;
+    }
+
+    /**
+     * Sets the counters for tree construction events. The counters 
+     * accumulate over parses.
+     * 
+     * @param counters
+     *            the counters or <code>null</code> to not count
+     * @see nu.validator.htmlparser.impl.TreeBuilder#setCounters(nu.validator.htmlparser.common.TreeBuilderCounters)
+     */
+    public void setCounters(TreeBuilderCounters counters) {
+        this.counters = counters;
+        if (treeBuilder != null) {
+            treeBuilder.setCounters(counters);
+        }
+    }
+
+    /**
+     * Returns the counters for tree construction events.
+     * 
+     * @return the counters or <code>null</code>
+     */
+    public TreeBuilderCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Sets the receiver of parse checkpoints. Checkpoints are only taken when
+     * the parser streams, i.e. when the streamability violation policy is 
+     * not <code>ALLOW</code>, and the input is a byte stream whose encoding 
+     * has become certain.
+     * 
+     * @param checkpointHandler
+     *            the handler or <code>null</code> to turn checkpointing off
+     * @see nu.validator.htmlparser.io.Driver#setCheckpointHandler(nu.validator.htmlparser.io.CheckpointHandler)
+     */
+    public void setCheckpointHandler(CheckpointHandler checkpointHandler) {
+        this.checkpointHandler = checkpointHandler;
+        if (driver != null && saxStreamer != null) {
+            driver.setCheckpointHandler(checkpointHandler);
+        }
+    }
+
+    /**
+     * Returns the checkpoint handler.
+     * 
+     * @return the checkpoint handler or <code>null</code>
+     */
+    public CheckpointHandler getCheckpointHandler() {
+        return checkpointHandler;
+    }
+
     /**
      * @param errorProfile
      * @see nu.validator.htmlparser.impl.errorReportingTokenizer#setErrorProfile(set)
@@ -1047,6 +1346,93 @@ public class HtmlParser implements XMLReader {
         return this.heuristics;
     }
 
+    /**
+     * Sets the number of bytes kept in memory for reparsing when the 
+     * encoding is not yet certain. The rest are saved in a temporary file.
+     * 
+     * @param rewindMemoryLimit the limit in bytes
+     * @see nu.validator.htmlparser.io.Driver#setRewindMemoryLimit(long)
+     */
+    public void setRewindMemoryLimit(long rewindMemoryLimit) {
+        if (rewindMemoryLimit < 0) {
+            throw new IllegalArgumentException("Negative memory limit.");
+        }
+        this.rewindMemoryLimit = rewindMemoryLimit;
+        if (driver != null) {
+            driver.setRewindMemoryLimit(rewindMemoryLimit);
+        }
+    }
+
+    public long getRewindMemoryLimit() {
+        return this.rewindMemoryLimit;
+    }
+
+    /**
+     * Makes the character handlers, including the NFC checker, run on a 
+     * helper thread instead of before tokenizing each buffer. Off by 
+     * default.
+     * 
+     * @param asynchronousCharacterHandlers <code>true</code> to run the 
+     * character handlers asynchronously
+     * @see nu.validator.htmlparser.io.Driver#setAsynchronousCharacterHandlers(boolean)
+     */
+    public void setAsynchronousCharacterHandlers(
+            boolean asynchronousCharacterHandlers) {
+        this.asynchronousCharacterHandlers = asynchronousCharacterHandlers;
+        if (driver != null) {
+            driver.setAsynchronousCharacterHandlers(asynchronousCharacterHandlers);
+        }
+    }
+
+    public boolean isAsynchronousCharacterHandlers() {
+        return this.asynchronousCharacterHandlers;
+    }
+
+    /**
+     * Makes the intermediate SAX tree built when the streamability 
+     * violation policy is <code>ALLOW</code> store the text of its text and 
+     * comment nodes in one growable array per document instead of one 
+     * array per node.
+     * 
+     * @param usingCharSlab <code>true</code> to share a character slab
+     * @see nu.validator.saxtree.CharSlab
+     */
+    public void setUsingCharSlab(boolean usingCharSlab) {
+        this.usingCharSlab = usingCharSlab;
+        if (saxTreeBuilder != null) {
+            saxTreeBuilder.setUsingCharSlab(usingCharSlab);
+        }
+    }
+
+    public boolean isUsingCharSlab() {
+        return this.usingCharSlab;
+    }
+
+    /**
+     * Sets a cache of parse results. When set, byte and character stream 
+     * inputs are read in full and hashed before parsing, and the content 
+     * and lexical events of a byte-identical input parsed with the same 
+     * configuration are replayed from the cache instead of parsing again. 
+     * Parses that report errors, document modes, checkpoints or tree 
+     * builder statistics, or that use character handlers or an interest 
+     * set, bypass the cache. Replayed events have no locations. The cache 
+     * may be shared by several parsers.
+     * 
+     * @param parseResultCache the cache or <code>null</code> to disable caching
+     */
+    public void setParseResultCache(ParseResultCache parseResultCache) {
+        this.parseResultCache = parseResultCache;
+    }
+
+    /**
+     * Returns the cache of parse results.
+     * 
+     * @return the cache or <code>null</code>
+     */
+    public ParseResultCache getParseResultCache() {
+        return this.parseResultCache;
+    }
+
     /**
      * This is a catch-all convenience method for setting name, xmlns, content space, 
      * content non-XML char and comment policies in one go. This does not affect the 
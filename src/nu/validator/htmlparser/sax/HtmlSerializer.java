@@ -25,10 +25,9 @@ package nu.validator.htmlparser.sax;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
@@ -46,64 +45,320 @@ public class HtmlSerializer implements ContentHandler, LexicalHandler {
     private static final String[] NON_ESCAPING = { "iframe", "noembed",
             "noframes", "noscript", "plaintext", "script", "style", "xmp" };
 
-    private static Writer wrap(OutputStream out) {
-        try {
-            return new OutputStreamWriter(out, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
+    private static final String[] LEADING_NEWLINE = { "listing", "pre",
+            "textarea" };
+
+    private static final int VOID_FLAG = 1;
+
+    private static final int NON_ESCAPING_FLAG = 2;
+
+    private static final int LEADING_NEWLINE_FLAG = 4;
+
+    /**
+     * The above lists as flags by local name, so that starting an element 
+     * takes one lookup.
+     */
+    private static final Map<String, Integer> ELEMENT_FLAGS = new HashMap<String, Integer>();
+
+    static {
+        addFlag(VOID_ELEMENTS, VOID_FLAG);
+        addFlag(NON_ESCAPING, NON_ESCAPING_FLAG);
+        addFlag(LEADING_NEWLINE, LEADING_NEWLINE_FLAG);
+    }
+
+    private static void addFlag(String[] names, int flag) {
+        for (int i = 0; i < names.length; i++) {
+            Integer old = ELEMENT_FLAGS.get(names[i]);
+            ELEMENT_FLAGS.put(names[i], Integer.valueOf(old == null ? flag
+                    : old.intValue() | flag));
         }
     }
 
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Output buffers of finished serializers, one per thread.
+     */
+    private static final ThreadLocal<byte[]> BUFFER_POOL = new ThreadLocal<byte[]>();
+
     private int ignoreLevel = 0;
 
     private int escapeLevel = 0;
 
+    /**
+     * The writer or <code>null</code> when encoding UTF-8 into 
+     * <code>out</code> directly.
+     */
     private final Writer writer;
 
+    private final OutputStream out;
+
+    /**
+     * The UTF-8 output buffer.
+     */
+    private byte[] bytes;
+
+    private int bytesPos = 0;
+
+    /**
+     * A high surrogate at the end of the previous run or 0.
+     */
+    private char pendingHighSurrogate = '\u0000';
+
+    /**
+     * Scratch space for copying attribute values out of strings.
+     */
+    private char[] valueBuf = new char[64];
+
+    /**
+     * Instantiates a serializer that encodes UTF-8 into the stream itself 
+     * through a buffer instead of using an <code>OutputStreamWriter</code>. 
+     * Unpaired surrogates become question marks as with an 
+     * <code>OutputStreamWriter</code>.
+     * 
+     * @param out
+     *            the stream
+     */
     public HtmlSerializer(OutputStream out) {
-        this(wrap(out));
+        this.writer = null;
+        this.out = out;
+        byte[] pooled = BUFFER_POOL.get();
+        if (pooled == null) {
+            this.bytes = new byte[BUFFER_SIZE];
+        } else {
+            BUFFER_POOL.set(null);
+            this.bytes = pooled;
+        }
     }
 
     public HtmlSerializer(Writer out) {
         this.writer = out;
+        this.out = null;
+        this.bytes = null;
     }
 
     public void characters(char[] ch, int start, int length)
             throws SAXException {
         try {
             if (escapeLevel > 0) {
-                writer.write(ch, start, length);
+                write(ch, start, length);
             } else {
-                for (int i = start; i < start + length; i++) {
-                    char c = ch[i];
-                    switch (c) {
+                int end = start + length;
+                int runStart = start;
+                for (int i = start; i < end; i++) {
+                    String entity;
+                    switch (ch[i]) {
                         case '<':
-                            writer.write("&lt;");
+                            entity = "&lt;";
                             break;
                         case '>':
-                            writer.write("&gt;");
+                            entity = "&gt;";
                             break;
                         case '&':
-                            writer.write("&amp;");
+                            entity = "&amp;";
                             break;
                         case '\u00A0':
-                            writer.write("&nbsp;");
+                            entity = "&nbsp;";
                             break;
                         default:
-                            writer.write(c);
-                            break;
+                            continue;
                     }
+                    write(ch, runStart, i - runStart);
+                    write(entity);
+                    runStart = i + 1;
                 }
+                write(ch, runStart, end - runStart);
             }
         } catch (IOException e) {
             throw new SAXException(e);
         }
     }
 
+    /**
+     * Writes an attribute value, escaped, by runs.
+     */
+    private void writeAttributeValue(String val) throws IOException {
+        int length = val.length();
+        if (valueBuf.length < length) {
+            valueBuf = new char[length];
+        }
+        char[] ch = valueBuf;
+        val.getChars(0, length, ch, 0);
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            String entity;
+            switch (ch[i]) {
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '\u00A0':
+                    entity = "&nbsp;";
+                    break;
+                default:
+                    continue;
+            }
+            write(ch, runStart, i - runStart);
+            write(entity);
+            runStart = i + 1;
+        }
+        write(ch, runStart, length - runStart);
+    }
+
+    private void write(char c) throws IOException {
+        if (writer != null) {
+            writer.write(c);
+        } else {
+            if (bytesPos == bytes.length) {
+                flushBytes();
+            }
+            if (c < 0x80 && pendingHighSurrogate == '\u0000') {
+                bytes[bytesPos++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    private void write(String s) throws IOException {
+        if (writer != null) {
+            writer.write(s);
+        } else {
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80 && pendingHighSurrogate == '\u0000') {
+                    if (bytesPos == bytes.length) {
+                        flushBytes();
+                    }
+                    bytes[bytesPos++] = (byte) c;
+                } else {
+                    encode(c);
+                }
+            }
+        }
+    }
+
+    private void write(char[] ch, int start, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (writer != null) {
+            writer.write(ch, start, length);
+            return;
+        }
+        int end = start + length;
+        int i = start;
+        while (i < end) {
+            if (pendingHighSurrogate == '\u0000') {
+                // ASCII fast path
+                int room = bytes.length - bytesPos;
+                int stop = end - i < room ? end : i + room;
+                byte[] buf = bytes;
+                int pos = bytesPos;
+                while (i < stop) {
+                    char c = ch[i];
+                    if (c >= 0x80) {
+                        break;
+                    }
+                    buf[pos++] = (byte) c;
+                    i++;
+                }
+                bytesPos = pos;
+                if (i == end) {
+                    return;
+                }
+            }
+            if (bytesPos == bytes.length) {
+                flushBytes();
+            } else {
+                encode(ch[i]);
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Encodes one UTF-16 code unit into the buffer.
+     */
+    private void encode(char c) throws IOException {
+        if (bytes.length - bytesPos < 4) {
+            flushBytes();
+        }
+        byte[] buf = bytes;
+        if (pendingHighSurrogate != '\u0000') {
+            char high = pendingHighSurrogate;
+            pendingHighSurrogate = '\u0000';
+            if (c >= '\uDC00' && c <= '\uDFFF') {
+                int cp = (((high & 0x3FF) << 10) | (c & 0x3FF)) + 0x10000;
+                buf[bytesPos++] = (byte) ((cp >> 18) | 0xF0);
+                buf[bytesPos++] = (byte) (((cp >> 12) & 0x3F) | 0x80);
+                buf[bytesPos++] = (byte) (((cp >> 6) & 0x3F) | 0x80);
+                buf[bytesPos++] = (byte) ((cp & 0x3F) | 0x80);
+                return;
+            }
+            buf[bytesPos++] = '?';
+            if (bytes.length - bytesPos < 4) {
+                flushBytes();
+            }
+        }
+        if (c < 0x80) {
+            buf[bytesPos++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[bytesPos++] = (byte) ((c >> 6) | 0xC0);
+            buf[bytesPos++] = (byte) ((c & 0x3F) | 0x80);
+        } else if (c >= '\uD800' && c <= '\uDBFF') {
+            pendingHighSurrogate = c;
+        } else if (c >= '\uDC00' && c <= '\uDFFF') {
+            buf[bytesPos++] = '?';
+        } else {
+            buf[bytesPos++] = (byte) ((c >> 12) | 0xE0);
+            buf[bytesPos++] = (byte) (((c >> 6) & 0x3F) | 0x80);
+            buf[bytesPos++] = (byte) ((c & 0x3F) | 0x80);
+        }
+    }
+
+    private void flushBytes() throws IOException {
+        if (bytesPos > 0) {
+            out.write(bytes, 0, bytesPos);
+            bytesPos = 0;
+        }
+    }
+
+    /**
+     * Pushes everything written so far to the underlying stream or writer 
+     * without closing it.
+     */
+    void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else {
+            flushBytes();
+            out.flush();
+        }
+    }
+
     public void endDocument() throws SAXException {
         try {
-            writer.flush();
-            writer.close();
+            if (writer != null) {
+                writer.flush();
+                writer.close();
+            } else {
+                if (pendingHighSurrogate != '\u0000') {
+                    pendingHighSurrogate = '\u0000';
+                    if (bytesPos == bytes.length) {
+                        flushBytes();
+                    }
+                    bytes[bytesPos++] = '?';
+                }
+                flushBytes();
+                out.flush();
+                out.close();
+                BUFFER_POOL.set(bytes);
+                bytes = null;
+            }
         } catch (IOException e) {
             throw new SAXException(e);
         }
@@ -118,10 +373,10 @@ public class HtmlSerializer implements ContentHandler, LexicalHandler {
             ignoreLevel--;
         } else {
             try {
-                writer.write('<');
-                writer.write('/');
-                writer.write(localName);
-                writer.write('>');
+                write('<');
+                write('/');
+                write(localName);
+                write('>');
             } catch (IOException e) {
                 throw new SAXException(e);
             }
@@ -142,7 +397,7 @@ public class HtmlSerializer implements ContentHandler, LexicalHandler {
 
     public void startDocument() throws SAXException {
         try {
-            writer.write("<!DOCTYPE html>\n");
+            write("<!DOCTYPE html>\n");
         } catch (IOException e) {
             throw new SAXException(e);
         }
@@ -160,63 +415,49 @@ public class HtmlSerializer implements ContentHandler, LexicalHandler {
             return;
         }
         try {
-            writer.write('<');
-            writer.write(localName);
+            write('<');
+            write(localName);
             for (int i = 0; i < atts.getLength(); i++) {
                 String attUri = atts.getURI(i);
                 String attLocal = atts.getLocalName(i);
                 if (attUri.length() == 0) {
-                    writer.write(' ');
+                    write(' ');
                 } else if (!xhtml
                         && "http://www.w3.org/1999/xlink".equals(attUri)) {
-                    writer.write(" xlink:");
+                    write(" xlink:");
                 } else if ("http://www.w3.org/XML/1998/namespace".equals(attUri)) {
                     if (xhtml) {
                         if ("lang".equals(attLocal)) {
-                            writer.write(' ');
+                            write(' ');
                         } else {
                             continue;
                         }
                     } else {
-                        writer.write(" xml:");
+                        write(" xml:");
                     }
                 } else {
                     continue;
                 }
-                writer.write(atts.getLocalName(i));
-                writer.write('=');
-                writer.write('"');
-                String val = atts.getValue(i);
-                for (int j = 0; j < val.length(); j++) {
-                    char c = val.charAt(j);
-                    switch (c) {
-                        case '"':
-                            writer.write("&quot;");
-                            break;
-                        case '&':
-                            writer.write("&amp;");
-                            break;
-                        case '\u00A0':
-                            writer.write("&nbsp;");
-                            break;
-                        default:
-                            writer.write(c);
-                            break;
-                    }
-                }
-                writer.write('"');
+                write(atts.getLocalName(i));
+                write('=');
+                write('"');
+                writeAttributeValue(atts.getValue(i));
+                write('"');
             }
-            writer.write('>');
-            if (Arrays.binarySearch(VOID_ELEMENTS, localName) > -1) {
+            write('>');
+            Integer flagsObj = ELEMENT_FLAGS.get(localName);
+            if (flagsObj == null) {
+                return;
+            }
+            int flags = flagsObj.intValue();
+            if ((flags & VOID_FLAG) != 0) {
                 ignoreLevel++;
                 return;
             }
-            if ("pre".equals(localName) || "textarea".equals(localName)
-                    || "listing".equals(localName)) {
-                writer.write('\n');
+            if ((flags & LEADING_NEWLINE_FLAG) != 0) {
+                write('\n');
             }
-            if (escapeLevel == 0
-                    && Arrays.binarySearch(NON_ESCAPING, localName) > -1) {
+            if (escapeLevel == 0 && (flags & NON_ESCAPING_FLAG) != 0) {
                 escapeLevel = 1;
             }
         } catch (IOException e) {
@@ -229,9 +470,9 @@ public class HtmlSerializer implements ContentHandler, LexicalHandler {
             return;
         }
         try {
-            writer.write("<!--");
-            writer.write(ch, start, length);
-            writer.write("-->");
+            write("<!--");
+            write(ch, start, length);
+            write("-->");
         } catch (IOException e) {
             throw new SAXException(e);
         }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.sax;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import nu.validator.saxtree.CharBufferNode;
+import nu.validator.saxtree.Node;
+import nu.validator.saxtree.NodeType;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Serializes a <code>nu.validator.saxtree</code> tree as HTML without 
+ * replaying it through <code>TreeParser</code>. The tree is walked 
+ * iteratively, so deep trees do not overflow the stack. 
+ * 
+ * <p>Each node is still handed to an <code>HtmlSerializer</code> through 
+ * one call to its <code>ContentHandler</code> or 
+ * <code>LexicalHandler</code> methods, with the attributes and the 
+ * character buffers of the nodes passed as they are. This only saves the 
+ * dispatch through the nodes, the locator updates and the prefix mapping 
+ * events of <code>TreeParser</code>. Escaping and encoding cost the same 
+ * as with <code>TreeParser</code>. The output is the same as that of 
+ * <code>HtmlSerializer</code> receiving the events from 
+ * <code>TreeParser</code>. There is no XML counterpart; use 
+ * <code>TreeParser</code> with <code>XmlSerializer</code> for XML.
+ */
+public final class HtmlTreeSerializer {
+
+    private final HtmlSerializer serializer;
+
+    /**
+     * Instantiates a serializer that writes UTF-8 into a stream.
+     * 
+     * @param out
+     *            the stream
+     */
+    public HtmlTreeSerializer(OutputStream out) {
+        this.serializer = new HtmlSerializer(out);
+    }
+
+    /**
+     * Instantiates a serializer that writes into a writer.
+     * 
+     * @param out
+     *            the writer
+     */
+    public HtmlTreeSerializer(Writer out) {
+        this.serializer = new HtmlSerializer(out);
+    }
+
+    /**
+     * Serializes the tree rooted at the argument. For a 
+     * <code>Document</code>, the doctype is written first and the stream is 
+     * closed at the end, as with <code>HtmlSerializer</code>. For other nodes, 
+     * the stream is flushed but left open.
+     * 
+     * @param node
+     *            the root
+     * @throws SAXException
+     *             if writing fails
+     */
+    public void serialize(Node node) throws SAXException {
+        Node current = node;
+        Node next;
+        for (;;) {
+            start(current);
+            if ((next = current.getFirstChild()) != null) {
+                current = next;
+                continue;
+            }
+            for (;;) {
+                end(current);
+                if (current == node) {
+                    if (node.getNodeType() != NodeType.DOCUMENT) {
+                        try {
+                            serializer.flush();
+                        } catch (IOException e) {
+                            throw new SAXException(e);
+                        }
+                    }
+                    return;
+                }
+                if ((next = current.getNextSibling()) != null) {
+                    current = next;
+                    break;
+                }
+                current = current.getParentNode();
+            }
+        }
+    }
+
+    private void start(Node node) throws SAXException {
+        CharBufferNode text;
+        switch (node.getNodeType()) {
+            case ELEMENT:
+                serializer.startElement(node.getUri(), node.getLocalName(),
+                        node.getQName(), node.getAttributes());
+                return;
+            case CHARACTERS:
+            case IGNORABLE_WHITESPACE:
+                text = (CharBufferNode) node;
+                serializer.characters(text.getBuffer(), text.getStart(),
+                        text.getLength());
+                return;
+            case COMMENT:
+                text = (CharBufferNode) node;
+                serializer.comment(text.getBuffer(), text.getStart(),
+                        text.getLength());
+                return;
+            case DOCUMENT:
+                serializer.startDocument();
+                return;
+            default:
+                // Doctypes, CDATA and entity boundaries, processing
+                // instructions and skipped entities produce no output.
+                return;
+        }
+    }
+
+    private void end(Node node) throws SAXException {
+        switch (node.getNodeType()) {
+            case ELEMENT:
+                serializer.endElement(node.getUri(), node.getLocalName(),
+                        node.getQName());
+                return;
+            case DOCUMENT:
+                serializer.endDocument();
+                return;
+            default:
+                return;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.sax;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache of parse results keyed by a digest of the input and 
+ * the parser configuration. The results are immutable 
+ * <code>BinaryTreeWriter</code> streams, so one cache can be shared by 
+ * any number of <code>HtmlParser</code> instances on any threads. The 
+ * least recently used entries are evicted when the number of entries or 
+ * their total weight in bytes exceeds the limits.
+ * @see HtmlParser#setParseResultCache(ParseResultCache)
+ */
+public final class ParseResultCache {
+
+    /**
+     * A cache key.
+     */
+    static final class Key {
+
+        private final byte[] digest;
+
+        private final String configuration;
+
+        private final int hash;
+
+        Key(byte[] digest, String configuration) {
+            this.digest = digest;
+            this.configuration = configuration;
+            this.hash = Arrays.hashCode(digest) * 31 + configuration.hashCode();
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        @Override public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                    && Arrays.equals(digest, other.digest)
+                    && configuration.equals(other.configuration);
+        }
+
+        int weight() {
+            return digest.length + 2 * configuration.length();
+        }
+    }
+
+    private final int maxEntries;
+
+    private final long maxWeight;
+
+    /**
+     * The entries in access order.
+     */
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<Key, byte[]>(
+            16, 0.75f, true);
+
+    private long weight = 0;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private long evictions = 0;
+
+    /**
+     * The constructor.
+     * 
+     * @param maxEntries
+     *            the maximum number of cached results
+     * @param maxWeight
+     *            the maximum total size of the cached results in bytes
+     */
+    public ParseResultCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 0 || maxWeight < 0) {
+            throw new IllegalArgumentException("Negative cache limit.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the cached result for a key and counts a hit or a miss.
+     * 
+     * @param key
+     *            the key
+     * @return the result or <code>null</code>
+     */
+    synchronized byte[] get(Key key) {
+        byte[] result = entries.get(key);
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Caches a result and evicts the least recently used results that no 
+     * longer fit. Results heavier than the weight limit are not cached.
+     * 
+     * @param key
+     *            the key
+     * @param result
+     *            the result
+     */
+    synchronized void put(Key key, byte[] result) {
+        long entryWeight = key.weight() + result.length;
+        if (entryWeight > maxWeight || maxEntries == 0) {
+            return;
+        }
+        byte[] old = entries.put(key, result);
+        if (old != null) {
+            weight -= key.weight() + old.length;
+        }
+        weight += entryWeight;
+        Iterator<Map.Entry<Key, byte[]>> iter = entries.entrySet().iterator();
+        while (weight > maxWeight || entries.size() > maxEntries) {
+            Map.Entry<Key, byte[]> eldest = iter.next();
+            weight -= eldest.getKey().weight() + eldest.getValue().length;
+            iter.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes all results. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the number of cached results.
+     * 
+     * @return the number of cached results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the cached results in bytes.
+     * 
+     * @return the weight
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the number of lookups that found a result.
+     * 
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a result.
+     * 
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of results evicted to make room for others.
+     * 
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the maximum number of cached results.
+     * 
+     * @return the entry limit
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum total size of the cached results in bytes.
+     * 
+     * @return the weight limit
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+}
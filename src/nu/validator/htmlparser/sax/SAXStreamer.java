@@ -23,6 +23,10 @@
 
 package nu.validator.htmlparser.sax;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import nu.validator.htmlparser.impl.HtmlAttributes;
 import nu.validator.htmlparser.impl.TreeBuilder;
 
@@ -56,7 +60,9 @@ class SAXStreamer extends TreeBuilder<Attributes>{
 
     @Override
     protected void appendCharacters(Attributes parent, char[] buf, int start, int length) throws SAXException {
-        contentHandler.characters(buf, start, length);
+        if (interestedInText()) {
+            contentHandler.characters(buf, start, length);
+        }
     }
 
     /**
@@ -64,7 +70,9 @@ class SAXStreamer extends TreeBuilder<Attributes>{
      */
     @Override protected void appendIsindexPrompt(Attributes parent)
             throws SAXException {
-        contentHandler.characters(ISINDEX_PROMPT, 0, ISINDEX_PROMPT.length);
+        if (interestedInText()) {
+            contentHandler.characters(ISINDEX_PROMPT, 0, ISINDEX_PROMPT.length);
+        }
     }
 
     @Override
@@ -135,7 +143,9 @@ class SAXStreamer extends TreeBuilder<Attributes>{
      */
     @Override
     protected void elementPopped(String ns, String name, Attributes node) throws SAXException {
-        contentHandler.endElement(ns, name, name);
+        if (interestedIn(ns, name)) {
+            contentHandler.endElement(ns, name, name);
+        }
     }
 
     /**
@@ -143,7 +153,9 @@ class SAXStreamer extends TreeBuilder<Attributes>{
      */
     @Override
     protected void elementPushed(String ns, String name, Attributes node) throws SAXException {
-        contentHandler.startElement(ns, name, name, node);
+        if (interestedIn(ns, name)) {
+            contentHandler.startElement(ns, name, name, node);
+        }
     }
 
     /**
@@ -160,11 +172,35 @@ class SAXStreamer extends TreeBuilder<Attributes>{
     @Override
     protected void start(boolean fragment) throws SAXException {
         contentHandler.setDocumentLocator(tokenizer);
-        if (!fragment) {
+        if (!fragment && !isResuming()) {
             contentHandler.startDocument();
         }
     }
 
+    /**
+     * @see nu.validator.htmlparser.impl.TreeBuilder#supportsCheckpointing()
+     */
+    @Override
+    public boolean supportsCheckpointing() {
+        return true;
+    }
+
+    /**
+     * @see nu.validator.htmlparser.impl.TreeBuilder#writeNode(java.lang.Object, java.io.DataOutput)
+     */
+    @Override
+    protected void writeNode(Attributes node, DataOutput out) throws IOException {
+        ((HtmlAttributes) node).write(out);
+    }
+
+    /**
+     * @see nu.validator.htmlparser.impl.TreeBuilder#readNode(java.io.DataInput)
+     */
+    @Override
+    protected Attributes readNode(DataInput in) throws IOException {
+        return HtmlAttributes.read(in, true);
+    }
+
     protected void fatal() throws SAXException {
         SAXParseException spe = new SAXParseException(
                 "Cannot recover after last error. Any further errors will be ignored.",
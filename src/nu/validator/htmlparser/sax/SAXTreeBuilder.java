@@ -25,6 +25,7 @@ package nu.validator.htmlparser.sax;
 
 import nu.validator.htmlparser.impl.HtmlAttributes;
 import nu.validator.htmlparser.impl.TreeBuilder;
+import nu.validator.saxtree.CharSlab;
 import nu.validator.saxtree.Characters;
 import nu.validator.saxtree.Comment;
 import nu.validator.saxtree.DTD;
@@ -46,23 +47,45 @@ class SAXTreeBuilder extends TreeBuilder<Element> {
     
     private Node cachedTablePreviousSibling = null;
     
+    private boolean usingCharSlab = false;
+    
+    /**
+     * The slab for the text of the current document or <code>null</code> 
+     * if the nodes copy their characters.
+     */
+    private CharSlab slab = null;
+    
     SAXTreeBuilder() {
         super();
     }
     
+    private Characters newCharacters(char[] buf, int start, int length) {
+        if (slab == null) {
+            return new Characters(tokenizer, buf, start, length);
+        }
+        return new Characters(tokenizer, slab, buf, start, length);
+    }
+
+    private Comment newComment(char[] buf, int start, int length) {
+        if (slab == null) {
+            return new Comment(tokenizer, buf, start, length);
+        }
+        return new Comment(tokenizer, slab, buf, start, length);
+    }
+
     @Override
     protected void appendComment(Element parent, char[] buf, int start, int length) {
-        parent.appendChild(new Comment(tokenizer, buf, start, length));
+        parent.appendChild(newComment(buf, start, length));
     }
 
     @Override
     protected void appendCommentToDocument(char[] buf, int start, int length) {
-        document.appendChild(new Comment(tokenizer, buf, start, length));
+        document.appendChild(newComment(buf, start, length));
     }
 
     @Override
     protected void appendCharacters(Element parent, char[] buf, int start, int length) {
-        parent.appendChild(new Characters(tokenizer, buf, start, length));
+        parent.appendChild(newCharacters(buf, start, length));
     }
 
     /**
@@ -70,7 +93,7 @@ class SAXTreeBuilder extends TreeBuilder<Element> {
      */
     @Override protected void appendIsindexPrompt(Element parent)
             throws SAXException {
-        parent.appendChild(new Characters(tokenizer, ISINDEX_PROMPT, 0, ISINDEX_PROMPT.length));
+        parent.appendChild(newCharacters(ISINDEX_PROMPT, 0, ISINDEX_PROMPT.length));
     }
 
     @Override
@@ -114,6 +137,7 @@ class SAXTreeBuilder extends TreeBuilder<Element> {
     Document getDocument() {
         Document rv = document;
         document = null;
+        slab = null;
         return rv;
     }
     
@@ -121,6 +145,7 @@ class SAXTreeBuilder extends TreeBuilder<Element> {
         DocumentFragment rv = new DocumentFragment();
         rv.appendChildren(document.getFirstChild());
         document = null;
+        slab = null;
         return rv;
     }
 
@@ -131,6 +156,9 @@ class SAXTreeBuilder extends TreeBuilder<Element> {
     @Override
     protected void end() throws SAXException {
         document.setEndLocator(tokenizer);
+        if (slab != null) {
+            slab.trim();
+        }
         cachedTable = null;
         cachedTablePreviousSibling = null;
     }
@@ -141,6 +169,7 @@ class SAXTreeBuilder extends TreeBuilder<Element> {
     @Override
     protected void start(boolean fragment) {
         document = new Document(tokenizer);
+        slab = usingCharSlab ? new CharSlab() : null;
         cachedTable = null;
         cachedTablePreviousSibling = null;
     }
@@ -173,7 +202,7 @@ class SAXTreeBuilder extends TreeBuilder<Element> {
 
     @Override protected void insertFosterParentedCharacters(char[] buf,
             int start, int length, Element table, Element stackParent) throws SAXException {
-        Node child = new Characters(tokenizer, buf, start, length);
+        Node child = newCharacters(buf, start, length);
         ParentNode parent = table.getParentNode();
         if (parent != null) { // always an element if not null
             parent.insertBetween(child, previousSibling(table), table);
@@ -203,6 +232,17 @@ class SAXTreeBuilder extends TreeBuilder<Element> {
         }
     }
 
+    /**
+     * Sets whether the text and comment nodes of each document share one 
+     * growable character array instead of each node copying its 
+     * characters into an array of its own.
+     * 
+     * @param usingCharSlab <code>true</code> to share a slab per document
+     */
+    void setUsingCharSlab(boolean usingCharSlab) {
+        this.usingCharSlab = usingCharSlab;
+    }
+
     @Override protected void detachFromParent(Element element)
             throws SAXException {
         element.detach();
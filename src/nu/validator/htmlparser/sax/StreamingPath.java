@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.sax;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+
+/**
+ * A compiled path in the forward-only XPath subset understood by 
+ * <code>StreamingPathEvaluator</code>.
+ * 
+ * <p>The supported syntax is an absolute location path made of steps 
+ * separated by <code>/</code> (child axis) or <code>//</code> (descendant 
+ * axis). A step is a local name or <code>*</code> optionally followed by 
+ * predicates of the form <code>[@name]</code> or 
+ * <code>[@name='value']</code>. The last step may instead be 
+ * <code>@name</code> (the attribute value is reported) or 
+ * <code>text()</code> (the text runs directly inside the matched element are 
+ * reported). Otherwise, the string value of the matched element is reported.
+ * 
+ * <p>Name tests match the local name regardless of namespace. Names are 
+ * interned at compile time so that they can be compared by identity against 
+ * the interned names reported by the parser.
+ * 
+ * <p>Instances are immutable and can be shared between threads.
+ */
+public final class StreamingPath {
+
+    /**
+     * The string value of the matched element is reported.
+     */
+    static final int ELEMENT = 0;
+
+    /**
+     * The value of an attribute of the matched element is reported.
+     */
+    static final int ATTRIBUTE = 1;
+
+    /**
+     * The text directly inside the matched element is reported.
+     */
+    static final int TEXT = 2;
+
+    private static final int MAX_STEPS = 64;
+
+    private final String expression;
+
+    /**
+     * The interned local names of the steps; <code>null</code> for 
+     * <code>*</code>.
+     */
+    private final String[] names;
+
+    private final boolean[] descendant;
+
+    private final String[][] predicateNames;
+
+    /**
+     * The predicate values; <code>null</code> when the predicate only tests 
+     * for the presence of the attribute.
+     */
+    private final String[][] predicateValues;
+
+    private final int resultType;
+
+    private final String resultAttribute;
+
+    private StreamingPath(String expression, String[] names,
+            boolean[] descendant, String[][] predicateNames,
+            String[][] predicateValues, int resultType, String resultAttribute) {
+        this.expression = expression;
+        this.names = names;
+        this.descendant = descendant;
+        this.predicateNames = predicateNames;
+        this.predicateValues = predicateValues;
+        this.resultType = resultType;
+        this.resultAttribute = resultAttribute;
+    }
+
+    /**
+     * Compiles a path expression.
+     * 
+     * @param expression
+     *            the expression
+     * @return the compiled path
+     * @throws IllegalArgumentException
+     *             if the expression is not in the supported subset
+     */
+    public static StreamingPath compile(String expression) {
+        List<String> names = new ArrayList<String>();
+        List<Boolean> descendant = new ArrayList<Boolean>();
+        List<String[]> predicateNames = new ArrayList<String[]>();
+        List<String[]> predicateValues = new ArrayList<String[]>();
+        int resultType = ELEMENT;
+        String resultAttribute = null;
+        int len = expression.length();
+        int i = 0;
+        if (len == 0 || expression.charAt(0) != '/') {
+            throw unsupported(expression, "Only absolute paths are supported");
+        }
+        while (i < len) {
+            if (resultType != ELEMENT) {
+                throw unsupported(expression,
+                        "Attribute and text() steps must be last");
+            }
+            // axis
+            if (expression.charAt(i) != '/') {
+                throw unsupported(expression, "Expected \u201C/\u201D at "
+                        + i);
+            }
+            i++;
+            boolean desc = false;
+            if (i < len && expression.charAt(i) == '/') {
+                desc = true;
+                i++;
+            }
+            if (i == len) {
+                throw unsupported(expression, "Missing step at end");
+            }
+            // node test
+            char c = expression.charAt(i);
+            if (c == '@') {
+                if (desc) {
+                    throw unsupported(expression,
+                            "The descendant axis is not supported for attributes");
+                }
+                int start = ++i;
+                i = scanName(expression, i);
+                if (i == start) {
+                    throw unsupported(expression, "Missing attribute name");
+                }
+                resultType = ATTRIBUTE;
+                resultAttribute = expression.substring(start, i).intern();
+                continue;
+            }
+            if (expression.startsWith("text()", i)) {
+                if (desc) {
+                    throw unsupported(expression,
+                            "The descendant axis is not supported for text()");
+                }
+                i += 6;
+                resultType = TEXT;
+                continue;
+            }
+            String name;
+            if (c == '*') {
+                name = null;
+                i++;
+            } else {
+                int start = i;
+                i = scanName(expression, i);
+                if (i == start) {
+                    throw unsupported(expression, "Expected a name at " + i);
+                }
+                name = expression.substring(start, i).intern();
+            }
+            // predicates
+            List<String> predNames = new ArrayList<String>();
+            List<String> predValues = new ArrayList<String>();
+            while (i < len && expression.charAt(i) == '[') {
+                i++;
+                if (i == len || expression.charAt(i) != '@') {
+                    throw unsupported(expression,
+                            "Only attribute predicates are supported");
+                }
+                int start = ++i;
+                i = scanName(expression, i);
+                if (i == start) {
+                    throw unsupported(expression, "Missing attribute name");
+                }
+                predNames.add(expression.substring(start, i).intern());
+                String value = null;
+                if (i < len && expression.charAt(i) == '=') {
+                    i++;
+                    if (i == len) {
+                        throw unsupported(expression, "Missing literal");
+                    }
+                    char quote = expression.charAt(i);
+                    if (quote != '\'' && quote != '"') {
+                        throw unsupported(expression, "Expected a literal at "
+                                + i);
+                    }
+                    int end = expression.indexOf(quote, i + 1);
+                    if (end == -1) {
+                        throw unsupported(expression, "Unterminated literal");
+                    }
+                    value = expression.substring(i + 1, end);
+                    i = end + 1;
+                }
+                predValues.add(value);
+                if (i == len || expression.charAt(i) != ']') {
+                    throw unsupported(expression, "Expected \u201C]\u201D at "
+                            + i);
+                }
+                i++;
+            }
+            if (names.size() == MAX_STEPS) {
+                throw unsupported(expression, "Too many steps");
+            }
+            names.add(name);
+            descendant.add(Boolean.valueOf(desc));
+            predicateNames.add(predNames.toArray(new String[predNames.size()]));
+            predicateValues.add(predValues.toArray(new String[predValues.size()]));
+        }
+        if (names.isEmpty()) {
+            throw unsupported(expression, "At least one element step is required");
+        }
+        boolean[] desc = new boolean[descendant.size()];
+        for (int j = 0; j < desc.length; j++) {
+            desc[j] = descendant.get(j).booleanValue();
+        }
+        return new StreamingPath(expression,
+                names.toArray(new String[names.size()]), desc,
+                predicateNames.toArray(new String[predicateNames.size()][]),
+                predicateValues.toArray(new String[predicateValues.size()][]),
+                resultType, resultAttribute);
+    }
+
+    private static int scanName(String expression, int i) {
+        int len = expression.length();
+        while (i < len) {
+            char c = expression.charAt(i);
+            if (c == '/' || c == '[' || c == ']' || c == '@' || c == '='
+                    || c == '*' || c == '\'' || c == '"' || c == '('
+                    || c == ')' || c <= ' ') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static IllegalArgumentException unsupported(String expression,
+            String message) {
+        return new IllegalArgumentException(message + ": " + expression);
+    }
+
+    /**
+     * Returns the number of element steps.
+     * 
+     * @return the number of element steps
+     */
+    int getStepCount() {
+        return names.length;
+    }
+
+    /**
+     * Tells whether the step is on the descendant axis.
+     * 
+     * @param step
+     *            the step index
+     * @return <code>true</code> for <code>//</code>
+     */
+    boolean isDescendant(int step) {
+        return descendant[step];
+    }
+
+    int getResultType() {
+        return resultType;
+    }
+
+    String getResultAttribute() {
+        return resultAttribute;
+    }
+
+    /**
+     * Tests an element against a step. The local names have to be interned.
+     * 
+     * @param step
+     *            the step index
+     * @param localName
+     *            the interned local name of the element
+     * @param atts
+     *            the attributes of the element
+     * @return <code>true</code> if the element matches
+     */
+    boolean matches(int step, String localName, Attributes atts) {
+        String name = names[step];
+        if (name != null && name != localName) {
+            return false;
+        }
+        String[] predNames = predicateNames[step];
+        String[] predValues = predicateValues[step];
+        for (int i = 0; i < predNames.length; i++) {
+            String actual = attributeValue(atts, predNames[i]);
+            if (actual == null) {
+                return false;
+            }
+            String expected = predValues[i];
+            if (expected != null && !expected.equals(actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up a no-namespace attribute by interned local name.
+     * 
+     * @param atts
+     *            the attributes
+     * @param name
+     *            the interned local name
+     * @return the value or <code>null</code> if not present
+     */
+    static String attributeValue(Attributes atts, String name) {
+        for (int i = 0; i < atts.getLength(); i++) {
+            if (atts.getLocalName(i) == name && atts.getURI(i).length() == 0) {
+                return atts.getValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
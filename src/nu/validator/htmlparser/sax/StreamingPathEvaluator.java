@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.sax;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Evaluates a batch of <code>StreamingPath</code>s in a single pass over a 
+ * SAX event stream without building a tree. Intended to be set as the 
+ * content handler of an <code>HtmlParser</code> whose streamability 
+ * violation policy makes it use the streaming tree builder.
+ * 
+ * <p>For each open element, the evaluator keeps one bit mask per path 
+ * recording which steps may match its children and which may match any of 
+ * its descendants, so the cost per element is proportional to the number of 
+ * live candidate steps rather than the depth of the document.
+ * 
+ * <p>Element names are compared by identity, which relies on the parser 
+ * reporting interned names (the <code>string-interning</code> SAX feature).
+ * 
+ * <p>When the events come from a fragment parse, the first step of a path 
+ * is matched against the top-level elements of the fragment.
+ * 
+ * <p>Attribute values are reported as soon as the element starts. Element 
+ * string values and text runs are reported when they end, so values are 
+ * reported in document order of their end.
+ */
+public class StreamingPathEvaluator implements ContentHandler {
+
+    private final StreamingPath[] paths;
+
+    private final StreamingPathHandler handler;
+
+    /**
+     * Per depth and path, the steps that may match a child.
+     */
+    private long[] childMasks;
+
+    /**
+     * Per depth and path, the steps that may match a descendant.
+     */
+    private long[] descendantMasks;
+
+    private int depth;
+
+    private int[] capturePaths = new int[8];
+
+    private int[] captureDepths = new int[8];
+
+    private boolean[] captureTexts = new boolean[8];
+
+    private StringBuilder[] captureBuffers = new StringBuilder[8];
+
+    private int captureCount;
+
+    /**
+     * The constructor.
+     * 
+     * @param paths
+     *            the paths to evaluate; matches are reported using the index 
+     *            into this array
+     * @param handler
+     *            the handler receiving the selected values
+     */
+    public StreamingPathEvaluator(StreamingPath[] paths,
+            StreamingPathHandler handler) {
+        this.paths = paths;
+        this.handler = handler;
+        this.childMasks = new long[paths.length * 64];
+        this.descendantMasks = new long[paths.length * 64];
+        reset();
+    }
+
+    /**
+     * Sets up the masks for the first step of each path. Fragment parses 
+     * don't call <code>startDocument()</code>, so this is also done when 
+     * the evaluator is created. The masks at depth 0 are never written 
+     * after this.
+     */
+    private void reset() {
+        depth = 0;
+        captureCount = 0;
+        for (int p = 0; p < paths.length; p++) {
+            if (paths[p].isDescendant(0)) {
+                childMasks[p] = 0L;
+                descendantMasks[p] = 1L;
+            } else {
+                childMasks[p] = 1L;
+                descendantMasks[p] = 0L;
+            }
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startDocument()
+     */
+    public void startDocument() throws SAXException {
+        reset();
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startElement(java.lang.String,
+     *      java.lang.String, java.lang.String, org.xml.sax.Attributes)
+     */
+    public void startElement(String uri, String localName, String qName,
+            Attributes atts) throws SAXException {
+        flushTextRuns();
+        int n = paths.length;
+        int parentBase = depth * n;
+        depth++;
+        int base = depth * n;
+        if (base + n > childMasks.length) {
+            long[] newChildMasks = new long[childMasks.length * 2];
+            System.arraycopy(childMasks, 0, newChildMasks, 0, childMasks.length);
+            childMasks = newChildMasks;
+            long[] newDescendantMasks = new long[descendantMasks.length * 2];
+            System.arraycopy(descendantMasks, 0, newDescendantMasks, 0,
+                    descendantMasks.length);
+            descendantMasks = newDescendantMasks;
+        }
+        for (int p = 0; p < n; p++) {
+            long inherited = descendantMasks[parentBase + p];
+            long candidates = childMasks[parentBase + p] | inherited;
+            long newChild = 0L;
+            long newDescendant = inherited;
+            if (candidates != 0L) {
+                StreamingPath path = paths[p];
+                int last = path.getStepCount() - 1;
+                while (candidates != 0L) {
+                    int step = Long.numberOfTrailingZeros(candidates);
+                    candidates &= candidates - 1;
+                    if (path.matches(step, localName, atts)) {
+                        if (step == last) {
+                            matched(p, path, atts);
+                        } else if (path.isDescendant(step + 1)) {
+                            newDescendant |= 1L << (step + 1);
+                        } else {
+                            newChild |= 1L << (step + 1);
+                        }
+                    }
+                }
+            }
+            childMasks[base + p] = newChild;
+            descendantMasks[base + p] = newDescendant;
+        }
+    }
+
+    private void matched(int p, StreamingPath path, Attributes atts)
+            throws SAXException {
+        switch (path.getResultType()) {
+            case StreamingPath.ATTRIBUTE:
+                String value = StreamingPath.attributeValue(atts,
+                        path.getResultAttribute());
+                if (value != null) {
+                    handler.match(p, value);
+                }
+                return;
+            case StreamingPath.TEXT:
+                openCapture(p, true);
+                return;
+            default:
+                openCapture(p, false);
+                return;
+        }
+    }
+
+    private void openCapture(int p, boolean text) {
+        if (captureCount == capturePaths.length) {
+            int newLen = captureCount * 2;
+            int[] newPaths = new int[newLen];
+            System.arraycopy(capturePaths, 0, newPaths, 0, captureCount);
+            capturePaths = newPaths;
+            int[] newDepths = new int[newLen];
+            System.arraycopy(captureDepths, 0, newDepths, 0, captureCount);
+            captureDepths = newDepths;
+            boolean[] newTexts = new boolean[newLen];
+            System.arraycopy(captureTexts, 0, newTexts, 0, captureCount);
+            captureTexts = newTexts;
+            StringBuilder[] newBuffers = new StringBuilder[newLen];
+            System.arraycopy(captureBuffers, 0, newBuffers, 0, captureCount);
+            captureBuffers = newBuffers;
+        }
+        capturePaths[captureCount] = p;
+        captureDepths[captureCount] = depth;
+        captureTexts[captureCount] = text;
+        if (captureBuffers[captureCount] == null) {
+            captureBuffers[captureCount] = new StringBuilder();
+        } else {
+            captureBuffers[captureCount].setLength(0);
+        }
+        captureCount++;
+    }
+
+    /**
+     * Reports pending text runs of the current element before a child 
+     * element starts.
+     */
+    private void flushTextRuns() throws SAXException {
+        for (int i = captureCount - 1; i >= 0 && captureDepths[i] == depth; i--) {
+            StringBuilder buffer = captureBuffers[i];
+            if (captureTexts[i] && buffer.length() > 0) {
+                handler.match(capturePaths[i], buffer.toString());
+                buffer.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endElement(java.lang.String,
+     *      java.lang.String, java.lang.String)
+     */
+    public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+        while (captureCount > 0 && captureDepths[captureCount - 1] == depth) {
+            captureCount--;
+            StringBuilder buffer = captureBuffers[captureCount];
+            if (!captureTexts[captureCount] || buffer.length() > 0) {
+                handler.match(capturePaths[captureCount], buffer.toString());
+            }
+        }
+        depth--;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#characters(char[], int, int)
+     */
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        for (int i = 0; i < captureCount; i++) {
+            if (!captureTexts[i] || captureDepths[i] == depth) {
+                captureBuffers[i].append(ch, start, length);
+            }
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endDocument()
+     */
+    public void endDocument() throws SAXException {
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#ignorableWhitespace(char[], int, int)
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#processingInstruction(java.lang.String,
+     *      java.lang.String)
+     */
+    public void processingInstruction(String target, String data)
+            throws SAXException {
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#setDocumentLocator(org.xml.sax.Locator)
+     */
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#skippedEntity(java.lang.String)
+     */
+    public void skippedEntity(String name) throws SAXException {
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startPrefixMapping(java.lang.String,
+     *      java.lang.String)
+     */
+    public void startPrefixMapping(String prefix, String uri)
+            throws SAXException {
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endPrefixMapping(java.lang.String)
+     */
+    public void endPrefixMapping(String prefix) throws SAXException {
+    }
+}
@@ -32,10 +32,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CodingErrorAction;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Map;
-import java.util.Set;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
@@ -45,61 +42,6 @@ import org.xml.sax.ext.LexicalHandler;
 
 public class XmlSerializer implements ContentHandler, LexicalHandler {
 
-    private final class PrefixMapping {
-        public final String uri;
-
-        public final String prefix;
-
-        /**
-         * @param uri
-         * @param prefix
-         */
-        public PrefixMapping(String uri, String prefix) {
-            this.uri = uri;
-            this.prefix = prefix;
-        }
-
-        /**
-         * @see java.lang.Object#equals(java.lang.Object)
-         */
-        @Override public final boolean equals(Object obj) {
-            if (obj instanceof PrefixMapping) {
-                PrefixMapping other = (PrefixMapping) obj;
-                return this.prefix.equals(other.prefix);
-            } else {
-                return false;
-            }
-        }
-
-        /**
-         * @see java.lang.Object#hashCode()
-         */
-        @Override public final int hashCode() {
-            return prefix.hashCode();
-        }
-
-    }
-
-    private final class StackNode {
-        public final String uri;
-
-        public final String prefix;
-
-        public final String qName;
-
-        public final Set<PrefixMapping> mappings = new HashSet<PrefixMapping>();
-
-        /**
-         * @param uri
-         * @param qName
-         */
-        public StackNode(String uri, String qName, String prefix) {
-            this.uri = uri;
-            this.qName = qName;
-            this.prefix = prefix;
-        }
-    }
-
     private final static Map<String, String> WELL_KNOWN_ATTRIBUTE_PREFIXES = new HashMap<String, String>();
 
     static {
@@ -250,8 +192,39 @@ public class XmlSerializer implements ContentHandler, LexicalHandler {
         return new OutputStreamWriter(out, encoder);
     }
 
-    // grows from head
-    private final LinkedList<StackNode> stack = new LinkedList<StackNode>();
+    /**
+     * The qualified names of the open elements. Index 0 is a sentinel.
+     */
+    private String[] qNames = new String[32];
+
+    /**
+     * For each stack node, the index of its first namespace mapping. The 
+     * mappings of a node are the ones declared on the element that is 
+     * started next (i.e. on its child).
+     */
+    private int[] mappingStarts = new int[32];
+
+    /**
+     * The index of the current stack node.
+     */
+    private int depth = -1;
+
+    private String[] prefixes = new String[16];
+
+    private String[] uris = new String[16];
+
+    /**
+     * The number of namespace mappings in scope, all nodes combined.
+     */
+    private int mappingCount = 0;
+
+    /**
+     * The URI most recently looked up for an attribute prefix or 
+     * <code>null</code> if the cache is invalid.
+     */
+    private String cachedUri = null;
+
+    private String cachedPrefix = null;
 
     private final Writer writer;
 
@@ -267,44 +240,123 @@ public class XmlSerializer implements ContentHandler, LexicalHandler {
         
     }
 
-    private final void push(String uri, String local, String prefix) {
-        stack.addFirst(new StackNode(uri, local, prefix));
+    private final void push(String qName) {
+        depth++;
+        if (depth == qNames.length) {
+            String[] newQNames = new String[qNames.length << 1];
+            System.arraycopy(qNames, 0, newQNames, 0, qNames.length);
+            qNames = newQNames;
+            int[] newStarts = new int[mappingStarts.length << 1];
+            System.arraycopy(mappingStarts, 0, newStarts, 0,
+                    mappingStarts.length);
+            mappingStarts = newStarts;
+        }
+        qNames[depth] = qName;
+        mappingStarts[depth] = mappingCount;
     }
 
     private final String pop() {
-        String rv = stack.removeFirst().qName;
-        stack.getFirst().mappings.clear();
+        String rv = qNames[depth];
+        qNames[depth] = null;
+        depth--;
+        int start = mappingStarts[depth];
+        if (start != mappingCount) {
+            // Removing a mapping may unhide another one.
+            cachedUri = null;
+            for (int i = start; i < mappingCount; i++) {
+                prefixes[i] = null;
+                uris[i] = null;
+            }
+            mappingCount = start;
+        }
         return rv;
     }
 
+    private final void clearStack() {
+        for (int i = 0; i <= depth; i++) {
+            qNames[i] = null;
+        }
+        for (int i = 0; i < mappingCount; i++) {
+            prefixes[i] = null;
+            uris[i] = null;
+        }
+        depth = -1;
+        mappingCount = 0;
+        cachedUri = null;
+    }
+
     private final String lookupPrefixAttribute(String ns) {
         if ("http://www.w3.org/XML/1998/namespace".equals(ns)) {
             return "xml";
         }
-        Set<String> hidden = new HashSet<String>();
-        for (StackNode node : stack) {
-            for (PrefixMapping mapping : node.mappings) {
-                if (mapping.prefix.length() != 0 && mapping.uri.equals(ns)
-                        && !hidden.contains(mapping.prefix)) {
-                    return mapping.prefix;
-                }
-                hidden.add(mapping.prefix);
+        if (ns.equals(cachedUri)) {
+            return cachedPrefix;
+        }
+        for (int i = mappingCount - 1; i >= 0; i--) {
+            String prefix = prefixes[i];
+            if (prefix.length() != 0 && uris[i].equals(ns)
+                    && ns.equals(lookupUri(prefix))) {
+                cachedUri = ns;
+                cachedPrefix = prefix;
+                return prefix;
             }
         }
         return null;
     }
 
     private final String lookupUri(String prefix) {
-        for (StackNode node : stack) {
-            for (PrefixMapping mapping : node.mappings) {
-                if (mapping.prefix.equals(prefix)) {
-                    return mapping.uri;
-                }
+        for (int i = mappingCount - 1; i >= 0; i--) {
+            if (prefixes[i].equals(prefix)) {
+                return uris[i];
             }
         }
         return null;
     }
 
+    /**
+     * Tells whether the current node already has a mapping for the prefix.
+     */
+    private final boolean isMappedOnCurrent(String prefix) {
+        for (int i = mappingStarts[depth]; i < mappingCount; i++) {
+            if (prefixes[i].equals(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final void addMapping(String prefix, String uri) {
+        if (mappingCount == prefixes.length) {
+            String[] newPrefixes = new String[prefixes.length << 1];
+            System.arraycopy(prefixes, 0, newPrefixes, 0, prefixes.length);
+            prefixes = newPrefixes;
+            String[] newUris = new String[uris.length << 1];
+            System.arraycopy(uris, 0, newUris, 0, uris.length);
+            uris = newUris;
+        }
+        prefixes[mappingCount] = prefix;
+        uris[mappingCount] = uri;
+        mappingCount++;
+        if (cachedUri != null
+                && (cachedUri.equals(uri) || cachedPrefix.equals(prefix))) {
+            cachedUri = null;
+        }
+    }
+
+    private final void writeNamespaceDeclaration(int i) throws IOException {
+        writer.write(' ');
+        if (prefixes[i].length() == 0) {
+            writer.write("xmlns");
+        } else {
+            writer.write("xmlns:");
+            writer.write(prefixes[i]);
+        }
+        writer.write('=');
+        writer.write('"');
+        writeAttributeValue(uris[i]);
+        writer.write('"');
+    }
+
     private final boolean xmlNsQname(String name) {
         if (name == null) {
             return false;
@@ -438,7 +490,7 @@ public class XmlSerializer implements ContentHandler, LexicalHandler {
 
     public final void endDocument() throws SAXException {
         try {
-            stack.clear();
+            clearStack();
             writer.flush();
             writer.close();
         } catch (IOException e) {
@@ -528,8 +580,8 @@ public class XmlSerializer implements ContentHandler, LexicalHandler {
         } catch (IOException e) {
             throw new SAXException(e);
         }
-        stack.clear();
-        push(null, null, null);
+        clearStack();
+        push(null);
     }
 
     public final void startElement(String uri, String localName, String q,
@@ -577,18 +629,17 @@ public class XmlSerializer implements ContentHandler, LexicalHandler {
         try {
             writer.write('<');
             writer.write(qName);
-            for (PrefixMapping mapping : stack.getFirst().mappings) {
-                writer.write(' ');
-                if (mapping.prefix.length() == 0) {
-                    writer.write("xmlns");
-                } else {
-                    writer.write("xmlns:");
-                    writer.write(mapping.prefix);
+            // The default namespace first, then in declaration order
+            int start = mappingStarts[depth];
+            for (int i = start; i < mappingCount; i++) {
+                if (prefixes[i].length() == 0) {
+                    writeNamespaceDeclaration(i);
+                }
+            }
+            for (int i = start; i < mappingCount; i++) {
+                if (prefixes[i].length() != 0) {
+                    writeNamespaceDeclaration(i);
                 }
-                writer.write('=');
-                writer.write('"');
-                writeAttributeValue(mapping.uri);
-                writer.write('"');
             }
 
             for (int i = 0; i < attLen; i++) {
@@ -616,7 +667,7 @@ public class XmlSerializer implements ContentHandler, LexicalHandler {
         } catch (IOException e) {
             throw new SAXException(e);
         }
-        push(uri, qName, prefix);
+        push(qName);
     }
 
     public final void comment(char[] ch, int start, int length) throws SAXException {
@@ -711,21 +762,19 @@ public class XmlSerializer implements ContentHandler, LexicalHandler {
             throw new SAXException("Can bind a prefix to no namespace.");           
         }
         checkNCName(prefix);
-        Set<PrefixMapping> theSet = stack.getFirst().mappings;
-        PrefixMapping mapping = new PrefixMapping(uri, prefix);
-        if (theSet.contains(mapping)) {
+        if (isMappedOnCurrent(prefix)) {
             throw new SAXException(
                     "Attempt to map one prefix to two URIs on one element.");
         }
-        theSet.add(mapping);
+        addMapping(prefix, uri);
     }
 
     public final void startPrefixMappingPrivate(String prefix, String uri)
             throws SAXException {
-        if (uri.equals(lookupUri(prefix))) {
+        if (uri.equals(lookupUri(prefix)) || isMappedOnCurrent(prefix)) {
             return;
         }
-        stack.getFirst().mappings.add(new PrefixMapping(uri, prefix));
+        addMapping(prefix, uri);
     }
 
     public final void endPrefixMapping(String prefix) throws SAXException {
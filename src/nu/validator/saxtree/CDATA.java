@@ -56,7 +56,7 @@ public final class CDATA extends ParentNode {
      */
     @Override
     void revisit(TreeParser treeParser) throws SAXException {
-        treeParser.endCDATA(endLocator);
+        treeParser.endCDATA(treeParser.endLocator(this));
     }
 
     /**
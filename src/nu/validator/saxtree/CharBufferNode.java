@@ -26,16 +26,33 @@ package nu.validator.saxtree;
 import org.xml.sax.Locator;
 
 /**
- * A common superclass for character buffer node classes.
+ * A common superclass for character buffer node classes. The characters 
+ * are either copied into an array owned by the node or stored in a 
+ * <code>CharSlab</code> shared by the tree.
  * @version $Id$
  * @author hsivonen
  */
-public abstract class CharBufferNode extends Node {
+public abstract class CharBufferNode extends Node implements CharSequence {
 
     /**
-     * The buffer.
+     * The buffer or <code>null</code> if the characters are in the slab.
      */
-    protected final char[] buffer;
+    private final char[] buffer;
+    
+    /**
+     * The slab or <code>null</code> if the node owns its buffer.
+     */
+    private final CharSlab slab;
+    
+    /**
+     * The offset in the slab.
+     */
+    private final int start;
+    
+    /**
+     * The length.
+     */
+    private final int length;
     
     /**
      * The constructor.
@@ -48,6 +65,84 @@ public abstract class CharBufferNode extends Node {
         super(locator);
         this.buffer = new char[length];
         System.arraycopy(buf, start, buffer, 0, length);
+        this.slab = null;
+        this.start = 0;
+        this.length = length;
+    }
+
+    /**
+     * The constructor for nodes that store their characters in a slab.
+     * @param locator the locator
+     * @param slab the slab
+     * @param buf the buffer
+     * @param start the offset
+     * @param length the length
+     */
+    CharBufferNode(Locator locator, CharSlab slab, char[] buf, int start, int length) {
+        super(locator);
+        this.buffer = null;
+        this.slab = slab;
+        this.start = slab.append(buf, start, length);
+        this.length = length;
+    }
+
+    /**
+     * Returns the array holding the characters of this node. The array must 
+     * not be modified. If the node is stored in a slab, the array is the 
+     * current backing array of the slab.
+     * 
+     * @return the buffer
+     */
+    public final char[] getBuffer() {
+        return slab == null ? buffer : slab.getBuffer();
+    }
+
+    /**
+     * Returns the index of the first character of this node in the buffer.
+     * 
+     * @return the start index
+     */
+    public final int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the number of characters in this node.
+     * 
+     * @return the length
+     */
+    public final int getLength() {
+        return length;
+    }
+
+    /**
+     * 
+     * @see java.lang.CharSequence#length()
+     */
+    public final int length() {
+        return length;
+    }
+
+    /**
+     * 
+     * @see java.lang.CharSequence#charAt(int)
+     */
+    public final char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException();
+        }
+        return getBuffer()[start + index];
+    }
+
+    /**
+     * 
+     * @see java.lang.CharSequence#subSequence(int, int)
+     */
+    public final CharSequence subSequence(int begin, int end) {
+        if (begin < 0 || end > length || begin > end) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new String(getBuffer(), start + begin, end - begin);
     }
 
     /**
@@ -57,6 +152,6 @@ public abstract class CharBufferNode extends Node {
      */
     @Override
     public String toString() {
-        return new String(buffer);
+        return new String(getBuffer(), start, length);
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.saxtree;
+
+/**
+ * A growable character array that holds the text of the character buffer 
+ * nodes of one tree. Nodes created with a slab refer to a range of the slab 
+ * instead of copying their characters into arrays of their own. A slab 
+ * should not be shared by trees that have different lifetimes.
+ */
+public final class CharSlab {
+
+    /**
+     * The characters.
+     */
+    private char[] buffer;
+
+    /**
+     * The number of characters in use.
+     */
+    private int length = 0;
+
+    /**
+     * Constructs a slab with the default initial capacity.
+     */
+    public CharSlab() {
+        this(1024);
+    }
+
+    /**
+     * Constructs a slab.
+     * 
+     * @param initialCapacity the initial capacity in characters
+     */
+    public CharSlab(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity.");
+        }
+        this.buffer = new char[initialCapacity];
+    }
+
+    /**
+     * Appends characters to the slab.
+     * 
+     * @param buf the buffer
+     * @param start the offset in the buffer
+     * @param len the number of characters
+     * @return the offset of the appended characters in the slab
+     */
+    public int append(char[] buf, int start, int len) {
+        int offset = length;
+        int newLength = offset + len;
+        if (newLength > buffer.length) {
+            int newCapacity = buffer.length << 1;
+            if (newCapacity < newLength) {
+                newCapacity = newLength;
+            }
+            char[] newBuffer = new char[newCapacity];
+            System.arraycopy(buffer, 0, newBuffer, 0, offset);
+            buffer = newBuffer;
+        }
+        System.arraycopy(buf, start, buffer, offset, len);
+        length = newLength;
+        return offset;
+    }
+
+    /**
+     * Shrinks the backing array to the number of characters in use. To be 
+     * called when the tree is complete.
+     */
+    public void trim() {
+        if (length < buffer.length) {
+            char[] newBuffer = new char[length];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+    }
+
+    /**
+     * Returns the current backing array. The array is replaced when the 
+     * slab grows, so it must not be retained across appends. The array 
+     * must not be modified.
+     * 
+     * @return the buffer
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the number of characters in the slab.
+     * 
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+}
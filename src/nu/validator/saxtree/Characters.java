@@ -44,13 +44,25 @@ public final class Characters extends CharBufferNode {
         super(locator, buf, start, length);
     }
 
+    /**
+     * The constructor for a node whose characters are stored in a slab.
+     * @param locator the locator
+     * @param slab the slab shared by the tree
+     * @param buf the buffer
+     * @param start the offset in the buffer
+     * @param length the length
+     */
+    public Characters(Locator locator, CharSlab slab, char[] buf, int start, int length) {
+        super(locator, slab, buf, start, length);
+    }
+
     /**
      * 
      * @see nu.validator.saxtree.Node#visit(nu.validator.saxtree.TreeParser)
      */
     @Override
     void visit(TreeParser treeParser) throws SAXException {
-        treeParser.characters(buffer, 0, buffer.length, this);
+        treeParser.characters(getBuffer(), getStart(), getLength(), this);
     }
 
     /**
@@ -45,13 +45,25 @@ public final class Comment extends CharBufferNode {
         super(locator, buf, start, length);
     }
 
+    /**
+     * The constructor for a node whose characters are stored in a slab.
+     * @param locator the locator
+     * @param slab the slab shared by the tree
+     * @param buf the buffer
+     * @param start the offset in the buffer
+     * @param length the length
+     */
+    public Comment(Locator locator, CharSlab slab, char[] buf, int start, int length) {
+        super(locator, slab, buf, start, length);
+    }
+
     /**
      * 
      * @see nu.validator.saxtree.Node#visit(nu.validator.saxtree.TreeParser)
      */
     @Override
     void visit(TreeParser treeParser) throws SAXException {
-        treeParser.comment(buffer, 0, buffer.length, this);
+        treeParser.comment(getBuffer(), getStart(), getLength(), this);
     }
 
     /**
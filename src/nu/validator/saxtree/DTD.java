@@ -76,7 +76,7 @@ public final class DTD extends ParentNode {
      */
     @Override
     void revisit(TreeParser treeParser) throws SAXException {
-        treeParser.endDTD(endLocator);
+        treeParser.endDTD(treeParser.endLocator(this));
     }
 
     /**
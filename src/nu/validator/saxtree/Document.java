@@ -55,7 +55,7 @@ public final class Document extends ParentNode {
      */
     @Override
     void revisit(TreeParser treeParser) throws SAXException {
-        treeParser.endDocument(endLocator);
+        treeParser.endDocument(treeParser.endLocator(this));
     }
 
     /**
@@ -107,10 +107,10 @@ public final class Element extends ParentNode {
      */
     @Override
     void revisit(TreeParser treeParser) throws SAXException {
-        treeParser.endElement(uri, localName, qName, endLocator);
+        treeParser.endElement(uri, localName, qName, treeParser.endLocator(this));
         if (prefixMappings != null) {
             for (PrefixMapping mapping : prefixMappings) {
-                treeParser.endPrefixMapping(mapping.getPrefix(), endLocator);
+                treeParser.endPrefixMapping(mapping.getPrefix(), treeParser.endLocator(this));
             }
         }
     }
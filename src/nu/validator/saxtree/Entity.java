@@ -62,7 +62,7 @@ public final class Entity extends ParentNode {
      */
     @Override
     void revisit(TreeParser treeParser) throws SAXException {
-        treeParser.endEntity(name, endLocator);
+        treeParser.endEntity(name, treeParser.endLocator(this));
     }
 
     /**
@@ -70,6 +70,20 @@ public final class LocatorImpl implements Locator {
         }
     }
     
+    /**
+     * The constructor for stored values.
+     * @param systemId the system id
+     * @param publicId the public id
+     * @param line the line
+     * @param column the column
+     */
+    LocatorImpl(String systemId, String publicId, int line, int column) {
+        this.systemId = systemId;
+        this.publicId = publicId;
+        this.line = line;
+        this.column = column;
+    }
+    
     /**
      * 
      * @see org.xml.sax.Locator#getColumnNumber()
@@ -33,9 +33,24 @@ import org.xml.sax.Locator;
 public abstract class ParentNode extends Node {
 
     /**
-     * The end locator.
+     * The end system id.
      */
-    protected Locator endLocator;
+    private String endSystemId = null;
+    
+    /**
+     * The end public id.
+     */
+    private String endPublicId = null;
+    
+    /**
+     * The end column.
+     */
+    private int endColumn = -1;
+    
+    /**
+     * The end line.
+     */
+    private int endLine = -1;
     
     /**
      * The first child.
@@ -61,7 +76,17 @@ public abstract class ParentNode extends Node {
      * @param endLocator the endLocator to set
      */
     public void setEndLocator(Locator endLocator) {
-        this.endLocator = new LocatorImpl(endLocator);
+        if (endLocator == null) {
+            this.endSystemId = null;
+            this.endPublicId = null;
+            this.endColumn = -1;
+            this.endLine = -1;
+        } else {
+            this.endSystemId = endLocator.getSystemId();
+            this.endPublicId = endLocator.getPublicId();
+            this.endColumn = endLocator.getColumnNumber();
+            this.endLine = endLocator.getLineNumber();
+        }
     }
 
     /**
@@ -70,7 +95,56 @@ public abstract class ParentNode extends Node {
      * @param another the another node
      */
     public void copyEndLocator(ParentNode another) {
-        this.endLocator = another.endLocator;
+        this.endSystemId = another.endSystemId;
+        this.endPublicId = another.endPublicId;
+        this.endColumn = another.endColumn;
+        this.endLine = another.endLine;
+    }
+
+    /**
+     * Returns a new locator for the end of this node. The end location is 
+     * stored in the node itself, so the locator is created on demand.
+     * 
+     * @return the end locator
+     */
+    public Locator getEndLocator() {
+        return new LocatorImpl(endSystemId, endPublicId, endLine, endColumn);
+    }
+
+    /**
+     * Returns the end column.
+     * 
+     * @return the end column
+     */
+    final int getEndColumnNumber() {
+        return endColumn;
+    }
+
+    /**
+     * Returns the end line.
+     * 
+     * @return the end line
+     */
+    final int getEndLineNumber() {
+        return endLine;
+    }
+
+    /**
+     * Returns the end public id.
+     * 
+     * @return the end public id
+     */
+    final String getEndPublicId() {
+        return endPublicId;
+    }
+
+    /**
+     * Returns the end system id.
+     * 
+     * @return the end system id
+     */
+    final String getEndSystemId() {
+        return endSystemId;
     }
     
     /**
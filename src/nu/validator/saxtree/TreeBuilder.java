@@ -66,6 +66,16 @@ public class TreeBuilder implements ContentHandler, LexicalHandler {
      */
     private List<PrefixMapping> prefixMappings;
     
+    /**
+     * Whether text and comment nodes share a slab.
+     */
+    private boolean usingCharSlab = false;
+    
+    /**
+     * The slab for the current tree or <code>null</code>.
+     */
+    private CharSlab slab = null;
+    
     /**
      * Constructs a reusable <code>TreeBuilder</code> that builds 
      * <code>Document</code>s and copies attributes.
@@ -96,7 +106,11 @@ public class TreeBuilder implements ContentHandler, LexicalHandler {
      * @see org.xml.sax.ContentHandler#characters(char[], int, int)
      */
     public void characters(char[] ch, int start, int length) throws SAXException {
-        current.appendChild(new Characters(locator, ch, start, length));
+        if (slab == null) {
+            current.appendChild(new Characters(locator, ch, start, length));
+        } else {
+            current.appendChild(new Characters(locator, slab, ch, start, length));
+        }
     }
 
     /**
@@ -105,6 +119,9 @@ public class TreeBuilder implements ContentHandler, LexicalHandler {
      */
     public void endDocument() throws SAXException {
         current.setEndLocator(locator);
+        if (slab != null) {
+            slab.trim();
+        }
     }
 
     /**
@@ -128,7 +145,11 @@ public class TreeBuilder implements ContentHandler, LexicalHandler {
      * @see org.xml.sax.ContentHandler#ignorableWhitespace(char[], int, int)
      */
     public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
-        current.appendChild(new IgnorableWhitespace(locator, ch, start, length));
+        if (slab == null) {
+            current.appendChild(new IgnorableWhitespace(locator, ch, start, length));
+        } else {
+            current.appendChild(new IgnorableWhitespace(locator, slab, ch, start, length));
+        }
     }
 
     /**
@@ -157,6 +178,7 @@ public class TreeBuilder implements ContentHandler, LexicalHandler {
      */
     public void startDocument() throws SAXException {
         current = new Document(locator);
+        slab = usingCharSlab ? new CharSlab() : null;
     }
 
     /**
@@ -184,7 +206,11 @@ public class TreeBuilder implements ContentHandler, LexicalHandler {
      * @see org.xml.sax.ext.LexicalHandler#comment(char[], int, int)
      */
     public void comment(char[] ch, int start, int length) throws SAXException {
-        current.appendChild(new Comment(locator, ch, start, length));
+        if (slab == null) {
+            current.appendChild(new Comment(locator, ch, start, length));
+        } else {
+            current.appendChild(new Comment(locator, slab, ch, start, length));
+        }
     }
 
     /**
@@ -238,6 +264,20 @@ public class TreeBuilder implements ContentHandler, LexicalHandler {
         current = (ParentNode) current.appendChild(new Entity(locator, name));        
     }
 
+    /**
+     * Sets whether the text, whitespace and comment nodes of each tree 
+     * built from now on share one growable character array instead of 
+     * each node copying its characters into an array of its own.
+     * 
+     * @param usingCharSlab <code>true</code> to share a slab per tree
+     */
+    public void setUsingCharSlab(boolean usingCharSlab) {
+        this.usingCharSlab = usingCharSlab;
+        if (current instanceof DocumentFragment) {
+            slab = usingCharSlab ? new CharSlab() : null;
+        }
+    }
+
     /**
      * Returns the root (<code>Document</code> if building a full document or 
      * <code>DocumentFragment</code> if building a fragment.).
@@ -51,6 +51,65 @@ public final class TreeParser implements Locator {
      */
     private Locator locatorDelegate;
 
+    /**
+     * The view of the end location of the parent node being revisited.
+     */
+    private final EndLocator endLocator = new EndLocator();
+
+    /**
+     * Whether runs of adjacent <code>Characters</code> nodes are reported 
+     * as one <code>characters()</code> call.
+     */
+    private boolean coalescingCharacters = false;
+
+    /**
+     * The buffer for a run of adjacent <code>Characters</code> nodes.
+     */
+    private char[] pending = null;
+
+    /**
+     * The number of characters in <code>pending</code>.
+     */
+    private int pendingLength = 0;
+
+    /**
+     * The first node of the pending run.
+     */
+    private Locator pendingLocator = null;
+
+    /**
+     * The root of the tree being parsed. Siblings of the root are not part 
+     * of the tree, so a run never extends past it.
+     */
+    private Node root = null;
+
+    /**
+     * A locator that reads the end location stored in a parent node.
+     */
+    private static final class EndLocator implements Locator {
+
+        /**
+         * The node.
+         */
+        private ParentNode node;
+
+        public int getColumnNumber() {
+            return node.getEndColumnNumber();
+        }
+
+        public int getLineNumber() {
+            return node.getEndLineNumber();
+        }
+
+        public String getPublicId() {
+            return node.getEndPublicId();
+        }
+
+        public String getSystemId() {
+            return node.getEndSystemId();
+        }
+    }
+
     /**
      * The constructor.
      * 
@@ -83,6 +142,9 @@ public final class TreeParser implements Locator {
      */
     public void parse(Node node) throws SAXException {
         contentHandler.setDocumentLocator(this);
+        pendingLength = 0;
+        pendingLocator = null;
+        root = node;
         Node current = node;
         Node next;
         for (;;) {
@@ -105,15 +167,89 @@ public final class TreeParser implements Locator {
         }
     }
 
+    /**
+     * Sets whether runs of adjacent <code>Characters</code> nodes are 
+     * reported as one <code>characters()</code> call located at the first 
+     * node of the run. Off by default.
+     * 
+     * @param coalescingCharacters <code>true</code> to coalesce
+     */
+    public void setCoalescingCharacters(boolean coalescingCharacters) {
+        this.coalescingCharacters = coalescingCharacters;
+    }
+
+    /**
+     * Returns whether runs of adjacent <code>Characters</code> nodes are 
+     * coalesced.
+     * 
+     * @return <code>true</code> if coalescing
+     */
+    public boolean isCoalescingCharacters() {
+        return coalescingCharacters;
+    }
+
+    /**
+     * Returns the locator for the end of a parent node. The same instance 
+     * is reused for every node.
+     * 
+     * @param node the node being revisited
+     * @return the end locator
+     */
+    Locator endLocator(ParentNode node) {
+        endLocator.node = node;
+        return endLocator;
+    }
+
     /**
      * @see org.xml.sax.ContentHandler#characters(char[], int, int)
      */
-    void characters(char[] ch, int start, int length, Locator locator)
+    void characters(char[] ch, int start, int length, Characters node)
             throws SAXException {
-        this.locatorDelegate = locator;
+        if (coalescingCharacters) {
+            Node next = node == root ? null : node.getNextSibling();
+            boolean more = next != null
+                    && next.getNodeType() == NodeType.CHARACTERS;
+            if (more || pendingLength > 0) {
+                if (pendingLength == 0) {
+                    pendingLocator = node;
+                }
+                appendPending(ch, start, length);
+                if (more) {
+                    return;
+                }
+                this.locatorDelegate = pendingLocator;
+                pendingLocator = null;
+                int len = pendingLength;
+                pendingLength = 0;
+                contentHandler.characters(pending, 0, len);
+                return;
+            }
+        }
+        this.locatorDelegate = node;
         contentHandler.characters(ch, start, length);
     }
 
+    /**
+     * Appends characters to the pending run.
+     * 
+     * @param ch the buffer
+     * @param start the offset
+     * @param length the length
+     */
+    private void appendPending(char[] ch, int start, int length) {
+        int newLength = pendingLength + length;
+        if (pending == null || newLength > pending.length) {
+            int capacity = pending == null ? 1024 : pending.length << 1;
+            char[] newPending = new char[Math.max(newLength, capacity)];
+            if (pendingLength > 0) {
+                System.arraycopy(pending, 0, newPending, 0, pendingLength);
+            }
+            pending = newPending;
+        }
+        System.arraycopy(ch, start, pending, pendingLength, length);
+        pendingLength = newLength;
+    }
+
     /**
      * @see org.xml.sax.ContentHandler#endDocument()
      */
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.HtmlParser;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that the NFC checker reports the same errors at the same
+ * locations when the character handlers run on a helper thread.
+ */
+public class AsynchronousNormalizationTester {
+
+    private static boolean failed = false;
+
+    /**
+     * Logs the NFC errors with their locations.
+     */
+    private static final class NormalizationErrors implements ErrorHandler {
+
+        final StringBuilder log = new StringBuilder();
+
+        int count;
+
+        private void log(String kind, SAXParseException e) {
+            String message = e.getMessage();
+            if (message.indexOf("composing character") != -1
+                    || message.indexOf("Normalization Form C") != -1) {
+                log.append(kind).append(' ').append(e.getLineNumber()).append(
+                        ':').append(e.getColumnNumber()).append(' ').append(
+                        message).append('\n');
+                count++;
+            }
+        }
+
+        public void warning(SAXParseException e) throws SAXException {
+            log("warning", e);
+        }
+
+        public void error(SAXParseException e) throws SAXException {
+            log("error", e);
+        }
+
+        public void fatalError(SAXParseException e) throws SAXException {
+            log("fatal", e);
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    /**
+     * Returns a document with a decomposed character after
+     * <code>offset</code> characters of filler and, optionally, a combining
+     * mark right after a tag.
+     */
+    private static String testDocument(int offset, boolean markAfterTag) {
+        StringBuilder sb = new StringBuilder(
+                "<!DOCTYPE html><meta charset=utf-8><title>nfc</title>\n");
+        if (markAfterTag) {
+            sb.append("<p>\u0301x");
+        }
+        for (int i = 0; i < offset; i++) {
+            sb.append(i % 61 == 60 ? '\n' : 'a');
+        }
+        sb.append("caf\uD834\uDD5E\u0301 e\u0301");
+        for (int i = 0; i < 5000; i++) {
+            sb.append(i % 61 == 60 ? '\n' : 'b');
+        }
+        return sb.toString();
+    }
+
+    private static String parse(HtmlParser htmlParser, String src,
+            boolean bytes, boolean asynchronous) throws SAXException,
+            IOException {
+        NormalizationErrors errors = new NormalizationErrors();
+        htmlParser.setErrorHandler(errors);
+        htmlParser.setAsynchronousCharacterHandlers(asynchronous);
+        InputSource is;
+        if (bytes) {
+            is = new InputSource(new ByteArrayInputStream(
+                    src.getBytes("UTF-8")));
+        } else {
+            is = new InputSource(new StringReader(src));
+        }
+        htmlParser.parse(is);
+        if (errors.count == 0) {
+            check(false, "no NFC errors");
+        }
+        return errors.log.toString();
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setContentHandler(new DefaultHandler());
+        htmlParser.setCheckingNormalization(true);
+        for (int offset = 0; offset < 9000; offset += 127) {
+            for (int i = 0; i < 4; i++) {
+                boolean bytes = (i & 1) == 0;
+                boolean markAfterTag = (i & 2) == 0;
+                String src = testDocument(offset, markAfterTag);
+                String what = (bytes ? "bytes" : "chars") + " at " + offset
+                        + (markAfterTag ? " with a mark after a tag" : "");
+                String expected = parse(htmlParser, src, bytes, false);
+                String actual = parse(htmlParser, src, bytes, true);
+                check(expected.equals(actual), what
+                        + ": asynchronous errors differ:\n" + expected
+                        + "vs.\n" + actual);
+                // the parser must be usable synchronously again
+                check(expected.equals(parse(htmlParser, src, bytes, false)),
+                        what + ": synchronous errors differ after an "
+                                + "asynchronous parse");
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.BinaryTreeReader;
+import nu.validator.htmlparser.sax.BinaryTreeWriter;
+import nu.validator.htmlparser.sax.HtmlParser;
+import nu.validator.saxtree.ParentNode;
+import nu.validator.saxtree.TreeParser;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Round-trips parsed documents through <code>BinaryTreeWriter</code> and
+ * <code>BinaryTreeReader</code> and checks that damaged streams are
+ * reported as <code>SAXException</code>s.
+ */
+public class BinaryTreeTester {
+
+    private static boolean failed = false;
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static String testDocument() {
+        StringBuilder sb = new StringBuilder(
+                "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">"
+                        + "<html lang=en><title>round trip</title><!-- comment -->"
+                        + "<svg viewBox='0 0 1 1'><use xlink:href='#a'/><foreignObject><p>in svg</p></foreignObject></svg>"
+                        + "<math><mi definitionURL=x>x</mi></math>"
+                        + "<my-element data-x=1 data-y='\uD83D\uDE00'>custom</my-element>"
+                        + "<table><td>cell<td>cell</table><pre>\n\nfirst newline</pre>");
+        for (int i = 0; i < 2000; i++) {
+            // long text and many repeated and new strings
+            sb.append("<p class=c").append(i % 17).append(" id=p").append(i).append(
+                    ">caf\u00E9 &amp; \u20AC ").append(i).append(
+                    "<b><i>x</b>y</i>");
+        }
+        return sb.toString();
+    }
+
+    private static void parse(String src, ContentHandler contentHandler,
+            LexicalHandler lexicalHandler) throws SAXException, IOException {
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setContentHandler(contentHandler);
+        htmlParser.setLexicalHandler(lexicalHandler);
+        htmlParser.parse(new InputSource(new StringReader(src)));
+    }
+
+    private static void testRoundTrip() throws SAXException, IOException {
+        String src = testDocument();
+        StringWriter expected = new StringWriter();
+        TreeDumpContentHandler dumper = new TreeDumpContentHandler(expected);
+        parse(src, dumper, dumper);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTreeWriter writer = new BinaryTreeWriter(out);
+        parse(src, writer, writer);
+        byte[] bytes = out.toByteArray();
+
+        StringWriter replayed = new StringWriter();
+        dumper = new TreeDumpContentHandler(replayed);
+        new BinaryTreeReader(dumper, dumper).parse(new ByteArrayInputStream(
+                bytes));
+        check(expected.toString().equals(replayed.toString()),
+                "replayed events differ");
+
+        ParentNode root = BinaryTreeReader.readTree(new ByteArrayInputStream(
+                bytes));
+        StringWriter reparsed = new StringWriter();
+        dumper = new TreeDumpContentHandler(reparsed);
+        new TreeParser(dumper, dumper).parse(root);
+        check(expected.toString().equals(reparsed.toString()),
+                "tree differs");
+
+        testDamage(bytes);
+    }
+
+    /**
+     * Truncates and corrupts the stream. Either the damage goes unnoticed
+     * or a <code>SAXException</code> is thrown; nothing else may escape.
+     */
+    private static void testDamage(byte[] bytes) {
+        DefaultHandler ignorer = new DefaultHandler();
+        BinaryTreeReader reader = new BinaryTreeReader(ignorer, null);
+        int detected = 0;
+        int tries = 0;
+        for (int len = 0; len < bytes.length; len += 1 + len / 64) {
+            tries++;
+            try {
+                reader.parse(bytes, 0, len);
+            } catch (SAXException e) {
+                detected++;
+            } catch (RuntimeException e) {
+                check(false, "truncated to " + len + ": " + e);
+            }
+        }
+        check(detected > tries / 4, "only " + detected + " of " + tries
+                + " truncations detected");
+
+        Random random = new Random(45);
+        for (int i = 0; i < 2000; i++) {
+            byte[] copy = bytes.clone();
+            int at = 8 + random.nextInt(copy.length - 8);
+            copy[at] = (byte) random.nextInt(256);
+            try {
+                reader.parse(copy, 0, copy.length);
+            } catch (SAXException e) {
+                // expected for most
+            } catch (RuntimeException e) {
+                check(false, "byte " + at + " corrupted: " + e);
+            }
+        }
+    }
+
+    /**
+     * Exceptions thrown by the handlers must reach the caller as they are.
+     */
+    private static void testHandlerExceptions() throws SAXException,
+            IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTreeWriter writer = new BinaryTreeWriter(out);
+        parse("<p>text", writer, writer);
+        byte[] bytes = out.toByteArray();
+
+        final SAXException thrown = new SAXException("from the handler");
+        try {
+            new BinaryTreeReader(new DefaultHandler() {
+                @Override public void characters(char[] ch, int start,
+                        int length) throws SAXException {
+                    throw thrown;
+                }
+            }, null).parse(bytes, 0, bytes.length);
+            check(false, "no exception");
+        } catch (SAXException e) {
+            check(e == thrown, "handler SAXException replaced: " + e);
+        }
+
+        final RuntimeException bug = new ArrayIndexOutOfBoundsException(
+                "bug in the handler");
+        try {
+            new BinaryTreeReader(new DefaultHandler() {
+                @Override public void startElement(String uri,
+                        String localName, String qName, Attributes atts)
+                        throws SAXException {
+                    throw bug;
+                }
+            }, null).parse(bytes, 0, bytes.length);
+            check(false, "no exception");
+        } catch (RuntimeException e) {
+            check(e == bug, "handler RuntimeException replaced: " + e);
+        } catch (SAXException e) {
+            check(false, "handler RuntimeException reported as " + e);
+        }
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        testRoundTrip();
+        testHandlerExceptions();
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.io.CheckpointHandler;
+import nu.validator.htmlparser.io.ParseCheckpoint;
+import nu.validator.htmlparser.sax.HtmlParser;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that resuming a parse from a checkpoint reports the same events
+ * as the rest of the original parse.
+ */
+public class CheckpointTester {
+
+    private static boolean failed = false;
+
+    /**
+     * Logs the events as text. Character data is logged as is, so a text
+     * run split by a checkpoint logs the same as an unsplit one.
+     */
+    private static final class EventRecorder extends DefaultHandler {
+
+        final StringBuilder log = new StringBuilder();
+
+        @Override public void startElement(String uri, String localName,
+                String qName, Attributes atts) throws SAXException {
+            log.append('<').append(localName);
+            for (int i = 0; i < atts.getLength(); i++) {
+                log.append(' ').append(atts.getLocalName(i)).append('=').append(
+                        atts.getValue(i));
+            }
+            log.append('>');
+        }
+
+        @Override public void endElement(String uri, String localName,
+                String qName) throws SAXException {
+            log.append("</").append(localName).append('>');
+        }
+
+        @Override public void characters(char[] ch, int start, int length)
+                throws SAXException {
+            for (int i = start; i < start + length; i++) {
+                char c = ch[i];
+                if (c == '<') {
+                    log.append("&lt;");
+                } else if (c == '&') {
+                    log.append("&amp;");
+                } else {
+                    log.append(c);
+                }
+            }
+        }
+
+        @Override public void endDocument() throws SAXException {
+            log.append("#end");
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static byte[] testDocument() throws IOException {
+        StringBuilder sb = new StringBuilder(
+                "<!DOCTYPE html><meta charset=utf-8><title>checkpoints</title><table>");
+        for (int i = 0; i < 4000; i++) {
+            sb.append("<tr class=r").append(i).append("><td>caf\u00E9 ").append(
+                    i).append("<td><b><i>bold ").append(i).append("</b> italic</i>\n");
+        }
+        sb.append("</table><p>end");
+        return sb.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        byte[] bytes = testDocument();
+
+        final EventRecorder full = new EventRecorder();
+        final List<ParseCheckpoint> checkpoints = new ArrayList<ParseCheckpoint>();
+        final List<Integer> logLengths = new ArrayList<Integer>();
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setStreamabilityViolationPolicy(XmlViolationPolicy.FATAL);
+        htmlParser.setContentHandler(full);
+        htmlParser.setCheckpointHandler(new CheckpointHandler() {
+            public void checkpoint(ParseCheckpoint checkpoint) {
+                checkpoints.add(checkpoint);
+                logLengths.add(Integer.valueOf(full.log.length()));
+            }
+        });
+        htmlParser.parse(new InputSource(new ByteArrayInputStream(bytes)));
+        check(checkpoints.size() > 1, "no checkpoints");
+
+        for (int i = 0; i < checkpoints.size(); i += Math.max(1,
+                checkpoints.size() / 4)) {
+            ParseCheckpoint checkpoint = checkpoints.get(i);
+            EventRecorder resumed = new EventRecorder();
+            HtmlParser resumer = new HtmlParser(XmlViolationPolicy.ALLOW);
+            resumer.setStreamabilityViolationPolicy(XmlViolationPolicy.FATAL);
+            resumer.setContentHandler(resumed);
+            int offset = (int) checkpoint.getByteOffset();
+            resumer.resume(checkpoint, new InputSource(new ByteArrayInputStream(
+                    bytes, offset, bytes.length - offset)));
+            String expected = full.log.substring(logLengths.get(i).intValue());
+            check(expected.equals(resumed.log.toString()),
+                    "resuming from checkpoint " + i + " differs");
+        }
+
+        // Tree-building parsers can't write their state and must not be
+        // asked to.
+        checkpoints.clear();
+        EventRecorder tree = new EventRecorder();
+        HtmlParser treeParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        treeParser.setContentHandler(tree);
+        treeParser.setCheckpointHandler(new CheckpointHandler() {
+            public void checkpoint(ParseCheckpoint checkpoint) {
+                checkpoints.add(checkpoint);
+            }
+        });
+        treeParser.parse(new InputSource(new ByteArrayInputStream(bytes)));
+        check(checkpoints.isEmpty(), "checkpoint from a tree builder");
+        check(full.log.toString().equals(tree.log.toString()),
+                "tree parse differs");
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
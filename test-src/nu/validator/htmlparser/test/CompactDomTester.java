@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import nu.validator.htmlparser.dom.CompactDOMImplementation;
+import nu.validator.htmlparser.dom.HtmlDocumentBuilder;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Compares trees built with the compact DOM against trees built with the
+ * default DOM implementation and checks that very deep trees don't exhaust
+ * the Java stack.
+ */
+public class CompactDomTester {
+
+    private static final String testSrc = "<!DOCTYPE html><html lang=en><body id=b class=c><p id=x title=t>hi<svg viewBox='0 0 1 1'><use xlink:href='#a'/></svg><math><mi>x</mi></math><table><td>cell<form id=f><input form=f name=n></table><b><i>x</b>y</i><!-- c --><table>foster<tr><td>a</table>";
+
+    private static final String XHTML_NS = "http://www.w3.org/1999/xhtml";
+
+    private static final int DEPTH = 100000;
+
+    private static boolean failed = false;
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static Document parse(HtmlDocumentBuilder builder, String src)
+            throws SAXException, IOException {
+        return builder.parse(new InputSource(new StringReader(src)));
+    }
+
+    private static void dump(Node node, StringBuilder sb) {
+        sb.append(node.getNodeType()).append('{').append(
+                node.getNamespaceURI()).append('|').append(node.getNodeName()).append(
+                '|').append(node.getNodeValue());
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            // The implementations order attributes differently.
+            List<String> list = new ArrayList<String>();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attr = attributes.item(i);
+                list.add(attr.getNamespaceURI() + "|" + attr.getLocalName()
+                        + "=" + attr.getNodeValue());
+            }
+            Collections.sort(list);
+            sb.append(list);
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            dump(child, sb);
+        }
+        sb.append('}');
+    }
+
+    static String dump(Node node) {
+        StringBuilder sb = new StringBuilder();
+        dump(node, sb);
+        return sb.toString();
+    }
+
+    private static void testEquivalence() throws SAXException, IOException {
+        Document expected = parse(new HtmlDocumentBuilder(), testSrc);
+        Document actual = parse(new HtmlDocumentBuilder(
+                new CompactDOMImplementation()), testSrc);
+        check(dump(expected).equals(dump(actual)), "tree differs");
+        check(
+                expected.getElementsByTagName("td").getLength() == actual.getElementsByTagName(
+                        "td").getLength(), "getElementsByTagName differs");
+        check(
+                expected.getDocumentElement().getTextContent().equals(
+                        actual.getDocumentElement().getTextContent()),
+                "text content differs");
+        check("p".equals(actual.getElementById("x").getLocalName()),
+                "getElementById");
+        try {
+            actual.getDocumentElement().appendChild(actual.createTextNode("y"));
+            check(false, "tree is not read-only");
+        } catch (DOMException e) {
+            check(e.code == DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                    "wrong exception code");
+        }
+        Document clone = (Document) actual.cloneNode(true);
+        check(clone.isEqualNode(actual), "clone not equal");
+        clone.getElementById("x").appendChild(clone.createTextNode("y"));
+        clone.getElementById("x").appendChild(clone.createTextNode("z"));
+        check(!clone.isEqualNode(actual), "modified clone equal");
+        clone.normalize();
+        check(clone.getElementById("x").getLastChild().getNodeValue().endsWith(
+                "yz"), "normalize");
+    }
+
+    private static void testDeepNesting() throws SAXException, IOException,
+            ParserConfigurationException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < DEPTH; i++) {
+            sb.append("<div>");
+        }
+        sb.append("<span id=deep>deep</span>");
+        String src = sb.toString();
+        HtmlDocumentBuilder builder = new HtmlDocumentBuilder(
+                new CompactDOMImplementation());
+        Document doc = parse(builder, src);
+        check("deep".equals(doc.getDocumentElement().getTextContent()),
+                "deep text content");
+        check(doc.getElementsByTagName("div").getLength() == DEPTH,
+                "deep getElementsByTagName");
+        Element deep = doc.getElementById("deep");
+        check(deep != null && "span".equals(deep.getLocalName()),
+                "deep getElementById");
+        Document clone = (Document) doc.cloneNode(true);
+        check(clone.isEqualNode(doc), "deep clone not equal");
+        clone.normalize();
+        Document other = new CompactDOMImplementation().createDocument(null,
+                null, null);
+        Node imported = other.importNode(doc.getDocumentElement(), true);
+        check(imported.isEqualNode(doc.getDocumentElement()),
+                "deep import not equal");
+        Document foreign = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        // Built from the bottom up, because appending to a deep element 
+        // walks all its ancestors.
+        Node root = foreign.createTextNode("deep");
+        for (int i = 0; i < DEPTH; i++) {
+            Node parent = foreign.createElementNS(XHTML_NS, "div");
+            parent.appendChild(root);
+            root = parent;
+        }
+        imported = other.importNode(root, true);
+        check(imported.isEqualNode(root), "deep foreign import not equal");
+        check("deep".equals(imported.getTextContent()),
+                "deep foreign import text content");
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     * @throws ParserConfigurationException
+     */
+    public static void main(String[] args) throws SAXException, IOException,
+            ParserConfigurationException {
+        testEquivalence();
+        testDeepNesting();
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
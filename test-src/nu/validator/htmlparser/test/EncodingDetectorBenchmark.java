@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.common.Heuristics;
+import nu.validator.htmlparser.io.EncodingDetector;
+import nu.validator.htmlparser.io.HtmlInputStreamReader;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Times <code>EncodingDetector</code> against setting up an 
+ * <code>HtmlInputStreamReader</code> over a corpus and checks that both 
+ * agree. The corpus is the files named on the command line or, if there 
+ * are none, a built-in set of documents in several encodings.
+ */
+public class EncodingDetectorBenchmark {
+
+    private static final int ROUNDS = 20;
+
+    private static final String FILLER = "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n";
+
+    private static byte[] document(String head, String encoding, byte[] bom,
+            String body) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html>\n<head>\n");
+        sb.append(head);
+        sb.append("<title>Test</title>\n</head>\n<body>\n");
+        for (int i = 0; i < 40; i++) {
+            sb.append(FILLER);
+            sb.append(body);
+        }
+        sb.append("</body>\n</html>\n");
+        byte[] text = sb.toString().getBytes(encoding);
+        byte[] doc = new byte[bom.length + text.length];
+        System.arraycopy(bom, 0, doc, 0, bom.length);
+        System.arraycopy(text, 0, doc, bom.length, text.length);
+        return doc;
+    }
+
+    private static List<byte[]> builtInCorpus() throws IOException {
+        byte[] none = new byte[0];
+        List<byte[]> corpus = new ArrayList<byte[]>();
+        corpus.add(document("", "UTF-8", new byte[] { (byte) 0xEF,
+                (byte) 0xBB, (byte) 0xBF }, "\u00E9t\u00E9 \u2014 \u65E5\u672C\n"));
+        corpus.add(document("", "UTF-16LE",
+                new byte[] { (byte) 0xFF, (byte) 0xFE }, "\u00E9t\u00E9\n"));
+        corpus.add(document("<meta charset=\"utf-8\">\n", "UTF-8", none,
+                "\u00E9t\u00E9 \u2014 \u65E5\u672C\n"));
+        corpus.add(document("<meta charset=windows-1252>\n", "windows-1252",
+                none, "\u00E9t\u00E9\n"));
+        corpus.add(document("<meta charset=shift_jis>\n", "Shift_JIS", none,
+                "\u65E5\u672C\u8A9E\n"));
+        corpus.add(document(
+                "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=koi8-r\">\n",
+                "KOI8-R", none, "\u043F\u0440\u0438\u0432\u0435\u0442\n"));
+        corpus.add(document(
+                "<!-- no declaration here -->\n<link rel=stylesheet href=a.css>\n",
+                "ISO-8859-1", none, "caf\u00E9\n"));
+        return corpus;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] buf = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int off = 0;
+            while (off < buf.length) {
+                int num = in.read(buf, off, buf.length - off);
+                if (num == -1) {
+                    break;
+                }
+                off += num;
+            }
+        } finally {
+            in.close();
+        }
+        return buf;
+    }
+
+    private static String viaReader(byte[] doc, Heuristics heuristics)
+            throws IOException, SAXException {
+        HtmlInputStreamReader reader = new HtmlInputStreamReader(
+                new ByteArrayInputStream(doc), null, null, null, heuristics);
+        return reader.getCharset().name();
+    }
+
+    /**
+     * @param args
+     *            the corpus files
+     * @throws SAXException
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException, SAXException {
+        List<byte[]> corpus;
+        if (args.length == 0) {
+            corpus = builtInCorpus();
+        } else {
+            corpus = new ArrayList<byte[]>();
+            for (int i = 0; i < args.length; i++) {
+                corpus.add(readFile(new File(args[i])));
+            }
+        }
+        Heuristics heuristics = Heuristics.NONE;
+        EncodingDetector detector = new EncodingDetector(heuristics);
+        int mismatches = 0;
+        for (byte[] doc : corpus) {
+            EncodingDetector.Result result = detector.detect(doc);
+            String detected = result.getEncoding().newDecoder().charset().name();
+            String expected = viaReader(doc, heuristics);
+            System.out.println(result);
+            if (!detected.equals(expected)) {
+                System.err.println("Mismatch. Reader: " + expected
+                        + " detector: " + detected + ".");
+                mismatches++;
+            }
+        }
+        int iterations = Math.max(1, 200000 / corpus.size());
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (byte[] doc : corpus) {
+                    detector.detect(doc);
+                }
+            }
+            long detectorTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (byte[] doc : corpus) {
+                    viaReader(doc, heuristics);
+                }
+            }
+            long readerTime = System.nanoTime() - start;
+            long docs = (long) iterations * corpus.size();
+            System.out.println("EncodingDetector: " + (detectorTime / docs)
+                    + " ns/doc, HtmlInputStreamReader: " + (readerTime / docs)
+                    + " ns/doc");
+        }
+        if (mismatches != 0) {
+            System.err.println(mismatches + " mismatches.");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.HtmlParser;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that a late <code>meta charset</code> after an ASCII-only prefix
+ * switches the decoder in place and that the other cases still reparse.
+ */
+public class EncodingSwitchTester {
+
+    private static boolean failed = false;
+
+    /**
+     * Collects the text and the error messages of a parse.
+     */
+    private static final class Recorder extends DefaultHandler {
+
+        final StringBuilder text = new StringBuilder();
+
+        final StringBuilder errors = new StringBuilder();
+
+        @Override public void startDocument() throws SAXException {
+            // a reparse starts the document again
+            text.setLength(0);
+        }
+
+        @Override public void characters(char[] ch, int start, int length)
+                throws SAXException {
+            text.append(ch, start, length);
+        }
+
+        @Override public void error(SAXParseException e) throws SAXException {
+            errors.append(e.getMessage()).append('\n');
+        }
+
+        @Override public void warning(SAXParseException e)
+                throws SAXException {
+            errors.append(e.getMessage()).append('\n');
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    /**
+     * Builds a document whose meta is too far in to be found by the
+     * prescan.
+     */
+    private static byte[] document(byte[] prefixText, String charset,
+            byte[] bodyText) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("<!DOCTYPE html><title>".getBytes("US-ASCII"));
+        for (int i = 0; i < 200; i++) {
+            out.write("late ".getBytes("US-ASCII"));
+        }
+        out.write(prefixText);
+        out.write(("</title><meta charset=" + charset + "><p>").getBytes("US-ASCII"));
+        out.write(bodyText);
+        return out.toByteArray();
+    }
+
+    private static Recorder parse(byte[] bytes) throws SAXException,
+            IOException {
+        Recorder recorder = new Recorder();
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setContentHandler(recorder);
+        htmlParser.setErrorHandler(recorder);
+        htmlParser.parse(new InputSource(new ByteArrayInputStream(bytes)));
+        return recorder;
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        String body = "caf\u00E9 \u20AC \uD83D\uDE00";
+        byte[] ascii = "ascii".getBytes("US-ASCII");
+
+        // An ASCII prefix and a late UTF-8 meta: switched in place
+        Recorder recorder = parse(document(ascii, "utf-8",
+                body.getBytes("UTF-8")));
+        String errors = recorder.errors.toString();
+        check(errors.indexOf("not reparsing") != -1,
+                "no in-place switch:\n" + errors);
+        check(recorder.text.toString().endsWith(body),
+                "text after the switch: " + recorder.text);
+
+        // A non-ASCII byte before the meta: reparsed
+        byte[] shortI = { (byte) 0xE9 };
+        recorder = parse(document(shortI, "windows-1251", shortI));
+        errors = recorder.errors.toString();
+        check(errors.indexOf("and reparsing") != -1, "no reparse:\n"
+                + errors);
+        check(errors.indexOf("not reparsing") == -1,
+                "switched in place after a non-ASCII byte");
+        check(recorder.text.toString().endsWith("late \u0439\u0439"),
+                "text after the reparse: " + recorder.text);
+
+        // An ASCII superset that doesn't decode ASCII bytes as themselves:
+        // reparsed
+        recorder = parse(document(ascii, "iso-2022-jp",
+                "text".getBytes("US-ASCII")));
+        errors = recorder.errors.toString();
+        check(errors.indexOf("and reparsing") != -1,
+                "no reparse for iso-2022-jp:\n" + errors);
+
+        // Not an ASCII superset: UTF-16 is refused and, as the spec says,
+        // taken to mean UTF-8, which can be switched to in place
+        recorder = parse(document(ascii, "utf-16", shortI));
+        errors = recorder.errors.toString();
+        check(errors.indexOf("not an ASCII superset") != -1,
+                "utf-16 not refused:\n" + errors);
+        check(errors.indexOf("and reparsing") == -1, "utf-16 reparsed:\n"
+                + errors);
+        check(recorder.text.toString().endsWith("ascii\uFFFD"),
+                "text after the utf-16 declaration: " + recorder.text);
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
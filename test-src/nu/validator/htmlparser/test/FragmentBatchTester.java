@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.dom.CompactDOMImplementation;
+import nu.validator.htmlparser.dom.FragmentCache;
+import nu.validator.htmlparser.dom.HtmlDocumentBuilder;
+
+import org.w3c.dom.DocumentFragment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Checks that parsing fragments in a batch gives the same fragments as
+ * parsing them one by one, with and without a fragment cache.
+ */
+public class FragmentBatchTester {
+
+    private static final String[] inputs = {
+            "<b>bold<i>both</b>italic</i>",
+            "<td>cell<tr><td>next",
+            "<option>a<option selected>b",
+            "<p id=x>one<p>two<table>foster<tr><td>cell</table>",
+            "text &amp; more",
+            "",
+            "<b>bold<i>both</b>italic</i>" };
+
+    private static final String[][] contexts = {
+            { "div", "http://www.w3.org/1999/xhtml" },
+            { "tr", "http://www.w3.org/1999/xhtml" },
+            { "select", "http://www.w3.org/1999/xhtml" },
+            { "svg", "http://www.w3.org/2000/svg" } };
+
+    private static boolean failed = false;
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static List<InputSource> sources() {
+        List<InputSource> sources = new ArrayList<InputSource>();
+        for (int i = 0; i < inputs.length; i++) {
+            sources.add(new InputSource(new StringReader(inputs[i])));
+        }
+        return sources;
+    }
+
+    private static void testBatch(HtmlDocumentBuilder builder, String what)
+            throws SAXException, IOException {
+        for (int c = 0; c < contexts.length; c++) {
+            String local = contexts[c][0];
+            String ns = contexts[c][1];
+            List<DocumentFragment> batch = builder.parseFragments(sources(),
+                    local, ns);
+            check(batch.size() == inputs.length, "batch size");
+            for (int i = 0; i < inputs.length; i++) {
+                DocumentFragment single = builder.parseFragment(
+                        new InputSource(new StringReader(inputs[i])), local, ns);
+                check(
+                        CompactDomTester.dump(single).equals(
+                                CompactDomTester.dump(batch.get(i))), what
+                                + ": fragment " + i + " in " + local
+                                + " differs");
+                check(batch.get(i).getOwnerDocument() == batch.get(0).getOwnerDocument(),
+                        what + ": fragments don't share the owner document");
+            }
+        }
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        testBatch(new HtmlDocumentBuilder(), "default DOM");
+        testBatch(new HtmlDocumentBuilder(new CompactDOMImplementation()),
+                "compact DOM");
+
+        HtmlDocumentBuilder builder = new HtmlDocumentBuilder();
+        FragmentCache cache = new FragmentCache(64, 1 << 20);
+        builder.setFragmentCache(cache);
+        testBatch(builder, "default DOM with cache");
+        check(cache.getHitCount() > 0, "no cache hits");
+        testBatch(builder, "default DOM with warm cache");
+
+        builder = new HtmlDocumentBuilder(new CompactDOMImplementation());
+        builder.setFragmentCache(new FragmentCache(64, 1 << 20));
+        testBatch(builder, "compact DOM with cache");
+        testBatch(builder, "compact DOM with warm cache");
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.dom.FragmentCache;
+import nu.validator.htmlparser.dom.HtmlDocumentBuilder;
+
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Checks the hit and miss counts of a <code>FragmentCache</code>, that a 
+ * hit returns an independent deep copy equal to a fresh parse and that 
+ * fragments are evicted by entry count and by weight.
+ */
+public class FragmentCacheTester {
+
+    private static final String testSrc = "<p class=a>one <b>two</b><table><tr><td>three</table>";
+
+    private static boolean failed = false;
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static DocumentFragment parse(HtmlDocumentBuilder builder,
+            String src) throws SAXException, IOException {
+        return builder.parseFragment(new InputSource(new StringReader(src)),
+                "div");
+    }
+
+    private static void checkCounts(FragmentCache cache, long hits,
+            long misses, long evictions, String what) {
+        check(cache.getHitCount() == hits && cache.getMissCount() == misses
+                && cache.getEvictionCount() == evictions, what + ": "
+                + cache.getHitCount() + " hits, " + cache.getMissCount()
+                + " misses, " + cache.getEvictionCount() + " evictions");
+    }
+
+    private static void testHits() throws SAXException, IOException {
+        String expected = CompactDomTester.dump(parse(
+                new HtmlDocumentBuilder(), testSrc));
+        FragmentCache cache = new FragmentCache(10, 1000);
+        HtmlDocumentBuilder builder = new HtmlDocumentBuilder();
+        builder.setFragmentCache(cache);
+
+        DocumentFragment miss = parse(builder, testSrc);
+        checkCounts(cache, 0, 1, 0, "first parse");
+        check(cache.size() == 1 && cache.getWeight() == testSrc.length(),
+                "size " + cache.size() + " weight " + cache.getWeight());
+        check(expected.equals(CompactDomTester.dump(miss)), "parsed fragment");
+
+        DocumentFragment hit = parse(builder, testSrc);
+        checkCounts(cache, 1, 1, 0, "second parse");
+        check(expected.equals(CompactDomTester.dump(hit)), "cached fragment");
+        check(hit != miss && hit.getOwnerDocument() != miss.getOwnerDocument(),
+                "the hit shares nodes with the first result");
+
+        // Changing a result must not leak into the cache.
+        Element p = (Element) hit.getFirstChild();
+        p.setAttribute("class", "changed");
+        p.removeChild(p.getLastChild());
+        hit.appendChild(hit.getOwnerDocument().createElement("extra"));
+        miss.removeChild(miss.getFirstChild());
+        DocumentFragment again = parse(builder, testSrc);
+        checkCounts(cache, 2, 1, 0, "third parse");
+        check(expected.equals(CompactDomTester.dump(again)),
+                "cached fragment after changing earlier results");
+
+        // The context is part of the key.
+        builder.parseFragment(new InputSource(new StringReader(testSrc)),
+                "tbody");
+        checkCounts(cache, 2, 2, 0, "other context");
+
+        // So is the configuration.
+        builder.setIgnoringComments(true);
+        parse(builder, testSrc);
+        checkCounts(cache, 2, 3, 0, "other configuration");
+        builder.setIgnoringComments(false);
+
+        // The cache may be shared by builders with the same configuration.
+        HtmlDocumentBuilder other = new HtmlDocumentBuilder();
+        other.setFragmentCache(cache);
+        check(expected.equals(CompactDomTester.dump(parse(other, testSrc))),
+                "fragment from another builder");
+        checkCounts(cache, 3, 3, 0, "other builder");
+
+        // Parses that report errors bypass the cache.
+        other.setErrorHandler(new ListErrorHandler());
+        parse(other, testSrc);
+        checkCounts(cache, 3, 3, 0, "parse with an error handler");
+
+        // A batch of fragments shares one owner document, hits included.
+        List<InputSource> inputs = new ArrayList<InputSource>();
+        inputs.add(new InputSource(new StringReader("<i>new</i>")));
+        inputs.add(new InputSource(new StringReader(testSrc)));
+        inputs.add(new InputSource(new StringReader(testSrc)));
+        List<DocumentFragment> fragments = builder.parseFragments(inputs,
+                "div");
+        checkCounts(cache, 5, 4, 0, "batch");
+        check(fragments.get(0).getOwnerDocument() == fragments.get(1).getOwnerDocument()
+                && fragments.get(1).getOwnerDocument() == fragments.get(2).getOwnerDocument()
+                && fragments.get(1) != fragments.get(2),
+                "batch owner documents");
+        check(expected.equals(CompactDomTester.dump(fragments.get(2))),
+                "batch hit");
+
+        cache.clear();
+        check(cache.size() == 0 && cache.getWeight() == 0, "clear");
+        checkCounts(cache, 5, 4, 0, "statistics after clear");
+        parse(builder, testSrc);
+        checkCounts(cache, 5, 5, 0, "parse after clear");
+    }
+
+    private static void testEvictionByCount() throws SAXException,
+            IOException {
+        FragmentCache cache = new FragmentCache(2, 1000);
+        check(cache.getMaxEntries() == 2 && cache.getMaxWeight() == 1000,
+                "limits");
+        HtmlDocumentBuilder builder = new HtmlDocumentBuilder();
+        builder.setFragmentCache(cache);
+        parse(builder, "<p>a");
+        parse(builder, "<p>b");
+        parse(builder, "<p>c");
+        checkCounts(cache, 0, 3, 1, "three fragments");
+        check(cache.size() == 2, "size " + cache.size());
+        // b is used, so c becomes the least recently used one.
+        parse(builder, "<p>b");
+        parse(builder, "<p>d");
+        checkCounts(cache, 1, 4, 2, "after using b");
+        parse(builder, "<p>b");
+        parse(builder, "<p>d");
+        checkCounts(cache, 3, 4, 2, "b and d are cached");
+        parse(builder, "<p>a");
+        parse(builder, "<p>c");
+        checkCounts(cache, 3, 6, 4, "a and c were evicted");
+
+        FragmentCache none = new FragmentCache(0, 1000);
+        builder.setFragmentCache(none);
+        parse(builder, "<p>a");
+        parse(builder, "<p>a");
+        checkCounts(none, 0, 2, 0, "no entries allowed");
+        check(none.size() == 0, "size with no entries allowed");
+    }
+
+    private static void testEvictionByWeight() throws SAXException,
+            IOException {
+        FragmentCache cache = new FragmentCache(10, 20);
+        HtmlDocumentBuilder builder = new HtmlDocumentBuilder();
+        builder.setFragmentCache(cache);
+        parse(builder, "<p>aaaa");
+        parse(builder, "<p>bbbb");
+        check(cache.getWeight() == 14 && cache.size() == 2, "weight "
+                + cache.getWeight());
+        parse(builder, "<p>cccc");
+        checkCounts(cache, 0, 3, 1, "over the weight limit");
+        check(cache.getWeight() == 14 && cache.size() == 2, "weight "
+                + cache.getWeight());
+        parse(builder, "<p>aaaa");
+        checkCounts(cache, 0, 4, 2, "a was evicted");
+
+        // A fragment heavier than the limit is not cached at all.
+        String heavy = "<p>0123456789012345678";
+        parse(builder, heavy);
+        parse(builder, heavy);
+        checkCounts(cache, 0, 6, 2, "heavy fragment");
+        check(cache.getWeight() == 14 && cache.size() == 2, "weight "
+                + cache.getWeight());
+
+        String exact = "<p>01234567890123456";
+        parse(builder, exact);
+        check(cache.getWeight() == 20 && cache.size() == 1, "weight "
+                + cache.getWeight());
+        parse(builder, exact);
+        checkCounts(cache, 1, 7, 4, "fragment at the limit");
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        testHits();
+        testEvictionByCount();
+        testEvictionByWeight();
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
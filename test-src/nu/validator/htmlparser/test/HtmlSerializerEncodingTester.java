@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+
+import nu.validator.htmlparser.sax.HtmlSerializer;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks that the UTF-8 encoder of <code>HtmlSerializer</code> writes the
+ * same bytes as an <code>OutputStreamWriter</code>, including for
+ * surrogate pairs split between calls and for unpaired surrogates.
+ */
+public class HtmlSerializerEncodingTester {
+
+    private static final String XHTML_NS = "http://www.w3.org/1999/xhtml";
+
+    private static final String[] texts = {
+            "a\uD83D\uDE00b",
+            "\uD83D\uDE00\uD83D\uDE00",
+            "lone high \uD83D then text",
+            "lone low \uDE00 then text",
+            "high at the end \uD83D",
+            "\uDE00\uD83D reversed",
+            "<caf\u00E9 & \u20AC\u00A0>",
+            "\uD83D<" };
+
+    private static boolean failed = false;
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    /**
+     * Serializes a document with <code>text</code> in an attribute, in
+     * body text split at <code>split</code> and in a script split at
+     * <code>split</code>, after <code>padding</code> ASCII characters.
+     */
+    private static void serialize(HtmlSerializer serializer, String text,
+            int split, int padding) throws SAXException {
+        char[] ch = text.toCharArray();
+        char[] pad = new char[padding];
+        Arrays.fill(pad, 'x');
+        AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute("", "title", "title", "CDATA", text);
+        AttributesImpl none = new AttributesImpl();
+        serializer.startDocument();
+        serializer.startElement(XHTML_NS, "html", "html", none);
+        serializer.startElement(XHTML_NS, "body", "body", none);
+        serializer.startElement(XHTML_NS, "p", "p", attributes);
+        serializer.characters(pad, 0, padding);
+        serializer.characters(ch, 0, split);
+        serializer.characters(ch, split, ch.length - split);
+        serializer.endElement(XHTML_NS, "p", "p");
+        serializer.startElement(XHTML_NS, "script", "script", none);
+        serializer.characters(pad, 0, padding);
+        serializer.characters(ch, 0, split);
+        serializer.characters(ch, split, ch.length - split);
+        serializer.endElement(XHTML_NS, "script", "script");
+        serializer.characters(ch, 0, split);
+        serializer.endElement(XHTML_NS, "body", "body");
+        serializer.endElement(XHTML_NS, "html", "html");
+        serializer.endDocument();
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        // paddings that put the text at the end of the internal buffer
+        int[] paddings = { 0, 1, 8180, 8187, 8188, 8189, 8190, 8191, 8192 };
+        for (int t = 0; t < texts.length; t++) {
+            String text = texts[t];
+            for (int p = 0; p < paddings.length; p++) {
+                for (int split = 0; split <= text.length(); split++) {
+                    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                    serialize(new HtmlSerializer(new OutputStreamWriter(
+                            expected, "UTF-8")), text, split, paddings[p]);
+                    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                    serialize(new HtmlSerializer(actual), text, split,
+                            paddings[p]);
+                    check(Arrays.equals(expected.toByteArray(),
+                            actual.toByteArray()), "text " + t + " split at "
+                            + split + " after " + paddings[p]
+                            + " characters");
+                }
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.HtmlParser;
+import nu.validator.htmlparser.sax.HtmlSerializer;
+import nu.validator.htmlparser.sax.HtmlTreeSerializer;
+import nu.validator.saxtree.Characters;
+import nu.validator.saxtree.Comment;
+import nu.validator.saxtree.Document;
+import nu.validator.saxtree.Element;
+import nu.validator.saxtree.Node;
+import nu.validator.saxtree.ParentNode;
+import nu.validator.saxtree.TreeBuilder;
+import nu.validator.saxtree.TreeParser;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks that <code>HtmlTreeSerializer</code> writes the same output as 
+ * <code>TreeParser</code> driving an <code>HtmlSerializer</code>, for 
+ * parsed documents and for a tree too deep for a recursive walk.
+ */
+public class HtmlTreeSerializerTester {
+
+    private static final String HTML = "http://www.w3.org/1999/xhtml";
+
+    private static final int DEPTH = 100000;
+
+    private static final String testSrc = "<!DOCTYPE html><title>a &amp; b</title>"
+            + "<p id=\"q&quot;\" title='\u00A0&amp;\"'>x &lt; y\u00A0&gt; z<br>"
+            + "<img src=a.png alt=\"\"><!-- c & d --></p><pre>\n\nkept</pre>"
+            + "<textarea>\nt</textarea><script>if (a < b && c) {}</script>"
+            + "<style>p > a {}</style><noscript><p>n</noscript>"
+            + "<svg><circle r=1/></svg><table><td>\uD83D\uDE00 \u00E9t\u00E9</table>";
+
+    private static boolean failed = false;
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static Characters text(String s) {
+        char[] buf = s.toCharArray();
+        return new Characters(null, buf, 0, buf.length);
+    }
+
+    private static Element element(String name, String attributeValue) {
+        AttributesImpl attributes = new AttributesImpl();
+        if (attributeValue != null) {
+            attributes.addAttribute("", "title", "title", "CDATA",
+                    attributeValue);
+        }
+        return new Element(null, HTML, name, name, attributes, true, null);
+    }
+
+    private static Node parse(String src) throws SAXException, IOException {
+        TreeBuilder treeBuilder = new TreeBuilder();
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setContentHandler(treeBuilder);
+        htmlParser.setLexicalHandler(treeBuilder);
+        htmlParser.parse(new InputSource(new StringReader(src)));
+        return treeBuilder.getRoot();
+    }
+
+    /**
+     * Builds a document whose body holds elements nested 
+     * <code>DEPTH</code> deep, each with some text, and the special cases 
+     * of the serializer at the bottom.
+     */
+    private static Node deepTree() {
+        Document document = new Document(null);
+        ParentNode html = (ParentNode) document.appendChild(element("html",
+                null));
+        ParentNode current = (ParentNode) html.appendChild(element("body",
+                null));
+        String[] names = { "div", "span", "b", "section" };
+        for (int i = 0; i < DEPTH; i++) {
+            current.appendChild(text(i % 7 == 0 ? "a < b & c\u00A0" : "t"));
+            current = (ParentNode) current.appendChild(element(
+                    names[i % names.length], i % 5 == 0 ? "\"" + i + "&"
+                            : null));
+        }
+        current.appendChild(element("br", null));
+        ParentNode script = (ParentNode) current.appendChild(element(
+                "script", null));
+        script.appendChild(text("x < y && z"));
+        ParentNode pre = (ParentNode) current.appendChild(element("pre",
+                null));
+        pre.appendChild(text("\npre"));
+        char[] comment = " comment ".toCharArray();
+        current.appendChild(new Comment(null, comment, 0, comment.length));
+        current.appendChild(text("\uD83D\uDE00 \uD800 end"));
+        return document;
+    }
+
+    private static byte[] viaTreeParser(Node node) throws SAXException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HtmlSerializer serializer = new HtmlSerializer(out);
+        new TreeParser(serializer, serializer).parse(node);
+        return out.toByteArray();
+    }
+
+    private static String viaTreeParserToWriter(Node node)
+            throws SAXException {
+        StringWriter writer = new StringWriter();
+        HtmlSerializer serializer = new HtmlSerializer(writer);
+        new TreeParser(serializer, serializer).parse(node);
+        return writer.toString();
+    }
+
+    private static byte[] viaTreeSerializer(Node node) throws SAXException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new HtmlTreeSerializer(out).serialize(node);
+        return out.toByteArray();
+    }
+
+    private static String viaTreeSerializerToWriter(Node node)
+            throws SAXException {
+        StringWriter writer = new StringWriter();
+        new HtmlTreeSerializer(writer).serialize(node);
+        return writer.toString();
+    }
+
+    private static void testDocument(Node document, String what)
+            throws SAXException {
+        byte[] expected = viaTreeParser(document);
+        check(expected.length > 0, what + ": no output");
+        check(Arrays.equals(expected, viaTreeSerializer(document)), what
+                + ": stream output differs");
+        check(viaTreeParserToWriter(document).equals(
+                viaTreeSerializerToWriter(document)), what
+                + ": writer output differs");
+    }
+
+    /**
+     * Serializes subtrees. Only the writer output of <code>TreeParser</code> 
+     * is complete here, because the stream is not flushed without an end 
+     * of document.
+     */
+    private static void testSubtrees(Node document) throws SAXException,
+            IOException {
+        Node node = document.getFirstChild();
+        int count = 0;
+        while (node != null) {
+            String expected = viaTreeParserToWriter(node);
+            check(expected.equals(viaTreeSerializerToWriter(node)),
+                    "writer output for " + expected);
+            check(expected.equals(new String(viaTreeSerializer(node),
+                    "UTF-8")), "stream output for " + expected);
+            count++;
+            Node next = node.getFirstChild();
+            if (next == null) {
+                while (node != null && node.getNextSibling() == null) {
+                    node = node.getParentNode();
+                }
+                if (node != null) {
+                    node = node.getNextSibling();
+                }
+            } else {
+                node = next;
+            }
+        }
+        check(count > 20, "only " + count + " subtrees");
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        Node parsed = parse(testSrc);
+        testDocument(parsed, "parsed document");
+        testSubtrees(parsed);
+        testDocument(deepTree(), "deep tree");
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.dom.HtmlDocumentBuilder;
+import nu.validator.htmlparser.dom.IncrementalDocumentBuilder;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Applies edits with <code>IncrementalDocumentBuilder</code> and compares
+ * the updated document with a fresh parse of the edited source.
+ */
+public class IncrementalParseTester {
+
+    private static final String[] snippets = { "x", " ", "<b>", "</b>",
+            "<p>", "</div>", "<div class=n>", "<td>", "</table>", "<!--",
+            "-->", "&amp;", "<i>t</i>", "<tr>", "\n", "<table>", "" };
+
+    private static boolean failed = false;
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static String testDocument() {
+        StringBuilder sb = new StringBuilder(
+                "<!DOCTYPE html><title>edits</title><body>");
+        for (int i = 0; i < 40; i++) {
+            sb.append("<div id=d").append(i).append("><p>para ").append(i).append(
+                    " <b>bold</b> <i>it</i></p>\n");
+            if (i % 10 == 5) {
+                sb.append("<table><tr><td>cell ").append(i).append(
+                        "<td>more</table>\n");
+            }
+            sb.append("</div>\n");
+        }
+        return sb.toString();
+    }
+
+    private static String freshDump(String source) throws SAXException,
+            IOException {
+        HtmlDocumentBuilder builder = new HtmlDocumentBuilder(
+                XmlViolationPolicy.ALTER_INFOSET);
+        Document doc = builder.parse(new InputSource(new StringReader(source)));
+        return CompactDomTester.dump(doc);
+    }
+
+    private static void edit(IncrementalDocumentBuilder builder, int start,
+            int end, String replacement, String what) throws SAXException,
+            IOException {
+        String old = builder.getSource();
+        String expected = old.substring(0, start) + replacement
+                + old.substring(end);
+        Document doc = builder.update(start, end, replacement);
+        check(expected.equals(builder.getSource()), what + ": source differs");
+        check(freshDump(expected).equals(CompactDomTester.dump(doc)), what
+                + ": tree differs");
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        String source = testDocument();
+        IncrementalDocumentBuilder builder = new IncrementalDocumentBuilder();
+        builder.setSnapshotInterval(64);
+        Document doc = builder.parse(source);
+        check(freshDump(source).equals(CompactDomTester.dump(doc)),
+                "initial parse differs");
+
+        // Before the first checkpoint
+        edit(builder, 2, 2, "x", "edit in the doctype");
+        edit(builder, 2, 3, "", "undo the doctype edit");
+        int title = builder.getSource().indexOf("edits");
+        edit(builder, title, title + 5, "changed", "edit in the title");
+
+        // A local edit should resume from a checkpoint and, when an old
+        // checkpoint follows with the same open elements, stop there.
+        int para = builder.getSource().indexOf("para 2 ");
+        edit(builder, para, para + 4, "text", "edit in an early paragraph");
+        check(builder.getLastReparseLength() < builder.getSource().length() / 4,
+                "an early edit parsed " + builder.getLastReparseLength()
+                        + " characters");
+        para = builder.getSource().indexOf("para 20");
+        edit(builder, para, para + 4, "text", "edit in a later paragraph");
+        check(builder.getLastReparseLength() < builder.getSource().length()
+                - para + 64, "a later edit parsed "
+                + builder.getLastReparseLength() + " characters");
+
+        // Markup edits
+        int bold = builder.getSource().indexOf("<b>bold</b>", para);
+        edit(builder, bold, bold + 3, "<em>", "unclosed element");
+        edit(builder, bold, bold, "</div></div>", "stray end tags");
+
+        // Tables and foster parenting
+        int cell = builder.getSource().indexOf("cell 25");
+        edit(builder, cell, cell + 4, "changed", "edit in a table cell");
+        int table = builder.getSource().indexOf("<tr>", cell - 20);
+        edit(builder, table, table, "foster", "text in a table");
+        int more = builder.getSource().indexOf("<td>more", table);
+        edit(builder, more, more, "<b>x</b>", "element in a table");
+        edit(builder, more, more + 8, "", "removing a cell");
+
+        // Edits at the end
+        int length = builder.getSource().length();
+        edit(builder, length, length, "<p>tail", "append");
+        edit(builder, length - 20, builder.getSource().length(), "",
+                "delete the tail");
+
+        Random random = new Random(28);
+        for (int i = 0; i < 300; i++) {
+            String current = builder.getSource();
+            int start = random.nextInt(current.length() + 1);
+            int end = Math.min(current.length(), start + random.nextInt(12));
+            String replacement = snippets[random.nextInt(snippets.length)];
+            edit(builder, start, end, replacement, "random edit " + i
+                    + " at " + start + "-" + end + " with " + replacement);
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.common.ParseErrorAggregator;
+import nu.validator.htmlparser.common.ParseErrorCode;
+import nu.validator.htmlparser.common.ParseErrorHandler;
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.HtmlParser;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that the tokenizer errors reported through
+ * <code>ParseErrorHandler</code> match the ones reported as
+ * <code>SAXParseException</code>s and that <code>ParseErrorAggregator</code>
+ * counts and replays them correctly.
+ */
+public class ParseErrorTester {
+
+    private static final String[] DOCUMENTS = {
+            "<!DOCTYPE html><title>a</b</title><p>&#; &#x; &#x110000; &#128;"
+                    + " &#xFFFF; &#x1FFFE; &#xD800; &#1; &#13; &#0; &amp &notit;"
+                    + " &foo; x&copyy</p>",
+            "<!DOCTYPE>\n</>\n</ x>\n<p a=b<c d=`e f=g\"h i=j'k>\n"
+                    + "<p a=1 a=2 b =c d= =e f=<g h=`i j\"k l'm<n>\n"
+                    + "<!-- a -- b --!><?pi?><>\n<br/ >\n<p/x>",
+            "<p>\u0000 \uE000 \uFDD0 \uDBFF\uDFFF \u000B</p>\n<textarea></x</textarea>",
+            "<!DOCTYPE html PUBLIC\"a\"\"b\"><!DOCTYPE html SYSTEM\"a\">"
+                    + "<!DOCTYPE html PUBLIC><!DOCTYPE html SYSTEM><!DOCTYPE html PUBLIC \"a>"
+                    + "<!DOCTYPE html SYSTEM 'b>",
+            "<!DOCTYPE html><p a=\"b", "<p a", "<p", "</p", "<", "<!--",
+            "<!DOCTYPE html PUBLIC \"", "<!DOCTYPE html SYSTEM \"",
+            "<!DOCTYPE" };
+
+    private static boolean failed = false;
+
+    /**
+     * Records the errors from either channel in one list as "kind line:col
+     * message" strings. Structured errors also remember their code and
+     * offset.
+     */
+    private static final class Recorder implements ErrorHandler,
+            ParseErrorHandler {
+
+        final List<String> errors = new ArrayList<String>();
+
+        final List<ParseErrorCode> codes = new ArrayList<ParseErrorCode>();
+
+        final List<Integer> offsets = new ArrayList<Integer>();
+
+        public void parseError(ParseErrorCode code, int line, int column,
+                int offset, int arg) throws SAXException {
+            errors.add((code.isWarning() ? "warning " : "error ") + line
+                    + ":" + column + " " + code.getMessage(arg));
+            codes.add(code);
+            offsets.add(Integer.valueOf(offset));
+        }
+
+        public void error(SAXParseException spe) throws SAXException {
+            add("error", spe);
+        }
+
+        public void fatalError(SAXParseException spe) throws SAXException {
+            add("fatal", spe);
+        }
+
+        public void warning(SAXParseException spe) throws SAXException {
+            add("warning", spe);
+        }
+
+        private void add(String kind, SAXParseException spe) {
+            errors.add(kind + " " + spe.getLineNumber() + ":"
+                    + spe.getColumnNumber() + " " + spe.getMessage());
+            codes.add(null);
+            offsets.add(Integer.valueOf(-1));
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    /**
+     * Tells whether the SAX message of a code quotes part of the input, in
+     * which case the structured form uses a generic text.
+     */
+    private static boolean quotesInput(ParseErrorCode code) {
+        return code == ParseErrorCode.NO_DIGITS_IN_NCR
+                || code == ParseErrorCode.DUPLICATE_ATTRIBUTE
+                || code == ParseErrorCode.LT_SLASH_IN_RCDATA
+                || code == ParseErrorCode.HTML4_LT_SLASH_IN_RCDATA;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void parse(String doc, Recorder errorHandler,
+            ParseErrorHandler parseErrorHandler) throws SAXException,
+            IOException {
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setContentHandler(new DefaultHandler());
+        htmlParser.setErrorHandler(errorHandler);
+        // only the tokenizer errors are compared
+        htmlParser.setTreeBuilderErrorHandlerOverride(null);
+        htmlParser.setParseErrorHandler(parseErrorHandler);
+        htmlParser.parse(new InputSource(new StringReader(doc)));
+    }
+
+    private static void testStructuredMatchesSax(String doc)
+            throws SAXException, IOException {
+        Recorder sax = new Recorder();
+        parse(doc, sax, null);
+        Recorder structured = new Recorder();
+        parse(doc, structured, structured);
+        check(!sax.errors.isEmpty(), "no errors for " + doc);
+        if (sax.errors.size() != structured.errors.size()) {
+            check(false, "error count for " + doc + ": " + sax.errors
+                    + " vs " + structured.errors);
+            return;
+        }
+        for (int i = 0; i < sax.errors.size(); i++) {
+            String expected = sax.errors.get(i);
+            String actual = structured.errors.get(i);
+            ParseErrorCode code = structured.codes.get(i);
+            if (code != null && quotesInput(code)) {
+                // compare the kind and the location only
+                expected = expected.substring(0, expected.indexOf(' ',
+                        expected.indexOf(' ') + 1));
+                actual = actual.substring(0, actual.indexOf(' ',
+                        actual.indexOf(' ') + 1));
+            }
+            check(expected.equals(actual), expected + " vs " + actual);
+            if (code != null) {
+                int offset = structured.offsets.get(i).intValue();
+                check(offset >= 0 && offset < doc.length(), "offset "
+                        + offset + " for " + actual);
+            }
+        }
+    }
+
+    private static void testAggregator() throws SAXException, IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < DOCUMENTS.length; i++) {
+            sb.append(DOCUMENTS[i]);
+            sb.append('\n');
+        }
+        sb.append("<p a=1 a=2 a=3>&#; &#;");
+        String doc = sb.toString();
+        Recorder structured = new Recorder();
+        parse(doc, structured, structured);
+        ParseErrorAggregator aggregator = new ParseErrorAggregator();
+        parse(doc, new Recorder(), aggregator);
+
+        int total = 0;
+        int seen = 0;
+        for (ParseErrorCode code : ParseErrorCode.values()) {
+            int first = structured.codes.indexOf(code);
+            int count = 0;
+            for (int i = 0; i < structured.codes.size(); i++) {
+                if (structured.codes.get(i) == code) {
+                    count++;
+                }
+            }
+            total += count;
+            check(aggregator.getCount(code) == count, "count of " + code
+                    + ": " + aggregator.getCount(code) + " vs " + count);
+            if (first == -1) {
+                continue;
+            }
+            seen++;
+            String expected = structured.errors.get(first);
+            String location = expected.substring(expected.indexOf(' ') + 1,
+                    expected.indexOf(' ', expected.indexOf(' ') + 1));
+            check(location.equals(aggregator.getFirstLine(code) + ":"
+                    + aggregator.getFirstColumn(code)), "first location of "
+                    + code + ": " + location);
+            check(aggregator.getFirstOffset(code) == structured.offsets.get(
+                    first).intValue(), "first offset of " + code);
+        }
+        check(aggregator.getTotal() == total, "total "
+                + aggregator.getTotal() + " vs " + total);
+        check(aggregator.getCount(ParseErrorCode.DUPLICATE_ATTRIBUTE) > 2,
+                "duplicate attributes were not all counted");
+
+        Recorder replay = new Recorder();
+        aggregator.report(replay, null);
+        check(replay.errors.size() == seen, "replayed " + replay.errors.size()
+                + " vs " + seen);
+        for (int i = 0; i < replay.errors.size(); i++) {
+            String replayed = replay.errors.get(i);
+            boolean found = false;
+            for (ParseErrorCode code : ParseErrorCode.values()) {
+                int first = structured.codes.indexOf(code);
+                if (first == -1) {
+                    continue;
+                }
+                String expected = structured.errors.get(first);
+                int count = aggregator.getCount(code);
+                if (count > 1) {
+                    expected = expected + " (" + count + " occurrences.)";
+                }
+                if (expected.equals(replayed)) {
+                    found = true;
+                    break;
+                }
+            }
+            check(found, "unexpected replay " + replayed);
+        }
+
+        aggregator.reset();
+        check(aggregator.getTotal() == 0, "reset left " + aggregator.getTotal());
+        replay = new Recorder();
+        aggregator.report(replay, null);
+        check(replay.errors.isEmpty(), "replay after reset");
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        for (int i = 0; i < DOCUMENTS.length; i++) {
+            testStructuredMatchesSax(DOCUMENTS[i]);
+        }
+        testAggregator();
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
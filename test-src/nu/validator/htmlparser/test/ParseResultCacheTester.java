@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.HtmlParser;
+import nu.validator.htmlparser.sax.ParseResultCache;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Checks that a parse taken from a <code>ParseResultCache</code> reports
+ * the same events as a fresh parse and that names are interned either way.
+ */
+public class ParseResultCacheTester {
+
+    private static final String testSrc = "<!DOCTYPE html><title>t</title><my-widget data-foo=1 id=a>text<svg><foo-bar baz-qux=2/></svg></my-widget><!-- c -->";
+
+    private static boolean failed = false;
+
+    /**
+     * Dumps the tree and flags names that are not interned.
+     */
+    private static final class InterningChecker extends TreeDumpContentHandler {
+
+        boolean allInterned = true;
+
+        InterningChecker(StringWriter writer) {
+            super(writer);
+        }
+
+        @Override public void startElement(String uri, String localName,
+                String qName, Attributes atts) throws SAXException {
+            allInterned &= localName == localName.intern();
+            for (int i = 0; i < atts.getLength(); i++) {
+                allInterned &= atts.getLocalName(i) == atts.getLocalName(i).intern();
+            }
+            super.startElement(uri, localName, qName, atts);
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static String parse(ParseResultCache cache, String what)
+            throws SAXException, IOException {
+        StringWriter sw = new StringWriter();
+        InterningChecker checker = new InterningChecker(sw);
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setContentHandler(checker);
+        htmlParser.setLexicalHandler(checker);
+        htmlParser.setParseResultCache(cache);
+        htmlParser.parse(new InputSource(new StringReader(testSrc)));
+        check(checker.allInterned, "names not interned on " + what);
+        return sw.toString();
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        String expected = parse(null, "uncached parse");
+        ParseResultCache cache = new ParseResultCache(16, 1 << 20);
+        String miss = parse(cache, "miss");
+        check(cache.getMissCount() == 1 && cache.size() == 1, "miss not cached");
+        String hit = parse(cache, "hit");
+        check(cache.getHitCount() == 1, "no hit");
+        check(expected.equals(miss), "miss differs:\n" + miss);
+        check(expected.equals(hit), "hit differs:\n" + hit);
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.rewindable.BlockPool;
+import nu.validator.htmlparser.rewindable.RewindableInputStream;
+import nu.validator.htmlparser.sax.HtmlParser;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Checks that <code>RewindableInputStream</code> replays the same bytes
+ * after spilling them to a temporary file and that the file is removed.
+ */
+public class RewindableInputStreamTester {
+
+    private static boolean failed = false;
+
+    private static File tempDir;
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static int spillFiles() {
+        String[] names = tempDir.list();
+        int count = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].startsWith("htmlparser")
+                    && names[i].endsWith(".rewind")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] testData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + (i >> 8));
+        }
+        return data;
+    }
+
+    /**
+     * Reads <code>len</code> bytes, mixing single-byte and array reads.
+     */
+    private static void read(InputStream in, ByteArrayOutputStream out,
+            int len) throws IOException {
+        byte[] buf = new byte[1000];
+        while (len > 0) {
+            if (len % 7 == 0) {
+                int c = in.read();
+                if (c == -1) {
+                    return;
+                }
+                out.write(c);
+                len--;
+            } else {
+                int n = in.read(buf, 0, Math.min(len, buf.length));
+                if (n == -1) {
+                    return;
+                }
+                out.write(buf, 0, n);
+                len -= n;
+            }
+        }
+    }
+
+    private static void testStream(long memoryLimit, BlockPool pool)
+            throws IOException {
+        String what = "limit " + memoryLimit;
+        byte[] data = testData(3 * BlockPool.BLOCK_SIZE + 123);
+        RewindableInputStream in = new RewindableInputStream(
+                new ByteArrayInputStream(data), pool, memoryLimit);
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        read(in, first, 2 * BlockPool.BLOCK_SIZE + 17);
+        check(spillFiles() == (memoryLimit < first.size() ? 1 : 0), what
+                + ": spill files while saving");
+        in.rewind();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        read(in, second, 100);
+        check(Arrays.equals(first.toByteArray(), Arrays.copyOf(data,
+                first.size())), what + ": first read");
+        check(Arrays.equals(second.toByteArray(), Arrays.copyOf(data, 100)),
+                what + ": read after rewind");
+
+        // rewind again, this time reading past the saved bytes
+        in.rewind();
+        ByteArrayOutputStream third = new ByteArrayOutputStream();
+        read(in, third, 500);
+        in.willNotRewind();
+        read(in, third, data.length);
+        check(Arrays.equals(third.toByteArray(), data), what
+                + ": read to the end");
+        in.close();
+        check(spillFiles() == 0, what + ": spill file left behind");
+    }
+
+    private static String parse(byte[] bytes, long memoryLimit)
+            throws SAXException, IOException {
+        StringWriter sw = new StringWriter();
+        TreeDumpContentHandler dumper = new TreeDumpContentHandler(sw);
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setContentHandler(dumper);
+        htmlParser.setLexicalHandler(dumper);
+        if (memoryLimit != -1) {
+            htmlParser.setRewindMemoryLimit(memoryLimit);
+        }
+        htmlParser.parse(new InputSource(new ByteArrayInputStream(bytes)));
+        return sw.toString();
+    }
+
+    private static void testParser() throws SAXException, IOException {
+        // A non-ASCII byte before a late meta forces a reparse, so the
+        // stream is rewound from the spill file.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("<!DOCTYPE html><title>".getBytes("US-ASCII"));
+        for (int i = 0; i < 1000; i++) {
+            out.write("spilled ".getBytes("US-ASCII"));
+        }
+        out.write(0xE9);
+        out.write("</title><meta charset=windows-1251><p>".getBytes("US-ASCII"));
+        out.write(0xE9);
+        byte[] bytes = out.toByteArray();
+        String expected = parse(bytes, -1);
+        check(expected.indexOf('\u0439') != -1, "no reparse");
+        check(expected.equals(parse(bytes, 0)), "reparse from spill differs");
+        check(spillFiles() == 0, "parser left a spill file behind");
+
+        // A document that stays tentative to the end
+        bytes = testData(20000);
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '<' || bytes[i] == '&') {
+                bytes[i] = 'x';
+            }
+        }
+        check(parse(bytes, -1).equals(parse(bytes, 0)),
+                "tentative parse differs");
+        check(spillFiles() == 0,
+                "parser left a spill file behind without a meta");
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws IOException, SAXException {
+        tempDir = new File(System.getProperty("java.io.tmpdir"),
+                "rewindable-" + System.nanoTime());
+        if (!tempDir.mkdir()) {
+            throw new IOException("Could not create " + tempDir);
+        }
+        // must happen before the first temporary file is created
+        System.setProperty("java.io.tmpdir", tempDir.getPath());
+        try {
+            testStream(Long.MAX_VALUE, null);
+            testStream(0, null);
+            testStream(BlockPool.BLOCK_SIZE + 1, new BlockPool(4));
+            testParser();
+        } finally {
+            File[] files = tempDir.listFiles();
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+            tempDir.delete();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.HtmlParser;
+import nu.validator.htmlparser.sax.StreamingPath;
+import nu.validator.htmlparser.sax.StreamingPathEvaluator;
+import nu.validator.htmlparser.sax.StreamingPathHandler;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Evaluates <code>StreamingPath</code>s over documents and fragments and
+ * compares the selected values with the expected ones.
+ */
+public class StreamingPathTester {
+
+    private static final String testDocument = "<!DOCTYPE html><title>t</title>"
+            + "<div class=x><a href=/one>One</a><span><a href=/nested>no</a></span></div>"
+            + "<div class=y><a href=/two>Two</a></div>"
+            + "<section><div class=x><a href=/three>Three <b>bold</b> end</a></div></section>"
+            + "<p>para <i>it</i> tail";
+
+    private static final String testFragment = "<div class=x><a href=/f>F</a></div><a href=/top>T</a>";
+
+    private static boolean failed = false;
+
+    /**
+     * Collects the matches as "path:value" strings.
+     */
+    private static final class MatchRecorder implements StreamingPathHandler {
+
+        final List<String> matches = new ArrayList<String>();
+
+        public void match(int path, String value) throws SAXException {
+            matches.add(path + ":" + value);
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (ok) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure: " + what);
+        }
+    }
+
+    private static StreamingPath[] compile(String[] expressions) {
+        StreamingPath[] paths = new StreamingPath[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            paths[i] = StreamingPath.compile(expressions[i]);
+        }
+        return paths;
+    }
+
+    private static HtmlParser newParser(boolean streaming) {
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        if (streaming) {
+            htmlParser.setStreamabilityViolationPolicy(XmlViolationPolicy.FATAL);
+        }
+        return htmlParser;
+    }
+
+    private static void testDocument(boolean streaming) throws SAXException,
+            IOException {
+        MatchRecorder recorder = new MatchRecorder();
+        StreamingPathEvaluator evaluator = new StreamingPathEvaluator(
+                compile(new String[] { "/html/body//div[@class='x']/a/@href",
+                        "//a/text()", "/html/body/p", "//div[@class='y']/a",
+                        "/body//a/@href" }), recorder);
+        HtmlParser htmlParser = newParser(streaming);
+        htmlParser.setContentHandler(evaluator);
+        for (int i = 0; i < 2; i++) {
+            // the second parse checks that the evaluator starts afresh
+            recorder.matches.clear();
+            htmlParser.parse(new InputSource(new StringReader(testDocument)));
+            check(recorder.matches.toString().equals(
+                    "[0:/one, 1:One, 1:no, 3:Two, 1:Two, 0:/three, 1:Three ,"
+                            + " 1: end, 2:para it tail]"),
+                    (streaming ? "streaming" : "buffered") + " document: "
+                            + recorder.matches);
+        }
+    }
+
+    private static void testFragment(boolean streaming) throws SAXException,
+            IOException {
+        MatchRecorder recorder = new MatchRecorder();
+        StreamingPathEvaluator evaluator = new StreamingPathEvaluator(
+                compile(new String[] { "/html/body//div[@class='x']/a/@href",
+                        "/div[@class='x']/a/@href", "/a/@href", "//a/@href",
+                        "/a" }), recorder);
+        HtmlParser htmlParser = newParser(streaming);
+        htmlParser.setContentHandler(evaluator);
+        for (int i = 0; i < 2; i++) {
+            recorder.matches.clear();
+            htmlParser.parseFragment(new InputSource(new StringReader(
+                    testFragment)), "body");
+            check(recorder.matches.toString().equals(
+                    "[1:/f, 3:/f, 2:/top, 3:/top, 4:T]"),
+                    (streaming ? "streaming" : "buffered") + " fragment: "
+                            + recorder.matches);
+        }
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        testDocument(false);
+        testDocument(true);
+        testFragment(false);
+        testFragment(true);
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.HtmlParser;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Times the tree builder's tag dispatch in the "in body" insertion mode and 
+ * reports the throughput in tags per second. The corpus is the UTF-8 files 
+ * named on the command line or, if there are none, built-in documents made 
+ * of the tags that <code>startTagInBodyFast</code> and 
+ * <code>endTagInBodyFast</code> handle and of tags that always take the 
+ * full dispatch. The events go to a streaming tree builder and are 
+ * discarded, so most of the time is spent in the tokenizer and the tree 
+ * builder. Files that need error recovery the streaming tree builder 
+ * cannot do are rejected.
+ */
+public class TagDispatchBenchmark {
+
+    private static final int ROUNDS = 20;
+
+    private static final String FAST = "<div class=item><p>Some <a href=#>link</a>"
+            + " and <b>bold</b> or <em>stressed</em> <span>text</span>.<br>"
+            + "<img src=a.png alt=\"\"></p><ul><li>one</li><li>two</li></ul>"
+            + "<section><h2>Heading</h2><p>More <i>text</i></p></section></div>\n";
+
+    private static final String SLOW = "<table><tbody><tr><td>cell</td>"
+            + "<td><select><option>a</option><option>b</option></select></td>"
+            + "</tr></tbody></table><form><textarea>t</textarea></form>"
+            + "<dl><dt>term</dt><dd>definition</dd></dl>\n";
+
+    private static String document(String body, int copies) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html>\n<head>\n<title>Test</title>\n</head>\n<body>\n");
+        for (int i = 0; i < copies; i++) {
+            sb.append(body);
+        }
+        sb.append("</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    private static String readFile(File file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] buf = new char[4096];
+            int num;
+            while ((num = in.read(buf)) != -1) {
+                sb.append(buf, 0, num);
+            }
+        } finally {
+            in.close();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Counts the start and end tags in the source by looking for a 
+     * <code>&lt;</code> followed by a letter or by a slash and a letter.
+     */
+    private static int countTags(String doc) {
+        int tags = 0;
+        int len = doc.length();
+        for (int i = 0; i < len - 2; i++) {
+            if (doc.charAt(i) != '<') {
+                continue;
+            }
+            char c = doc.charAt(i + 1);
+            if (c == '/') {
+                c = doc.charAt(i + 2);
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                tags++;
+            }
+        }
+        return tags;
+    }
+
+    private static void parse(HtmlParser htmlParser, String doc)
+            throws SAXException, IOException {
+        htmlParser.parse(new InputSource(new StringReader(doc)));
+    }
+
+    /**
+     * Times one corpus and prints the throughput.
+     */
+    private static void run(String label, List<String> corpus)
+            throws SAXException, IOException {
+        HtmlParser htmlParser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        htmlParser.setStreamabilityViolationPolicy(XmlViolationPolicy.FATAL);
+        htmlParser.setContentHandler(new DefaultHandler());
+        long tags = 0;
+        long chars = 0;
+        for (String doc : corpus) {
+            tags += countTags(doc);
+            chars += doc.length();
+        }
+        int iterations = (int) Math.max(1, 20000000L / chars);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (String doc : corpus) {
+                    parse(htmlParser, doc);
+                }
+            }
+            long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            System.out.println(label + ": " + (tags * iterations * 1000000000L / time)
+                    + " tags/s");
+        }
+        System.out.println(label + " best: "
+                + (tags * iterations * 1000000000L / best) + " tags/s");
+    }
+
+    /**
+     * @param args
+     *            the corpus files
+     * @throws SAXException
+     * @throws IOException
+     */
+    public static void main(String[] args) throws SAXException, IOException {
+        if (args.length == 0) {
+            List<String> corpus = new ArrayList<String>();
+            corpus.add(document(FAST, 2000));
+            run("Fast path tags", corpus);
+            corpus.clear();
+            corpus.add(document(SLOW, 2000));
+            run("Full dispatch tags", corpus);
+        } else {
+            List<String> corpus = new ArrayList<String>();
+            for (int i = 0; i < args.length; i++) {
+                corpus.add(readFile(new File(args[i])));
+            }
+            run("Corpus", corpus);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2026 Validator.nu HTML Parser contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package nu.validator.htmlparser.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.validator.saxtree.Characters;
+import nu.validator.saxtree.DocumentFragment;
+import nu.validator.saxtree.Node;
+import nu.validator.saxtree.TreeParser;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that <code>TreeParser</code> coalesces runs of adjacent
+ * <code>Characters</code> nodes without reaching outside the tree it was
+ * asked to parse.
+ */
+public class TreeParserTester {
+
+    private static boolean failed = false;
+
+    private static final class CharactersRecorder extends DefaultHandler {
+
+        final List<String> runs = new ArrayList<String>();
+
+        @Override public void characters(char[] ch, int start, int length)
+                throws SAXException {
+            runs.add(new String(ch, start, length));
+        }
+    }
+
+    private static Characters text(String s) {
+        char[] buf = s.toCharArray();
+        return new Characters(null, buf, 0, buf.length);
+    }
+
+    private static void check(Node root, String expected) throws SAXException {
+        CharactersRecorder recorder = new CharactersRecorder();
+        TreeParser treeParser = new TreeParser(recorder, null);
+        treeParser.setCoalescingCharacters(true);
+        treeParser.parse(root);
+        String actual = recorder.runs.toString();
+        if (expected.equals(actual)) {
+            System.err.println("Success.");
+        } else {
+            failed = true;
+            System.err.println("Failure.\nExpected: " + expected + "\nGot: "
+                    + actual);
+        }
+    }
+
+    /**
+     * @param args
+     * @throws SAXException
+     */
+    public static void main(String[] args) throws SAXException {
+        DocumentFragment fragment = new DocumentFragment();
+        Node foo = fragment.appendChild(text("foo"));
+        Node bar = fragment.appendChild(text("bar"));
+        check(fragment, "[foobar]");
+        // A root that has a Characters sibling must not wait for it.
+        check(foo, "[foo]");
+        check(bar, "[bar]");
+        check(fragment, "[foobar]");
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}